@@ -0,0 +1,51 @@
+package com.vega.protocol.client.api;
+
+import com.vega.protocol.submission.BatchMarketInstruction;
+import com.vega.protocol.submission.OrderAmendment;
+import com.vega.protocol.submission.OrderCancellation;
+import com.vega.protocol.submission.OrderSubmission;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchMarketInstructionBenchmark {
+
+    private VegaApiClient vegaApiClient;
+    private BatchMarketInstruction batchMarketInstruction;
+
+    @Setup
+    public void setup() {
+        vegaApiClient = new VegaApiClient();
+        batchMarketInstruction = new BatchMarketInstruction();
+        String marketId = "325dfa07e1be5192376616241d23b4d71740fe712e298130bfd35d27738f1ce4";
+        for(int i=0; i<10; i++) {
+            batchMarketInstruction.getSubmissions().add(new OrderSubmission()
+                    .setMarketId(marketId)
+                    .setSize("1000")
+                    .setPrice(String.valueOf(612340 + i * 10))
+                    .setSide(i % 2 == 0 ? "SIDE_BUY" : "SIDE_SELL")
+                    .setType("TYPE_LIMIT")
+                    .setTimeInForce("TIME_IN_FORCE_GTC"));
+            batchMarketInstruction.getAmendments().add(new OrderAmendment()
+                    .setOrderId(String.format("%064d", i))
+                    .setMarketId(marketId)
+                    .setPrice(String.valueOf(612300 + i * 10))
+                    .setSizeDelta("-100"));
+            batchMarketInstruction.getCancellations().add(new OrderCancellation()
+                    .setOrderId(String.format("%064d", i + 100))
+                    .setMarketId(marketId));
+        }
+    }
+
+    @Benchmark
+    public byte[] buildPayload() throws IOException {
+        return vegaApiClient.buildBatchMarketInstructionPayload(batchMarketInstruction);
+    }
+}
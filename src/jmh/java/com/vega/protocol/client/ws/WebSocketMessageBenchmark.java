@@ -0,0 +1,76 @@
+package com.vega.protocol.client.ws;
+
+import com.vega.protocol.model.Market;
+import com.vega.protocol.store.VegaStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes recorded frames from the Vega and Binance feeds
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebSocketMessageBenchmark {
+
+    private VegaWebSocketClient vegaWebSocketClient;
+    private BinanceWebSocketClient binanceWebSocketClient;
+    private String vegaOrders;
+    private String vegaMarketsData;
+    private String binanceTicker;
+    private String binanceBookTicker;
+
+    @Setup
+    public void setup() throws IOException {
+        vegaWebSocketClient = new VegaWebSocketClient(URI.create("ws://localhost:1"));
+        binanceWebSocketClient = new BinanceWebSocketClient(URI.create("ws://localhost:1"));
+        vegaOrders = load("vega-orders.json");
+        vegaMarketsData = load("vega-markets-data.json");
+        binanceTicker = load("binance-ticker.json");
+        binanceBookTicker = load("binance-book-ticker.json");
+        VegaStore.getInstance().save(new Market().setId(
+                "325dfa07e1be5192376616241d23b4d71740fe712e298130bfd35d27738f1ce4"));
+    }
+
+    @TearDown
+    public void teardown() {
+        VegaStore.getInstance().truncate();
+    }
+
+    @Benchmark
+    public void vegaOrders() {
+        vegaWebSocketClient.onMessage(vegaOrders);
+    }
+
+    @Benchmark
+    public void vegaMarketsData() {
+        vegaWebSocketClient.onMessage(vegaMarketsData);
+    }
+
+    @Benchmark
+    public void binanceTicker() {
+        binanceWebSocketClient.onMessage(binanceTicker);
+    }
+
+    @Benchmark
+    public void binanceBookTicker() {
+        binanceWebSocketClient.onMessage(binanceBookTicker);
+    }
+
+    private String load(final String name) throws IOException {
+        try(InputStream stream = getClass().getResourceAsStream("/frames/" + name)) {
+            if(stream == null) {
+                throw new IOException(String.format("frame not found: %s", name));
+            }
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8).trim();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.vega.protocol.journal;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends recorded feed frames to the journal, from one thread and from several at once
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+    private Journal journal;
+    private String binanceTicker;
+    private String vegaOrders;
+
+    @Setup
+    public void setup() throws IOException {
+        journal = Journal.open(Files.createTempDirectory("journal-benchmark"), 64 << 20, 4);
+        binanceTicker = load("binance-ticker.json");
+        vegaOrders = load("vega-orders.json");
+    }
+
+    @TearDown
+    public void teardown() {
+        journal.close();
+    }
+
+    @Benchmark
+    public boolean binanceFrame() {
+        return journal.append(JournalType.BINANCE_FRAME, System.nanoTime(), binanceTicker);
+    }
+
+    @Benchmark
+    public boolean vegaFrame() {
+        return journal.append(JournalType.VEGA_FRAME, System.nanoTime(), vegaOrders);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean binanceFrameContended() {
+        return journal.append(JournalType.BINANCE_FRAME, System.nanoTime(), binanceTicker);
+    }
+
+    private static String load(final String name) throws IOException {
+        try(InputStream in = JournalBenchmark.class.getResourceAsStream("/frames/" + name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
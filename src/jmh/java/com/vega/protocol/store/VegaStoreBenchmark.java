@@ -0,0 +1,76 @@
+package com.vega.protocol.store;
+
+import com.vega.protocol.model.Order;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order updates from several writer threads racing with strategy-style reads
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VegaStoreBenchmark {
+
+    private static final int MARKETS = 8;
+    private static final int ORDERS = 1000;
+    private static final String[] SIDES = {"SIDE_BUY", "SIDE_SELL"};
+
+    private final VegaStore store = VegaStore.getInstance();
+    private Order[] orders;
+
+    @Setup
+    public void setup() {
+        store.truncate();
+        orders = new Order[ORDERS];
+        for(int i=0; i<ORDERS; i++) {
+            orders[i] = new Order()
+                    .setId(String.valueOf(i))
+                    .setMarketId(String.valueOf(i % MARKETS))
+                    .setSide(SIDES[i % 2])
+                    .setPrice(String.valueOf(1000 + i))
+                    .setSize("100")
+                    .setRemaining("100")
+                    .setStatus("STATUS_ACTIVE");
+            store.save(orders[i]);
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        store.truncate();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public void save() {
+        store.save(orders[ThreadLocalRandom.current().nextInt(ORDERS)]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void getOrdersByMarketAndSide(final Blackhole blackhole) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String side = SIDES[random.nextInt(2)];
+        for(Order order : store.getSnapshot().getOrders(String.valueOf(random.nextInt(MARKETS)))) {
+            if(side.equals(order.getSide())) {
+                blackhole.consume(order.getPriceValue());
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void getOrderById(final Blackhole blackhole) {
+        blackhole.consume(store.getOrderById(String.valueOf(ThreadLocalRandom.current().nextInt(ORDERS))));
+    }
+}
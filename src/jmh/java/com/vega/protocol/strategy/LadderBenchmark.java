@@ -0,0 +1,62 @@
+package com.vega.protocol.strategy;
+
+import com.vega.protocol.model.Order;
+import com.vega.protocol.submission.BatchMarketInstruction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LadderBenchmark {
+
+    @Param({"5", "100", "500"})
+    private int levels;
+
+    private QuoteLadder quoteLadder;
+    private QuoteLadder.Levels bids;
+    private QuoteLadder.Levels asks;
+    private OrderReconciler orderReconciler;
+    private List<Order> orders;
+
+    @Setup
+    public void setup() {
+        quoteLadder = new QuoteLadder(levels, 0.0005, 1.05, 0.0001);
+        bids = quoteLadder.newLevels();
+        asks = quoteLadder.newLevels();
+        orderReconciler = new OrderReconciler(0.0005, 0.1);
+        // live orders resting where the ladder was one tick ago, so that every level is within tolerance
+        orders = new ArrayList<>();
+        quoteLadder.build(true, 6.1234, 50000, 5, 2, bids);
+        quoteLadder.build(false, 6.1289, 50000, 5, 2, asks);
+        for(int i=0; i<levels; i++) {
+            orders.add(order("b" + i, "SIDE_BUY", bids.getPrice(i), bids.getSize(i)));
+            orders.add(order("a" + i, "SIDE_SELL", asks.getPrice(i), asks.getSize(i)));
+        }
+    }
+
+    private Order order(String id, String side, long price, long size) {
+        return new Order().setId(id).setMarketId("market").setSide(side).setStatus("STATUS_ACTIVE")
+                .setPrice(String.valueOf(price)).setSize(String.valueOf(size)).setRemaining(String.valueOf(size));
+    }
+
+    @Benchmark
+    public QuoteLadder.Levels build() {
+        quoteLadder.build(true, 6.1235, 50000, 5, 2, bids);
+        quoteLadder.build(false, 6.1290, 50000, 5, 2, asks);
+        return asks;
+    }
+
+    @Benchmark
+    public BatchMarketInstruction buildAndReconcile() {
+        quoteLadder.build(true, 6.1235, 50000, 5, 2, bids);
+        quoteLadder.build(false, 6.1290, 50000, 5, 2, asks);
+        return orderReconciler.reconcile("market", bids, asks, orders);
+    }
+}
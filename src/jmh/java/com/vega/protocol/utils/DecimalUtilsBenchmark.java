@@ -0,0 +1,49 @@
+package com.vega.protocol.utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecimalUtilsBenchmark {
+
+    @Param({"5", "18"})
+    private int decimalPlaces;
+
+    private BigInteger number;
+    private String raw;
+    private double value;
+
+    @Setup
+    public void setup() {
+        raw = "1234567890123";
+        number = new BigInteger(raw);
+        value = 12345.6789;
+    }
+
+    @Benchmark
+    public double convertToDecimals() {
+        return DecimalUtils.convertToDecimals(decimalPlaces, number);
+    }
+
+    @Benchmark
+    public BigInteger convertFromDecimals() {
+        return DecimalUtils.convertFromDecimals(decimalPlaces, value);
+    }
+
+    @Benchmark
+    public double fixedPointParseToDouble() {
+        return FixedPoint.toDouble(FixedPoint.parse(raw), raw, decimalPlaces);
+    }
+
+    @Benchmark
+    public String fixedPointToWire() {
+        return FixedPoint.toWire(value, decimalPlaces);
+    }
+}
@@ -1,9 +1,18 @@
 package com.vega.protocol;
 
+import com.vega.protocol.api.StateCache;
+import com.vega.protocol.api.StateStream;
 import com.vega.protocol.client.api.VegaApiClient;
 import com.vega.protocol.client.ws.BinanceWebSocketClient;
 import com.vega.protocol.client.ws.VegaWebSocketClient;
-import com.vega.protocol.model.AppState;
+import com.vega.protocol.engine.DataLoader;
+import com.vega.protocol.engine.EventLoop;
+import com.vega.protocol.engine.ExecutionContext;
+import com.vega.protocol.engine.QuoteEngine;
+import com.vega.protocol.engine.StoreUpdater;
+import com.vega.protocol.journal.Journal;
+import com.vega.protocol.metrics.LatencyRecorder;
+import com.vega.protocol.metrics.Metrics;
 import com.vega.protocol.model.Config;
 import com.vega.protocol.store.BinanceStore;
 import com.vega.protocol.store.VegaStore;
@@ -11,88 +20,155 @@ import com.vega.protocol.strategy.SimpleMarketMaker;
 import com.vega.protocol.strategy.TradingStrategy;
 import io.javalin.Javalin;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
 import java.net.URI;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 public class Application {
 
     private static VegaWebSocketClient vegaWebSocketClient;
     private static BinanceWebSocketClient binanceWebSocketClient;
+    private static QuoteEngine quoteEngine;
     private static final VegaStore vegaStore = VegaStore.getInstance();
     private static final BinanceStore binanceStore = BinanceStore.getInstance();
-    private static final VegaApiClient apiClient = new VegaApiClient();
     private static final Config config = Config.getInstance();
-    private static final ExecutorService taskExecutor = Executors.newCachedThreadPool();
-    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(8);
+    private static final EventLoop eventLoop = new EventLoop(config.getEventLoopCapacity());
+    private static final VegaApiClient apiClient = new VegaApiClient();
+    private static final DataLoader dataLoader = new DataLoader(apiClient, vegaStore, eventLoop);
+    private static volatile boolean loaded;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+    private static final ExecutionContext executionContext = new ExecutionContext();
+    private static Journal journal;
+    private static Javalin api;
+    private static final Metrics metrics = Metrics.getInstance();
+    private static final LongAdder vegaReconnects = metrics.counter(
+            "ws_reconnects_total", "Web Socket reconnects", "feed", "vega");
+    private static final LongAdder binanceReconnects = metrics.counter(
+            "ws_reconnects_total", "Web Socket reconnects", "feed", "binance");
 
     public static void main(String[] args) {
+        openJournal();
+        metrics.gauge("scheduler_queue_depth", "Tasks waiting in the scheduler queue",
+                executionContext::getTimerQueueDepth);
         VegaApiClient vegaApiClient = new VegaApiClient();
+        vegaApiClient.prefetchToken();
         TradingStrategy tradingStrategy = new SimpleMarketMaker(vegaApiClient);
-        taskExecutor.submit(Application::initializeWebSocketConnection);
-        scheduler.scheduleAtFixedRate(Application::loadInitialData, 0, 30, TimeUnit.SECONDS);
-        scheduler.scheduleAtFixedRate(Application::keepWebSocketsAlive, 3, 1, TimeUnit.SECONDS);
-        scheduler.scheduleAtFixedRate(tradingStrategy::execute, 3, 5, TimeUnit.SECONDS);
+        quoteEngine = new QuoteEngine(tradingStrategy, executionContext.getTimer(),
+                config.getMinRequoteIntervalMillis(), eventLoop);
+        eventLoop.start(new StoreUpdater(quoteEngine));
+        vegaApiClient.getTransactionTracker().addRejectionListener(result ->
+                result.getMarketIds().forEach(quoteEngine::requestQuote));
+        Runtime.getRuntime().addShutdownHook(new Thread(Application::shutdown, "shutdown"));
+        executionContext.execute("web-socket-connect", Application::initializeWebSocketConnection);
+        executionContext.scheduleBlocking("refresh", Application::loadInitialData, 0,
+                config.getRefreshIntervalMillis(), TimeUnit.MILLISECONDS);
+        executionContext.scheduleBlocking("web-socket-keep-alive", Application::keepWebSocketsAlive,
+                3, 1, TimeUnit.SECONDS);
+        executionContext.getTimer().scheduleAtFixedRate(Application::requestQuotes, 3, 5, TimeUnit.SECONDS);
         startApi();
     }
 
+    /**
+     * Stop in dependency order: no new timers or requotes, let requotes in flight finish and their orders
+     * settle, close the feeds and then the event loop they feed, which runs any tasks still queued, give
+     * blocking I/O a grace period, and close the journal last so it has every frame
+     */
+    private static void shutdown() {
+        log.info("Shutting down...");
+        try {
+            if(api != null) {
+                api.stop();
+            }
+            if(quoteEngine != null) {
+                quoteEngine.shutdown();
+                if(!quoteEngine.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("Requotes still running after {}s", SHUTDOWN_TIMEOUT_SECONDS);
+                }
+            }
+            executionContext.getTimer().shutdownNow();
+            if(vegaWebSocketClient != null) {
+                vegaWebSocketClient.closeBlocking();
+            }
+            if(binanceWebSocketClient != null) {
+                binanceWebSocketClient.closeBlocking();
+            }
+            eventLoop.close();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(!executionContext.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Interrupted I/O still running after {}s", SHUTDOWN_TIMEOUT_SECONDS);
+        }
+        if(journal != null) {
+            journal.close();
+        }
+    }
+
+    private static void openJournal() {
+        if(StringUtils.isBlank(config.getJournalDir())) {
+            return;
+        }
+        try {
+            journal = Journal.open(Path.of(config.getJournalDir()),
+                    config.getJournalSegmentMb() << 20, config.getJournalMaxSegments());
+            log.info("Journaling to {}", config.getJournalDir());
+        } catch(IOException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private static void requestQuotes() {
+        config.getMarketIds().forEach(quoteEngine::requestQuote);
+    }
+
     private static void loadInitialData() {
         log.info("Refreshing data...");
-        log.info("Saving assets");
-        apiClient.getAssets().forEach(vegaStore::save);
-        log.info("Saved {} assets", vegaStore.getAssets().size());
-        log.info("Saving accounts");
-        apiClient.getAccounts(config.getPartyId()).forEach(vegaStore::save);
-        log.info("Saved {} accounts", vegaStore.getAccounts().size());
-        log.info("Saving markets");
-        apiClient.getMarkets().forEach(market -> {
-            if(market.getId().equals(config.getMarketId())) {
-                vegaStore.save(market);
-            }
-        });
-        log.info("Saved {} markets", vegaStore.getMarkets().size());
-        log.info("Saving orders");
-        apiClient.getOpenOrders(config.getPartyId()).forEach(vegaStore::save);
-        log.info("Saved {} orders", vegaStore.getOrders().size());
-        log.info("Saving positions");
-        apiClient.getPositions(config.getPartyId()).forEach(vegaStore::save);
-        log.info("Saved {} positions", vegaStore.getPositions().size());
+        dataLoader.load();
+        if(!loaded) {
+            // quote as soon as the first refresh lands rather than waiting for the heartbeat
+            loaded = true;
+            requestQuotes();
+        }
     }
 
     private static void initializeWebSocketConnection() {
         log.info("Connecting to Web Sockets...");
-        vegaWebSocketClient = new VegaWebSocketClient(URI.create(config.getWsUrl()));
+        vegaWebSocketClient = new VegaWebSocketClient(URI.create(config.getWsUrl()), eventLoop);
         vegaWebSocketClient.connect();
-        binanceWebSocketClient = new BinanceWebSocketClient(URI.create(config.getBinanceWsUrl()));
+        binanceWebSocketClient = new BinanceWebSocketClient(URI.create(config.getBinanceWsUrl()), eventLoop);
         binanceWebSocketClient.connect();
     }
 
     private static void keepWebSocketsAlive() {
         if(vegaWebSocketClient.isClosed()) {
             log.warn("Vega Web Socket connection is closed, reconnecting...");
+            vegaReconnects.increment();
             vegaWebSocketClient.reconnect();
         }
         if(binanceWebSocketClient.isClosed()) {
             log.warn("Binance Web Socket connection is closed, reconnecting...");
+            binanceReconnects.increment();
             binanceWebSocketClient.reconnect();
         }
     }
 
     private static void startApi() {
-        Javalin.create()
-                .get("/state", ctx -> {
-                    AppState appState = new AppState()
-                            .setReferencePrices(binanceStore.getReferencePrices())
-                            .setAccounts(vegaStore.getAccounts())
-                            .setAssets(vegaStore.getAssets())
-                            .setMarkets(vegaStore.getMarkets())
-                            .setOrders(vegaStore.getOrders())
-                            .setPositions(vegaStore.getPositions());
-                    ctx.json(appState);
-                }).start(7070);
+        StateCache stateCache = new StateCache(vegaStore, binanceStore);
+        StateStream stateStream = new StateStream(vegaStore, binanceStore, stateCache);
+        stateStream.start(executionContext, config.getStateStreamIntervalMillis());
+        metrics.gauge("state_stream_clients", "Clients connected to the state stream",
+                stateStream::getClientCount);
+        api = Javalin.create()
+                .get("/state", stateCache)
+                .sse("/state/stream", stateStream)
+                .get("/latency", ctx -> ctx.json(LatencyRecorder.getInstance().getStats()))
+                .get("/metrics", ctx -> ctx.contentType("text/plain; version=0.0.4; charset=utf-8")
+                        .result(metrics.scrape()))
+                .start(7070);
     }
 }
\ No newline at end of file
@@ -0,0 +1,250 @@
+package com.vega.protocol.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vega.protocol.exception.ErrorCode;
+import com.vega.protocol.exception.TradingException;
+import com.vega.protocol.model.AppState;
+import com.vega.protocol.store.BinanceStore;
+import com.vega.protocol.store.StoreSnapshot;
+import com.vega.protocol.store.VegaStore;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HttpStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the full application state. The state is serialized once per store version and the bytes are
+ * shared by every request until either store changes, so polling clients cost a version check and a
+ * copy rather than a walk over every map. Responses carry an ETag so unchanged state is answered with
+ * 304 Not Modified, and the gzip body is only built the first time a client asks for it.
+ */
+@Slf4j
+public class StateCache implements Handler {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final VegaStore vegaStore;
+    private final BinanceStore binanceStore;
+    private final String epoch = Long.toHexString(System.currentTimeMillis());
+
+    private volatile Snapshot snapshot;
+
+    public StateCache(
+            final VegaStore vegaStore,
+            final BinanceStore binanceStore
+    ) {
+        this.vegaStore = vegaStore;
+        this.binanceStore = binanceStore;
+    }
+
+    /**
+     * Get the serialized state for the current store versions, building it if either store has changed
+     * since the last call. Only one thread builds a snapshot at a time; the others wait for it.
+     *
+     * @return {@link Snapshot}
+     */
+    public Snapshot getSnapshot() {
+        StoreSnapshot state = vegaStore.getSnapshot();
+        long vegaVersion = state.getVersion();
+        long binanceVersion = binanceStore.getVersion();
+        Snapshot current = snapshot;
+        if(current != null && current.isVersion(vegaVersion, binanceVersion)) {
+            return current;
+        }
+        synchronized(this) {
+            current = snapshot;
+            if(current != null && current.isVersion(vegaVersion, binanceVersion)) {
+                return current;
+            }
+            // the Vega state comes from the snapshot its version was read from, and the Binance version is
+            // read before the prices are copied, so the body is never older than its tag
+            AppState appState = new AppState()
+                    .setReferencePrices(binanceStore.getReferencePrices())
+                    .setAccounts(state.getAccounts())
+                    .setAssets(state.getAssets())
+                    .setMarkets(state.getMarkets())
+                    .setOrders(state.getOrders())
+                    .setPositions(state.getPositions());
+            try {
+                current = new Snapshot(vegaVersion, binanceVersion, getVersion(vegaVersion, binanceVersion),
+                        objectMapper.writeValueAsBytes(appState));
+            } catch(JsonProcessingException e) {
+                log.error(e.getMessage(), e);
+                throw new TradingException(ErrorCode.STATE_SERIALIZATION_FAILED);
+            }
+            snapshot = current;
+            return current;
+        }
+    }
+
+    /**
+     * Get the version string for a pair of store versions. It includes the start time, so tags from a
+     * previous run of the process never match.
+     *
+     * @param vegaVersion the {@link VegaStore} version
+     * @param binanceVersion the {@link BinanceStore} version
+     *
+     * @return the version string
+     */
+    public String getVersion(final long vegaVersion, final long binanceVersion) {
+        return String.format("%s-%x-%x", epoch, vegaVersion, binanceVersion);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handle(final Context ctx) {
+        Snapshot current = getSnapshot();
+        ctx.header("ETag", current.getEtag());
+        ctx.header("Vary", "Accept-Encoding");
+        if(matches(ctx.header("If-None-Match"), current.getEtag())) {
+            ctx.status(HttpStatus.NOT_MODIFIED);
+            return;
+        }
+        ctx.contentType("application/json");
+        if(acceptsGzip(ctx.header("Accept-Encoding"))) {
+            // Javalin leaves the response alone once the encoding is set
+            ctx.header("Content-Encoding", "gzip");
+            ctx.result(current.getGzipBody());
+        } else {
+            ctx.result(current.getBody());
+        }
+    }
+
+    /**
+     * Check if an If-None-Match header matches the current ETag
+     *
+     * @param ifNoneMatch the header value, may be null
+     * @param etag the current ETag
+     *
+     * @return true if the client already has the current state
+     */
+    static boolean matches(final String ifNoneMatch, final String etag) {
+        if(ifNoneMatch == null) {
+            return false;
+        }
+        for(String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            if(trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if(trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if an Accept-Encoding header allows gzip
+     *
+     * @param acceptEncoding the header value, may be null
+     *
+     * @return true if gzip is accepted
+     */
+    static boolean acceptsGzip(final String acceptEncoding) {
+        if(acceptEncoding == null) {
+            return false;
+        }
+        for(String encoding : acceptEncoding.split(",")) {
+            String[] parts = encoding.trim().split(";");
+            if(parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").equals("q=0");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The serialized state at one pair of store versions
+     */
+    public static final class Snapshot {
+
+        private final long vegaVersion;
+        private final long binanceVersion;
+        private final String version;
+        private final String etag;
+        private final byte[] body;
+        private volatile byte[] gzipBody;
+
+        Snapshot(
+                final long vegaVersion,
+                final long binanceVersion,
+                final String version,
+                final byte[] body
+        ) {
+            this.vegaVersion = vegaVersion;
+            this.binanceVersion = binanceVersion;
+            this.version = version;
+            this.etag = String.format("\"%s\"", version);
+            this.body = body;
+        }
+
+        /**
+         * Check if the snapshot was built at the given store versions
+         *
+         * @param vegaVersion the {@link VegaStore} version
+         * @param binanceVersion the {@link BinanceStore} version
+         *
+         * @return true if the versions match
+         */
+        boolean isVersion(final long vegaVersion, final long binanceVersion) {
+            return this.vegaVersion == vegaVersion && this.binanceVersion == binanceVersion;
+        }
+
+        /**
+         * Get the version string
+         *
+         * @return the version
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * Get the ETag, i.e. the quoted version
+         *
+         * @return the ETag
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Get the JSON body. The array is shared, so callers must not modify it.
+         *
+         * @return the body
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Get the gzip compressed JSON body, compressing it on first use. Racing threads may both compress
+         * it, which is harmless.
+         *
+         * @return the compressed body
+         */
+        public byte[] getGzipBody() {
+            byte[] compressed = gzipBody;
+            if(compressed == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(body.length / 4, 64));
+                try(GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                    gzip.write(body);
+                } catch(IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                compressed = out.toByteArray();
+                gzipBody = compressed;
+            }
+            return compressed;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.vega.protocol.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vega.protocol.engine.ExecutionContext;
+import com.vega.protocol.model.*;
+import com.vega.protocol.store.BinanceStore;
+import com.vega.protocol.store.ReferencePriceSlot;
+import com.vega.protocol.store.StoreListener;
+import com.vega.protocol.store.VegaStore;
+import io.javalin.http.sse.SseClient;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Pushes state changes to Server-Sent Events clients. A client gets a "snapshot" event with the full
+ * state when it connects, followed by "delta" events holding only the entities that changed since the
+ * previous event. Changes are conflated per entity between flushes, so a busy order book costs one entry
+ * per order rather than one per update, and nothing is recorded while no clients are connected.
+ */
+@Slf4j
+public class StateStream implements Consumer<SseClient>, StoreListener {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Object REMOVED = new Object();
+
+    private final VegaStore vegaStore;
+    private final BinanceStore binanceStore;
+    private final StateCache stateCache;
+    private final Set<SseClient> clients = new CopyOnWriteArraySet<>();
+    private final Map<EntityType, Map<String, Object>> pending = new EnumMap<>(EntityType.class);
+    private final Map<String, Long> sentReferenceVersions = new HashMap<>();
+    private volatile boolean resync;
+
+    public StateStream(
+            final VegaStore vegaStore,
+            final BinanceStore binanceStore,
+            final StateCache stateCache
+    ) {
+        this.vegaStore = vegaStore;
+        this.binanceStore = binanceStore;
+        this.stateCache = stateCache;
+        for(EntityType type : EntityType.values()) {
+            pending.put(type, new ConcurrentHashMap<>());
+        }
+        vegaStore.addListener(this);
+    }
+
+    /**
+     * Flush pending changes to clients at a fixed rate. Flushes write to client sockets, so they run on
+     * I/O threads, and a flush that is still writing to a slow client delays the next one.
+     *
+     * @param executionContext {@link ExecutionContext}
+     * @param intervalMillis the flush interval in milliseconds
+     */
+    public void start(
+            final ExecutionContext executionContext,
+            final long intervalMillis
+    ) {
+        executionContext.scheduleBlocking("state-stream", this::flush, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the number of connected clients
+     *
+     * @return the client count
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void accept(final SseClient client) {
+        client.keepAlive();
+        client.onClose(() -> clients.remove(client));
+        // register first, so changes made while the snapshot is built are in the next delta
+        clients.add(client);
+        sendSnapshot(client);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onChange(final EntityType type, final ChangeType change, final String id, final Object entity) {
+        if(clients.isEmpty()) {
+            return;
+        }
+        pending.get(type).put(id, change == ChangeType.REMOVED ? REMOVED : entity);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onClear() {
+        resync = true;
+    }
+
+    /**
+     * Send everything that changed since the last flush. If the store was cleared, clients get a new
+     * snapshot instead.
+     */
+    public synchronized void flush() {
+        try {
+            if(clients.isEmpty()) {
+                pending.values().forEach(Map::clear);
+                resync = false;
+                return;
+            }
+            if(resync) {
+                resync = false;
+                pending.values().forEach(Map::clear);
+                clients.forEach(this::sendSnapshot);
+                return;
+            }
+            StateDelta delta = drain();
+            if(delta == null) {
+                return;
+            }
+            String data = objectMapper.writeValueAsString(delta);
+            for(SseClient client : clients) {
+                send(client, "delta", data, delta.getVersion());
+            }
+        } catch(Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Collect pending changes into a {@link StateDelta}
+     *
+     * @return {@link StateDelta}, or null if nothing changed
+     */
+    private StateDelta drain() {
+        long vegaVersion = vegaStore.getVersion();
+        long binanceVersion = binanceStore.getVersion();
+        StateDelta delta = new StateDelta();
+        boolean changed = false;
+        for(Map.Entry<EntityType, Map<String, Object>> entry : pending.entrySet()) {
+            Map<String, Object> changes = entry.getValue();
+            for(String id : changes.keySet()) {
+                Object entity = changes.remove(id);
+                if(entity == REMOVED) {
+                    delta.getRemoved().computeIfAbsent(getName(entry.getKey()), k -> new ArrayList<>()).add(id);
+                } else {
+                    add(delta, entry.getKey(), entity);
+                }
+                changed = true;
+            }
+        }
+        for(ReferencePriceSlot slot : binanceStore.getSlots()) {
+            long version = slot.getVersion();
+            Long sent = sentReferenceVersions.put(slot.getSymbol(), version);
+            if(slot.isPresent() && (sent == null || sent != version)) {
+                delta.getReferencePrices().add(slot.read(new ReferencePrice()));
+                changed = true;
+            }
+        }
+        if(!changed) {
+            return null;
+        }
+        return delta.setVersion(stateCache.getVersion(vegaVersion, binanceVersion));
+    }
+
+    /**
+     * Add a changed entity to the delta
+     *
+     * @param delta {@link StateDelta}
+     * @param type {@link EntityType}
+     * @param entity the changed entity
+     */
+    private void add(
+            final StateDelta delta,
+            final EntityType type,
+            final Object entity
+    ) {
+        switch(type) {
+            case MARKET -> delta.getMarkets().add((Market) entity);
+            case ORDER -> delta.getOrders().add((Order) entity);
+            case POSITION -> delta.getPositions().add((Position) entity);
+            case ASSET -> delta.getAssets().add((Asset) entity);
+            case ACCOUNT -> delta.getAccounts().add((Account) entity);
+        }
+    }
+
+    /**
+     * Get the field name used for an entity type in {@link AppState} and {@link StateDelta}
+     *
+     * @param type {@link EntityType}
+     *
+     * @return the field name, e.g. orders
+     */
+    private String getName(final EntityType type) {
+        return type.name().toLowerCase(Locale.ROOT) + "s";
+    }
+
+    /**
+     * Send the full state to a client
+     *
+     * @param client {@link SseClient}
+     */
+    private void sendSnapshot(final SseClient client) {
+        StateCache.Snapshot snapshot = stateCache.getSnapshot();
+        send(client, "snapshot", new String(snapshot.getBody(), StandardCharsets.UTF_8), snapshot.getVersion());
+    }
+
+    /**
+     * Send an event, dropping the client if it has gone away
+     *
+     * @param client {@link SseClient}
+     * @param event the event name
+     * @param data the event data
+     * @param id the event ID
+     */
+    private void send(
+            final SseClient client,
+            final String event,
+            final String data,
+            final String id
+    ) {
+        if(client.terminated()) {
+            clients.remove(client);
+            return;
+        }
+        client.sendEvent(event, data, id);
+    }
+}
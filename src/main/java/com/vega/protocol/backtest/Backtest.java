@@ -0,0 +1,261 @@
+package com.vega.protocol.backtest;
+
+import com.vega.protocol.client.api.VegaApiClient;
+import com.vega.protocol.client.ws.BinanceWebSocketClient;
+import com.vega.protocol.client.ws.VegaWebSocketClient;
+import com.vega.protocol.engine.MarketEventListener;
+import com.vega.protocol.exception.ErrorCode;
+import com.vega.protocol.exception.TradingException;
+import com.vega.protocol.journal.Journal;
+import com.vega.protocol.journal.JournalReader;
+import com.vega.protocol.journal.JournalRecord;
+import com.vega.protocol.model.*;
+import com.vega.protocol.store.BinanceStore;
+import com.vega.protocol.store.VegaStore;
+import com.vega.protocol.strategy.TradingStrategy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Replays a {@link Journal} through a {@link TradingStrategy} on a single thread, as fast as the strategy
+ * can go. Recorded Binance frames and Vega market data frames are decoded by the real websocket clients
+ * into the stores, and the strategy's batches go to a {@link SimulatedExchange} rather than the wallet.
+ * Time comes from the recorded receive times, so requote throttling and order latency behave as they did
+ * live, and two runs over the same journal make exactly the same decisions. Recorded order, position and
+ * account updates are skipped, because the simulated exchange produces our own.
+ * <p>
+ * The backtest owns the {@link VegaStore} and {@link BinanceStore} singletons while it runs, so it must not
+ * share a process with a live {@link com.vega.protocol.Application}. Each instance runs once; create a new
+ * one for every run, e.g. for every point in a parameter sweep.
+ */
+@Slf4j
+public class Backtest implements MarketEventListener {
+
+    private static final String MARKETS_DATA_ID = "\"id\":\"marketsData\"";
+
+    private final VegaStore vegaStore = VegaStore.getInstance();
+    private final BinanceStore binanceStore = BinanceStore.getInstance();
+    private final SimulatedClock clock = new SimulatedClock();
+    private final Map<String, List<String>> marketsBySymbol = new HashMap<>();
+    private final Map<String, Long> lastQuoteNanos = new HashMap<>();
+    private final Map<String, Long> dueQuoteNanos = new LinkedHashMap<>();
+
+    private final BacktestSettings settings;
+    private final SimulatedExchange exchange;
+    private final TradingStrategy tradingStrategy;
+    private final BinanceWebSocketClient binanceClient;
+    private final VegaWebSocketClient vegaClient;
+    private final long minIntervalNanos;
+
+    private long quotes;
+
+    /**
+     * @param settings {@link BacktestSettings}
+     * @param strategyFactory creates the strategy under test from the API client it should trade with
+     */
+    public Backtest(
+            final BacktestSettings settings,
+            final Function<VegaApiClient, TradingStrategy> strategyFactory
+    ) {
+        if(StringUtils.isBlank(settings.getPartyId())) {
+            throw new TradingException(ErrorCode.BACKTEST_PARTY_ID_MISSING);
+        }
+        this.settings = settings;
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.getMinRequoteIntervalMillis());
+        this.exchange = new SimulatedExchange(clock, this, settings.getPartyId(), settings.getQuotedMarkets(),
+                TimeUnit.MILLISECONDS.toNanos(settings.getLatencyMillis()), settings.getFeeRate());
+        this.tradingStrategy = strategyFactory.apply(new SimulatedVegaApiClient(exchange));
+        URI unused = URI.create("ws://localhost");
+        this.binanceClient = new BinanceWebSocketClient(unused, this);
+        this.vegaClient = new VegaWebSocketClient(unused, this);
+        for(MarketConfig market : settings.getQuotedMarkets()) {
+            marketsBySymbol.computeIfAbsent(market.getBinanceMarket(), k -> new ArrayList<>())
+                    .add(market.getMarketId());
+        }
+    }
+
+    /**
+     * Replay every record in a journal and report how the strategy did. The stores are cleared first and
+     * seeded with the configured assets and markets and an initial balance in each settlement asset.
+     *
+     * @param reader {@link JournalReader} positioned at the first record to replay
+     *
+     * @return {@link BacktestResult}
+     *
+     * @throws IOException if the journal cannot be read
+     */
+    public BacktestResult run(final JournalReader reader) throws IOException {
+        if(Journal.getInstance().isEnabled()) {
+            throw new TradingException(ErrorCode.BACKTEST_JOURNAL_OPEN);
+        }
+        seed();
+        BacktestResult result = new BacktestResult();
+        JournalRecord record = new JournalRecord();
+        long startNanos = System.nanoTime();
+        long firstNanos = 0;
+        while(reader.next(record)) {
+            long nanos = record.getEpochNanos();
+            if(result.getEvents() == 0) {
+                firstNanos = nanos;
+                clock.advanceTo(nanos);
+            }
+            result.setEvents(result.getEvents() + 1);
+            advance(nanos);
+            if(record.getType() == null) {
+                continue;
+            }
+            switch (record.getType()) {
+                case BINANCE_FRAME -> {
+                    result.setBinanceFrames(result.getBinanceFrames() + 1);
+                    binanceClient.onMessage(record.getPayloadAsString());
+                }
+                case VEGA_FRAME -> {
+                    String message = record.getPayloadAsString();
+                    if(message.contains(MARKETS_DATA_ID)) {
+                        result.setVegaFrames(result.getVegaFrames() + 1);
+                        vegaClient.onMessage(message);
+                    }
+                }
+                default -> {
+                    // batches sent by the live strategy are replaced by the ones under test
+                }
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        double realisedPnl = exchange.getRealisedPnl();
+        double unrealisedPnl = exchange.getUnrealisedPnl();
+        return result.setQuotes(quotes)
+                .setBatches(exchange.getBatches())
+                .setSubmissions(exchange.getSubmissions())
+                .setAmendments(exchange.getAmendments())
+                .setCancellations(exchange.getCancellations())
+                .setRejected(exchange.getRejected())
+                .setFills(exchange.getFills())
+                .setFilledVolume(exchange.getFilledVolume())
+                .setTradedNotional(exchange.getTradedNotional())
+                .setFees(exchange.getFees())
+                .setRealisedPnl(realisedPnl)
+                .setUnrealisedPnl(unrealisedPnl)
+                .setTotalPnl(realisedPnl + unrealisedPnl - exchange.getFees())
+                .setSimulatedMillis(TimeUnit.NANOSECONDS.toMillis(clock.getNanos() - firstNanos))
+                .setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+                .setEventsPerSecond(elapsedNanos == 0 ? 0 : result.getEvents() * 1e9 / elapsedNanos);
+    }
+
+    /**
+     * Clear the stores and load the starting state
+     */
+    private void seed() {
+        vegaStore.truncate();
+        binanceStore.truncate();
+        settings.getAssets().forEach(vegaStore::save);
+        settings.getMarkets().forEach(vegaStore::save);
+        settings.getMarkets().stream()
+                .map(Market::getSettlementAssetId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(assetId -> exchange.deposit(assetId, settings.getInitialBalance()));
+    }
+
+    /**
+     * Run everything that falls due up to a point in time, in time order: batches reaching the exchange
+     * and requotes that were held back by the minimum interval
+     *
+     * @param nanos the time to advance to
+     */
+    private void advance(final long nanos) {
+        while(true) {
+            long arrivalNanos = exchange.getNextArrivalNanos();
+            String dueMarketId = null;
+            long dueNanos = Long.MAX_VALUE;
+            for(Map.Entry<String, Long> entry : dueQuoteNanos.entrySet()) {
+                if(entry.getValue() < dueNanos) {
+                    dueMarketId = entry.getKey();
+                    dueNanos = entry.getValue();
+                }
+            }
+            if(Math.min(arrivalNanos, dueNanos) > nanos) {
+                break;
+            }
+            if(arrivalNanos <= dueNanos) {
+                clock.advanceTo(arrivalNanos);
+                exchange.deliverNext();
+            } else {
+                clock.advanceTo(dueNanos);
+                dueQuoteNanos.remove(dueMarketId);
+                quote(dueMarketId);
+            }
+        }
+        clock.advanceTo(nanos);
+    }
+
+    /**
+     * Run the strategy for a market now, or once the minimum interval since its last run has passed.
+     * Requests made while one is held back are merged into it.
+     *
+     * @param marketId the market ID
+     */
+    private void requestQuote(final String marketId) {
+        if(dueQuoteNanos.containsKey(marketId)) {
+            return;
+        }
+        Long last = lastQuoteNanos.get(marketId);
+        if(last == null || clock.getNanos() - last >= minIntervalNanos) {
+            quote(marketId);
+        } else {
+            dueQuoteNanos.put(marketId, last + minIntervalNanos);
+        }
+    }
+
+    /**
+     * Execute the strategy for a market
+     *
+     * @param marketId the market ID
+     */
+    private void quote(final String marketId) {
+        lastQuoteNanos.put(marketId, clock.getNanos());
+        quotes++;
+        try {
+            tradingStrategy.execute(marketId);
+        } catch(Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onReferencePriceUpdate(final String symbol) {
+        List<String> marketIds = marketsBySymbol.get(symbol);
+        if(marketIds == null) {
+            return;
+        }
+        for(int i=0; i<marketIds.size(); i++) {
+            exchange.match(marketIds.get(i));
+            requestQuote(marketIds.get(i));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onMarketDataUpdate(final String marketId) {
+        requestQuote(marketId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onOrderUpdate(final String marketId) {
+        requestQuote(marketId);
+    }
+}
@@ -0,0 +1,47 @@
+package com.vega.protocol.backtest;
+
+import com.vega.protocol.client.api.VegaApiClient;
+import com.vega.protocol.journal.JournalReader;
+import com.vega.protocol.model.BacktestResult;
+import com.vega.protocol.model.BacktestSettings;
+import com.vega.protocol.model.Config;
+import com.vega.protocol.model.Market;
+import com.vega.protocol.strategy.SimpleMarketMaker;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Runs {@link SimpleMarketMaker} over a recorded journal. The assets and market definitions are fetched
+ * once from the data node; everything after that is replayed from the journal.
+ */
+@Slf4j
+public class BacktestRunner {
+
+    public static void main(String[] args) throws IOException {
+        if(args.length != 1) {
+            throw new IllegalArgumentException("usage: BacktestRunner <journal directory>");
+        }
+        Config config = Config.getInstance();
+        VegaApiClient apiClient = new VegaApiClient();
+        List<String> marketIds = config.getMarketIds();
+        List<Market> markets = apiClient.getMarketsAsync().join().stream()
+                .filter(market -> marketIds.contains(market.getId()))
+                .toList();
+        BacktestSettings settings = new BacktestSettings()
+                .setPartyId(config.getPartyId())
+                .setQuotedMarkets(config.getMarkets())
+                .setAssets(apiClient.getAssetsAsync().join())
+                .setMarkets(markets)
+                .setLatencyMillis(config.getBacktestLatencyMillis())
+                .setMinRequoteIntervalMillis(config.getMinRequoteIntervalMillis())
+                .setInitialBalance(config.getBacktestInitialBalance())
+                .setFeeRate(config.getBacktestFeeRate());
+        try(JournalReader reader = new JournalReader(Path.of(args[0]))) {
+            BacktestResult result = new Backtest(settings, SimpleMarketMaker::new).run(reader);
+            log.info("Backtest finished: {}", result);
+        }
+    }
+}
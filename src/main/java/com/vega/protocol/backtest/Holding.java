@@ -0,0 +1,54 @@
+package com.vega.protocol.backtest;
+
+import lombok.Getter;
+
+/**
+ * The position in one market, tracked with the average entry price method. Sizes and prices are decimal
+ * numbers rather than mantissas, so averaging a large position at a fine price can't overflow. Shared by
+ * {@link SimulatedExchange} and the stand-in exchange, so that both book fills the same way.
+ */
+@Getter
+public class Holding {
+
+    private double openVolume;
+    private double averageEntryPrice;
+    private double realisedPnl;
+
+    /**
+     * Book a trade
+     *
+     * @param size signed size, positive for a buy
+     * @param price the trade price
+     *
+     * @return the PnL realised by the trade
+     */
+    public double trade(final double size, final double price) {
+        double realised = 0;
+        if(openVolume == 0 || Math.signum(openVolume) == Math.signum(size)) {
+            double volume = Math.abs(openVolume) + Math.abs(size);
+            averageEntryPrice = (averageEntryPrice * Math.abs(openVolume) + price * Math.abs(size)) / volume;
+        } else {
+            double closed = Math.min(Math.abs(size), Math.abs(openVolume));
+            realised = closed * (price - averageEntryPrice) * Math.signum(openVolume);
+            if(Math.abs(size) > Math.abs(openVolume)) {
+                averageEntryPrice = price;
+            } else if(Math.abs(size) == Math.abs(openVolume)) {
+                averageEntryPrice = 0;
+            }
+        }
+        openVolume += size;
+        realisedPnl += realised;
+        return realised;
+    }
+
+    /**
+     * Get the PnL of the open position at a price
+     *
+     * @param price the mark price
+     *
+     * @return the unrealised PnL
+     */
+    public double getUnrealisedPnl(final double price) {
+        return openVolume * (price - averageEntryPrice);
+    }
+}
@@ -0,0 +1,30 @@
+package com.vega.protocol.backtest;
+
+/**
+ * Simulated time for a {@link Backtest}. Time only moves when the backtest advances it to the next event,
+ * so a run is fully determined by the recorded data and never waits on the wall clock.
+ */
+public class SimulatedClock {
+
+    private long nanos;
+
+    /**
+     * Get the current simulated time
+     *
+     * @return nanoseconds since the epoch
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Move the clock forward; it never goes backwards
+     *
+     * @param nanos nanoseconds since the epoch
+     */
+    public void advanceTo(final long nanos) {
+        if(nanos > this.nanos) {
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,506 @@
+package com.vega.protocol.backtest;
+
+import com.vega.protocol.engine.MarketEventListener;
+import com.vega.protocol.model.*;
+import com.vega.protocol.store.BinanceStore;
+import com.vega.protocol.store.ReferencePriceSlot;
+import com.vega.protocol.store.VegaStore;
+import com.vega.protocol.submission.BatchMarketInstruction;
+import com.vega.protocol.submission.OrderAmendment;
+import com.vega.protocol.submission.OrderCancellation;
+import com.vega.protocol.submission.OrderSubmission;
+import com.vega.protocol.utils.FixedPoint;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+
+/**
+ * A local stand-in for the Vega network that applies batch market instructions to our own orders and
+ * fills them against the reference price. Batches arrive after a fixed latency, in the order they were
+ * sent, and are applied the way Vega applies them: cancellations, then amendments, then submissions.
+ * A resting order fills in full, at its own price, once the reference price trades through it: a buy when
+ * the reference ask falls to its price or below, a sell when the reference bid rises to its price or
+ * above. The resulting order, position and account updates are written to the {@link VegaStore} exactly
+ * as the stream would write them, so the strategy can't tell the difference.
+ */
+public class SimulatedExchange {
+
+    private static final String STATUS_ACTIVE = "STATUS_ACTIVE";
+    private static final String STATUS_FILLED = "STATUS_FILLED";
+    private static final String STATUS_CANCELLED = "STATUS_CANCELLED";
+
+    private final VegaStore vegaStore = VegaStore.getInstance();
+    private final BinanceStore binanceStore = BinanceStore.getInstance();
+    private final Map<String, String> symbols = new HashMap<>();
+    private final Map<String, Order> orders = new LinkedHashMap<>();
+    private final Map<String, Holding> holdings = new LinkedHashMap<>();
+    private final Map<String, Double> balances = new LinkedHashMap<>();
+    private final ArrayDeque<PendingBatch> pending = new ArrayDeque<>();
+    private final ReferencePrice referencePrice = new ReferencePrice();
+
+    private final SimulatedClock clock;
+    private final MarketEventListener listener;
+    private final String partyId;
+    private final long latencyNanos;
+    private final double feeRate;
+
+    private long nextOrderId;
+    private long batches;
+    private long submissions;
+    private long amendments;
+    private long cancellations;
+    private long rejected;
+    private long fills;
+    private double filledVolume;
+    private double tradedNotional;
+    private double fees;
+
+    /**
+     * @param clock {@link SimulatedClock}
+     * @param listener notified when one of our orders trades
+     * @param partyId the party that owns the orders
+     * @param quotedMarkets the markets and the reference symbols they fill against
+     * @param latencyNanos how long a batch takes to reach the network, in nanoseconds
+     * @param feeRate fee charged on each fill, as a fraction of its notional, e.g. 0.0002
+     */
+    public SimulatedExchange(
+            final SimulatedClock clock,
+            final MarketEventListener listener,
+            final String partyId,
+            final List<MarketConfig> quotedMarkets,
+            final long latencyNanos,
+            final double feeRate
+    ) {
+        this.clock = clock;
+        this.listener = listener;
+        this.partyId = partyId;
+        this.latencyNanos = latencyNanos;
+        this.feeRate = feeRate;
+        for(MarketConfig market : quotedMarkets) {
+            symbols.put(market.getMarketId(), market.getBinanceMarket());
+        }
+    }
+
+    /**
+     * Credit a settlement asset to the party's general account
+     *
+     * @param assetId the asset ID
+     * @param amount the amount, in asset units
+     */
+    public void deposit(final String assetId, final double amount) {
+        balances.merge(assetId, amount, Double::sum);
+        saveAccount(assetId);
+    }
+
+    /**
+     * Send a batch to the network; it is applied once the latency has passed
+     *
+     * @param instruction {@link BatchMarketInstruction}
+     */
+    public void submit(final BatchMarketInstruction instruction) {
+        batches++;
+        pending.add(new PendingBatch(clock.getNanos() + latencyNanos, instruction));
+    }
+
+    /**
+     * Get when the next batch reaches the network
+     *
+     * @return nanoseconds since the epoch, or {@link Long#MAX_VALUE} if no batch is in flight
+     */
+    public long getNextArrivalNanos() {
+        PendingBatch next = pending.peek();
+        return next == null ? Long.MAX_VALUE : next.arrivalNanos();
+    }
+
+    /**
+     * Apply the next batch in flight, then match the markets it touched
+     */
+    public void deliverNext() {
+        PendingBatch next = pending.poll();
+        if(next == null) {
+            return;
+        }
+        Set<String> marketIds = new LinkedHashSet<>();
+        BatchMarketInstruction instruction = next.instruction();
+        for(OrderCancellation cancellation : instruction.getCancellations()) {
+            cancel(cancellation, marketIds);
+        }
+        for(OrderAmendment amendment : instruction.getAmendments()) {
+            amend(amendment, marketIds);
+        }
+        for(OrderSubmission submission : instruction.getSubmissions()) {
+            submit(submission, marketIds);
+        }
+        for(String marketId : marketIds) {
+            match(marketId);
+        }
+    }
+
+    /**
+     * Fill every resting order in a market that the reference price has traded through
+     *
+     * @param marketId the market ID
+     */
+    public void match(final String marketId) {
+        if(!readReferencePrice(marketId)) {
+            return;
+        }
+        double bidPrice = referencePrice.getBidPrice();
+        double askPrice = referencePrice.getAskPrice();
+        boolean traded = false;
+        Iterator<Order> iterator = orders.values().iterator();
+        while(iterator.hasNext()) {
+            Order order = iterator.next();
+            if(!order.getMarketId().equals(marketId)) {
+                continue;
+            }
+            double price = order.getPrice();
+            boolean buy = order.getSide().equals("SIDE_BUY");
+            if((buy && askPrice > 0 && price >= askPrice) || (!buy && bidPrice > 0 && price <= bidPrice)) {
+                iterator.remove();
+                fill(order, buy, price);
+                traded = true;
+            }
+        }
+        if(traded) {
+            listener.onOrderUpdate(marketId);
+        }
+    }
+
+    /**
+     * Fill the remaining size of an order and book the trade against the position
+     *
+     * @param order the order, already removed from the book
+     * @param buy true if the order is a buy
+     * @param price the fill price
+     */
+    private void fill(final Order order, final boolean buy, final double price) {
+        String marketId = order.getMarketId();
+        InstrumentContext context = vegaStore.getInstrumentContext(marketId);
+        double size = context.toSize(order.getRemainingValue(), order.getRemaining());
+        Holding holding = holdings.computeIfAbsent(marketId, k -> new Holding());
+        double realised = holding.trade(buy ? size : -size, price);
+        double notional = size * price;
+        double fee = notional * feeRate;
+        fills++;
+        filledVolume += size;
+        tradedNotional += notional;
+        fees += fee;
+        String assetId = context.getSettlementAssetId();
+        balances.merge(assetId, realised - fee, Double::sum);
+        saveOrder(next(order).setRemaining("0").setStatus(STATUS_FILLED));
+        savePosition(marketId, holding);
+        saveAccount(assetId);
+    }
+
+    /**
+     * Cancel one order, every order in a market, or every order
+     *
+     * @param cancellation {@link OrderCancellation}
+     * @param marketIds collects the markets that changed
+     */
+    private void cancel(final OrderCancellation cancellation, final Set<String> marketIds) {
+        cancellations++;
+        if(!StringUtils.isEmpty(cancellation.getOrderId())) {
+            Order order = orders.remove(cancellation.getOrderId());
+            if(order == null) {
+                rejected++;
+                return;
+            }
+            saveOrder(next(order).setStatus(STATUS_CANCELLED));
+            marketIds.add(order.getMarketId());
+            return;
+        }
+        Iterator<Order> iterator = orders.values().iterator();
+        while(iterator.hasNext()) {
+            Order order = iterator.next();
+            if(StringUtils.isEmpty(cancellation.getMarketId()) ||
+                    cancellation.getMarketId().equals(order.getMarketId())) {
+                iterator.remove();
+                saveOrder(next(order).setStatus(STATUS_CANCELLED));
+                marketIds.add(order.getMarketId());
+            }
+        }
+    }
+
+    /**
+     * Change the price or size of a resting order. An order amended down to nothing is cancelled.
+     *
+     * @param amendment {@link OrderAmendment}
+     * @param marketIds collects the markets that changed
+     */
+    private void amend(final OrderAmendment amendment, final Set<String> marketIds) {
+        amendments++;
+        Order order = orders.get(amendment.getOrderId());
+        if(order == null) {
+            rejected++;
+            return;
+        }
+        Order amended = next(order);
+        if(!StringUtils.isEmpty(amendment.getPrice())) {
+            amended.setPrice(amendment.getPrice());
+        }
+        if(!StringUtils.isEmpty(amendment.getSizeDelta())) {
+            long sizeDelta = FixedPoint.parse(amendment.getSizeDelta());
+            amended.setSize(FixedPoint.toWire(order.getSizeValue() + sizeDelta));
+            amended.setRemaining(FixedPoint.toWire(order.getRemainingValue() + sizeDelta));
+        }
+        if(amended.getRemainingValue() <= 0 || amended.getPriceValue() <= 0) {
+            orders.remove(order.getId());
+            amended.setRemaining(order.getRemaining()).setStatus(STATUS_CANCELLED);
+        } else {
+            orders.put(order.getId(), amended);
+        }
+        saveOrder(amended);
+        marketIds.add(order.getMarketId());
+    }
+
+    /**
+     * Place a new order
+     *
+     * @param submission {@link OrderSubmission}
+     * @param marketIds collects the markets that changed
+     */
+    private void submit(final OrderSubmission submission, final Set<String> marketIds) {
+        submissions++;
+        Order order = new Order()
+                .setId(String.format("sim-%d", ++nextOrderId))
+                .setMarketId(submission.getMarketId())
+                .setPartyId(partyId)
+                .setSide(submission.getSide())
+                .setType(submission.getType())
+                .setTimeInForce(submission.getTimeInForce())
+                .setSize(submission.getSize())
+                .setRemaining(submission.getSize())
+                .setPrice(submission.getPrice())
+                .setStatus(STATUS_ACTIVE)
+                .setVersion("1")
+                .setUpdatedAt(Long.toString(clock.getNanos()));
+        if(order.getSizeValue() <= 0 || order.getPriceValue() <= 0 ||
+                vegaStore.getMarketById(order.getMarketId()).isEmpty()) {
+            rejected++;
+            return;
+        }
+        orders.put(order.getId(), order);
+        saveOrder(order);
+        marketIds.add(order.getMarketId());
+    }
+
+    /**
+     * Copy an order as its next version, leaving the original untouched for readers that still hold it
+     *
+     * @param order {@link Order}
+     *
+     * @return the copy
+     */
+    private Order next(final Order order) {
+        return new Order()
+                .setId(order.getId())
+                .setMarketId(order.getMarketId())
+                .setPartyId(order.getPartyId())
+                .setSide(order.getSide())
+                .setType(order.getType())
+                .setTimeInForce(order.getTimeInForce())
+                .setSize(FixedPoint.toWire(order.getSizeValue()))
+                .setRemaining(order.getRemaining())
+                .setPrice(FixedPoint.toWire(order.getPriceValue()))
+                .setStatus(order.getStatus())
+                .setVersion(Long.toString(order.getVersionValue() + 1))
+                .setUpdatedAt(Long.toString(clock.getNanos()));
+    }
+
+    /**
+     * Publish an order update, as the orders subscription would
+     *
+     * @param order {@link Order}
+     */
+    private void saveOrder(final Order order) {
+        vegaStore.save(order);
+    }
+
+    /**
+     * Publish a position update, as the positions subscription would
+     *
+     * @param marketId the market ID
+     * @param holding {@link Holding}
+     */
+    private void savePosition(final String marketId, final Holding holding) {
+        InstrumentContext context = vegaStore.getInstrumentContext(marketId);
+        double unrealised = readReferencePrice(marketId) ? holding.getUnrealisedPnl(getMidPrice()) : 0;
+        int assetDecimals = Math.max(context.getSettlementAssetDecimals(), 0);
+        vegaStore.save(new Position()
+                .setPartyId(partyId)
+                .setMarketId(marketId)
+                .setOpenVolume(FixedPoint.toWire(holding.getOpenVolume(), context.getPositionDecimalPlaces()))
+                .setAverageEntryPrice(FixedPoint.toWire(holding.getAverageEntryPrice(), context.getDecimalPlaces()))
+                .setRealisedPnl(FixedPoint.toWire(holding.getRealisedPnl(), assetDecimals))
+                .setUnrealisedPnl(FixedPoint.toWire(unrealised, assetDecimals))
+                .setUpdatedAt(Long.toString(clock.getNanos())));
+    }
+
+    /**
+     * Publish the general account balance for an asset, as the accounts subscription would
+     *
+     * @param assetId the asset ID
+     */
+    private void saveAccount(final String assetId) {
+        int decimals = Math.max(vegaStore.getAssetContext(assetId).getSettlementAssetDecimals(), 0);
+        vegaStore.save(new Account()
+                .setOwner(partyId)
+                .setType("ACCOUNT_TYPE_GENERAL")
+                .setAsset(assetId)
+                .setBalance(FixedPoint.toWire(balances.getOrDefault(assetId, 0d), decimals)));
+    }
+
+    /**
+     * Read the reference price for a market into {@link #referencePrice}
+     *
+     * @param marketId the market ID
+     *
+     * @return true if the market has a reference price
+     */
+    private boolean readReferencePrice(final String marketId) {
+        String symbol = symbols.get(marketId);
+        if(symbol == null) {
+            return false;
+        }
+        ReferencePriceSlot slot = binanceStore.getSlot(symbol);
+        if(!slot.isPresent()) {
+            return false;
+        }
+        slot.read(referencePrice);
+        return true;
+    }
+
+    /**
+     * Get the mid of the last reference price read
+     *
+     * @return the mid price
+     */
+    private double getMidPrice() {
+        return (referencePrice.getBidPrice() + referencePrice.getAskPrice()) / 2;
+    }
+
+    /**
+     * Get the number of batches sent
+     *
+     * @return the batch count
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * Get the number of orders submitted
+     *
+     * @return the submission count
+     */
+    public long getSubmissions() {
+        return submissions;
+    }
+
+    /**
+     * Get the number of amendments applied
+     *
+     * @return the amendment count
+     */
+    public long getAmendments() {
+        return amendments;
+    }
+
+    /**
+     * Get the number of cancellations applied
+     *
+     * @return the cancellation count
+     */
+    public long getCancellations() {
+        return cancellations;
+    }
+
+    /**
+     * Get the number of instructions rejected, e.g. amendments to orders that had already filled
+     *
+     * @return the rejection count
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Get the number of fills
+     *
+     * @return the fill count
+     */
+    public long getFills() {
+        return fills;
+    }
+
+    /**
+     * Get the total size filled, across all markets
+     *
+     * @return the filled volume
+     */
+    public double getFilledVolume() {
+        return filledVolume;
+    }
+
+    /**
+     * Get the total notional traded, across all markets
+     *
+     * @return the notional, in settlement asset units
+     */
+    public double getTradedNotional() {
+        return tradedNotional;
+    }
+
+    /**
+     * Get the total fees paid
+     *
+     * @return the fees, in settlement asset units
+     */
+    public double getFees() {
+        return fees;
+    }
+
+    /**
+     * Get the realised PnL, across all markets and before fees
+     *
+     * @return the realised PnL, in settlement asset units
+     */
+    public double getRealisedPnl() {
+        double total = 0;
+        for(Holding holding : holdings.values()) {
+            total += holding.getRealisedPnl();
+        }
+        return total;
+    }
+
+    /**
+     * Get the unrealised PnL of the open positions, marked to the reference mid price
+     *
+     * @return the unrealised PnL, in settlement asset units
+     */
+    public double getUnrealisedPnl() {
+        double total = 0;
+        for(Map.Entry<String, Holding> entry : holdings.entrySet()) {
+            if(readReferencePrice(entry.getKey())) {
+                total += entry.getValue().getUnrealisedPnl(getMidPrice());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Get the number of orders resting on the book
+     *
+     * @return the open order count
+     */
+    public int getOpenOrderCount() {
+        return orders.size();
+    }
+
+    /**
+     * A batch on its way to the network
+     */
+    private record PendingBatch(long arrivalNanos, BatchMarketInstruction instruction) {}
+}
@@ -0,0 +1,53 @@
+package com.vega.protocol.backtest;
+
+import com.vega.protocol.client.api.VegaApiClient;
+import com.vega.protocol.submission.BatchMarketInstruction;
+import com.vega.protocol.submission.OrderAmendment;
+import com.vega.protocol.submission.OrderCancellation;
+import com.vega.protocol.submission.OrderSubmission;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link VegaApiClient} that sends batch market instructions to a {@link SimulatedExchange} instead of the
+ * wallet. Every batch is accepted straight away, as the wallet would accept it, and applied once the
+ * simulated latency has passed.
+ */
+public class SimulatedVegaApiClient extends VegaApiClient {
+
+    private final SimulatedExchange exchange;
+    private long nextTransaction;
+
+    /**
+     * @param exchange {@link SimulatedExchange}
+     */
+    public SimulatedVegaApiClient(final SimulatedExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Optional<String>> sendBatchMarketInstructionAsync(
+            final List<OrderSubmission> submissions,
+            final List<OrderCancellation> cancellations,
+            final List<OrderAmendment> amendments
+    ) {
+        exchange.submit(new BatchMarketInstruction()
+                .setSubmissions(new ArrayList<>(submissions))
+                .setCancellations(new ArrayList<>(cancellations))
+                .setAmendments(new ArrayList<>(amendments)));
+        return CompletableFuture.completedFuture(Optional.of(String.format("sim-tx-%d", ++nextTransaction)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prefetchToken() {
+    }
+}
@@ -0,0 +1,61 @@
+package com.vega.protocol.client.api;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vega.protocol.submission.BatchMarketInstruction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the wallet command for a batch market instruction as UTF-8 JSON in a single pass. The instruction
+ * is streamed through a {@link JsonGenerator} straight into a byte buffer, with no intermediate strings
+ * or JSON trees. Each thread keeps its own buffer, so once it has grown to fit the largest batch, the only
+ * allocation is the copy handed to the HTTP client, which has to own its body until the request is done.
+ */
+class BatchPayloadWriter {
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final ObjectMapper objectMapper;
+    // reset() keeps the array, so each thread's buffer only grows until it fits the largest batch
+    private final ThreadLocal<ByteArrayOutputStream> buffers =
+            ThreadLocal.withInitial(() -> new ByteArrayOutputStream(INITIAL_CAPACITY));
+
+    /**
+     * @param objectMapper {@link ObjectMapper} to serialize the instructions with
+     */
+    BatchPayloadWriter(final ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write the command
+     *
+     * @param batchMarketInstruction {@link BatchMarketInstruction}
+     * @param pubKey the party's public key, left out if null
+     *
+     * @return the JSON payload
+     *
+     * @throws IOException if the instruction cannot be serialized
+     */
+    byte[] write(
+            final BatchMarketInstruction batchMarketInstruction,
+            final String pubKey
+    ) throws IOException {
+        ByteArrayOutputStream buffer = buffers.get();
+        buffer.reset();
+        try(JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeFieldName("batchMarketInstructions");
+            objectMapper.writeValue(generator, batchMarketInstruction);
+            if(pubKey != null) {
+                generator.writeStringField("pubKey", pubKey);
+            }
+            generator.writeBooleanField("propagate", true);
+            generator.writeEndObject();
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,253 @@
+package com.vega.protocol.client.api;
+
+import com.vega.protocol.metrics.Metrics;
+import com.vega.protocol.model.TransactionResult;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Resolves the outcome of submitted transactions in the background. On a fixed interval, every pending
+ * transaction hash is looked up against tendermint in a single batched JSON-RPC request, so the number of
+ * round trips doesn't grow with the number of orders in flight and the thread that submitted the
+ * transaction never waits for it to be included in a block.
+ */
+@Slf4j
+public class TransactionTracker {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    private final Map<String, PendingTransaction> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private final List<Consumer<TransactionResult>> rejectionListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder rejected = Metrics.getInstance().counter(
+            "vega_transactions_rejected_total", "Transactions rejected by the network");
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "transaction-tracker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final HttpClient httpClient;
+    private final Supplier<String> tendermintUrl;
+    private final long timeoutMillis;
+
+    public TransactionTracker(
+            final HttpClient httpClient,
+            final Supplier<String> tendermintUrl,
+            final long pollIntervalMillis,
+            final long timeoutMillis
+    ) {
+        this.httpClient = httpClient;
+        this.tendermintUrl = tendermintUrl;
+        this.timeoutMillis = timeoutMillis;
+        scheduler.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        Metrics.getInstance().gauge("vega_transactions_pending", "Transactions waiting for a result",
+                pending::size);
+    }
+
+    /**
+     * Start tracking a transaction
+     *
+     * @param txHash the transaction hash
+     *
+     * @return {@link CompletableFuture<TransactionResult>} completed once the outcome is known
+     */
+    public CompletableFuture<TransactionResult> track(final String txHash) {
+        return track(txHash, Set.of());
+    }
+
+    /**
+     * Start tracking a transaction that touches the given markets
+     *
+     * @param txHash the transaction hash
+     * @param marketIds the markets the transaction's instructions were for, passed on to its result
+     *
+     * @return {@link CompletableFuture<TransactionResult>} completed once the outcome is known
+     */
+    public CompletableFuture<TransactionResult> track(final String txHash, final Set<String> marketIds) {
+        return pending.computeIfAbsent(txHash, k ->
+                new PendingTransaction(System.currentTimeMillis() + timeoutMillis, marketIds)).result;
+    }
+
+    /**
+     * Register a callback for rejected transactions
+     *
+     * @param listener called with the {@link TransactionResult} of every rejected transaction
+     */
+    public void addRejectionListener(final Consumer<TransactionResult> listener) {
+        rejectionListeners.add(listener);
+    }
+
+    /**
+     * Get the number of transactions that are still unresolved
+     *
+     * @return pending count
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Stop polling and resolve all pending transactions as not found
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        pending.keySet().forEach(txHash -> complete(txHash, new TransactionResult()
+                .setTxHash(txHash)
+                .setStatus(TransactionResult.Status.NOT_FOUND)));
+    }
+
+    /**
+     * Time out expired transactions and look up the rest in one batch, unless the previous batch is still
+     * in flight
+     */
+    private void poll() {
+        long now = System.currentTimeMillis();
+        List<String> txHashes = new ArrayList<>();
+        pending.forEach((txHash, transaction) -> {
+            if(now > transaction.deadline) {
+                log.error("Transaction not found: {}", txHash);
+                complete(txHash, new TransactionResult()
+                        .setTxHash(txHash)
+                        .setStatus(TransactionResult.Status.NOT_FOUND));
+            } else {
+                txHashes.add(txHash);
+            }
+        });
+        if(txHashes.isEmpty() || !polling.compareAndSet(false, true)) {
+            return;
+        }
+        fetch(txHashes).whenComplete((results, e) -> {
+            polling.set(false);
+            if(e != null) {
+                log.error(e.getMessage(), e);
+            } else {
+                results.forEach(r -> complete(r.getTxHash(), r));
+            }
+        });
+    }
+
+    /**
+     * Query tendermint for a batch of transactions
+     *
+     * @param txHashes the transaction hashes
+     *
+     * @return the results of the transactions that are in a block
+     */
+    private CompletableFuture<List<TransactionResult>> fetch(final List<String> txHashes) {
+        try {
+            JSONArray batch = new JSONArray();
+            for(int i=0; i<txHashes.size(); i++) {
+                byte[] hash = HexFormat.of().parseHex(txHashes.get(i));
+                batch.put(new JSONObject()
+                        .put("jsonrpc", "2.0")
+                        .put("id", i)
+                        .put("method", "tx")
+                        .put("params", new JSONObject().put("hash", Base64.getEncoder().encodeToString(hash))));
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(tendermintUrl.get()))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(batch.toString()))
+                    .build();
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .thenApply(response -> parse(txHashes, response));
+        } catch(Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Parse the tendermint batch response. Responses are matched to hashes by their ID, because a batch
+     * response doesn't have to keep the order of the request.
+     *
+     * @param txHashes the transaction hashes, indexed by request ID
+     * @param response the HTTP response
+     *
+     * @return the results of the transactions that are in a block
+     */
+    private List<TransactionResult> parse(final List<String> txHashes, final HttpResponse<String> response) {
+        List<TransactionResult> results = new ArrayList<>();
+        if(response.statusCode() != 200) {
+            log.error(response.body());
+            return results;
+        }
+        JSONArray json = new JSONArray(response.body());
+        for(int i=0; i<json.length(); i++) {
+            JSONObject item = json.getJSONObject(i);
+            int id = item.optInt("id", -1);
+            JSONObject result = item.optJSONObject("result");
+            if(result == null || id < 0 || id >= txHashes.size()) {
+                continue;
+            }
+            JSONObject txResult = result.getJSONObject("tx_result");
+            int code = txResult.optInt("code", 0);
+            results.add(new TransactionResult()
+                    .setTxHash(txHashes.get(id))
+                    .setHeight(result.optLong("height", 0))
+                    .setCode(code)
+                    .setInfo(txResult.optString("info"))
+                    .setStatus(code > 0 ? TransactionResult.Status.REJECTED : TransactionResult.Status.ACCEPTED));
+        }
+        return results;
+    }
+
+    /**
+     * Resolve a transaction and notify listeners if it was rejected
+     *
+     * @param txHash the transaction hash
+     * @param result {@link TransactionResult}
+     */
+    private void complete(final String txHash, final TransactionResult result) {
+        PendingTransaction transaction = pending.remove(txHash);
+        if(transaction == null) {
+            return;
+        }
+        result.setMarketIds(transaction.marketIds);
+        if(result.getStatus() == TransactionResult.Status.REJECTED) {
+            rejected.increment();
+            log.error("Transaction rejected: {} {}", txHash, result.getInfo());
+            rejectionListeners.forEach(listener -> {
+                try {
+                    listener.accept(result);
+                } catch(Exception e) {
+                    log.error(e.getMessage(), e);
+                }
+            });
+        }
+        transaction.result.complete(result);
+    }
+
+    private static class PendingTransaction {
+        private final CompletableFuture<TransactionResult> result = new CompletableFuture<>();
+        private final long deadline;
+        private final Set<String> marketIds;
+        private PendingTransaction(long deadline, Set<String> marketIds) {
+            this.deadline = deadline;
+            this.marketIds = marketIds;
+        }
+    }
+}
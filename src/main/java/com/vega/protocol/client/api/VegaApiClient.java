@@ -4,6 +4,10 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vega.protocol.exception.ErrorCode;
 import com.vega.protocol.exception.TradingException;
+import com.vega.protocol.journal.Journal;
+import com.vega.protocol.journal.JournalType;
+import com.vega.protocol.metrics.LatencyRecorder;
+import com.vega.protocol.metrics.Metrics;
 import com.vega.protocol.model.*;
 import com.vega.protocol.submission.BatchMarketInstruction;
 import com.vega.protocol.submission.OrderAmendment;
@@ -14,44 +18,105 @@ import org.apache.commons.lang3.StringUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 public class VegaApiClient {
 
     private static final int MAX_PAGES = 5;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
 
     private final Config config = Config.getInstance();
+    private final WalletTokenManager tokenManager = new WalletTokenManager(this::getTokenAsync);
+    private final LatencyRecorder latencyRecorder = LatencyRecorder.getInstance();
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final BatchPayloadWriter batchPayloadWriter = new BatchPayloadWriter(objectMapper);
+
+    // Response handling and completion callbacks run on virtual threads, so a slow callback never holds a
+    // platform thread and the clients never run short of threads however many requests are in flight.
+    private static final ExecutorService httpExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("http-", 0).factory());
+
+    // One client per endpoint, shared by all instances, so connections and TLS sessions are reused.
+    // The wallet is a local plain-text HTTP server, so it stays on HTTP/1.1 keep-alive rather than h2c upgrade.
+    private static final HttpClient nodeHttpClient = buildHttpClient(HttpClient.Version.HTTP_2);
+    private static final HttpClient walletHttpClient = buildHttpClient(HttpClient.Version.HTTP_1_1);
+    private static final HttpClient tendermintHttpClient = buildHttpClient(HttpClient.Version.HTTP_2);
+
+    private static final TransactionTracker transactionTracker = new TransactionTracker(
+            tendermintHttpClient, () -> Config.getInstance().getTendermintUrl(), 250, 10_000);
+
+    private static final LongAdder pageFetches = Metrics.getInstance().counter(
+            "vega_rest_page_fetches_total", "Pages fetched from the REST API");
+    private static final LongAdder batchesSent = Metrics.getInstance().counter(
+            "vega_batches_sent_total", "Batch market instructions sent to the wallet");
+    private static final LongAdder batchesFailed = Metrics.getInstance().counter(
+            "vega_batches_failed_total", "Batch market instructions the wallet did not accept");
+    private static final LongAdder submissionsSent = Metrics.getInstance().counter(
+            "vega_batch_orders_total", "Instructions sent in batches", "kind", "submission");
+    private static final LongAdder amendmentsSent = Metrics.getInstance().counter(
+            "vega_batch_orders_total", "Instructions sent in batches", "kind", "amendment");
+    private static final LongAdder cancellationsSent = Metrics.getInstance().counter(
+            "vega_batch_orders_total", "Instructions sent in batches", "kind", "cancellation");
 
     static {
         objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     }
 
     /**
-     * Execute HTTP request
+     * Build a long-lived HTTP client; connections are pooled and kept alive between requests
      *
-     * @param request {@link HttpRequest}
-     *
-     * @return {@link HttpResponse<String>}
+     * @param version the preferred HTTP version
      *
-     * @throws Exception thrown if error occurs during HTTP request
+     * @return {@link HttpClient}
      */
-    private HttpResponse<String> executeHttpRequest(HttpRequest request) throws Exception {
+    private static HttpClient buildHttpClient(final HttpClient.Version version) {
         return HttpClient.newBuilder()
-                .build()
-                .send(request, HttpResponse.BodyHandlers.ofString());
+                .version(version)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .executor(httpExecutor)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Execute HTTP request asynchronously
+     *
+     * @param httpClient the {@link HttpClient} for the target endpoint
+     * @param request {@link HttpRequest}
+     *
+     * @return {@link CompletableFuture<HttpResponse<String>>}
+     */
+    private CompletableFuture<HttpResponse<String>> executeHttpRequestAsync(
+            final HttpClient httpClient,
+            final HttpRequest request
+    ) {
+        try {
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        } catch(Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     /**
-     * Execute a GET request at the given path
+     * Execute a GET request at the given path. The future fails if any page can't be fetched, so callers
+     * can tell an empty result from a failed one.
      *
      * @param path the GET request path, e.g. /markets
      * @param key the key to extract results from JSON response, e.g. markets
@@ -59,12 +124,28 @@ public class VegaApiClient {
      *
      * @return list of results
      */
-    private <T> List<T> executeGetRequest(String path, String key, Class<T> type) {
-        return executeGetRequest(path, key, type, new ArrayList<>(), null);
+    private <T> CompletableFuture<List<T>> executeGetRequestAsync(String path, String key, Class<T> type) {
+        return executeGetRequestAsync(path, key, type, new ArrayList<>(), null);
     }
 
     /**
-     * Execute a GET request at the given path
+     * Wait for a GET request, logging any failure
+     *
+     * @param future the pending request
+     *
+     * @return list of results, or an empty list if the request failed
+     */
+    private <T> List<T> joinOrEmpty(final CompletableFuture<List<T>> future) {
+        try {
+            return future.join();
+        } catch(Exception e) {
+            log.error(e.getMessage(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Execute a GET request at the given path, following pagination cursors until all pages are fetched
      *
      * @param path the GET request path, e.g. /markets
      * @param key the key to extract results from JSON response, e.g. markets
@@ -74,39 +155,44 @@ public class VegaApiClient {
      *
      * @return list of results
      */
-    private <T> List<T> executeGetRequest(String path, String key, Class<T> type, List<T> results, String cursor) {
-        try {
-            String url = String.format("%s/%s", config.getNodeUrl(), path);
-            if(!StringUtils.isEmpty(cursor)) {
-                if(url.contains("?")) {
-                    url = String.format("%s&pagination.after=%s", url, cursor);
-                } else {
-                    url = String.format("%s?pagination.after=%s", url, cursor);
-                }
+    private <T> CompletableFuture<List<T>> executeGetRequestAsync(
+            String path, String key, Class<T> type, List<T> results, String cursor) {
+        String url = String.format("%s/%s", config.getNodeUrl(), path);
+        if(!StringUtils.isEmpty(cursor)) {
+            if(url.contains("?")) {
+                url = String.format("%s&pagination.after=%s", url, cursor);
+            } else {
+                url = String.format("%s?pagination.after=%s", url, cursor);
             }
-            URI uri = URI.create(url);
-            HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
-            HttpResponse<String> response = executeHttpRequest(request);
+        }
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT).GET().build();
+        } catch(Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        pageFetches.increment();
+        return executeHttpRequestAsync(nodeHttpClient, request).thenCompose(response -> {
             if(response.statusCode() != 200) {
-                log.warn("Status code = {}", response.statusCode());
-                return Collections.emptyList();
-            }
-            JSONArray edges = new JSONObject(response.body())
-                    .getJSONObject(key).getJSONArray("edges");
-            JSONObject pageInfo = new JSONObject(response.body())
-                    .getJSONObject(key).getJSONObject("pageInfo");
-            for(int i=0; i<edges.length(); i++) {
-                JSONObject node = edges.getJSONObject(i).getJSONObject("node");
-                results.add(objectMapper.readValue(node.toString(), type));
+                return CompletableFuture.failedFuture(new TradingException(
+                        String.format("GET %s failed with status code %d", path, response.statusCode())));
             }
-            if(pageInfo.getBoolean("hasNextPage") && results.size() / 1000 < MAX_PAGES) {
-                return executeGetRequest(path, key, type, results, pageInfo.getString("endCursor"));
+            try {
+                JSONObject json = new JSONObject(response.body()).getJSONObject(key);
+                JSONArray edges = json.getJSONArray("edges");
+                JSONObject pageInfo = json.getJSONObject("pageInfo");
+                for(int i=0; i<edges.length(); i++) {
+                    JSONObject node = edges.getJSONObject(i).getJSONObject("node");
+                    results.add(objectMapper.readValue(node.toString(), type));
+                }
+                if(pageInfo.getBoolean("hasNextPage") && results.size() / 1000 < MAX_PAGES) {
+                    return executeGetRequestAsync(path, key, type, results, pageInfo.getString("endCursor"));
+                }
+                return CompletableFuture.completedFuture(results);
+            } catch(Exception e) {
+                return CompletableFuture.failedFuture(e);
             }
-            return results;
-        } catch(Exception e) {
-            log.error(e.getMessage(), e);
-        }
-        return Collections.emptyList();
+        });
     }
 
     /**
@@ -123,81 +209,131 @@ public class VegaApiClient {
             final List<OrderCancellation> cancellations,
             final List<OrderAmendment> amendments
     ) {
+        return sendBatchMarketInstructionAsync(submissions, cancellations, amendments).join();
+    }
+
+    /**
+     * Submit a batch market instruction without blocking the calling thread
+     *
+     * @param submissions {@link List<OrderSubmission>}
+     * @param cancellations {@link List<OrderCancellation>}
+     * @param amendments {@link List<OrderAmendment>}
+     *
+     * @return optional transaction hash
+     */
+    public CompletableFuture<Optional<String>> sendBatchMarketInstructionAsync(
+            final List<OrderSubmission> submissions,
+            final List<OrderCancellation> cancellations,
+            final List<OrderAmendment> amendments
+    ) {
+        byte[] payload;
+        long serializationStart = System.nanoTime();
         try {
-            String token = getToken().orElseThrow(() -> new TradingException(ErrorCode.GET_VEGA_TOKEN_FAILED));
-            BatchMarketInstruction batchMarketInstruction = new BatchMarketInstruction()
+            payload = buildBatchMarketInstructionPayload(new BatchMarketInstruction()
                     .setAmendments(amendments)
                     .setSubmissions(submissions)
-                    .setCancellations(cancellations);
-            JSONObject payload = new JSONObject()
-                    .put("batchMarketInstructions",
-                            new JSONObject(objectMapper.writeValueAsString(batchMarketInstruction)))
-                    .put("pubKey", config.getPartyId())
-                    .put("propagate", true);
-            HttpRequest httpRequest = HttpRequest
-                    .newBuilder(URI.create(String.format("%s/api/v1/command/sync", config.getWalletUrl())))
-                    .header("Authorization", String.format("Bearer %s", token))
-                    .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
-                    .build();
-            HttpResponse<String> response = executeHttpRequest(httpRequest);
+                    .setCancellations(cancellations));
+        } catch(Exception e) {
+            log.error(e.getMessage(), e);
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        long sendStart = System.nanoTime();
+        latencyRecorder.record(LatencyRecorder.Stage.SERIALIZATION, serializationStart, sendStart);
+        Journal.getInstance().append(JournalType.BATCH_SENT, sendStart, payload, 0, payload.length);
+        batchesSent.increment();
+        submissionsSent.add(submissions.size());
+        amendmentsSent.add(amendments.size());
+        cancellationsSent.add(cancellations.size());
+        Set<String> marketIds = new HashSet<>();
+        submissions.forEach(s -> marketIds.add(s.getMarketId()));
+        amendments.forEach(a -> marketIds.add(a.getMarketId()));
+        cancellations.forEach(c -> marketIds.add(c.getMarketId()));
+        return sendCommandAsync(payload, true).thenApply(response -> {
+            long receivedNanos = System.nanoTime();
+            latencyRecorder.record(LatencyRecorder.Stage.WALLET_ROUND_TRIP, sendStart, receivedNanos);
+            Journal.getInstance().append(JournalType.BATCH_RESPONSE, receivedNanos, response.body());
             if(response.statusCode() != 200) {
+                batchesFailed.increment();
                 log.error(response.toString());
-                return Optional.empty();
+                return Optional.<String>empty();
             }
             String txHash = new JSONObject(response.body()).getString("txHash");
-            printErrorIfExists(txHash);
+            transactionTracker.track(txHash, marketIds);
             return Optional.of(txHash);
-        } catch(Exception e) {
+        }).exceptionally(e -> {
+            batchesFailed.increment();
             log.error(e.getMessage(), e);
-        }
-        return Optional.empty();
+            return Optional.empty();
+        });
     }
 
     /**
-     * Print error details
+     * Build the wallet command for a batch market instruction
+     *
+     * @param batchMarketInstruction {@link BatchMarketInstruction}
      *
-     * @param txHash the transaction hash
+     * @return the JSON payload, encoded as UTF-8
+     *
+     * @throws IOException if the instruction cannot be serialized
      */
-    private void printErrorIfExists(final String txHash) {
-        printErrorIfExists(txHash, 0);
+    byte[] buildBatchMarketInstructionPayload(
+            final BatchMarketInstruction batchMarketInstruction
+    ) throws IOException {
+        return batchPayloadWriter.write(batchMarketInstruction, config.getPartyId());
     }
 
     /**
-     * Print error details
+     * Send a command to the wallet using the cached token. If the wallet rejects the token, it is
+     * refreshed and the command is sent once more.
+     *
+     * @param payload the command payload, as UTF-8 JSON
+     * @param retry true if the command should be retried after a 401 response
      *
-     * @param txHash the transaction hash
+     * @return {@link CompletableFuture<HttpResponse<String>>}
      */
-    private void printErrorIfExists(final String txHash, final int attempt) {
-        try {
-            String url = String.format("%s/tx?hash=0x%s", config.getTendermintUrl(), txHash);
-            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).GET().build();
-            HttpClient.newBuilder()
-                    .build()
-                    .send(request, HttpResponse.BodyHandlers.ofString());
-            HttpResponse<String> response = executeHttpRequest(request);
-            if(response.statusCode() != 200) {
-                log.error(response.body());
-                return;
+    private CompletableFuture<HttpResponse<String>> sendCommandAsync(
+            final byte[] payload,
+            final boolean retry
+    ) {
+        return tokenManager.getToken().thenCompose(tokenOptional -> {
+            String token;
+            HttpRequest httpRequest;
+            try {
+                token = tokenOptional.orElseThrow(() -> new TradingException(ErrorCode.GET_VEGA_TOKEN_FAILED));
+                httpRequest = HttpRequest
+                        .newBuilder(URI.create(String.format("%s/api/v1/command/sync", config.getWalletUrl())))
+                        .timeout(REQUEST_TIMEOUT)
+                        .header("Authorization", String.format("Bearer %s", token))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                        .build();
+            } catch(Exception e) {
+                return CompletableFuture.failedFuture(e);
             }
-            JSONObject json = new JSONObject(response.body());
-            if(json.has("result")) {
-                JSONObject txResult = json.getJSONObject("result").getJSONObject("tx_result");
-                int code = txResult.getInt("code");
-                if (code > 0) {
-                    String error = txResult.getString("info");
-                    log.error(error);
-                }
-            } else if(json.has("error")) {
-                if(attempt < 10) {
-                    Thread.sleep(250);
-                    printErrorIfExists(txHash, attempt + 1);
-                } else {
-                    log.error("Transaction not found: {}", txHash);
+            return executeHttpRequestAsync(walletHttpClient, httpRequest).thenCompose(response -> {
+                if(response.statusCode() == 401 && retry) {
+                    log.warn("Wallet token rejected, refreshing...");
+                    tokenManager.invalidate(token);
+                    return sendCommandAsync(payload, false);
                 }
-            }
-        } catch(Exception e) {
-            log.error(e.getMessage(), e);
-        }
+                return CompletableFuture.completedFuture(response);
+            });
+        });
+    }
+
+    /**
+     * Fetch a wallet token ahead of the first transaction, and keep it refreshed in the background
+     */
+    public void prefetchToken() {
+        tokenManager.refresh();
+    }
+
+    /**
+     * Get the tracker that resolves the outcome of submitted transactions
+     *
+     * @return {@link TransactionTracker}
+     */
+    public TransactionTracker getTransactionTracker() {
+        return transactionTracker;
     }
 
     /**
@@ -206,7 +342,16 @@ public class VegaApiClient {
      * @return {@link List<Market>}
      */
     public List<Market> getMarkets() {
-        return executeGetRequest("markets", "markets", Market.class);
+        return joinOrEmpty(getMarketsAsync());
+    }
+
+    /**
+     * Get markets asynchronously. The future fails if the request fails.
+     *
+     * @return {@link CompletableFuture<List<Market>>}
+     */
+    public CompletableFuture<List<Market>> getMarketsAsync() {
+        return executeGetRequestAsync("markets", "markets", Market.class);
     }
 
     /**
@@ -215,7 +360,16 @@ public class VegaApiClient {
      * @return {@link List<Asset>}
      */
     public List<Asset> getAssets() {
-        return executeGetRequest("assets", "assets", Asset.class);
+        return joinOrEmpty(getAssetsAsync());
+    }
+
+    /**
+     * Get assets asynchronously. The future fails if the request fails.
+     *
+     * @return {@link CompletableFuture<List<Asset>>}
+     */
+    public CompletableFuture<List<Asset>> getAssetsAsync() {
+        return executeGetRequestAsync("assets", "assets", Asset.class);
     }
 
     /**
@@ -226,8 +380,19 @@ public class VegaApiClient {
      * @return {@link List<Account>}
      */
     public List<Account> getAccounts(final String partyId) {
+        return joinOrEmpty(getAccountsAsync(partyId));
+    }
+
+    /**
+     * Get accounts by party asynchronously. The future fails if the request fails.
+     *
+     * @param partyId the party ID
+     *
+     * @return {@link CompletableFuture<List<Account>>}
+     */
+    public CompletableFuture<List<Account>> getAccountsAsync(final String partyId) {
         String path = String.format("accounts?filter.partyIds=%s", partyId);
-        return executeGetRequest(path, "accounts", Account.class);
+        return executeGetRequestAsync(path, "accounts", Account.class);
     }
 
     /**
@@ -238,8 +403,19 @@ public class VegaApiClient {
      * @return {@link List<Order>}
      */
     public List<Order> getOpenOrders(final String partyId) {
+        return joinOrEmpty(getOpenOrdersAsync(partyId));
+    }
+
+    /**
+     * Get open orders by party asynchronously. The future fails if the request fails.
+     *
+     * @param partyId the party ID
+     *
+     * @return {@link CompletableFuture<List<Order>>}
+     */
+    public CompletableFuture<List<Order>> getOpenOrdersAsync(final String partyId) {
         String path = String.format("orders?partyId=%s&liveOnly=true", partyId);
-        return executeGetRequest(path, "orders", Order.class);
+        return executeGetRequestAsync(path, "orders", Order.class);
     }
 
     /**
@@ -251,7 +427,7 @@ public class VegaApiClient {
      */
     public List<Order> getOrders(final String partyId) {
         String path = String.format("orders?partyId=%s", partyId);
-        return executeGetRequest(path, "orders", Order.class);
+        return joinOrEmpty(executeGetRequestAsync(path, "orders", Order.class));
     }
 
     /**
@@ -262,8 +438,19 @@ public class VegaApiClient {
      * @return {@link List<Position>}
      */
     public List<Position> getPositions(final String partyId) {
+        return joinOrEmpty(getPositionsAsync(partyId));
+    }
+
+    /**
+     * Get positions by party asynchronously. The future fails if the request fails.
+     *
+     * @param partyId the party ID
+     *
+     * @return {@link CompletableFuture<List<Position>>}
+     */
+    public CompletableFuture<List<Position>> getPositionsAsync(final String partyId) {
         String path = String.format("positions?partyId=%s", partyId);
-        return executeGetRequest(path, "positions", Position.class);
+        return executeGetRequestAsync(path, "positions", Position.class);
     }
 
     /**
@@ -272,7 +459,7 @@ public class VegaApiClient {
      * @return {@link List<Account>}
      */
     public List<Account> getAccounts() {
-        return executeGetRequest("accounts", "accounts", Account.class);
+        return joinOrEmpty(executeGetRequestAsync("accounts", "accounts", Account.class));
     }
 
     /**
@@ -281,7 +468,7 @@ public class VegaApiClient {
      * @return {@link List<Order>}
      */
     public List<Order> getOpenOrders() {
-        return executeGetRequest("orders?liveOnly=true", "orders", Order.class);
+        return joinOrEmpty(executeGetRequestAsync("orders?liveOnly=true", "orders", Order.class));
     }
 
     /**
@@ -290,7 +477,7 @@ public class VegaApiClient {
      * @return {@link List<Order>}
      */
     public List<Order> getOrders() {
-        return executeGetRequest("orders", "orders", Order.class);
+        return joinOrEmpty(executeGetRequestAsync("orders", "orders", Order.class));
     }
 
     /**
@@ -299,23 +486,38 @@ public class VegaApiClient {
      * @return {@link Optional<String>}
      */
     public Optional<String> getToken() {
+        return getTokenAsync().join();
+    }
+
+    /**
+     * Get an authorization token from the Vega wallet asynchronously
+     *
+     * @return {@link CompletableFuture<Optional<String>>}
+     */
+    public CompletableFuture<Optional<String>> getTokenAsync() {
+        HttpRequest httpRequest;
         try {
             JSONObject body = new JSONObject()
                     .put("wallet", config.getWalletUsername())
                     .put("passphrase", config.getWalletPassword());
-            HttpRequest httpRequest = HttpRequest
+            httpRequest = HttpRequest
                     .newBuilder(URI.create(String.format("%s/api/v1/auth/token", config.getWalletUrl())))
+                    .timeout(REQUEST_TIMEOUT)
                     .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
                     .build();
-            HttpResponse<String> response = executeHttpRequest(httpRequest);
+        } catch(Exception e) {
+            log.error(e.getMessage(), e);
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return executeHttpRequestAsync(walletHttpClient, httpRequest).thenApply(response -> {
             if(response.statusCode() != 200) {
                 log.error(response.toString());
-                return Optional.empty();
+                return Optional.<String>empty();
             }
             return Optional.of(new JSONObject(response.body()).getString("token"));
-        } catch (Exception e) {
+        }).exceptionally(e -> {
             log.error(e.getMessage(), e);
-        }
-        return Optional.empty();
+            return Optional.empty();
+        });
     }
 }
\ No newline at end of file
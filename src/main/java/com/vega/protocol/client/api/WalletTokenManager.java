@@ -0,0 +1,136 @@
+package com.vega.protocol.client.api;
+
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Caches the Vega wallet token and refreshes it in the background before it expires, so that sending
+ * transactions does not need an extra round trip to the wallet.
+ */
+@Slf4j
+public class WalletTokenManager {
+
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final double REFRESH_AT = 0.8;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "wallet-token-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Supplier<CompletableFuture<Optional<String>>> tokenSupplier;
+    private final AtomicReference<CompletableFuture<Optional<String>>> inFlight = new AtomicReference<>();
+    private volatile CachedToken cachedToken;
+    private ScheduledFuture<?> scheduledRefresh;
+
+    public WalletTokenManager(
+            final Supplier<CompletableFuture<Optional<String>>> tokenSupplier
+    ) {
+        this.tokenSupplier = tokenSupplier;
+    }
+
+    /**
+     * Get the cached token, only going to the wallet if there is no valid token
+     *
+     * @return {@link CompletableFuture<Optional<String>>}
+     */
+    public CompletableFuture<Optional<String>> getToken() {
+        CachedToken token = cachedToken;
+        if(token != null && token.expiresAtMillis() > System.currentTimeMillis()) {
+            return CompletableFuture.completedFuture(Optional.of(token.token()));
+        }
+        return refresh();
+    }
+
+    /**
+     * Fetch a new token from the wallet; concurrent callers share the same request
+     *
+     * @return {@link CompletableFuture<Optional<String>>}
+     */
+    public CompletableFuture<Optional<String>> refresh() {
+        CompletableFuture<Optional<String>> future = new CompletableFuture<>();
+        CompletableFuture<Optional<String>> existing = inFlight.compareAndExchange(null, future);
+        if(existing != null) {
+            return existing;
+        }
+        tokenSupplier.get().whenComplete((token, e) -> {
+            long delay = RETRY_DELAY_MILLIS;
+            if(e == null && token.isPresent()) {
+                long now = System.currentTimeMillis();
+                long expiresAt = getExpiry(token.get()).orElse(now + DEFAULT_TTL_MILLIS);
+                cachedToken = new CachedToken(token.get(), expiresAt);
+                delay = Math.max(RETRY_DELAY_MILLIS, (long) ((expiresAt - now) * REFRESH_AT));
+            } else {
+                log.warn("Failed to refresh wallet token, retrying in {}ms", delay);
+            }
+            inFlight.set(null);
+            scheduleRefresh(delay);
+            if(e != null) {
+                future.complete(Optional.empty());
+            } else {
+                future.complete(token);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Discard the cached token, if it is the one that was rejected
+     *
+     * @param token the rejected token
+     */
+    public void invalidate(final String token) {
+        CachedToken current = cachedToken;
+        if(current != null && current.token().equals(token)) {
+            cachedToken = null;
+        }
+    }
+
+    /**
+     * Schedule the next background refresh
+     *
+     * @param delayMillis delay in milliseconds
+     */
+    private synchronized void scheduleRefresh(final long delayMillis) {
+        if(scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        scheduledRefresh = scheduler.schedule(this::refresh, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Read the expiry time from a JWT token
+     *
+     * @param token the token
+     *
+     * @return expiry time in epoch milliseconds, if the token carries one
+     */
+    private Optional<Long> getExpiry(final String token) {
+        try {
+            String[] parts = token.split("\\.");
+            if(parts.length < 2) {
+                return Optional.empty();
+            }
+            String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+            long exp = new JSONObject(payload).optLong("exp", 0);
+            return exp > 0 ? Optional.of(TimeUnit.SECONDS.toMillis(exp)) : Optional.empty();
+        } catch(Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    private record CachedToken(String token, long expiresAtMillis) {}
+}
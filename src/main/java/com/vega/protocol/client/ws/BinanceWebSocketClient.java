@@ -1,8 +1,16 @@
 package com.vega.protocol.client.ws;
 
+import com.vega.protocol.engine.MarketEventListener;
+import com.vega.protocol.engine.MarketUpdateHandler;
+import com.vega.protocol.engine.StoreUpdater;
+import com.vega.protocol.journal.Journal;
+import com.vega.protocol.journal.JournalType;
+import com.vega.protocol.metrics.LatencyRecorder;
+import com.vega.protocol.metrics.Metrics;
 import com.vega.protocol.model.Config;
-import com.vega.protocol.model.ReferencePrice;
 import com.vega.protocol.store.BinanceStore;
+import com.vega.protocol.store.ReferencePriceSlot;
+import com.vega.protocol.utils.FixedPoint;
 import lombok.extern.slf4j.Slf4j;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
@@ -10,15 +18,40 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.net.URI;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 public class BinanceWebSocketClient extends WebSocketClient {
 
     private final BinanceStore store = BinanceStore.getInstance();
     private final Config config = Config.getInstance();
+    private final MarketUpdateHandler handler;
+    private final LatencyRecorder latencyRecorder = LatencyRecorder.getInstance();
+    private final LongAdder messages = Metrics.getInstance().counter(
+            "binance_ws_messages_total", "Messages received on the Binance stream", "stream", config.getBinanceStream());
+    private final LongAdder parseErrors = Metrics.getInstance().counter(
+            "ws_parse_errors_total", "Messages that could not be parsed", "feed", "binance");
+    private final LongAdder ignored = Metrics.getInstance().counter(
+            "binance_ws_ignored_total", "Frames whose event type doesn't match the stream", "stream",
+            config.getBinanceStream());
+    private final String expectedEvent = getEventType(config.getBinanceStream()) + "\"";
+
+    private static final String SYMBOL_KEY = "\"s\":\"";
+    private static final String BID_KEY = "\"b\":\"";
+    private static final String ASK_KEY = "\"a\":\"";
+    private static final String EVENT_KEY = "\"e\":\"";
 
     public BinanceWebSocketClient(URI uri) {
+        this(uri, MarketEventListener.NONE);
+    }
+
+    public BinanceWebSocketClient(URI uri, MarketEventListener listener) {
+        this(uri, new StoreUpdater(listener));
+    }
+
+    public BinanceWebSocketClient(URI uri, MarketUpdateHandler handler) {
         super(uri);
+        this.handler = handler;
     }
 
     /**
@@ -27,10 +60,14 @@ public class BinanceWebSocketClient extends WebSocketClient {
     @Override
     public void onOpen(ServerHandshake handshake) {
         try {
-            String symbol = config.getBinanceMarket().toLowerCase();
+            JSONArray params = new JSONArray();
+            config.getMarkets().stream()
+                    .map(market -> market.getBinanceMarket().toLowerCase())
+                    .distinct()
+                    .forEach(symbol -> params.put(String.format("%s@%s", symbol, config.getBinanceStream())));
             JSONObject sub = new JSONObject()
                     .put("method", "SUBSCRIBE")
-                    .put("params", new JSONArray().put(String.format("%s@ticker", symbol)))
+                    .put("params", params)
                     .put("id", 1);
             this.send(sub.toString());
         } catch (Exception e) {
@@ -43,24 +80,58 @@ public class BinanceWebSocketClient extends WebSocketClient {
      */
     @Override
     public void onMessage(String message) {
+        long receivedNanos = System.nanoTime();
+        messages.increment();
+        Journal.getInstance().append(JournalType.BINANCE_FRAME, receivedNanos, message);
         try {
-            JSONObject jsonObject = new JSONObject(message);
-            if(jsonObject.optString("e") != null &&
-                    jsonObject.optString("e").equals("24hrTicker")) {
-                String symbol = jsonObject.getString("s");
-                double askPrice = jsonObject.getDouble("a");
-                double bidPrice = jsonObject.getDouble("b");
-                ReferencePrice referencePrice = new ReferencePrice()
-                        .setSymbol(symbol)
-                        .setAskPrice(askPrice)
-                        .setBidPrice(bidPrice);
-                store.save(referencePrice);
+            int symbolStart = indexOfValue(message, SYMBOL_KEY);
+            int bidStart = indexOfValue(message, BID_KEY);
+            int askStart = indexOfValue(message, ASK_KEY);
+            if(symbolStart < 0 || bidStart < 0 || askStart < 0) {
+                return;
+            }
+            int eventStart = indexOfValue(message, EVENT_KEY);
+            if(eventStart >= 0 && !message.startsWith(expectedEvent, eventStart)) {
+                ignored.increment();
+                return;
             }
+            double bidPrice = FixedPoint.parseDouble(message, bidStart, message.indexOf('"', bidStart));
+            double askPrice = FixedPoint.parseDouble(message, askStart, message.indexOf('"', askStart));
+            ReferencePriceSlot slot = store.getSlot(message, symbolStart, message.indexOf('"', symbolStart));
+            slot.write(bidPrice, askPrice, receivedNanos);
+            latencyRecorder.record(LatencyRecorder.Stage.FEED_TO_STORE, receivedNanos);
+            handler.onReferencePrice(slot.getSymbol());
         } catch(Exception e) {
+            parseErrors.increment();
             log.error(e.getMessage(), e);
         }
     }
 
+    /**
+     * Get the event type that frames of a stream carry in their "e" field. Streams are named after their
+     * event, except for the ticker, whose events are 24hrTicker.
+     *
+     * @param stream the stream name, e.g. ticker or bookTicker
+     *
+     * @return the event type
+     */
+    static String getEventType(String stream) {
+        return "ticker".equals(stream) ? "24hrTicker" : stream;
+    }
+
+    /**
+     * Find the start of a string value in a flat JSON object, without parsing the rest of the message
+     *
+     * @param message the message
+     * @param key the key, including the quotes, colon and opening quote of the value, e.g. "s":"
+     *
+     * @return index of the first character of the value, or -1 if the key is not present
+     */
+    private static int indexOfValue(String message, String key) {
+        int index = message.indexOf(key);
+        return index < 0 ? -1 : index + key.length();
+    }
+
     /**
      * {@inheritDoc}
      */
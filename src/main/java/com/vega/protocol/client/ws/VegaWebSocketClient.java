@@ -1,9 +1,20 @@
 package com.vega.protocol.client.ws;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.DatabindException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.vega.protocol.engine.MarketEventListener;
+import com.vega.protocol.engine.MarketUpdateHandler;
+import com.vega.protocol.engine.StoreUpdater;
+import com.vega.protocol.journal.Journal;
+import com.vega.protocol.journal.JournalType;
+import com.vega.protocol.metrics.Metrics;
 import com.vega.protocol.model.*;
-import com.vega.protocol.store.VegaStore;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.java_websocket.client.WebSocketClient;
@@ -13,14 +24,22 @@ import org.java_websocket.protocols.Protocol;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 @Slf4j
 public class VegaWebSocketClient extends WebSocketClient {
 
     private final Config config = Config.getInstance();
+    private final MarketUpdateHandler handler;
+    private final Map<String, LongAdder> messageCounters = new ConcurrentHashMap<>();
+    private final LongAdder parseErrors = Metrics.getInstance().counter(
+            "ws_parse_errors_total", "Messages that could not be parsed", "feed", "vega");
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -28,6 +47,11 @@ public class VegaWebSocketClient extends WebSocketClient {
         objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     }
 
+    private static final ObjectReader marketDataReader = objectMapper.readerFor(MarketData.class);
+    private static final ObjectReader orderReader = objectMapper.readerFor(Order.class);
+    private static final ObjectReader positionReader = objectMapper.readerFor(Position.class);
+    private static final ObjectReader accountReader = objectMapper.readerFor(Account.class);
+
     private static final String ACCOUNTS_SUBSCRIPTION =
             """
                 subscription {
@@ -53,6 +77,9 @@ public class VegaWebSocketClient extends WebSocketClient {
                         remaining
                         status
                         marketId
+                        timeInForce
+                        version
+                        updatedAt
                     }
                 }
             """;
@@ -66,6 +93,7 @@ public class VegaWebSocketClient extends WebSocketClient {
                         unrealisedPNL
                         averageEntryPrice
                         marketId
+                        updatedAt
                     }
                 }
             """;
@@ -73,7 +101,7 @@ public class VegaWebSocketClient extends WebSocketClient {
     private static final String MARKETS_DATA_SUBSCRIPTION =
             """
                 subscription {
-                    marketsData(marketIds: "MARKET_ID") {
+                    marketsData(marketIds: MARKET_IDS) {
                         marketId
                         marketState
                         marketTradingMode
@@ -91,9 +119,24 @@ public class VegaWebSocketClient extends WebSocketClient {
 
     public VegaWebSocketClient(
             final URI uri
+    ) {
+        this(uri, MarketEventListener.NONE);
+    }
+
+    public VegaWebSocketClient(
+            final URI uri,
+            final MarketEventListener listener
+    ) {
+        this(uri, new StoreUpdater(listener));
+    }
+
+    public VegaWebSocketClient(
+            final URI uri,
+            final MarketUpdateHandler handler
     ) {
         super(uri, new Draft_6455(Collections.emptyList(),
                 Collections.singletonList(new Protocol("graphql-ws"))));
+        this.handler = handler;
     }
 
     /**
@@ -101,12 +144,12 @@ public class VegaWebSocketClient extends WebSocketClient {
      *
      * @param id unique ID for the new subscription
      * @param query the GraphQL query
-     * @param marketId optional market ID, to pass to the GraphQL query
+     * @param marketIds optional list of market IDs, as a GraphQL list literal, to pass to the GraphQL query
      * @param partyId optional party ID, to pass to the GraphQL query
      */
-    private void openSubscription(String id, String query, String marketId, String partyId) {
-        if(!StringUtils.isEmpty(marketId)) {
-            query = query.replace("MARKET_ID", marketId);
+    private void openSubscription(String id, String query, String marketIds, String partyId) {
+        if(!StringUtils.isEmpty(marketIds)) {
+            query = query.replace("MARKET_IDS", marketIds);
         }
         if(!StringUtils.isEmpty(partyId)) {
             query = query.replace("PARTY_ID", partyId);
@@ -128,7 +171,8 @@ public class VegaWebSocketClient extends WebSocketClient {
         JSONObject init = new JSONObject()
                 .put("type", "connection_init");
         this.send(init.toString());
-        openSubscription("marketsData", MARKETS_DATA_SUBSCRIPTION, config.getMarketId(), null);
+        String marketIds = new JSONArray(config.getMarketIds()).toString();
+        openSubscription("marketsData", MARKETS_DATA_SUBSCRIPTION, marketIds, null);
         openSubscription("orders", ORDERS_SUBSCRIPTION, null, config.getPartyId());
         openSubscription("positions", POSITIONS_SUBSCRIPTION, null, config.getPartyId());
         openSubscription("accounts", ACCOUNTS_SUBSCRIPTION, null, config.getPartyId());
@@ -139,102 +183,166 @@ public class VegaWebSocketClient extends WebSocketClient {
      */
     @Override
     public void onMessage(String message) {
-        try {
-            JSONObject jsonObject = new JSONObject(message);
-            String id = jsonObject.optString("id");
-            JSONObject payload = jsonObject.optJSONObject("payload");
-            if(!StringUtils.isEmpty(id) && payload != null) {
-                JSONObject data = payload.getJSONObject("data");
-                switch (id) {
-                    case "marketsData" -> handleMarketsData(data);
-                    case "orders" -> handleOrders(data);
-                    case "positions" -> handlePositions(data);
-                    case "accounts" -> handleAccounts(data);
-                    default -> log.warn("Unsupported message");
+        Journal.getInstance().append(JournalType.VEGA_FRAME, System.nanoTime(), message);
+        try(JsonParser parser = objectMapper.getFactory().createParser(message)) {
+            if(parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            String id = null;
+            TreeNode deferredPayload = null;
+            while(parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id" -> {
+                        id = parser.getValueAsString();
+                        countMessage(id);
+                    }
+                    case "payload" -> {
+                        if(id != null) {
+                            handlePayload(id, parser);
+                        } else {
+                            deferredPayload = parser.readValueAsTree();
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            if(id != null && deferredPayload != null) {
+                try(JsonParser payloadParser = deferredPayload.traverse(objectMapper)) {
+                    payloadParser.nextToken();
+                    handlePayload(id, payloadParser);
                 }
             }
         } catch(Exception e) {
+            parseErrors.increment();
             log.info(message);
             log.error(e.getMessage(), e);
         }
     }
 
     /**
-     * Generic method to handle WS messages and update internal state
+     * Count a message for its subscription
      *
-     * @param data the JSON data
-     * @param key the key to read the items from the JSON array
-     * @param type the object type
-     * @param save callback function, used to update internal state
+     * @param id the subscription ID
      */
-    private <T> void handleItems(JSONObject data, String key, Class<T> type, Consumer<T> save) {
-        JSONArray arr = data.optJSONArray(key);
-        if(arr == null) {
+    private void countMessage(String id) {
+        if(id == null) {
             return;
         }
-        for(int i=0; i<arr.length(); i++) {
-            try {
-                JSONObject obj = arr.getJSONObject(i);
-                T item = objectMapper.readValue(obj.toString(), type);
-                save.accept(item);
-            } catch(Exception e) {
-                log.info(data.toString());
-                log.error(e.getMessage(), e);
-            }
+        LongAdder counter = messageCounters.get(id);
+        if(counter == null) {
+            counter = messageCounters.computeIfAbsent(id, k -> Metrics.getInstance().counter(
+                    "vega_ws_messages_total", "Messages received per Vega subscription", "subscription", k));
         }
+        counter.increment();
     }
 
     /**
-     * Handle {@link Order} updates
+     * Dispatch the payload of a subscription message to its handler. The parser is positioned on the
+     * start of the payload object, and is left on its end.
+     *
+     * @param id the subscription ID
+     * @param parser {@link JsonParser}
      *
-     * @param data order updates, as JSON
+     * @throws IOException if the payload cannot be read
      */
-    private void handleOrders(JSONObject data) {
-        handleItems(data, "orders", Order.class, (item) -> VegaStore.getInstance().save(item));
+    private void handlePayload(String id, JsonParser parser) throws IOException {
+        if(parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if(field.equals("data") && parser.currentToken() == JsonToken.START_OBJECT) {
+                while(parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String key = parser.currentName();
+                    parser.nextToken();
+                    if(key.equals(id)) {
+                        handleData(id, parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else if(field.equals("errors")) {
+                log.error("Subscription {} failed: {}", id, parser.readValueAsTree());
+            } else {
+                parser.skipChildren();
+            }
+        }
     }
 
     /**
-     * Handle {@link Account} updates
+     * Handle the data for a subscription
      *
-     * @param data account updates, as JSON
+     * @param id the subscription ID
+     * @param parser {@link JsonParser}, positioned on the start of the data array
+     *
+     * @throws IOException if the data cannot be read
      */
-    private void handleAccounts(JSONObject data) {
-        handleItems(data, "accounts", Account.class, (item) -> VegaStore.getInstance().save(item));
+    private void handleData(String id, JsonParser parser) throws IOException {
+        switch (id) {
+            case "marketsData" -> handleItems(parser, marketDataReader, handler::onMarketData);
+            case "orders" -> handleItems(parser, orderReader, handler::onOrder);
+            case "positions" -> handleItems(parser, positionReader, handler::onPosition);
+            case "accounts" -> handleItems(parser, accountReader, handler::onAccount);
+            default -> {
+                log.warn("Unsupported message");
+                parser.skipChildren();
+            }
+        }
     }
 
     /**
-     * Handle {@link Position} updates
+     * Generic method to handle WS messages and update internal state. Each item is bound straight from
+     * the parser to its model object. An item that cannot be bound, or that the handler fails on, is logged
+     * and skipped, so one bad item doesn't cost the rest of the frame.
      *
-     * @param data position updates, as JSON
+     * @param parser {@link JsonParser}, positioned on the start of the array of items
+     * @param reader {@link ObjectReader} for the item type
+     * @param save callback function, used to hand each item to the {@link MarketUpdateHandler}
+     *
+     * @throws IOException if the frame isn't valid JSON
      */
-    private void handlePositions(JSONObject data) {
-        handleItems(data, "positions", Position.class, (item) -> VegaStore.getInstance().save(item));
+    private <T> void handleItems(JsonParser parser, ObjectReader reader, Consumer<T> save) throws IOException {
+        if(parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        JsonStreamContext items = parser.getParsingContext();
+        while(parser.nextToken() == JsonToken.START_OBJECT) {
+            T item;
+            try {
+                item = reader.readValue(parser);
+            } catch(DatabindException e) {
+                parseErrors.increment();
+                log.error(e.getMessage(), e);
+                skipRestOfItem(parser, items);
+                continue;
+            }
+            try {
+                save.accept(item);
+            } catch(Exception e) {
+                log.error(e.getMessage(), e);
+            }
+        }
     }
 
     /**
-     * Handle {@link MarketData} updates
+     * Move the parser to the end of an item that binding gave up on part way through
+     *
+     * @param parser {@link JsonParser}
+     * @param items the parsing context of the array the item belongs to
      *
-     * @param data market data updates, as JSON
+     * @throws IOException if the frame isn't valid JSON
      */
-    private void handleMarketsData(JSONObject data) {
-        JSONArray arr = data.getJSONArray("marketsData");
-        VegaStore store = VegaStore.getInstance();
-        for(int i=0; i<arr.length(); i++) {
-            try {
-                JSONObject obj = arr.getJSONObject(i);
-                String id = obj.getString("marketId");
-                String state = obj.getString("marketState");
-                String tradingMode = obj.getString("marketTradingMode");
-                MarketData marketData = objectMapper.readValue(obj.toString(),  MarketData.class);
-                store.getMarketById(id).ifPresent(market -> {
-                    market.setMarketData(marketData);
-                    market.setTradingMode(tradingMode);
-                    market.setState(state);
-                    store.save(market);
-                });
-            } catch(Exception e) {
-                log.info(data.toString());
-                log.error(e.getMessage(), e);
+    private static void skipRestOfItem(JsonParser parser, JsonStreamContext items) throws IOException {
+        while(parser.getParsingContext() != items) {
+            if(parser.currentToken() != null && parser.currentToken().isStructStart()) {
+                parser.skipChildren();
+            } else if(parser.nextToken() == null) {
+                return;
             }
         }
     }
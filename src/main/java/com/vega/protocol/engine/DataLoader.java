@@ -0,0 +1,157 @@
+package com.vega.protocol.engine;
+
+import com.vega.protocol.client.api.VegaApiClient;
+import com.vega.protocol.metrics.Metrics;
+import com.vega.protocol.model.*;
+import com.vega.protocol.store.ReconcileResult;
+import com.vega.protocol.store.VegaStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Loads assets, markets, accounts, open orders and positions from the REST API into the
+ * {@link VegaStore}. The resources don't depend on each other, so each one is fetched on its own virtual
+ * thread and a refresh takes as long as the slowest resource rather than the sum of all of them. Results
+ * are only merged once every fetch has finished, in a single {@link VegaStore#reconcile} call, which never
+ * lets them overwrite newer data from the stream. The merge runs on the store's writer, e.g. the
+ * {@link EventLoop}, while the fetches stay on the calling thread. A resource that fails to fetch is left
+ * as it is.
+ */
+@Slf4j
+public class DataLoader {
+
+    private static final List<String> RESOURCES = List.of("assets", "markets", "accounts", "orders", "positions");
+
+    private final Config config = Config.getInstance();
+    private final Metrics metrics = Metrics.getInstance();
+    private final Map<String, Long> fetchMillis = new ConcurrentHashMap<>();
+
+    private final VegaApiClient apiClient;
+    private final VegaStore vegaStore;
+    private final Executor storeWriter;
+
+    public DataLoader(
+            final VegaApiClient apiClient,
+            final VegaStore vegaStore
+    ) {
+        this(apiClient, vegaStore, Runnable::run);
+    }
+
+    public DataLoader(
+            final VegaApiClient apiClient,
+            final VegaStore vegaStore,
+            final Executor storeWriter
+    ) {
+        this.apiClient = apiClient;
+        this.vegaStore = vegaStore;
+        this.storeWriter = storeWriter;
+        for(String resource : RESOURCES) {
+            metrics.gauge("data_loader_fetch_millis", "Duration of the last fetch of each resource",
+                    "resource", resource, () -> fetchMillis.getOrDefault(resource, 0L));
+        }
+    }
+
+    /**
+     * Fetch every resource concurrently and merge the results into the store
+     *
+     * @return {@link ReconcileResult}
+     */
+    public ReconcileResult load() {
+        long startNanos = System.nanoTime();
+        long fence = vegaStore.getVersion();
+        String partyId = config.getPartyId();
+        List<String> marketIds = config.getMarketIds();
+        List<Asset> assets;
+        List<Market> markets;
+        List<Account> accounts;
+        List<Order> orders;
+        List<Position> positions;
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<List<Asset>> assetsFuture = fetch(executor, "assets", () -> apiClient.getAssetsAsync().join());
+            Future<List<Market>> marketsFuture = fetch(executor, "markets", () -> apiClient.getMarketsAsync().join()
+                    .stream()
+                    .filter(market -> marketIds.contains(market.getId()))
+                    .toList());
+            Future<List<Account>> accountsFuture = fetch(executor, "accounts",
+                    () -> apiClient.getAccountsAsync(partyId).join());
+            Future<List<Order>> ordersFuture = fetch(executor, "orders",
+                    () -> apiClient.getOpenOrdersAsync(partyId).join());
+            Future<List<Position>> positionsFuture = fetch(executor, "positions",
+                    () -> apiClient.getPositionsAsync(partyId).join());
+            assets = get(assetsFuture);
+            markets = get(marketsFuture);
+            accounts = get(accountsFuture);
+            orders = get(ordersFuture);
+            positions = get(positionsFuture);
+        }
+        ReconcileResult result = CompletableFuture.supplyAsync(
+                () -> vegaStore.reconcile(fence, assets, markets, accounts, orders, positions), storeWriter).join();
+        log.info("Reconciled in {} ms: added = {}; changed = {}; removed = {}; unchanged = {}; stale = {}",
+                (System.nanoTime() - startNanos) / 1_000_000, result.getAdded(), result.getChanged(),
+                result.getRemoved(), result.getUnchanged(), result.getStale());
+        return result;
+    }
+
+    /**
+     * Get how long the last fetch of a resource took
+     *
+     * @param resource the resource name, e.g. orders
+     *
+     * @return the duration in milliseconds, or null if it hasn't been fetched yet
+     */
+    public Long getFetchMillis(final String resource) {
+        return fetchMillis.get(resource);
+    }
+
+    /**
+     * Fetch a resource on its own virtual thread, recording how long it took
+     *
+     * @param executor {@link ExecutorService}
+     * @param resource the resource name, e.g. orders
+     * @param fetcher fetches every page of the resource
+     *
+     * @return {@link Future<List>} with the results
+     */
+    private <T> Future<List<T>> fetch(
+            final ExecutorService executor,
+            final String resource,
+            final Supplier<List<T>> fetcher
+    ) {
+        return executor.submit(() -> {
+            long startNanos = System.nanoTime();
+            List<T> results = fetcher.get();
+            long millis = (System.nanoTime() - startNanos) / 1_000_000;
+            fetchMillis.put(resource, millis);
+            log.info("Fetched {} {} in {} ms", results.size(), resource, millis);
+            return results;
+        });
+    }
+
+    /**
+     * Wait for a fetch to finish
+     *
+     * @param future {@link Future<List>}
+     *
+     * @return the results, or null if the fetch failed
+     */
+    private <T> List<T> get(final Future<List<T>> future) {
+        try {
+            return future.get();
+        } catch(ExecutionException e) {
+            log.error(e.getMessage(), e);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,371 @@
+package com.vega.protocol.engine;
+
+import com.vega.protocol.metrics.Metrics;
+import com.vega.protocol.model.Account;
+import com.vega.protocol.model.MarketData;
+import com.vega.protocol.model.Order;
+import com.vega.protocol.model.Position;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Funnels every state change through one consumer thread. The websocket readers, the REST refresh and the
+ * quote engine publish into a preallocated ring buffer from any thread, and the consumer takes events in
+ * order, applies them through a {@link StoreUpdater} and runs whatever they trigger, including the
+ * strategy, inline. Only the consumer writes to the stores, so the strategy never sees a half-applied
+ * update and writers never contend on a lock.
+ * <p>
+ * Producers claim a sequence with a compare-and-set once its slot is free, fill the preallocated slot and
+ * publish it by writing its sequence number; nothing is allocated per event. If the ring is full, producers
+ * wait for the consumer rather than drop updates, unless the loop isn't running, in which case nothing
+ * would ever empty it: tasks are then rejected and updates dropped and counted.
+ * <p>
+ * Closing seals the ring, so that nothing more can be claimed, and the consumer works through what is
+ * left: tasks still run, so that anyone waiting on one is released, and updates are dropped.
+ * <p>
+ * Reference prices and market data are conflated per symbol and per market: while an update for a key is
+ * still waiting in the ring, newer ones replace it instead of taking another slot. This only makes a
+ * difference when the consumer falls behind, and then it catches up on the latest state rather than
+ * working through stale ticks. Orders, positions and accounts are never conflated, and tasks run in the
+ * order they were submitted.
+ */
+@Slf4j
+public class EventLoop implements MarketUpdateHandler, Executor, AutoCloseable {
+
+    private static final int SPIN_TRIES = 1_000;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // claimed is set to this once the ring is sealed
+    private static final long CLOSED = Long.MAX_VALUE;
+
+    private enum EventType { REFERENCE_PRICE, MARKET_DATA, ORDER, POSITION, ACCOUNT, TASK }
+
+    private static final class Event {
+        private EventType type;
+        private Object payload;
+    }
+
+    private final Event[] ring;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final AtomicLong consumed = new AtomicLong(-1);
+    private final Map<String, AtomicBoolean> pendingReferencePrices = new ConcurrentHashMap<>();
+    private final Map<String, AtomicReference<MarketData>> pendingMarketData = new ConcurrentHashMap<>();
+    private final LongAdder conflatedReferencePrices = Metrics.getInstance().counter(
+            "event_loop_conflated_total", "Updates merged into one already waiting", "kind", "reference_price");
+    private final LongAdder conflatedMarketData = Metrics.getInstance().counter(
+            "event_loop_conflated_total", "Updates merged into one already waiting", "kind", "market_data");
+    private final LongAdder dropped = Metrics.getInstance().counter(
+            "event_loop_dropped_total", "Updates dropped because the event loop was not running");
+
+    private volatile Thread consumer;
+    private volatile boolean waiting;
+    private volatile boolean running;
+    private MarketUpdateHandler handler;
+
+    /**
+     * @param capacity the number of slots in the ring, rounded up to a power of two
+     */
+    public EventLoop(final int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.ring = new Event[size];
+        this.published = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for(int i=0; i<size; i++) {
+            ring[i] = new Event();
+            published.set(i, -1);
+        }
+        Metrics.getInstance().gauge("event_loop_depth", "Events waiting for the event loop", this::getDepth);
+    }
+
+    /**
+     * Start the consumer thread
+     *
+     * @param handler applies the updates, normally a {@link StoreUpdater}
+     */
+    public synchronized void start(final MarketUpdateHandler handler) {
+        if(consumer != null) {
+            throw new IllegalStateException("Event loop is already running");
+        }
+        if(claimed.get() == CLOSED) {
+            throw new IllegalStateException("Event loop is closed");
+        }
+        this.handler = handler;
+        this.running = true;
+        Thread thread = ExecutionContext.strategyThreadFactory("event-loop").newThread(this::run);
+        this.consumer = thread;
+        thread.start();
+    }
+
+    /**
+     * Get the number of events waiting to be consumed
+     *
+     * @return the queue depth
+     */
+    public long getDepth() {
+        long last = claimed.get();
+        return last == CLOSED ? 0 : Math.max(0, last - consumed.get());
+    }
+
+    /**
+     * Check if the current thread is the consumer thread
+     *
+     * @return true if called from the event loop
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == consumer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onReferencePrice(final String symbol) {
+        AtomicBoolean pending = pendingReferencePrices.get(symbol);
+        if(pending == null) {
+            pending = pendingReferencePrices.computeIfAbsent(symbol, k -> new AtomicBoolean());
+        }
+        if(pending.compareAndSet(false, true)) {
+            if(!publish(EventType.REFERENCE_PRICE, symbol)) {
+                pending.set(false);
+                dropped.increment();
+            }
+        } else {
+            conflatedReferencePrices.increment();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onMarketData(final MarketData marketData) {
+        AtomicReference<MarketData> pending = pendingMarketData.get(marketData.getMarketId());
+        if(pending == null) {
+            pending = pendingMarketData.computeIfAbsent(marketData.getMarketId(), k -> new AtomicReference<>());
+        }
+        if(pending.getAndSet(marketData) == null) {
+            if(!publish(EventType.MARKET_DATA, pending)) {
+                pending.set(null);
+                dropped.increment();
+            }
+        } else {
+            conflatedMarketData.increment();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onOrder(final Order order) {
+        publishOrDrop(EventType.ORDER, order);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onPosition(final Position position) {
+        publishOrDrop(EventType.POSITION, position);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onAccount(final Account account) {
+        publishOrDrop(EventType.ACCOUNT, account);
+    }
+
+    /**
+     * Run a task on the event loop. Tasks submitted from the event loop itself run immediately.
+     *
+     * @param task the task
+     *
+     * @throws RejectedExecutionException if the loop isn't running, or stops while waiting for space
+     */
+    @Override
+    public void execute(final Runnable task) {
+        if(inEventLoop()) {
+            task.run();
+            return;
+        }
+        if(!running || !publish(EventType.TASK, task)) {
+            throw new RejectedExecutionException("Event loop is not running");
+        }
+    }
+
+    /**
+     * Publish an update, counting it as dropped if the loop can't take it
+     *
+     * @param type {@link EventType}
+     * @param payload the event payload
+     */
+    private void publishOrDrop(final EventType type, final Object payload) {
+        if(!publish(type, payload)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Claim the next slot, waiting for the consumer if the ring is full, fill it and publish it
+     *
+     * @param type {@link EventType}
+     * @param payload the event payload
+     *
+     * @return false if the ring is sealed, or full while the loop isn't running
+     */
+    private boolean publish(final EventType type, final Object payload) {
+        long sequence;
+        while(true) {
+            long last = claimed.get();
+            if(last == CLOSED) {
+                return false;
+            }
+            if(last + 1 - consumed.get() > ring.length) {
+                // only wait for a consumer that is there to make room
+                if(!running) {
+                    return false;
+                }
+                LockSupport.parkNanos(1_000);
+            } else if(claimed.compareAndSet(last, last + 1)) {
+                sequence = last + 1;
+                break;
+            }
+        }
+        int index = (int) (sequence & mask);
+        Event event = ring[index];
+        event.type = type;
+        event.payload = payload;
+        // a volatile write, so that either the consumer sees the event or this thread sees it waiting
+        published.set(index, sequence);
+        if(waiting) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Consume events in sequence until stopped, spinning briefly and then parking when there are none
+     */
+    private void run() {
+        long next = consumed.get() + 1;
+        int idle = 0;
+        while(running) {
+            int index = (int) (next & mask);
+            if(published.get(index) != next) {
+                if(++idle < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    waiting = true;
+                    if(published.get(index) != next && running) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    waiting = false;
+                }
+                continue;
+            }
+            idle = 0;
+            Event event = ring[index];
+            EventType type = event.type;
+            Object payload = event.payload;
+            event.payload = null;
+            consumed.set(next++);
+            dispatch(type, payload);
+        }
+        drain(next);
+    }
+
+    /**
+     * Seal the ring and work through the events left in it, running tasks and dropping updates. Every
+     * sequence up to the last one claimed is published promptly, because slots are only claimed once they
+     * are free.
+     *
+     * @param next the first sequence not yet consumed
+     */
+    private void drain(final long next) {
+        long last = claimed.getAndSet(CLOSED);
+        if(last == CLOSED) {
+            return;
+        }
+        for(long sequence = next; sequence <= last; sequence++) {
+            int index = (int) (sequence & mask);
+            while(published.get(index) != sequence) {
+                Thread.onSpinWait();
+            }
+            Event event = ring[index];
+            EventType type = event.type;
+            Object payload = event.payload;
+            event.payload = null;
+            consumed.set(sequence);
+            if(type == EventType.TASK) {
+                dispatch(type, payload);
+            } else {
+                dropped.increment();
+            }
+        }
+    }
+
+    /**
+     * Hand an event to the handler
+     *
+     * @param type {@link EventType}
+     * @param payload the event payload
+     */
+    @SuppressWarnings("unchecked")
+    private void dispatch(final EventType type, final Object payload) {
+        try {
+            switch (type) {
+                case REFERENCE_PRICE -> {
+                    String symbol = (String) payload;
+                    // clear first, so a price that lands while the handler runs is published again
+                    pendingReferencePrices.get(symbol).set(false);
+                    handler.onReferencePrice(symbol);
+                }
+                case MARKET_DATA -> handler.onMarketData(((AtomicReference<MarketData>) payload).getAndSet(null));
+                case ORDER -> handler.onOrder((Order) payload);
+                case POSITION -> handler.onPosition((Position) payload);
+                case ACCOUNT -> handler.onAccount((Account) payload);
+                case TASK -> ((Runnable) payload).run();
+            }
+        } catch(Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stop the consumer once it finishes the event it is handling. Tasks still in the ring are run before it
+     * exits, updates are dropped, and producers waiting for space are released.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        Thread thread = consumer;
+        if(thread == null) {
+            // never started, so nothing else will drain the ring
+            drain(consumed.get() + 1);
+            return;
+        }
+        if(thread == Thread.currentThread()) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.vega.protocol.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Owns the application's threads, split by what they are allowed to do:
+ * <ul>
+ *     <li>a single timer thread, which only measures out delays and hands work off, so it is never late;</li>
+ *     <li>virtual threads for anything that blocks on the network, one per task, so a slow refresh or
+ *     reconnect never waits for a free thread and never holds one that quoting needs;</li>
+ *     <li>high-priority platform threads for strategy decisions, created by {@link #strategyThreadFactory}.</li>
+ * </ul>
+ * {@link #shutdown} stops the timer first, so no new work is started, then gives running I/O a grace
+ * period before interrupting it.
+ */
+@Slf4j
+public class ExecutionContext {
+
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "timer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        return thread;
+    });
+    private final ExecutorService ioExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("io-", 0).factory());
+
+    public ExecutionContext() {
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Create a factory for strategy threads. They are platform threads, so quoting never waits for a
+     * carrier thread behind blocking I/O, and they run at the highest priority.
+     *
+     * @param name the thread name
+     *
+     * @return {@link ThreadFactory}
+     */
+    public static ThreadFactory strategyThreadFactory(final String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            return thread;
+        };
+    }
+
+    /**
+     * Get the timer. Tasks scheduled on it directly must not block; use {@link #scheduleBlocking} for
+     * tasks that do.
+     *
+     * @return {@link ScheduledExecutorService}
+     */
+    public ScheduledExecutorService getTimer() {
+        return timer;
+    }
+
+    /**
+     * Get the executor for blocking I/O; every task runs on its own virtual thread
+     *
+     * @return {@link ExecutorService}
+     */
+    public ExecutorService getIoExecutor() {
+        return ioExecutor;
+    }
+
+    /**
+     * Get the number of tasks waiting on the timer
+     *
+     * @return the queue depth
+     */
+    public int getTimerQueueDepth() {
+        return timer.getQueue().size();
+    }
+
+    /**
+     * Run a blocking task on a virtual thread
+     *
+     * @param name the task name, used in logs
+     * @param task the task
+     */
+    public void execute(final String name, final Runnable task) {
+        try {
+            ioExecutor.execute(() -> run(task));
+        } catch(RejectedExecutionException e) {
+            log.warn("Shutting down, dropping {}", name);
+        }
+    }
+
+    /**
+     * Run a blocking task on a virtual thread at a fixed rate. A run that falls due while the previous
+     * one is still going is skipped rather than queued, so a stalled endpoint can't pile up work.
+     *
+     * @param name the task name, used in logs
+     * @param task the task
+     * @param initialDelay the delay before the first run
+     * @param period the time between runs
+     * @param unit the time unit of the delay and period
+     */
+    public void scheduleBlocking(
+            final String name,
+            final Runnable task,
+            final long initialDelay,
+            final long period,
+            final TimeUnit unit
+    ) {
+        AtomicBoolean running = new AtomicBoolean();
+        timer.scheduleAtFixedRate(() -> {
+            if(!running.compareAndSet(false, true)) {
+                log.debug("{} is still running, skipping", name);
+                return;
+            }
+            try {
+                ioExecutor.execute(() -> {
+                    try {
+                        run(task);
+                    } finally {
+                        running.set(false);
+                    }
+                });
+            } catch(RejectedExecutionException e) {
+                running.set(false);
+            }
+        }, initialDelay, period, unit);
+    }
+
+    /**
+     * Run a task, logging rather than propagating failures
+     *
+     * @param task the task
+     */
+    private void run(final Runnable task) {
+        try {
+            task.run();
+        } catch(Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stop the timer, then wait for running I/O tasks to finish and interrupt any that don't
+     *
+     * @param timeout the grace period
+     * @param unit the time unit of the grace period
+     *
+     * @return true if every task finished within the grace period
+     */
+    public boolean shutdown(final long timeout, final TimeUnit unit) {
+        timer.shutdownNow();
+        ioExecutor.shutdown();
+        try {
+            if(ioExecutor.awaitTermination(timeout, unit)) {
+                return true;
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ioExecutor.shutdownNow();
+        return false;
+    }
+}
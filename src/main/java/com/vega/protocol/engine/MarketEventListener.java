@@ -0,0 +1,30 @@
+package com.vega.protocol.engine;
+
+public interface MarketEventListener {
+
+    /**
+     * Listener that ignores all events
+     */
+    MarketEventListener NONE = new MarketEventListener() {};
+
+    /**
+     * Called when the reference price for a symbol changes
+     *
+     * @param symbol the reference market symbol, e.g. BTCUSDT
+     */
+    default void onReferencePriceUpdate(String symbol) {}
+
+    /**
+     * Called when new market data is received for a market
+     *
+     * @param marketId the market ID
+     */
+    default void onMarketDataUpdate(String marketId) {}
+
+    /**
+     * Called when one of our orders trades in a market
+     *
+     * @param marketId the market ID
+     */
+    default void onOrderUpdate(String marketId) {}
+}
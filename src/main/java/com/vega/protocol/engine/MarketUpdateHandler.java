@@ -0,0 +1,49 @@
+package com.vega.protocol.engine;
+
+import com.vega.protocol.model.Account;
+import com.vega.protocol.model.MarketData;
+import com.vega.protocol.model.Order;
+import com.vega.protocol.model.Position;
+
+/**
+ * Receives decoded feed updates from the websocket clients. {@link StoreUpdater} applies them to the stores
+ * on the calling thread; {@link EventLoop} hands them to its single consumer thread instead.
+ */
+public interface MarketUpdateHandler {
+
+    /**
+     * A new reference price has been written to the symbol's slot in the
+     * {@link com.vega.protocol.store.BinanceStore}
+     *
+     * @param symbol the Binance symbol
+     */
+    void onReferencePrice(String symbol);
+
+    /**
+     * Handle a market data update
+     *
+     * @param marketData {@link MarketData}
+     */
+    void onMarketData(MarketData marketData);
+
+    /**
+     * Handle an order update
+     *
+     * @param order {@link Order}
+     */
+    void onOrder(Order order);
+
+    /**
+     * Handle a position update
+     *
+     * @param position {@link Position}
+     */
+    void onPosition(Position position);
+
+    /**
+     * Handle an account update
+     *
+     * @param account {@link Account}
+     */
+    void onAccount(Account account);
+}
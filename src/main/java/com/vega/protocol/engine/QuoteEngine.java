@@ -0,0 +1,262 @@
+package com.vega.protocol.engine;
+
+import com.vega.protocol.model.Config;
+import com.vega.protocol.model.MarketConfig;
+import com.vega.protocol.strategy.TradingStrategy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the trading strategy in response to market events. Bursts of events are coalesced so that at most
+ * one requote per market is in flight, and requotes for the same market are at least the configured
+ * minimum interval apart. A requote stays in flight until the orders it sent have been accepted or
+ * rejected. By default each market runs on its own single-threaded lane, a high-priority platform thread,
+ * so a slow market can't hold up the others. Given an executor, such as the {@link EventLoop}, every market
+ * runs there instead. The shared scheduler is only used to wait out the minimum interval. Only the markets
+ * the engine was created for are quoted; their lanes are set up front, and requests for any other market
+ * are ignored.
+ */
+@Slf4j
+public class QuoteEngine implements MarketEventListener {
+
+    private final Config config = Config.getInstance();
+    private final Map<String, QuoteState> states = new HashMap<>();
+    private final Map<String, List<String>> marketsBySymbol = new HashMap<>();
+
+    private final TradingStrategy tradingStrategy;
+    private final ScheduledExecutorService executor;
+    private final Executor strategyExecutor;
+    private final long minIntervalNanos;
+    private volatile boolean stopped;
+
+    public QuoteEngine(
+            final TradingStrategy tradingStrategy,
+            final ScheduledExecutorService executor,
+            final long minIntervalMillis
+    ) {
+        this(tradingStrategy, executor, minIntervalMillis, null, Config.getInstance().getMarketIds());
+    }
+
+    public QuoteEngine(
+            final TradingStrategy tradingStrategy,
+            final ScheduledExecutorService executor,
+            final long minIntervalMillis,
+            final List<String> marketIds
+    ) {
+        this(tradingStrategy, executor, minIntervalMillis, null, marketIds);
+    }
+
+    public QuoteEngine(
+            final TradingStrategy tradingStrategy,
+            final ScheduledExecutorService executor,
+            final long minIntervalMillis,
+            final Executor strategyExecutor
+    ) {
+        this(tradingStrategy, executor, minIntervalMillis, strategyExecutor, Config.getInstance().getMarketIds());
+    }
+
+    public QuoteEngine(
+            final TradingStrategy tradingStrategy,
+            final ScheduledExecutorService executor,
+            final long minIntervalMillis,
+            final Executor strategyExecutor,
+            final List<String> marketIds
+    ) {
+        this.tradingStrategy = tradingStrategy;
+        this.executor = executor;
+        this.strategyExecutor = strategyExecutor;
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMillis);
+        for(String marketId : marketIds) {
+            states.computeIfAbsent(marketId, id -> new QuoteState(id, strategyExecutor == null));
+        }
+        for(MarketConfig market : config.getMarkets()) {
+            marketsBySymbol.computeIfAbsent(market.getBinanceMarket(), k -> new ArrayList<>())
+                    .add(market.getMarketId());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onReferencePriceUpdate(final String symbol) {
+        List<String> marketIds = marketsBySymbol.get(symbol);
+        if(marketIds == null) {
+            return;
+        }
+        for(int i=0; i<marketIds.size(); i++) {
+            requestQuote(marketIds.get(i));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onMarketDataUpdate(final String marketId) {
+        requestQuote(marketId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onOrderUpdate(final String marketId) {
+        requestQuote(marketId);
+    }
+
+    /**
+     * Request a requote for the given market; requests made while a requote is pending are merged into it,
+     * and requests for markets the engine doesn't quote are ignored
+     *
+     * @param marketId the market ID
+     */
+    public void requestQuote(final String marketId) {
+        QuoteState state = states.get(marketId);
+        if(state == null) {
+            return;
+        }
+        state.dirty.set(true);
+        schedule(marketId, state);
+    }
+
+    /**
+     * Schedule a requote, unless one is already scheduled or running
+     *
+     * @param marketId the market ID
+     * @param state {@link QuoteState}
+     */
+    private void schedule(final String marketId, final QuoteState state) {
+        if(!state.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = state.lastQuoteNanos + minIntervalNanos - System.nanoTime();
+        if(delay <= 0) {
+            dispatch(marketId, state);
+            return;
+        }
+        try {
+            executor.schedule(() -> dispatch(marketId, state), delay, TimeUnit.NANOSECONDS);
+        } catch(RejectedExecutionException e) {
+            state.scheduled.set(false);
+            log.warn("Scheduler is shut down, dropping requote for {}", marketId);
+        }
+    }
+
+    /**
+     * Hand a requote to the strategy executor, or the market's lane
+     *
+     * @param marketId the market ID
+     * @param state {@link QuoteState}
+     */
+    private void dispatch(final String marketId, final QuoteState state) {
+        if(stopped) {
+            state.scheduled.set(false);
+            return;
+        }
+        try {
+            Executor target = strategyExecutor != null ? strategyExecutor : state.lane;
+            target.execute(() -> quote(marketId, state));
+        } catch(RejectedExecutionException e) {
+            state.scheduled.set(false);
+            log.warn("Quote engine is shut down, dropping requote for {}", marketId);
+        }
+    }
+
+    /**
+     * Execute the trading strategy, and once its orders are settled reschedule if more events arrived in
+     * the meantime
+     *
+     * @param marketId the market ID
+     * @param state {@link QuoteState}
+     */
+    private void quote(final String marketId, final QuoteState state) {
+        if(stopped) {
+            state.scheduled.set(false);
+            return;
+        }
+        CompletableFuture<Void> done;
+        try {
+            state.dirty.set(false);
+            state.lastQuoteNanos = System.nanoTime();
+            done = tradingStrategy.executeAsync(marketId);
+        } catch(Exception e) {
+            log.error(e.getMessage(), e);
+            done = CompletableFuture.completedFuture(null);
+        }
+        done.whenComplete((result, e) -> {
+            if(e != null) {
+                log.error(e.getMessage(), e);
+            }
+            state.scheduled.set(false);
+            if(state.dirty.get()) {
+                schedule(marketId, state);
+            }
+        });
+    }
+
+    /**
+     * Stop starting requotes and stop all market lanes; requotes that are already running are allowed to
+     * finish
+     */
+    public void shutdown() {
+        stopped = true;
+        states.values().stream().filter(state -> state.lane != null).forEach(state -> state.lane.shutdown());
+    }
+
+    /**
+     * Wait for requotes in flight to finish after {@link #shutdown()}, including the orders they sent, on
+     * the market lanes or on the strategy executor. Requotes that were scheduled but hadn't started are
+     * dropped.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout
+     *
+     * @return true if every requote finished in time
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for(QuoteState state : states.values()) {
+            if(state.lane != null && !state.lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        // a requote stays scheduled until its orders are settled, whichever executor it ran on
+        for(QuoteState state : states.values()) {
+            while(state.scheduled.get()) {
+                if(System.nanoTime() >= deadline) {
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+        }
+        return true;
+    }
+
+    private static class QuoteState {
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final ExecutorService lane;
+        private volatile long lastQuoteNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+
+        private QuoteState(final String marketId, final boolean ownLane) {
+            String name = String.format("quote-%s", StringUtils.left(marketId, 8));
+            this.lane = ownLane ? Executors.newSingleThreadExecutor(ExecutionContext.strategyThreadFactory(name)) : null;
+        }
+    }
+}
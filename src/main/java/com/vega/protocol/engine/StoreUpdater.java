@@ -0,0 +1,74 @@
+package com.vega.protocol.engine;
+
+import com.vega.protocol.metrics.LatencyRecorder;
+import com.vega.protocol.model.Account;
+import com.vega.protocol.model.MarketData;
+import com.vega.protocol.model.Order;
+import com.vega.protocol.model.Position;
+import com.vega.protocol.store.VegaStore;
+
+/**
+ * Applies feed updates to the {@link VegaStore} on the calling thread and tells the
+ * {@link MarketEventListener} about the ones that should trigger a requote
+ */
+public class StoreUpdater implements MarketUpdateHandler {
+
+    private final VegaStore vegaStore = VegaStore.getInstance();
+    private final LatencyRecorder latencyRecorder = LatencyRecorder.getInstance();
+    private final MarketEventListener listener;
+
+    /**
+     * @param listener {@link MarketEventListener}
+     */
+    public StoreUpdater(final MarketEventListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onReferencePrice(final String symbol) {
+        listener.onReferencePriceUpdate(symbol);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onMarketData(final MarketData marketData) {
+        String id = marketData.getMarketId();
+        vegaStore.getMarketById(id).ifPresent(market -> {
+            vegaStore.save(market.withMarketData(marketData));
+            listener.onMarketDataUpdate(id);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onOrder(final Order order) {
+        vegaStore.save(order);
+        latencyRecorder.onOrderUpdate(order.getMarketId());
+        if(order.isTraded()) {
+            listener.onOrderUpdate(order.getMarketId());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onPosition(final Position position) {
+        vegaStore.save(position);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onAccount(final Account account) {
+        vegaStore.save(account);
+    }
+}
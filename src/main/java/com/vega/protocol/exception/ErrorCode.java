@@ -2,4 +2,7 @@ package com.vega.protocol.exception;
 
 public class ErrorCode {
     public static final String GET_VEGA_TOKEN_FAILED = "Cannot get Vega token from wallet API";
+    public static final String STATE_SERIALIZATION_FAILED = "Cannot serialize application state";
+    public static final String BACKTEST_PARTY_ID_MISSING = "A party ID is needed to run a backtest";
+    public static final String BACKTEST_JOURNAL_OPEN = "Cannot run a backtest while the journal is recording";
 }
\ No newline at end of file
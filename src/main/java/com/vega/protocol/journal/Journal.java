@@ -0,0 +1,434 @@
+package com.vega.protocol.journal;
+
+import com.vega.protocol.metrics.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of inbound frames and outbound instructions, written to memory-mapped segment
+ * files so incidents can be replayed. Appending never blocks and never allocates: the writer claims
+ * space in the current segment with one atomic add and copies the payload straight into the mapping,
+ * encoding text as UTF-8 on the way. The next segment is created and mapped ahead of time by a
+ * background thread, so rolling over is a pointer swap. If the spare segment isn't ready yet the record
+ * is dropped and counted rather than making the caller wait.
+ * <p>
+ * Timestamps are nanoseconds since the epoch, derived from {@link System#nanoTime()} so they keep its
+ * resolution. Records are read back with {@link JournalReader}.
+ */
+@Slf4j
+public class Journal implements AutoCloseable {
+
+    private static final Journal DISABLED = new Journal();
+    private static volatile Journal instance = DISABLED;
+
+    private static final VarHandle SPARE;
+
+    static {
+        try {
+            SPARE = MethodHandles.lookup().findVarHandle(Journal.class, "spare", JournalSegment.class);
+        } catch(ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long epochNanosBase;
+    private final long nanoTimeBase;
+    private final LongAdder records;
+    private final LongAdder dropped;
+    private final LongAdder bytes;
+    private final Thread roller;
+
+    private volatile JournalSegment current;
+    @SuppressWarnings("unused")
+    private volatile JournalSegment spare;
+    private volatile boolean closed;
+    private long nextIndex;
+
+    /**
+     * Create the disabled journal, which ignores every record
+     */
+    private Journal() {
+        this.directory = null;
+        this.segmentSize = 0;
+        this.maxSegments = 0;
+        this.epochNanosBase = 0;
+        this.nanoTimeBase = 0;
+        this.records = null;
+        this.dropped = null;
+        this.bytes = null;
+        this.roller = null;
+        this.closed = true;
+    }
+
+    /**
+     * @param directory the journal directory
+     * @param segmentSize the size of each segment file in bytes
+     * @param maxSegments the number of segment files to keep, or 0 to keep them all
+     *
+     * @throws IOException if the first segment cannot be created
+     */
+    private Journal(
+            final Path directory,
+            final int segmentSize,
+            final int maxSegments
+    ) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize & ~7;
+        this.maxSegments = maxSegments;
+        this.nanoTimeBase = System.nanoTime();
+        this.epochNanosBase = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        Metrics metrics = Metrics.getInstance();
+        this.records = metrics.counter("journal_records_total", "Records written to the journal");
+        this.dropped = metrics.counter("journal_dropped_total", "Records dropped because no segment was ready");
+        this.bytes = metrics.counter("journal_bytes_total", "Bytes written to the journal");
+        Files.createDirectories(directory);
+        this.nextIndex = findNextIndex(directory);
+        this.current = JournalSegment.create(directory, nextIndex++, this.segmentSize);
+        this.spare = JournalSegment.create(directory, nextIndex++, this.segmentSize);
+        this.roller = new Thread(this::roll, "journal-roller");
+        this.roller.setDaemon(true);
+        this.roller.start();
+    }
+
+    /**
+     * Get the {@link Journal} singleton instance. This is a disabled journal that ignores every record
+     * until {@link #open(Path, int, int)} is called.
+     *
+     * @return {@link Journal}
+     */
+    public static Journal getInstance() {
+        return instance;
+    }
+
+    /**
+     * Open a journal in a directory and make it the singleton instance. New segments are numbered after
+     * any already in the directory, so earlier runs are kept until the oldest segments are deleted to
+     * stay within the limit.
+     *
+     * @param directory the journal directory
+     * @param segmentSize the size of each segment file in bytes
+     * @param maxSegments the number of segment files to keep, or 0 to keep them all
+     *
+     * @return {@link Journal}
+     *
+     * @throws IOException if the directory or first segment cannot be created
+     */
+    public static synchronized Journal open(
+            final Path directory,
+            final int segmentSize,
+            final int maxSegments
+    ) throws IOException {
+        if(segmentSize < 1024) {
+            throw new IllegalArgumentException("segment size must be at least 1024 bytes");
+        }
+        if(maxSegments != 0 && maxSegments < 2) {
+            throw new IllegalArgumentException("at least two segments must be kept");
+        }
+        Journal journal = new Journal(directory, segmentSize, maxSegments);
+        instance.close();
+        instance = journal;
+        return journal;
+    }
+
+    /**
+     * Check if records are being written
+     *
+     * @return true if the journal is open
+     */
+    public boolean isEnabled() {
+        return !closed;
+    }
+
+    /**
+     * Append a text record, encoded as UTF-8
+     *
+     * @param type {@link JournalType}
+     * @param receivedNanos when the data was received, from {@link System#nanoTime()}
+     * @param payload the text
+     *
+     * @return true if the record was written
+     */
+    public boolean append(
+            final JournalType type,
+            final long receivedNanos,
+            final CharSequence payload
+    ) {
+        if(closed) {
+            return false;
+        }
+        return append(type, receivedNanos, payload, null, 0, utf8Length(payload));
+    }
+
+    /**
+     * Append a binary record
+     *
+     * @param type {@link JournalType}
+     * @param receivedNanos when the data was received, from {@link System#nanoTime()}
+     * @param payload the bytes
+     * @param offset where the payload starts in the array
+     * @param length the payload length
+     *
+     * @return true if the record was written
+     */
+    public boolean append(
+            final JournalType type,
+            final long receivedNanos,
+            final byte[] payload,
+            final int offset,
+            final int length
+    ) {
+        if(closed) {
+            return false;
+        }
+        return append(type, receivedNanos, null, payload, offset, length);
+    }
+
+    /**
+     * Claim space for a record, rolling over to the spare segment if the current one is full, and write
+     * either the text or the bytes into it
+     *
+     * @param type {@link JournalType}
+     * @param receivedNanos when the data was received, from {@link System#nanoTime()}
+     * @param text the text payload, or null
+     * @param bytes the binary payload, or null
+     * @param offset where the binary payload starts
+     * @param length the encoded payload length
+     *
+     * @return true if the record was written
+     */
+    private boolean append(
+            final JournalType type,
+            final long receivedNanos,
+            final CharSequence text,
+            final byte[] bytes,
+            final int offset,
+            final int length
+    ) {
+        int recordLength = JournalSegment.recordLength(length);
+        if(recordLength > segmentSize - JournalSegment.SEGMENT_HEADER_LENGTH) {
+            dropped.increment();
+            return false;
+        }
+        for(int attempt=0; attempt<3; attempt++) {
+            JournalSegment segment = current;
+            int recordOffset = segment.claim(recordLength);
+            if(recordOffset >= 0) {
+                MappedByteBuffer buffer = segment.getBuffer();
+                int payloadOffset = recordOffset + JournalSegment.RECORD_HEADER_LENGTH;
+                if(text != null) {
+                    encodeUtf8(text, buffer, payloadOffset);
+                } else {
+                    buffer.put(payloadOffset, bytes, offset, length);
+                }
+                commit(buffer, recordOffset, type, receivedNanos, length);
+                return true;
+            }
+            if(!rollOver(segment)) {
+                break;
+            }
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * Replace a full segment with the spare
+     *
+     * @param full the segment that is full
+     *
+     * @return true if the current segment has been replaced
+     */
+    private boolean rollOver(final JournalSegment full) {
+        if(current != full) {
+            return true;
+        }
+        JournalSegment next = spare;
+        if(next == null) {
+            LockSupport.unpark(roller);
+            return false;
+        }
+        if(SPARE.compareAndSet(this, next, null)) {
+            current = next;
+            LockSupport.unpark(roller);
+            return true;
+        }
+        // another writer took the spare and is about to publish it
+        while(current == full) {
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    /**
+     * Write the record header, publishing the length last so readers never see a partial record
+     *
+     * @param buffer the segment buffer
+     * @param offset the record offset
+     * @param type {@link JournalType}
+     * @param receivedNanos when the data was received, from {@link System#nanoTime()}
+     * @param length the payload length
+     */
+    private void commit(
+            final MappedByteBuffer buffer,
+            final int offset,
+            final JournalType type,
+            final long receivedNanos,
+            final int length
+    ) {
+        buffer.putLong(offset + 8, epochNanosBase + (receivedNanos - nanoTimeBase));
+        buffer.putInt(offset + 4, type.getCode());
+        JournalSegment.INT.setRelease(buffer, offset, JournalSegment.lengthWord(length));
+        records.increment();
+        bytes.add(length);
+    }
+
+    /**
+     * Create the next spare segment whenever the last one has been used, and delete the oldest segments
+     * beyond the limit
+     */
+    private void roll() {
+        while(!closed) {
+            if(spare == null) {
+                try {
+                    spare = JournalSegment.create(directory, nextIndex++, segmentSize);
+                    if(maxSegments > 0) {
+                        deleteSegmentsBefore(nextIndex - maxSegments);
+                    }
+                } catch(IOException e) {
+                    log.error(e.getMessage(), e);
+                    LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+                }
+            }
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     * Delete segment files older than an index. Writers still holding a deleted segment keep their
+     * mapping until they move on.
+     *
+     * @param index the oldest index to keep
+     *
+     * @throws IOException if the directory cannot be listed
+     */
+    private void deleteSegmentsBefore(final long index) throws IOException {
+        try(Stream<Path> files = Files.list(directory)) {
+            for(Path path : files.toList()) {
+                String name = path.getFileName().toString();
+                if(name.startsWith("journal-") && name.endsWith(".dat") &&
+                        Long.parseLong(name.substring(8, name.length() - 4)) < index) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the index after the highest segment already in a directory
+     *
+     * @param directory the journal directory
+     *
+     * @return the next index
+     *
+     * @throws IOException if the directory cannot be listed
+     */
+    private static long findNextIndex(final Path directory) throws IOException {
+        try(Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("journal-") && name.endsWith(".dat"))
+                    .mapToLong(name -> Long.parseLong(name.substring(8, name.length() - 4)) + 1)
+                    .max()
+                    .orElse(0);
+        }
+    }
+
+    /**
+     * Count the bytes needed to encode text as UTF-8
+     *
+     * @param value the text
+     *
+     * @return the encoded length
+     */
+    static int utf8Length(final CharSequence value) {
+        int length = value.length();
+        int bytes = length;
+        for(int i=0; i<length; i++) {
+            char c = value.charAt(i);
+            if(c >= 0x80) {
+                if(c < 0x800) {
+                    bytes++;
+                } else if(Character.isHighSurrogate(c) && i + 1 < length &&
+                        Character.isLowSurrogate(value.charAt(i + 1))) {
+                    bytes += 2;
+                    i++;
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Encode text as UTF-8 straight into a buffer. Unpaired surrogates are written as U+FFFD.
+     *
+     * @param value the text
+     * @param buffer the target buffer
+     * @param offset where to start writing
+     */
+    private static void encodeUtf8(final CharSequence value, final MappedByteBuffer buffer, final int offset) {
+        int position = offset;
+        int length = value.length();
+        for(int i=0; i<length; i++) {
+            char c = value.charAt(i);
+            if(c < 0x80) {
+                buffer.put(position++, (byte) c);
+            } else if(c < 0x800) {
+                buffer.put(position++, (byte) (0xc0 | (c >> 6)));
+                buffer.put(position++, (byte) (0x80 | (c & 0x3f)));
+            } else if(Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put(position++, (byte) (0xf0 | (codePoint >> 18)));
+                buffer.put(position++, (byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                buffer.put(position++, (byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                buffer.put(position++, (byte) (0x80 | (codePoint & 0x3f)));
+            } else if(Character.isSurrogate(c)) {
+                // the replacement character is three bytes, which is what utf8Length counts
+                buffer.put(position++, (byte) 0xef);
+                buffer.put(position++, (byte) 0xbf);
+                buffer.put(position++, (byte) 0xbd);
+            } else {
+                buffer.put(position++, (byte) (0xe0 | (c >> 12)));
+                buffer.put(position++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put(position++, (byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    /**
+     * Stop writing and flush the current segment to disk
+     */
+    @Override
+    public synchronized void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(roller);
+        current.force();
+    }
+}
@@ -0,0 +1,163 @@
+package com.vega.protocol.journal;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reads records back from a {@link Journal} directory, oldest segment first. The reader can follow a
+ * journal that is still being written: {@link #next} returns false when it reaches the last committed
+ * record and picks up from there on the next call.
+ */
+public class JournalReader implements AutoCloseable {
+
+    private final Path directory;
+
+    private MappedByteBuffer buffer;
+    private long segmentIndex = -1;
+    private int position;
+
+    /**
+     * @param directory the journal directory
+     */
+    public JournalReader(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Read the next committed record
+     *
+     * @param record {@link JournalRecord} to fill in
+     *
+     * @return true if a record was read, false if there are no more records yet
+     *
+     * @throws IOException if a segment cannot be read
+     */
+    public boolean next(final JournalRecord record) throws IOException {
+        while(true) {
+            if(buffer == null && !openNextSegment()) {
+                return false;
+            }
+            int lengthWord = position + JournalSegment.RECORD_HEADER_LENGTH <= buffer.capacity() ?
+                    (int) JournalSegment.INT.getAcquire(buffer, position) : JournalSegment.END_OF_SEGMENT;
+            if(lengthWord == 0) {
+                if(hasNewerSegment()) {
+                    // writers have moved on, so this space was claimed by a writer that never finished
+                    buffer = null;
+                    continue;
+                }
+                return false;
+            }
+            if(lengthWord == JournalSegment.END_OF_SEGMENT) {
+                buffer = null;
+                continue;
+            }
+            int length = JournalSegment.payloadLength(lengthWord);
+            int type = buffer.getInt(position + 4);
+            long epochNanos = buffer.getLong(position + 8);
+            int payloadStart = position + JournalSegment.RECORD_HEADER_LENGTH;
+            record.set(JournalType.fromCode(type), epochNanos,
+                    buffer.slice(payloadStart, length).asReadOnlyBuffer());
+            position += JournalSegment.recordLength(length);
+            return true;
+        }
+    }
+
+    /**
+     * Map the segment after the current one, if it exists
+     *
+     * @return true if a segment was opened
+     *
+     * @throws IOException if the segment cannot be read
+     */
+    private boolean openNextSegment() throws IOException {
+        for(Path path : listSegments()) {
+            long index = indexOf(path);
+            if(index > segmentIndex) {
+                try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    mapped.order(ByteOrder.LITTLE_ENDIAN);
+                    segmentIndex = index;
+                    if(mapped.capacity() < JournalSegment.SEGMENT_HEADER_LENGTH ||
+                            (int) JournalSegment.INT.getAcquire(mapped, 0) != JournalSegment.MAGIC) {
+                        throw new IOException(String.format("not a journal segment: %s", path));
+                    }
+                    if(mapped.getInt(4) != JournalSegment.FORMAT_VERSION) {
+                        throw new IOException(String.format("unsupported journal version: %s", path));
+                    }
+                    buffer = mapped;
+                    position = JournalSegment.SEGMENT_HEADER_LENGTH;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the writer has started a segment after the current one
+     *
+     * @return true if a newer segment has records
+     *
+     * @throws IOException if the directory cannot be listed
+     */
+    private boolean hasNewerSegment() throws IOException {
+        for(Path path : listSegments()) {
+            if(indexOf(path) > segmentIndex) {
+                try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                            Math.min(channel.size(), JournalSegment.SEGMENT_HEADER_LENGTH +
+                                    JournalSegment.RECORD_HEADER_LENGTH));
+                    mapped.order(ByteOrder.LITTLE_ENDIAN);
+                    if(mapped.capacity() >= JournalSegment.SEGMENT_HEADER_LENGTH + 4 &&
+                            mapped.getInt(JournalSegment.SEGMENT_HEADER_LENGTH) != 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * List the segment files in index order
+     *
+     * @return the segment paths
+     *
+     * @throws IOException if the directory cannot be listed
+     */
+    private List<Path> listSegments() throws IOException {
+        try(Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith("journal-") && name.endsWith(".dat");
+            }).sorted().toList();
+        }
+    }
+
+    /**
+     * Get the index of a segment from its file name
+     *
+     * @param path the segment path
+     *
+     * @return the index
+     */
+    private static long indexOf(final Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(8, name.length() - 4));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        buffer = null;
+    }
+}
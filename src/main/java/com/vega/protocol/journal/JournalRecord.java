@@ -0,0 +1,68 @@
+package com.vega.protocol.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One record read from the {@link Journal}. Instances are reused by {@link JournalReader#next}, so the
+ * payload is only valid until the next call.
+ */
+public final class JournalRecord {
+
+    private JournalType type;
+    private long epochNanos;
+    private ByteBuffer payload;
+
+    /**
+     * Point the record at a new entry
+     *
+     * @param type {@link JournalType}
+     * @param epochNanos when the data was received, in nanoseconds since the epoch
+     * @param payload read-only view of the payload
+     */
+    void set(
+            final JournalType type,
+            final long epochNanos,
+            final ByteBuffer payload
+    ) {
+        this.type = type;
+        this.epochNanos = epochNanos;
+        this.payload = payload;
+    }
+
+    /**
+     * Get the record type
+     *
+     * @return {@link JournalType}, or null if the journal was written by a newer version
+     */
+    public JournalType getType() {
+        return type;
+    }
+
+    /**
+     * Get when the data was received
+     *
+     * @return nanoseconds since the epoch
+     */
+    public long getEpochNanos() {
+        return epochNanos;
+    }
+
+    /**
+     * Get the payload without copying it
+     *
+     * @return read-only {@link ByteBuffer} view of the payload
+     */
+    public ByteBuffer getPayload() {
+        return payload.duplicate();
+    }
+
+    /**
+     * Decode the payload as UTF-8 text
+     *
+     * @return the text
+     */
+    public String getPayloadAsString() {
+        return StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+    }
+}
@@ -0,0 +1,177 @@
+package com.vega.protocol.journal;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One memory-mapped journal file. The layout is a header followed by records, all little endian and
+ * aligned to 8 bytes:
+ * <pre>
+ *   header:  int magic | int format version | long segment index
+ *   record:  int payload length + 1 | int type | long epoch nanos | payload, padded to 8 bytes
+ * </pre>
+ * Writers claim space with a single atomic add and then fill in their record, writing the length word last
+ * with release semantics. The word holds the payload length plus one, so that a committed record with an
+ * empty payload can be told apart from one that isn't committed yet. A reader that sees a positive word can
+ * read the rest of the record; zero means the record isn't committed yet and {@link #END_OF_SEGMENT} means
+ * the rest of the file is unused.
+ */
+final class JournalSegment {
+
+    static final int MAGIC = 0x4c4e4a56;
+    static final int FORMAT_VERSION = 2;
+    static final int SEGMENT_HEADER_LENGTH = 16;
+    static final int RECORD_HEADER_LENGTH = 16;
+    static final int END_OF_SEGMENT = -1;
+
+    static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final long index;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicLong position = new AtomicLong(SEGMENT_HEADER_LENGTH);
+
+    /**
+     * @param index the segment index
+     * @param buffer the mapped file
+     */
+    private JournalSegment(
+            final long index,
+            final MappedByteBuffer buffer
+    ) {
+        this.index = index;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+    }
+
+    /**
+     * Create and map a new segment file
+     *
+     * @param directory the journal directory
+     * @param index the segment index
+     * @param capacity the file size in bytes, a multiple of 8
+     *
+     * @return {@link JournalSegment}
+     *
+     * @throws IOException if the file cannot be created
+     */
+    static JournalSegment create(
+            final Path directory,
+            final long index,
+            final int capacity
+    ) throws IOException {
+        try(FileChannel channel = FileChannel.open(directory.resolve(fileName(index)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(8, index);
+            buffer.putInt(4, FORMAT_VERSION);
+            INT.setRelease(buffer, 0, MAGIC);
+            return new JournalSegment(index, buffer);
+        }
+    }
+
+    /**
+     * Get the file name of a segment, ordered by index
+     *
+     * @param index the segment index
+     *
+     * @return the file name
+     */
+    static String fileName(final long index) {
+        return String.format("journal-%020d.dat", index);
+    }
+
+    /**
+     * Get the length word that commits a record
+     *
+     * @param payloadLength the payload length in bytes
+     *
+     * @return the value to publish in the record header
+     */
+    static int lengthWord(final int payloadLength) {
+        return payloadLength + 1;
+    }
+
+    /**
+     * Get the payload length from the length word of a committed record
+     *
+     * @param lengthWord the value read from the record header, greater than zero
+     *
+     * @return the payload length in bytes
+     */
+    static int payloadLength(final int lengthWord) {
+        return lengthWord - 1;
+    }
+
+    /**
+     * Get the space a record takes up
+     *
+     * @param payloadLength the payload length in bytes
+     *
+     * @return the record length in bytes
+     */
+    static int recordLength(final int payloadLength) {
+        return RECORD_HEADER_LENGTH + ((payloadLength + 7) & ~7);
+    }
+
+    /**
+     * Claim space for a record. If the record doesn't fit, the first writer to overflow marks the end of
+     * the segment and every overflowing writer gets -1.
+     *
+     * @param recordLength the record length from {@link #recordLength(int)}
+     *
+     * @return the offset of the record, or -1 if the segment is full
+     */
+    int claim(final int recordLength) {
+        long offset = position.getAndAdd(recordLength);
+        if(offset + recordLength <= capacity) {
+            return (int) offset;
+        }
+        if(offset < capacity) {
+            INT.setRelease(buffer, (int) offset, END_OF_SEGMENT);
+        }
+        return -1;
+    }
+
+    /**
+     * Get the mapped file
+     *
+     * @return {@link MappedByteBuffer}
+     */
+    MappedByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Get the segment index
+     *
+     * @return the index
+     */
+    long getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the number of bytes claimed so far
+     *
+     * @return the bytes used, at most the capacity
+     */
+    long getUsed() {
+        return Math.min(position.get(), capacity);
+    }
+
+    /**
+     * Flush written records to the file
+     */
+    void force() {
+        buffer.force();
+    }
+}
@@ -0,0 +1,45 @@
+package com.vega.protocol.journal;
+
+/**
+ * The kinds of record in the {@link Journal}
+ */
+public enum JournalType {
+    BINANCE_FRAME(1),
+    VEGA_FRAME(2),
+    BATCH_SENT(3),
+    BATCH_RESPONSE(4);
+
+    private static final JournalType[] BY_CODE = new JournalType[5];
+
+    static {
+        for(JournalType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final int code;
+
+    JournalType(final int code) {
+        this.code = code;
+    }
+
+    /**
+     * Get the code written to the journal
+     *
+     * @return the code
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Get the type for a code read from the journal
+     *
+     * @param code the code
+     *
+     * @return {@link JournalType}, or null if the code is unknown
+     */
+    public static JournalType fromCode(final int code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
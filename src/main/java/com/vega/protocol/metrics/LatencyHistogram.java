@@ -0,0 +1,120 @@
+package com.vega.protocol.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear latency histogram in the style of HdrHistogram. Values below 128 get their own bucket, and
+ * above that every power of two is split into 64 linear sub-buckets, so any recorded value is reported
+ * within 1.6% of its true value. Recording is a couple of bit operations and one atomic increment, with no
+ * allocation and no locking, so it is safe to call from the hot path on any thread.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Record a value
+     *
+     * @param value the value, e.g. a latency in nanoseconds; negative values are recorded as 0
+     */
+    public void record(final long value) {
+        long v = Math.max(value, 0);
+        counts.incrementAndGet(indexOf(v));
+        totalCount.incrementAndGet();
+        long max = maxValue.get();
+        while(v > max && !maxValue.compareAndSet(max, v)) {
+            max = maxValue.get();
+        }
+    }
+
+    /**
+     * Get the number of recorded values
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Get the largest recorded value
+     *
+     * @return the max
+     */
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * Get the value at a percentile; the result is the highest value that falls in the same bucket
+     *
+     * @param percentile the percentile, from 0 to 100
+     *
+     * @return the value, or 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        long total = totalCount.get();
+        if(total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+        long seen = 0;
+        for(int i=0; i<BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if(seen >= target) {
+                return Math.min(highestValueAt(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    /**
+     * Clear all recorded values
+     */
+    public void reset() {
+        for(int i=0; i<BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        maxValue.set(0);
+    }
+
+    /**
+     * Get the bucket for a value
+     *
+     * @param value the value, not negative
+     *
+     * @return the bucket index
+     */
+    static int indexOf(final long value) {
+        if(value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * Get the highest value that falls in a bucket
+     *
+     * @param index the bucket index
+     *
+     * @return the highest value
+     */
+    static long highestValueAt(final int index) {
+        if(index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long subBucket = index % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,155 @@
+package com.vega.protocol.metrics;
+
+import com.vega.protocol.model.LatencyStats;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the tick-to-trade latency of each stage, from a Binance frame arriving to our orders being
+ * acknowledged on the Vega feed. All timestamps come from {@link System#nanoTime()}.
+ */
+public class LatencyRecorder {
+
+    /**
+     * The measured stages
+     */
+    public enum Stage {
+        /** Binance frame received until the reference price is stored */
+        FEED_TO_STORE,
+        /** Reference price stored until the strategy has decided on its instructions */
+        TICK_TO_DECISION,
+        /** Strategy run time, from start until its instructions are ready */
+        DECISION,
+        /** Building the wallet payload */
+        SERIALIZATION,
+        /** Sending the batch to the wallet until the response arrives */
+        WALLET_ROUND_TRIP,
+        /** Wallet response until the order update arrives on the Vega feed */
+        ACK,
+        /** Binance frame received until the wallet accepts the batch */
+        TICK_TO_TRADE,
+        /** Binance frame received until the order update arrives on the Vega feed */
+        TICK_TO_ACK
+    }
+
+    private static final LatencyRecorder instance = new LatencyRecorder();
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final Map<String, PendingAck> pendingAcks = new ConcurrentHashMap<>();
+
+    private LatencyRecorder() {
+        for(Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Get the {@link LatencyRecorder} singleton instance
+     *
+     * @return {@link LatencyRecorder}
+     */
+    public static LatencyRecorder getInstance() {
+        return instance;
+    }
+
+    /**
+     * Record the time taken by a stage
+     *
+     * @param stage {@link Stage}
+     * @param startNanos when the stage started
+     */
+    public void record(final Stage stage, final long startNanos) {
+        record(stage, startNanos, System.nanoTime());
+    }
+
+    /**
+     * Record the time taken by a stage
+     *
+     * @param stage {@link Stage}
+     * @param startNanos when the stage started
+     * @param endNanos when the stage ended
+     */
+    public void record(final Stage stage, final long startNanos, final long endNanos) {
+        if(startNanos == 0) {
+            return;
+        }
+        histograms.get(stage).record(endNanos - startNanos);
+    }
+
+    /**
+     * Remember that a batch for a market was accepted by the wallet, so that the next order update for
+     * the market can be timed
+     *
+     * @param marketId the market ID
+     * @param tickNanos when the Binance frame that triggered the batch was received
+     * @param acceptedNanos when the wallet accepted the batch
+     */
+    public void awaitAck(final String marketId, final long tickNanos, final long acceptedNanos) {
+        pendingAcks.put(marketId, new PendingAck(tickNanos, acceptedNanos));
+    }
+
+    /**
+     * Record the acknowledgement latency if a batch for the market is waiting for one
+     *
+     * @param marketId the market ID
+     */
+    public void onOrderUpdate(final String marketId) {
+        if(marketId == null || pendingAcks.isEmpty()) {
+            return;
+        }
+        PendingAck pendingAck = pendingAcks.remove(marketId);
+        if(pendingAck != null) {
+            long now = System.nanoTime();
+            record(Stage.ACK, pendingAck.acceptedNanos(), now);
+            record(Stage.TICK_TO_ACK, pendingAck.tickNanos(), now);
+        }
+    }
+
+    /**
+     * Get the histogram for a stage
+     *
+     * @param stage {@link Stage}
+     *
+     * @return {@link LatencyHistogram}
+     */
+    public LatencyHistogram getHistogram(final Stage stage) {
+        return histograms.get(stage);
+    }
+
+    /**
+     * Get p50, p99 and p99.9 for every stage
+     *
+     * @return {@link LatencyStats} by stage name
+     */
+    public Map<String, LatencyStats> getStats() {
+        Map<String, LatencyStats> stats = new LinkedHashMap<>();
+        for(Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms.get(stage);
+            stats.put(stage.name().toLowerCase(Locale.ROOT), new LatencyStats()
+                    .setCount(histogram.getCount())
+                    .setP50Micros(toMicros(histogram.getValueAtPercentile(50)))
+                    .setP99Micros(toMicros(histogram.getValueAtPercentile(99)))
+                    .setP999Micros(toMicros(histogram.getValueAtPercentile(99.9)))
+                    .setMaxMicros(toMicros(histogram.getMax())));
+        }
+        return stats;
+    }
+
+    /**
+     * Clear all histograms
+     */
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+        pendingAcks.clear();
+    }
+
+    private static double toMicros(final long nanos) {
+        return nanos / 1000d;
+    }
+
+    private record PendingAck(long tickNanos, long acceptedNanos) {}
+}
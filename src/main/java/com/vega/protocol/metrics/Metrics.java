@@ -0,0 +1,206 @@
+package com.vega.protocol.metrics;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Runtime counters and gauges, published in the Prometheus text format. Counters are {@link LongAdder}s
+ * that callers look up once and keep, so recording is a single uncontended add with no allocation.
+ * Gauges are read only when the endpoint is scraped.
+ */
+public class Metrics {
+
+    private static final Metrics instance = new Metrics();
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    private Metrics() {
+        registerJvmMetrics();
+    }
+
+    /**
+     * Get the {@link Metrics} singleton instance
+     *
+     * @return {@link Metrics}
+     */
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Get or create a counter
+     *
+     * @param name the metric name
+     * @param help description of the metric
+     *
+     * @return {@link LongAdder}
+     */
+    public LongAdder counter(final String name, final String help) {
+        return counter(name, help, null, null);
+    }
+
+    /**
+     * Get or create a counter with one label
+     *
+     * @param name the metric name
+     * @param help description of the metric
+     * @param label the label name
+     * @param value the label value
+     *
+     * @return {@link LongAdder}
+     */
+    public LongAdder counter(final String name, final String help, final String label, final String value) {
+        Family family = family(name, help, "counter");
+        return (LongAdder) family.series.computeIfAbsent(labels(label, value), k -> new LongAdder());
+    }
+
+    /**
+     * Register a counter that is maintained elsewhere, e.g. by the JVM
+     *
+     * @param name the metric name
+     * @param help description of the metric
+     * @param label the label name
+     * @param value the label value
+     * @param supplier reads the current value
+     */
+    public void counter(
+            final String name,
+            final String help,
+            final String label,
+            final String value,
+            final DoubleSupplier supplier
+    ) {
+        family(name, help, "counter").series.put(labels(label, value), supplier);
+    }
+
+    /**
+     * Register a gauge, replacing any gauge with the same name and label
+     *
+     * @param name the metric name
+     * @param help description of the metric
+     * @param supplier reads the current value
+     */
+    public void gauge(final String name, final String help, final DoubleSupplier supplier) {
+        gauge(name, help, null, null, supplier);
+    }
+
+    /**
+     * Register a gauge with one label, replacing any gauge with the same name and label
+     *
+     * @param name the metric name
+     * @param help description of the metric
+     * @param label the label name
+     * @param value the label value
+     * @param supplier reads the current value
+     */
+    public void gauge(
+            final String name,
+            final String help,
+            final String label,
+            final String value,
+            final DoubleSupplier supplier
+    ) {
+        family(name, help, "gauge").series.put(labels(label, value), supplier);
+    }
+
+    /**
+     * Render every metric in the Prometheus text exposition format
+     *
+     * @return the metrics
+     */
+    public String scrape() {
+        StringBuilder builder = new StringBuilder(4096);
+        synchronized (families) {
+            for(Family family : families.values()) {
+                builder.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+                builder.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+                family.series.forEach((labels, series) -> {
+                    builder.append(family.name).append(labels).append(' ');
+                    if(series instanceof LongAdder adder) {
+                        builder.append(adder.sum());
+                    } else {
+                        builder.append(((DoubleSupplier) series).getAsDouble());
+                    }
+                    builder.append('\n');
+                });
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Get or create a metric family
+     *
+     * @param name the metric name
+     * @param help description of the metric
+     * @param type the Prometheus type
+     *
+     * @return {@link Family}
+     */
+    private Family family(final String name, final String help, final String type) {
+        synchronized (families) {
+            Family family = families.computeIfAbsent(name, k -> new Family(name, help, type));
+            if(!family.type.equals(type)) {
+                throw new IllegalArgumentException(String.format("%s is already a %s", name, family.type));
+            }
+            return family;
+        }
+    }
+
+    private static String labels(final String label, final String value) {
+        if(label == null) {
+            return "";
+        }
+        String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return String.format("{%s=\"%s\"}", label, escaped);
+    }
+
+    /**
+     * Publish garbage collection, heap and allocation stats
+     */
+    private void registerJvmMetrics() {
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            counter("jvm_gc_collections_total", "Number of collections", "gc", gc.getName(),
+                    gc::getCollectionCount);
+            counter("jvm_gc_collection_seconds_total", "Time spent in collections", "gc", gc.getName(),
+                    () -> gc.getCollectionTime() / 1000d);
+        }
+        gauge("jvm_memory_heap_used_bytes", "Heap in use",
+                () -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        if(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean threads &&
+                threads.isThreadAllocatedMemorySupported()) {
+            gauge("jvm_threads_allocated_bytes", "Bytes allocated by live threads",
+                    () -> sum(threads.getThreadAllocatedBytes(threads.getAllThreadIds())));
+        }
+    }
+
+    private static double sum(final long[] values) {
+        double sum = 0;
+        for(long value : values) {
+            if(value > 0) {
+                sum += value;
+            }
+        }
+        return sum;
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final Map<String, Object> series = new ConcurrentHashMap<>();
+
+        private Family(final String name, final String help, final String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
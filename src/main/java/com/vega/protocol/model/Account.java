@@ -1,17 +1,24 @@
 package com.vega.protocol.model;
 
 import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.vega.protocol.exception.TradingException;
 import com.vega.protocol.store.VegaStore;
-import com.vega.protocol.utils.DecimalUtils;
+import com.vega.protocol.utils.FixedPoint;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.Accessors;
 import org.apache.commons.lang3.StringUtils;
 
-import java.math.BigInteger;
+import java.util.Objects;
 
 @Data
 @Accessors(chain = true)
+@EqualsAndHashCode(doNotUseGetters = true)
 public class Account {
     @JsonAlias("partyId")
     private String owner;
@@ -20,16 +27,45 @@ public class Account {
     private String balance;
     @JsonAlias("assetId")
     private String asset;
+    @JsonIgnore
+    private long balanceValue;
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient InstrumentContext instrumentContext;
+    public Account setBalance(String balance) {
+        this.balance = balance;
+        this.balanceValue = FixedPoint.parse(balance);
+        return this;
+    }
     public Asset getAsset() {
         return VegaStore.getInstance().getAssetById(asset).orElseThrow(() ->
                 new TradingException(String.format("asset not found: %s", asset)));
     }
+    @JsonIgnore
+    public String getAssetId() {
+        return asset;
+    }
     public String getId() {
         return String.format("%s-%s-%s-%s", owner, marketId, type, asset);
     }
+    // the getter without a context uses the store's latest number format; pass the context from a
+    // StoreSnapshot to read a value consistent with that snapshot
     public double getBalance() {
         if(StringUtils.isEmpty(balance)) return 0;
-        return DecimalUtils.convertToDecimals(getAsset().getDecimals(),
-                new BigInteger(balance));
+        return getBalance(getInstrumentContext());
+    }
+    public double getBalance(InstrumentContext context) {
+        if(StringUtils.isEmpty(balance)) return 0;
+        return context.toAssetAmount(balanceValue, balance);
+    }
+    private InstrumentContext getInstrumentContext() {
+        InstrumentContext context = instrumentContext;
+        if(context == null || !context.isValid() || !Objects.equals(asset, context.getSettlementAssetId())) {
+            context = VegaStore.getInstance().getAssetContext(asset);
+            instrumentContext = context;
+        }
+        return context;
     }
 }
\ No newline at end of file
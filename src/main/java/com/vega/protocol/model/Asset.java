@@ -1,8 +1,10 @@
 package com.vega.protocol.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.experimental.Accessors;
+import org.apache.commons.lang3.math.NumberUtils;
 
 @Data
 @Accessors(chain = true)
@@ -21,7 +23,7 @@ public class Asset {
     }
     public int getDecimals() {
         if(details == null) return 0;
-        return Integer.parseInt(details.getDecimals());
+        return details.getDecimalPlaces();
     }
     @Data
     @Accessors(chain = true)
@@ -29,5 +31,12 @@ public class Asset {
         private String name;
         private String symbol;
         private String decimals;
+        @JsonIgnore
+        private int decimalPlaces;
+        public AssetDetails setDecimals(String decimals) {
+            this.decimals = decimals;
+            this.decimalPlaces = NumberUtils.toInt(decimals);
+            return this;
+        }
     }
 }
\ No newline at end of file
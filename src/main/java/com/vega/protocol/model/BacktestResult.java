@@ -0,0 +1,28 @@
+package com.vega.protocol.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class BacktestResult {
+    private long events;
+    private long binanceFrames;
+    private long vegaFrames;
+    private long quotes;
+    private long batches;
+    private long submissions;
+    private long amendments;
+    private long cancellations;
+    private long rejected;
+    private long fills;
+    private double filledVolume;
+    private double tradedNotional;
+    private double fees;
+    private double realisedPnl;
+    private double unrealisedPnl;
+    private double totalPnl;
+    private long simulatedMillis;
+    private long elapsedMillis;
+    private double eventsPerSecond;
+}
@@ -0,0 +1,20 @@
+package com.vega.protocol.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Accessors(chain = true)
+public class BacktestSettings {
+    private String partyId;
+    private List<MarketConfig> quotedMarkets = new ArrayList<>();
+    private List<Asset> assets = new ArrayList<>();
+    private List<Market> markets = new ArrayList<>();
+    private long latencyMillis = 100;
+    private long minRequoteIntervalMillis = 500;
+    private double initialBalance = 100_000;
+    private double feeRate = 0.0002;
+}
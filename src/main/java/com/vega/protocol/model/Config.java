@@ -2,6 +2,11 @@ package com.vega.protocol.model;
 
 import lombok.Data;
 import lombok.experimental.Accessors;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 @Accessors(chain = true)
@@ -17,20 +22,60 @@ public class Config {
     private String partyId;
     private String binanceMarket;
     private String binanceWsUrl;
+    private String binanceStream;
+    private long minRequoteIntervalMillis;
+    private double priceTolerance;
+    private double sizeTolerance;
+    private int ladderLevels;
+    private double ladderStep;
+    private double ladderSizeRatio;
+    private double ladderTickSize;
+    private long stateStreamIntervalMillis;
+    private long refreshIntervalMillis;
+    private int eventLoopCapacity;
+    private String journalDir;
+    private int journalSegmentMb;
+    private int journalMaxSegments;
+    private long backtestLatencyMillis;
+    private double backtestInitialBalance;
+    private double backtestFeeRate;
+    private List<MarketConfig> markets;
 
     private static Config config = new Config();
 
     public static Config getInstance() {
-        String nodeUrl = System.getenv("NODE_URL");
-        String tendermintUrl = System.getenv("TENDERMINT_URL");
-        String walletUrl = System.getenv("WALLET_URL");
-        String wsUrl = System.getenv("WS_URL");
-        String walletUsername = System.getenv("WALLET_USERNAME");
-        String walletPassword = System.getenv("WALLET_PASSWORD");
-        String marketId = System.getenv("MARKET_ID");
-        String partyId = System.getenv("PARTY_ID");
-        String binanceMarket = System.getenv("BINANCE_MARKET");
-        String binanceWsUrl = System.getenv("BINANCE_WS_URL");
+        String nodeUrl = getenv("NODE_URL");
+        String tendermintUrl = getenv("TENDERMINT_URL");
+        String walletUrl = getenv("WALLET_URL");
+        String wsUrl = getenv("WS_URL");
+        String walletUsername = getenv("WALLET_USERNAME");
+        String walletPassword = getenv("WALLET_PASSWORD");
+        String marketId = getenv("MARKET_ID");
+        String partyId = getenv("PARTY_ID");
+        String binanceMarket = getenv("BINANCE_MARKET");
+        String binanceWsUrl = getenv("BINANCE_WS_URL");
+        String binanceStream = StringUtils.defaultIfBlank(getenv("BINANCE_STREAM"), "ticker");
+        long minRequoteIntervalMillis = NumberUtils.toLong(getenv("MIN_REQUOTE_INTERVAL_MS"), 500);
+        double priceTolerance = NumberUtils.toDouble(getenv("PRICE_TOLERANCE"), 0.0005);
+        double sizeTolerance = NumberUtils.toDouble(getenv("SIZE_TOLERANCE"), 0.1);
+        int ladderLevels = NumberUtils.toInt(getenv("LADDER_LEVELS"), 5);
+        double ladderStep = NumberUtils.toDouble(getenv("LADDER_STEP"), 0.002);
+        double ladderSizeRatio = NumberUtils.toDouble(getenv("LADDER_SIZE_RATIO"), 1);
+        double ladderTickSize = NumberUtils.toDouble(getenv("LADDER_TICK_SIZE"), 0);
+        String journalDir = getenv("JOURNAL_DIR");
+        int journalSegmentMb = NumberUtils.toInt(getenv("JOURNAL_SEGMENT_MB"), 256);
+        int journalMaxSegments = NumberUtils.toInt(getenv("JOURNAL_MAX_SEGMENTS"), 0);
+        long backtestLatencyMillis = NumberUtils.toLong(getenv("BACKTEST_LATENCY_MS"), 100);
+        double backtestInitialBalance = NumberUtils.toDouble(getenv("BACKTEST_INITIAL_BALANCE"), 100_000);
+        double backtestFeeRate = NumberUtils.toDouble(getenv("BACKTEST_FEE_RATE"), 0.0002);
+        long refreshIntervalMillis = NumberUtils.toLong(getenv("REFRESH_INTERVAL_MS"), 10_000);
+        int eventLoopCapacity = NumberUtils.toInt(getenv("EVENT_LOOP_CAPACITY"), 65_536);
+        long stateStreamIntervalMillis = NumberUtils.toLong(getenv("STATE_STREAM_INTERVAL_MS"), 250);
+        List<MarketConfig> markets = parseMarkets(getenv("MARKETS"), marketId, binanceMarket);
+        if(!markets.isEmpty()) {
+            marketId = markets.get(0).getMarketId();
+            binanceMarket = markets.get(0).getBinanceMarket();
+        }
         config.setNodeUrl(nodeUrl);
         config.setTendermintUrl(tendermintUrl);
         config.setWalletUrl(walletUrl);
@@ -41,7 +86,91 @@ public class Config {
         config.setPartyId(partyId);
         config.setBinanceMarket(binanceMarket);
         config.setBinanceWsUrl(binanceWsUrl);
+        config.setBinanceStream(binanceStream);
+        config.setMinRequoteIntervalMillis(minRequoteIntervalMillis);
+        config.setPriceTolerance(priceTolerance);
+        config.setSizeTolerance(sizeTolerance);
+        config.setLadderLevels(ladderLevels);
+        config.setLadderStep(ladderStep);
+        config.setLadderSizeRatio(ladderSizeRatio);
+        config.setLadderTickSize(ladderTickSize);
+        config.setRefreshIntervalMillis(refreshIntervalMillis);
+        config.setEventLoopCapacity(eventLoopCapacity);
+        config.setJournalDir(journalDir);
+        config.setJournalSegmentMb(journalSegmentMb);
+        config.setJournalMaxSegments(journalMaxSegments);
+        config.setBacktestLatencyMillis(backtestLatencyMillis);
+        config.setBacktestInitialBalance(backtestInitialBalance);
+        config.setBacktestFeeRate(backtestFeeRate);
+        config.setStateStreamIntervalMillis(stateStreamIntervalMillis);
+        config.setMarkets(markets);
         return config;
     }
+
+    /**
+     * Read a setting from a system property, falling back to the environment variable of the same name, so
+     * a setting can be overridden with -DNAME=value or from an embedding process such as a test
+     *
+     * @param name the setting name, e.g. NODE_URL
+     *
+     * @return the value, or null if it isn't set
+     */
+    private static String getenv(String name) {
+        String value = System.getProperty(name);
+        return value != null ? value : System.getenv(name);
+    }
+
+    /**
+     * Parse the markets to quote, e.g. "marketId1:UNIUSDT,marketId2:ETHUSDT", falling back to the single
+     * market given by MARKET_ID and BINANCE_MARKET
+     *
+     * @param value the MARKETS variable
+     * @param marketId the MARKET_ID variable
+     * @param binanceMarket the BINANCE_MARKET variable
+     *
+     * @return {@link List<MarketConfig>}
+     */
+    private static List<MarketConfig> parseMarkets(String value, String marketId, String binanceMarket) {
+        List<MarketConfig> markets = new ArrayList<>();
+        if(StringUtils.isBlank(value)) {
+            if(!StringUtils.isBlank(marketId)) {
+                markets.add(new MarketConfig().setMarketId(marketId).setBinanceMarket(binanceMarket));
+            }
+            return markets;
+        }
+        for(String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if(parts.length != 2 || StringUtils.isBlank(parts[0]) || StringUtils.isBlank(parts[1])) {
+                throw new IllegalArgumentException(String.format("invalid market: %s", entry));
+            }
+            markets.add(new MarketConfig().setMarketId(parts[0].trim()).setBinanceMarket(parts[1].trim()));
+        }
+        return markets;
+    }
+
+    /**
+     * Get the configured market IDs
+     *
+     * @return {@link List<String>}
+     */
+    public List<String> getMarketIds() {
+        return markets.stream().map(MarketConfig::getMarketId).toList();
+    }
+
+    /**
+     * Get the reference symbol for a market
+     *
+     * @param marketId the market ID
+     *
+     * @return the Binance symbol, or null if the market is not configured
+     */
+    public String getBinanceMarket(String marketId) {
+        for(MarketConfig market : markets) {
+            if(market.getMarketId().equals(marketId)) {
+                return market.getBinanceMarket();
+            }
+        }
+        return null;
+    }
     private Config() {}
 }
\ No newline at end of file
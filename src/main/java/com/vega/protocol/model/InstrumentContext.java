@@ -0,0 +1,110 @@
+package com.vega.protocol.model;
+
+import com.vega.protocol.exception.TradingException;
+import com.vega.protocol.utils.FixedPoint;
+import lombok.Getter;
+
+/**
+ * The resolved number formats for one market: price and position decimal places, the settlement asset's
+ * decimal places, and the matching power-of-ten scale factors. Built once by the
+ * {@link com.vega.protocol.store.VegaStore} and shared by every order, position and account in the market,
+ * so their numeric getters don't have to look up the market or asset again. The store invalidates the
+ * context when the market's decimal places or its settlement asset change, and models then bind to the new
+ * one. Each {@link com.vega.protocol.store.StoreSnapshot} also carries the contexts of its own version, for
+ * readers that need numbers consistent with the snapshot.
+ */
+@Getter
+public final class InstrumentContext {
+
+    private static final double MAX_EXACT_DOUBLE = 9007199254740992d;
+
+    private final String marketId;
+    private final String settlementAssetId;
+    private final int decimalPlaces;
+    private final int positionDecimalPlaces;
+    private final int settlementAssetDecimals;
+    private final double priceScale;
+    private final double sizeScale;
+    private final double assetScale;
+    /**
+     * False once the market or asset has been saved again
+     */
+    private volatile boolean valid = true;
+
+    /**
+     * @param marketId the market ID, or null for an asset-only context
+     * @param settlementAssetId the settlement asset ID
+     * @param decimalPlaces the market decimal places
+     * @param positionDecimalPlaces the market position decimal places
+     * @param settlementAssetDecimals the settlement asset decimal places, or -1 if the asset is unknown
+     */
+    public InstrumentContext(
+            final String marketId,
+            final String settlementAssetId,
+            final int decimalPlaces,
+            final int positionDecimalPlaces,
+            final int settlementAssetDecimals
+    ) {
+        this.marketId = marketId;
+        this.settlementAssetId = settlementAssetId;
+        this.decimalPlaces = decimalPlaces;
+        this.positionDecimalPlaces = positionDecimalPlaces;
+        this.settlementAssetDecimals = settlementAssetDecimals;
+        this.priceScale = Math.pow(10, decimalPlaces);
+        this.sizeScale = Math.pow(10, positionDecimalPlaces);
+        this.assetScale = Math.pow(10, Math.max(settlementAssetDecimals, 0));
+    }
+
+    /**
+     * Mark the context as stale
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Convert a price to its decimal representation
+     *
+     * @param mantissa the parsed price
+     * @param raw the integer representation it was parsed from
+     *
+     * @return the decimal price
+     */
+    public double toPrice(final long mantissa, final String raw) {
+        return toDecimal(mantissa, raw, decimalPlaces, priceScale);
+    }
+
+    /**
+     * Convert a size or volume to its decimal representation
+     *
+     * @param mantissa the parsed size
+     * @param raw the integer representation it was parsed from
+     *
+     * @return the decimal size
+     */
+    public double toSize(final long mantissa, final String raw) {
+        return toDecimal(mantissa, raw, positionDecimalPlaces, sizeScale);
+    }
+
+    /**
+     * Convert an amount of the settlement asset to its decimal representation
+     *
+     * @param mantissa the parsed amount
+     * @param raw the integer representation it was parsed from
+     *
+     * @return the decimal amount
+     */
+    public double toAssetAmount(final long mantissa, final String raw) {
+        if(settlementAssetDecimals < 0) {
+            throw new TradingException(String.format("asset not found: %s", settlementAssetId));
+        }
+        return toDecimal(mantissa, raw, settlementAssetDecimals, assetScale);
+    }
+
+    private static double toDecimal(final long mantissa, final String raw, final int decimals, final double scale) {
+        if(mantissa != FixedPoint.OVERFLOW && decimals <= 22 && Math.abs((double) mantissa) <= MAX_EXACT_DOUBLE) {
+            return mantissa / scale;
+        }
+        return FixedPoint.toDouble(mantissa, raw, decimals);
+    }
+}
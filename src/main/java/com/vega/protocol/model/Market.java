@@ -4,12 +4,10 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.vega.protocol.exception.TradingException;
 import com.vega.protocol.store.VegaStore;
-import com.vega.protocol.utils.DecimalUtils;
+import com.vega.protocol.utils.FixedPoint;
 import lombok.Data;
 import lombok.experimental.Accessors;
 
-import java.math.BigInteger;
-
 @Data
 @Accessors(chain = true)
 public class Market {
@@ -36,6 +34,24 @@ public class Market {
     public static class Future {
         private String settlementAsset;
     }
+    /**
+     * Copy the market with new market data, taking the trading mode and state from it. Saved markets are
+     * shared with {@link com.vega.protocol.store.StoreSnapshot}s, so they are replaced rather than modified.
+     *
+     * @param marketData {@link MarketData}
+     *
+     * @return {@link Market}
+     */
+    public Market withMarketData(final MarketData marketData) {
+        return new Market()
+                .setId(id)
+                .setState(marketData.getMarketState())
+                .setTradingMode(marketData.getMarketTradingMode())
+                .setDecimalPlaces(decimalPlaces)
+                .setPositionDecimalPlaces(positionDecimalPlaces)
+                .setTradableInstrument(tradableInstrument)
+                .setMarketData(marketData);
+    }
     public String getCode() {
         if(tradableInstrument == null) return null;
         return tradableInstrument.getInstrument().getCode();
@@ -44,40 +60,40 @@ public class Market {
         if(tradableInstrument == null) return null;
         return tradableInstrument.getInstrument().getName();
     }
+    @JsonIgnore
+    public String getSettlementAssetId() {
+        if(tradableInstrument == null || tradableInstrument.getInstrument() == null ||
+                tradableInstrument.getInstrument().getFuture() == null) return null;
+        return tradableInstrument.getInstrument().getFuture().getSettlementAsset();
+    }
     public Asset getSettlementAsset() {
         if(tradableInstrument.getInstrument() == null) return null;
-        String settlementAssetId = tradableInstrument.getInstrument().getFuture().getSettlementAsset();
+        String settlementAssetId = getSettlementAssetId();
         return VegaStore.getInstance().getAssetById(settlementAssetId).orElseThrow(() ->
                 new TradingException(String.format("asset not found: %s", settlementAssetId)));
     }
     public double getMarkPrice() {
         if(marketData == null) return 0;
-        return DecimalUtils.convertToDecimals(decimalPlaces,
-                new BigInteger(marketData.getMarkPrice()));
+        return FixedPoint.toDouble(marketData.getMarkPriceValue(), marketData.getMarkPrice(), decimalPlaces);
     }
     public double getBestBidPrice() {
         if(marketData == null) return 0;
-        return DecimalUtils.convertToDecimals(decimalPlaces,
-                new BigInteger(marketData.getBestBidPrice()));
+        return FixedPoint.toDouble(marketData.getBestBidPriceValue(), marketData.getBestBidPrice(), decimalPlaces);
     }
     public double getBestOfferPrice() {
         if(marketData == null) return 0;
-        return DecimalUtils.convertToDecimals(decimalPlaces,
-                new BigInteger(marketData.getBestOfferPrice()));
+        return FixedPoint.toDouble(marketData.getBestOfferPriceValue(), marketData.getBestOfferPrice(), decimalPlaces);
     }
     public double getBestBidVolume() {
         if(marketData == null) return 0;
-        return DecimalUtils.convertToDecimals(positionDecimalPlaces,
-                new BigInteger(marketData.getBestBidVolume()));
+        return FixedPoint.toDouble(marketData.getBestBidVolumeValue(), marketData.getBestBidVolume(), positionDecimalPlaces);
     }
     public double getBestOfferVolume() {
         if(marketData == null) return 0;
-        return DecimalUtils.convertToDecimals(positionDecimalPlaces,
-                new BigInteger(marketData.getBestOfferVolume()));
+        return FixedPoint.toDouble(marketData.getBestOfferVolumeValue(), marketData.getBestOfferVolume(), positionDecimalPlaces);
     }
     public double getOpenInterest() {
         if(marketData == null) return 0;
-        return DecimalUtils.convertToDecimals(positionDecimalPlaces,
-                new BigInteger(marketData.getOpenInterest()));
+        return FixedPoint.toDouble(marketData.getOpenInterestValue(), marketData.getOpenInterest(), positionDecimalPlaces);
     }
 }
\ No newline at end of file
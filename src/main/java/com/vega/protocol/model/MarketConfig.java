@@ -0,0 +1,11 @@
+package com.vega.protocol.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class MarketConfig {
+    private String marketId;
+    private String binanceMarket;
+}
@@ -1,15 +1,62 @@
 package com.vega.protocol.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.vega.protocol.utils.FixedPoint;
 import lombok.Data;
 import lombok.experimental.Accessors;
 
 @Data
 @Accessors(chain = true)
 public class MarketData {
+    private String marketId;
+    private String marketState;
+    private String marketTradingMode;
     private String markPrice;
     private String bestBidPrice;
     private String bestOfferPrice;
     private String bestBidVolume;
     private String bestOfferVolume;
     private String openInterest;
+    @JsonIgnore
+    private long markPriceValue;
+    @JsonIgnore
+    private long bestBidPriceValue;
+    @JsonIgnore
+    private long bestOfferPriceValue;
+    @JsonIgnore
+    private long bestBidVolumeValue;
+    @JsonIgnore
+    private long bestOfferVolumeValue;
+    @JsonIgnore
+    private long openInterestValue;
+    public MarketData setMarkPrice(String markPrice) {
+        this.markPrice = markPrice;
+        this.markPriceValue = FixedPoint.parse(markPrice);
+        return this;
+    }
+    public MarketData setBestBidPrice(String bestBidPrice) {
+        this.bestBidPrice = bestBidPrice;
+        this.bestBidPriceValue = FixedPoint.parse(bestBidPrice);
+        return this;
+    }
+    public MarketData setBestOfferPrice(String bestOfferPrice) {
+        this.bestOfferPrice = bestOfferPrice;
+        this.bestOfferPriceValue = FixedPoint.parse(bestOfferPrice);
+        return this;
+    }
+    public MarketData setBestBidVolume(String bestBidVolume) {
+        this.bestBidVolume = bestBidVolume;
+        this.bestBidVolumeValue = FixedPoint.parse(bestBidVolume);
+        return this;
+    }
+    public MarketData setBestOfferVolume(String bestOfferVolume) {
+        this.bestOfferVolume = bestOfferVolume;
+        this.bestOfferVolumeValue = FixedPoint.parse(bestOfferVolume);
+        return this;
+    }
+    public MarketData setOpenInterest(String openInterest) {
+        this.openInterest = openInterest;
+        this.openInterestValue = FixedPoint.parse(openInterest);
+        return this;
+    }
 }
\ No newline at end of file
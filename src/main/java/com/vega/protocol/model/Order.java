@@ -1,38 +1,100 @@
 package com.vega.protocol.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.vega.protocol.exception.TradingException;
 import com.vega.protocol.store.VegaStore;
-import com.vega.protocol.utils.DecimalUtils;
+import com.vega.protocol.utils.FixedPoint;
+import com.vega.protocol.utils.TimeUtils;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.Accessors;
 import org.apache.commons.lang3.StringUtils;
 
-import java.math.BigInteger;
+import java.util.Objects;
 
 @Data
 @Accessors(chain = true)
+@EqualsAndHashCode(doNotUseGetters = true)
 public class Order {
     private String id;
     private String marketId;
     private String size;
     private String remaining;
     private String price;
+    private String side;
     private String type;
     private String timeInForce;
     private String status;
     private String partyId;
+    private String version;
+    private String updatedAt;
+    @JsonIgnore
+    private long versionValue;
+    @JsonIgnore
+    private long updatedAtValue;
+    @JsonIgnore
+    private long sizeValue;
+    @JsonIgnore
+    private long remainingValue;
+    @JsonIgnore
+    private long priceValue;
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient InstrumentContext instrumentContext;
+    public Order setSize(String size) {
+        this.size = size;
+        this.sizeValue = FixedPoint.parse(size);
+        return this;
+    }
+    public Order setRemaining(String remaining) {
+        this.remaining = remaining;
+        this.remainingValue = FixedPoint.parse(remaining);
+        return this;
+    }
+    public Order setVersion(String version) {
+        this.version = version;
+        this.versionValue = StringUtils.isEmpty(version) ? 0 : FixedPoint.parse(version);
+        return this;
+    }
+    public Order setUpdatedAt(String updatedAt) {
+        this.updatedAt = updatedAt;
+        this.updatedAtValue = TimeUtils.toEpochNanos(updatedAt);
+        return this;
+    }
+    public Order setPrice(String price) {
+        this.price = price;
+        this.priceValue = FixedPoint.parse(price);
+        return this;
+    }
     public Market getMarket() {
         return VegaStore.getInstance().getMarketById(marketId).orElseThrow(() ->
                 new TradingException(String.format("market not found: %s", marketId)));
     }
     public double getPrice() {
         if(StringUtils.isEmpty(price)) return 0;
-        return DecimalUtils.convertToDecimals(getMarket().getDecimalPlaces(),
-                new BigInteger(price));
+        return getInstrumentContext().toPrice(priceValue, price);
+    }
+    @JsonIgnore
+    public boolean isTraded() {
+        if("STATUS_FILLED".equals(status)) return true;
+        return !StringUtils.isEmpty(remaining) && !remaining.equals(size);
     }
     public double getSize() {
         if(StringUtils.isEmpty(size)) return 0;
-        return DecimalUtils.convertToDecimals(getMarket().getPositionDecimalPlaces(),
-                new BigInteger(size));
+        return getInstrumentContext().toSize(sizeValue, size);
+    }
+    private InstrumentContext getInstrumentContext() {
+        InstrumentContext context = instrumentContext;
+        if(context == null || !context.isValid() || !Objects.equals(marketId, context.getMarketId())) {
+            context = VegaStore.getInstance().getInstrumentContext(marketId);
+            instrumentContext = context;
+        }
+        return context;
     }
-}
\ No newline at end of file
+}
@@ -1,17 +1,26 @@
 package com.vega.protocol.model;
 
 import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.vega.protocol.exception.TradingException;
 import com.vega.protocol.store.VegaStore;
-import com.vega.protocol.utils.DecimalUtils;
+import com.vega.protocol.utils.FixedPoint;
+import com.vega.protocol.utils.TimeUtils;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.Accessors;
 import org.apache.commons.lang3.StringUtils;
 
 import java.math.BigInteger;
+import java.util.Objects;
 
 @Data
 @Accessors(chain = true)
+@EqualsAndHashCode(doNotUseGetters = true)
 public class Position {
     private String partyId;
     private String marketId;
@@ -21,10 +30,53 @@ public class Position {
     private String unrealisedPnl;
     @JsonAlias("realisedPNL")
     private String realisedPnl;
+    private String updatedAt;
+    @JsonIgnore
+    private long updatedAtValue;
+    @JsonIgnore
+    private long openVolumeValue;
+    @JsonIgnore
+    private long averageEntryPriceValue;
+    @JsonIgnore
+    private long unrealisedPnlValue;
+    @JsonIgnore
+    private long realisedPnlValue;
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient InstrumentContext instrumentContext;
+    public Position setOpenVolume(String openVolume) {
+        this.openVolume = openVolume;
+        this.openVolumeValue = FixedPoint.parse(openVolume);
+        return this;
+    }
+    public Position setAverageEntryPrice(String averageEntryPrice) {
+        this.averageEntryPrice = averageEntryPrice;
+        this.averageEntryPriceValue = FixedPoint.parse(averageEntryPrice);
+        return this;
+    }
+    public Position setUnrealisedPnl(String unrealisedPnl) {
+        this.unrealisedPnl = unrealisedPnl;
+        this.unrealisedPnlValue = FixedPoint.parse(unrealisedPnl);
+        return this;
+    }
+    public Position setRealisedPnl(String realisedPnl) {
+        this.realisedPnl = realisedPnl;
+        this.realisedPnlValue = FixedPoint.parse(realisedPnl);
+        return this;
+    }
+    public Position setUpdatedAt(String updatedAt) {
+        this.updatedAt = updatedAt;
+        this.updatedAtValue = TimeUtils.toEpochNanos(updatedAt);
+        return this;
+    }
     public String getSide() {
-        if(getOpenVolume() > 0) {
+        int sign = openVolumeValue == FixedPoint.OVERFLOW ?
+                new BigInteger(openVolume).signum() : Long.signum(openVolumeValue);
+        if(sign > 0) {
             return "BUY";
-        } else if(getOpenVolume() < 0) {
+        } else if(sign < 0) {
             return "SELL";
         }
         return null;
@@ -33,23 +85,35 @@ public class Position {
         return VegaStore.getInstance().getMarketById(marketId).orElseThrow(() ->
                 new TradingException(String.format("market not found: %s", marketId)));
     }
+    // the getters without a context use the store's latest number formats; pass the context from a
+    // StoreSnapshot to read values consistent with that snapshot
     public double getOpenVolume() {
-        return DecimalUtils.convertToDecimals(getMarket().getPositionDecimalPlaces(),
-                new BigInteger(openVolume));
+        return getOpenVolume(getInstrumentContext());
+    }
+    public double getOpenVolume(InstrumentContext context) {
+        return context.toSize(openVolumeValue, openVolume);
     }
     public double getAverageEntryPrice() {
+        return getAverageEntryPrice(getInstrumentContext());
+    }
+    public double getAverageEntryPrice(InstrumentContext context) {
         if(StringUtils.isEmpty(averageEntryPrice)) return 0;
-        return DecimalUtils.convertToDecimals(getMarket().getDecimalPlaces(),
-                new BigInteger(averageEntryPrice));
+        return context.toPrice(averageEntryPriceValue, averageEntryPrice);
     }
     public double getUnrealisedPnl() {
         if(StringUtils.isEmpty(unrealisedPnl)) return 0;
-        return DecimalUtils.convertToDecimals(getMarket().getSettlementAsset().getDecimals(),
-                new BigInteger(unrealisedPnl));
+        return getInstrumentContext().toAssetAmount(unrealisedPnlValue, unrealisedPnl);
     }
     public double getRealisedPnl() {
         if(StringUtils.isEmpty(realisedPnl)) return 0;
-        return DecimalUtils.convertToDecimals(getMarket().getSettlementAsset().getDecimals(),
-                new BigInteger(realisedPnl));
+        return getInstrumentContext().toAssetAmount(realisedPnlValue, realisedPnl);
+    }
+    private InstrumentContext getInstrumentContext() {
+        InstrumentContext context = instrumentContext;
+        if(context == null || !context.isValid() || !Objects.equals(marketId, context.getMarketId())) {
+            context = VegaStore.getInstance().getInstrumentContext(marketId);
+            instrumentContext = context;
+        }
+        return context;
     }
-}
\ No newline at end of file
+}
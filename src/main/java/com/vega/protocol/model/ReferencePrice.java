@@ -1,5 +1,6 @@
 package com.vega.protocol.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.experimental.Accessors;
 
@@ -9,4 +10,6 @@ public class ReferencePrice {
     private String symbol;
     private double bidPrice;
     private double askPrice;
+    @JsonIgnore
+    private long receivedNanos;
 }
@@ -0,0 +1,22 @@
+package com.vega.protocol.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Accessors(chain = true)
+public class StateDelta {
+    private String version;
+    private List<Market> markets = new ArrayList<>();
+    private List<Order> orders = new ArrayList<>();
+    private List<Position> positions = new ArrayList<>();
+    private List<Asset> assets = new ArrayList<>();
+    private List<Account> accounts = new ArrayList<>();
+    private List<ReferencePrice> referencePrices = new ArrayList<>();
+    private Map<String, List<String>> removed = new LinkedHashMap<>();
+}
@@ -0,0 +1,20 @@
+package com.vega.protocol.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.Set;
+
+@Data
+@Accessors(chain = true)
+public class TransactionResult {
+    private String txHash;
+    private Status status;
+    private int code;
+    private String info;
+    private long height;
+    private Set<String> marketIds = Set.of();
+    public enum Status {
+        ACCEPTED, REJECTED, NOT_FOUND
+    }
+}
@@ -2,13 +2,13 @@ package com.vega.protocol.store;
 
 import com.vega.protocol.model.ReferencePrice;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class BinanceStore {
-    private final Map<String, ReferencePrice> referencePrices = new ConcurrentHashMap<>();
+    private volatile ReferencePriceSlot[] slots = new ReferencePriceSlot[0];
     private static final BinanceStore instance = new BinanceStore();
     private BinanceStore() {}
 
@@ -27,7 +27,47 @@ public class BinanceStore {
      * @param referencePrice {@link ReferencePrice}
      */
     public void save(final ReferencePrice referencePrice) {
-        referencePrices.put(referencePrice.getSymbol(), referencePrice);
+        getSlot(referencePrice.getSymbol())
+                .write(referencePrice.getBidPrice(), referencePrice.getAskPrice(), referencePrice.getReceivedNanos());
+    }
+
+    /**
+     * Get the price slot for a symbol, creating it the first time the symbol is seen
+     *
+     * @param symbol the market symbol
+     *
+     * @return {@link ReferencePriceSlot}
+     */
+    public ReferencePriceSlot getSlot(final String symbol) {
+        return getSlot(symbol, 0, symbol.length());
+    }
+
+    /**
+     * Get the price slot for a symbol held in a region of a character sequence, so that the feed can look
+     * up a slot without copying the symbol out of the message
+     *
+     * @param source the character sequence
+     * @param start the start index of the symbol, inclusive
+     * @param end the end index of the symbol, exclusive
+     *
+     * @return {@link ReferencePriceSlot}
+     */
+    public ReferencePriceSlot getSlot(final CharSequence source, final int start, final int end) {
+        ReferencePriceSlot slot = findSlot(slots, source, start, end);
+        if(slot != null) {
+            return slot;
+        }
+        synchronized (this) {
+            ReferencePriceSlot[] current = slots;
+            slot = findSlot(current, source, start, end);
+            if(slot == null) {
+                slot = new ReferencePriceSlot(source.subSequence(start, end).toString());
+                ReferencePriceSlot[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = slot;
+                slots = updated;
+            }
+            return slot;
+        }
     }
 
     /**
@@ -38,11 +78,11 @@ public class BinanceStore {
      * @return {@link Optional < ReferencePrice >}
      */
     public Optional<ReferencePrice> getReferencePriceByMarket(final String symbol) {
-        ReferencePrice referencePrice = referencePrices.get(symbol);
-        if(referencePrice == null) {
+        ReferencePriceSlot slot = findSlot(slots, symbol, 0, symbol.length());
+        if(slot == null || !slot.isPresent()) {
             return Optional.empty();
         }
-        return Optional.of(referencePrice);
+        return Optional.of(slot.read(new ReferencePrice()));
     }
 
     /**
@@ -51,6 +91,94 @@ public class BinanceStore {
      * @return {@link List<ReferencePrice>}
      */
     public List<ReferencePrice> getReferencePrices() {
-        return referencePrices.values().stream().toList();
+        List<ReferencePrice> referencePrices = new ArrayList<>();
+        for(ReferencePriceSlot slot : slots) {
+            if(slot.isPresent()) {
+                referencePrices.add(slot.read(new ReferencePrice()));
+            }
+        }
+        return referencePrices;
+    }
+
+    /**
+     * Get all price slots
+     *
+     * @return read-only view of the slots
+     */
+    public List<ReferencePriceSlot> getSlots() {
+        return Arrays.asList(slots);
+    }
+
+    /**
+     * Get the store version, which goes up every time a price is published. It is worked out from the
+     * slots on demand, so publishing a price doesn't touch any shared counter.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        long version = slots.length;
+        for(ReferencePriceSlot slot : slots) {
+            version += slot.getVersion();
+        }
+        return version;
+    }
+
+    /**
+     * Clear all reference prices. Slots already handed out keep their last prices but are no longer
+     * part of the store.
+     */
+    public synchronized void truncate() {
+        slots = new ReferencePriceSlot[0];
+    }
+
+    /**
+     * Find an existing slot by symbol
+     *
+     * @param slots the slots to search
+     * @param source the character sequence holding the symbol
+     * @param start the start index of the symbol, inclusive
+     * @param end the end index of the symbol, exclusive
+     *
+     * @return {@link ReferencePriceSlot}, or null if there isn't one
+     */
+    private static ReferencePriceSlot findSlot(
+            final ReferencePriceSlot[] slots,
+            final CharSequence source,
+            final int start,
+            final int end
+    ) {
+        for(ReferencePriceSlot slot : slots) {
+            if(regionEquals(slot.getSymbol(), source, start, end)) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compare a string with a region of a character sequence
+     *
+     * @param value the string
+     * @param source the character sequence
+     * @param start the start index, inclusive
+     * @param end the end index, exclusive
+     *
+     * @return true if they hold the same characters
+     */
+    private static boolean regionEquals(
+            final String value,
+            final CharSequence source,
+            final int start,
+            final int end
+    ) {
+        if(value.length() != end - start) {
+            return false;
+        }
+        for(int i=0; i<value.length(); i++) {
+            if(value.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,446 @@
+package com.vega.protocol.store;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Immutable map built as a hash array mapped trie. Each level of the trie consumes five bits of the key's
+ * hash, and a node only holds slots for the children it has, picked out by a bitmap. Adding, replacing or
+ * removing a key copies the nodes on the path to it, at most seven small arrays, and shares every other
+ * node with the map it was derived from, so writes cost about the same however big the map grows and old
+ * versions stay valid for as long as anyone holds them.
+ * <p>
+ * Keys whose hashes are identical end up together in a collision node at the bottom of the trie. Null
+ * keys are allowed; null values are not, because {@link #with(Object, Object)} treats null as removal.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+final class PersistentMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Object root;
+    private final int size;
+    private Collection<V> values;
+
+    /**
+     * @param root the root node, an {@link Entry}, {@link Node} or {@link Collision}, or null if empty
+     * @param size the number of entries
+     */
+    private PersistentMap(
+            final Object root,
+            final int size
+    ) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Get the empty map
+     *
+     * @return {@link PersistentMap}
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Get the number of entries
+     *
+     * @return the size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Check if the map has no entries
+     *
+     * @return true if empty
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the value for a key
+     *
+     * @param key the key
+     *
+     * @return the value, or null if the key isn't present
+     */
+    @SuppressWarnings("unchecked")
+    V get(final Object key) {
+        int hash = hash(key);
+        Object node = root;
+        int shift = 0;
+        while(node != null) {
+            if(node instanceof Entry<?, ?> entry) {
+                return entry.hash == hash && Objects.equals(entry.key, key) ? (V) entry.value : null;
+            }
+            if(node instanceof Collision collision) {
+                return collision.hash == hash ? (V) collision.get(key) : null;
+            }
+            Node branch = (Node) node;
+            int bit = bit(hash, shift);
+            if((branch.bitmap & bit) == 0) {
+                return null;
+            }
+            node = branch.children[branch.index(bit)];
+            shift += BITS;
+        }
+        return null;
+    }
+
+    /**
+     * Check if a key is present
+     *
+     * @param key the key
+     *
+     * @return true if present
+     */
+    boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Get the map with a key set to a value
+     *
+     * @param key the key
+     * @param value the value, or null to remove the key
+     *
+     * @return the new map, or this map if nothing changed
+     */
+    PersistentMap<K, V> with(final K key, final V value) {
+        if(value == null) {
+            return without(key);
+        }
+        V current = get(key);
+        if(current == value) {
+            return this;
+        }
+        Entry<K, V> entry = new Entry<>(key, hash(key), value);
+        Object updated = root == null ? entry : put(root, 0, entry);
+        return new PersistentMap<>(updated, current == null ? size + 1 : size);
+    }
+
+    /**
+     * Get the map without a key
+     *
+     * @param key the key
+     *
+     * @return the new map, or this map if the key wasn't present
+     */
+    PersistentMap<K, V> without(final K key) {
+        if(!containsKey(key)) {
+            return this;
+        }
+        Object updated = remove(root, 0, key, hash(key));
+        return updated == null ? empty() : new PersistentMap<>(updated, size - 1);
+    }
+
+    /**
+     * Get the values. The collection is a read-only view over this version of the map.
+     *
+     * @return {@link Collection}
+     */
+    Collection<V> values() {
+        Collection<V> view = values;
+        if(view == null) {
+            view = new Values();
+            values = view;
+        }
+        return view;
+    }
+
+    /**
+     * Put an entry into a subtree whose root is at the given depth
+     *
+     * @param node the subtree
+     * @param shift the number of hash bits consumed above it
+     * @param entry the new entry
+     *
+     * @return the new subtree
+     */
+    private static Object put(final Object node, final int shift, final Entry<?, ?> entry) {
+        if(node instanceof Entry<?, ?> existing) {
+            if(existing.hash == entry.hash && Objects.equals(existing.key, entry.key)) {
+                return entry;
+            }
+            return merge(existing, existing.hash, entry, shift);
+        }
+        if(node instanceof Collision collision) {
+            if(collision.hash == entry.hash) {
+                return collision.with(entry);
+            }
+            return merge(collision, collision.hash, entry, shift);
+        }
+        Node branch = (Node) node;
+        int bit = bit(entry.hash, shift);
+        int index = branch.index(bit);
+        if((branch.bitmap & bit) == 0) {
+            Object[] children = new Object[branch.children.length + 1];
+            System.arraycopy(branch.children, 0, children, 0, index);
+            children[index] = entry;
+            System.arraycopy(branch.children, index, children, index + 1, branch.children.length - index);
+            return new Node(branch.bitmap | bit, children);
+        }
+        Object[] children = branch.children.clone();
+        children[index] = put(children[index], shift + BITS, entry);
+        return new Node(branch.bitmap, children);
+    }
+
+    /**
+     * Build the smallest subtree that holds an existing node and a new entry with a different hash
+     *
+     * @param existing an {@link Entry} or {@link Collision}
+     * @param existingHash the hash of the existing node
+     * @param entry the new entry
+     * @param shift the number of hash bits consumed above the subtree
+     *
+     * @return the subtree
+     */
+    private static Object merge(
+            final Object existing,
+            final int existingHash,
+            final Entry<?, ?> entry,
+            final int shift
+    ) {
+        if(existingHash == entry.hash) {
+            return new Collision(entry.hash, new Entry<?, ?>[] {(Entry<?, ?>) existing, entry});
+        }
+        int existingBit = bit(existingHash, shift);
+        int entryBit = bit(entry.hash, shift);
+        if(existingBit == entryBit) {
+            return new Node(existingBit, new Object[] {merge(existing, existingHash, entry, shift + BITS)});
+        }
+        Object[] children = Integer.compareUnsigned(existingBit, entryBit) < 0 ?
+                new Object[] {existing, entry} : new Object[] {entry, existing};
+        return new Node(existingBit | entryBit, children);
+    }
+
+    /**
+     * Remove a key that is known to be present from a subtree
+     *
+     * @param node the subtree
+     * @param shift the number of hash bits consumed above it
+     * @param key the key
+     * @param hash the hash of the key
+     *
+     * @return the new subtree, or null if it is empty
+     */
+    private static Object remove(final Object node, final int shift, final Object key, final int hash) {
+        if(node instanceof Entry<?, ?>) {
+            return null;
+        }
+        if(node instanceof Collision collision) {
+            return collision.without(key);
+        }
+        Node branch = (Node) node;
+        int bit = bit(hash, shift);
+        int index = branch.index(bit);
+        Object child = remove(branch.children[index], shift + BITS, key, hash);
+        if(child != null) {
+            Object[] children = branch.children.clone();
+            children[index] = child;
+            return new Node(branch.bitmap, children);
+        }
+        if(branch.children.length == 1) {
+            return null;
+        }
+        if(branch.children.length == 2 && !(branch.children[1 - index] instanceof Node)) {
+            // a lone entry or collision moves up, so that lookups stop as soon as they reach it
+            return branch.children[1 - index];
+        }
+        Object[] children = new Object[branch.children.length - 1];
+        System.arraycopy(branch.children, 0, children, 0, index);
+        System.arraycopy(branch.children, index + 1, children, index, children.length - index);
+        return new Node(branch.bitmap & ~bit, children);
+    }
+
+    /**
+     * Spread the key's hash code, so that keys which only differ in their high bits still branch early
+     *
+     * @param key the key
+     *
+     * @return the hash
+     */
+    private static int hash(final Object key) {
+        int h = Objects.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Get the bitmap bit for a hash at a depth
+     *
+     * @param hash the hash
+     * @param shift the number of hash bits consumed above the node
+     *
+     * @return the bit
+     */
+    private static int bit(final int hash, final int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * A key and its value
+     */
+    private record Entry<K, V>(K key, int hash, V value) {}
+
+    /**
+     * An inner node. Children are {@link Entry}, {@link Node} or {@link Collision} objects, one for each bit
+     * set in the bitmap, in bit order.
+     */
+    private static final class Node {
+
+        private final int bitmap;
+        private final Object[] children;
+
+        private Node(final int bitmap, final Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        private int index(final int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    /**
+     * Entries whose keys have the same hash
+     */
+    private static final class Collision {
+
+        private final int hash;
+        private final Entry<?, ?>[] entries;
+
+        private Collision(final int hash, final Entry<?, ?>[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+
+        private Object get(final Object key) {
+            for(Entry<?, ?> entry : entries) {
+                if(Objects.equals(entry.key, key)) {
+                    return entry.value;
+                }
+            }
+            return null;
+        }
+
+        private Collision with(final Entry<?, ?> entry) {
+            for(int i=0; i<entries.length; i++) {
+                if(Objects.equals(entries[i].key, entry.key)) {
+                    Entry<?, ?>[] updated = entries.clone();
+                    updated[i] = entry;
+                    return new Collision(hash, updated);
+                }
+            }
+            Entry<?, ?>[] updated = Arrays.copyOf(entries, entries.length + 1);
+            updated[entries.length] = entry;
+            return new Collision(hash, updated);
+        }
+
+        private Object without(final Object key) {
+            if(entries.length == 2) {
+                return Objects.equals(entries[0].key, key) ? entries[1] : entries[0];
+            }
+            Entry<?, ?>[] updated = new Entry<?, ?>[entries.length - 1];
+            int j = 0;
+            for(Entry<?, ?> entry : entries) {
+                if(!Objects.equals(entry.key, key)) {
+                    updated[j++] = entry;
+                }
+            }
+            return new Collision(hash, updated);
+        }
+    }
+
+    /**
+     * Read-only view of the values, walking the trie depth first
+     */
+    private final class Values extends AbstractCollection<V> {
+
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Depth-first walk over the trie. The deepest path is seven nodes and a collision, so the stack of
+     * positions is fixed in size.
+     */
+    private final class ValueIterator implements Iterator<V> {
+
+        private final Object[][] stack = new Object[9][];
+        private final int[] positions = new int[9];
+        private int depth = -1;
+        private Object next;
+
+        private ValueIterator() {
+            if(root != null) {
+                descend(root);
+                advance();
+            }
+        }
+
+        private void descend(final Object node) {
+            if(node instanceof Node branch) {
+                stack[++depth] = branch.children;
+            } else if(node instanceof Collision collision) {
+                stack[++depth] = collision.entries;
+            } else {
+                stack[++depth] = new Object[] {node};
+            }
+            positions[depth] = 0;
+        }
+
+        private void advance() {
+            next = null;
+            while(depth >= 0) {
+                Object[] children = stack[depth];
+                if(positions[depth] == children.length) {
+                    depth--;
+                    continue;
+                }
+                Object child = children[positions[depth]++];
+                if(child instanceof Entry<?, ?>) {
+                    next = child;
+                    return;
+                }
+                descend(child);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if(next == null) {
+                throw new NoSuchElementException();
+            }
+            V value = (V) ((Entry<?, ?>) next).value;
+            advance();
+            return value;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.vega.protocol.store;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * What a {@link VegaStore#reconcile} pass did with the fetched entities
+ */
+@Data
+@Accessors(chain = true)
+public class ReconcileResult {
+    private int added;
+    private int changed;
+    private int removed;
+    private int unchanged;
+    private int stale;
+}
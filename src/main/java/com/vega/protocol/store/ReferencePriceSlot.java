@@ -0,0 +1,101 @@
+package com.vega.protocol.store;
+
+import com.vega.protocol.model.ReferencePrice;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Preallocated best bid and ask for one symbol. There is a single writer (the feed thread) and any number
+ * of readers. Updates are published with a sequence lock: the writer makes the sequence odd, writes the
+ * prices and makes it even again, and readers retry until they see the same even sequence before and
+ * after reading. Neither side takes a lock or allocates.
+ */
+public final class ReferencePriceSlot {
+
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(ReferencePriceSlot.class, "sequence", long.class);
+        } catch(ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String symbol;
+    private volatile long sequence;
+    private double bidPrice;
+    private double askPrice;
+    private long receivedNanos;
+
+    ReferencePriceSlot(final String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Get the symbol
+     *
+     * @return the symbol
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Publish new prices; must only be called from one thread at a time
+     *
+     * @param bidPrice the best bid price
+     * @param askPrice the best ask price
+     * @param receivedNanos when the prices were received, from {@link System#nanoTime()}
+     */
+    public void write(final double bidPrice, final double askPrice, final long receivedNanos) {
+        long seq = (long) SEQUENCE.getOpaque(this);
+        SEQUENCE.setOpaque(this, seq + 1);
+        VarHandle.storeStoreFence();
+        this.bidPrice = bidPrice;
+        this.askPrice = askPrice;
+        this.receivedNanos = receivedNanos;
+        SEQUENCE.setRelease(this, seq + 2);
+    }
+
+    /**
+     * Get the number of updates published to the slot
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return (long) SEQUENCE.getAcquire(this) >>> 1;
+    }
+
+    /**
+     * Check if any prices have been published yet
+     *
+     * @return true if the slot has been written
+     */
+    public boolean isPresent() {
+        return sequence != 0;
+    }
+
+    /**
+     * Copy a consistent pair of prices into the target
+     *
+     * @param target {@link ReferencePrice} to copy into
+     *
+     * @return the target
+     */
+    public ReferencePrice read(final ReferencePrice target) {
+        while(true) {
+            long before = (long) SEQUENCE.getAcquire(this);
+            double bid = bidPrice;
+            double ask = askPrice;
+            long received = receivedNanos;
+            VarHandle.loadLoadFence();
+            long after = (long) SEQUENCE.getVolatile(this);
+            if(before == after && (before & 1) == 0) {
+                return target.setSymbol(symbol).setBidPrice(bid).setAskPrice(ask).setReceivedNanos(received);
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.vega.protocol.store;
+
+/**
+ * Notified after an entity in the {@link VegaStore} is saved or removed. Called on the thread that made
+ * the change, so implementations must be quick.
+ */
+public interface StoreListener {
+
+    /**
+     * The kinds of entity held by the store
+     */
+    enum EntityType { MARKET, ORDER, POSITION, ASSET, ACCOUNT }
+
+    /**
+     * The kinds of change
+     */
+    enum ChangeType { ADDED, CHANGED, REMOVED }
+
+    /**
+     * Handle a change
+     *
+     * @param type {@link EntityType}
+     * @param change {@link ChangeType}
+     * @param id the entity ID
+     * @param entity the new entity, or null if it was removed
+     */
+    void onChange(EntityType type, ChangeType change, String id, Object entity);
+
+    /**
+     * Handle the whole store being cleared
+     */
+    default void onClear() {}
+}
@@ -0,0 +1,420 @@
+package com.vega.protocol.store;
+
+import com.vega.protocol.model.*;
+import com.vega.protocol.store.StoreListener.EntityType;
+
+import java.util.*;
+
+/**
+ * An immutable view of the {@link VegaStore} at one version. The store publishes a new snapshot with every
+ * write, so a reader gets markets, positions, accounts and orders that all belong together from a single
+ * volatile read, and can hold on to them for as long as it likes while the feeds keep writing.
+ * <p>
+ * Snapshots share structure with the one before them. Every map is a {@link PersistentMap}, so a write
+ * copies only the handful of trie nodes on the path to the entry it changes, whatever the size of the
+ * store. Orders are grouped by market and accounts by owner and asset, and those groups are persistent maps
+ * too, so an order update touches a path through the market's orders and a path through the map of
+ * markets. The entities themselves are shared as well, which is why the store replaces them instead of
+ * modifying them.
+ * <p>
+ * The snapshot also carries the {@link InstrumentContext} of every market and asset, built from the markets
+ * and assets in it, so numbers read through {@link #getInstrumentContext(String)} and
+ * {@link #getAssetContext(String)} use the decimal places of the same version as the entities. A market's
+ * context is carried over until its decimal places or settlement asset change.
+ */
+public final class StoreSnapshot {
+
+    private static final StoreSnapshot EMPTY = new StoreSnapshot(0, PersistentMap.empty(), PersistentMap.empty(),
+            PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty(),
+            PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty());
+
+    private final long version;
+    private final PersistentMap<String, Market> markets;
+    private final PersistentMap<String, Asset> assets;
+    private final PersistentMap<String, Position> positions;
+    private final PersistentMap<String, Account> accounts;
+    // owner -> asset ID -> account ID -> account
+    private final PersistentMap<String, PersistentMap<String, PersistentMap<String, Account>>> accountsByOwner;
+    private final PersistentMap<String, PersistentMap<String, Order>> ordersByMarket;
+    // every open order by ID, so that removing one doesn't have to search every market
+    private final PersistentMap<String, Order> orders;
+    private final PersistentMap<String, InstrumentContext> marketContexts;
+    private final PersistentMap<String, InstrumentContext> assetContexts;
+
+    private StoreSnapshot(
+            final long version,
+            final PersistentMap<String, Market> markets,
+            final PersistentMap<String, Asset> assets,
+            final PersistentMap<String, Position> positions,
+            final PersistentMap<String, Account> accounts,
+            final PersistentMap<String, PersistentMap<String, PersistentMap<String, Account>>> accountsByOwner,
+            final PersistentMap<String, PersistentMap<String, Order>> ordersByMarket,
+            final PersistentMap<String, Order> orders,
+            final PersistentMap<String, InstrumentContext> marketContexts,
+            final PersistentMap<String, InstrumentContext> assetContexts
+    ) {
+        this.version = version;
+        this.markets = markets;
+        this.assets = assets;
+        this.positions = positions;
+        this.accounts = accounts;
+        this.accountsByOwner = accountsByOwner;
+        this.ordersByMarket = ordersByMarket;
+        this.orders = orders;
+        this.marketContexts = marketContexts;
+        this.assetContexts = assetContexts;
+    }
+
+    /**
+     * Get the store version this snapshot was taken at
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get market by ID
+     *
+     * @param id the market ID
+     *
+     * @return {@link Optional<Market>}
+     */
+    public Optional<Market> getMarket(final String id) {
+        return Optional.ofNullable(markets.get(id));
+    }
+
+    /**
+     * Get asset by ID
+     *
+     * @param id the asset ID
+     *
+     * @return {@link Optional<Asset>}
+     */
+    public Optional<Asset> getAsset(final String id) {
+        return Optional.ofNullable(assets.get(id));
+    }
+
+    /**
+     * Get the number formats of a market as of this snapshot
+     *
+     * @param marketId the market ID
+     *
+     * @return {@link Optional<InstrumentContext>}
+     */
+    public Optional<InstrumentContext> getInstrumentContext(final String marketId) {
+        return Optional.ofNullable(marketContexts.get(marketId));
+    }
+
+    /**
+     * Get the number format of an asset as of this snapshot
+     *
+     * @param assetId the asset ID
+     *
+     * @return {@link Optional<InstrumentContext>} with only the settlement asset populated
+     */
+    public Optional<InstrumentContext> getAssetContext(final String assetId) {
+        return Optional.ofNullable(assetContexts.get(assetId));
+    }
+
+    /**
+     * Get position by market ID
+     *
+     * @param marketId the market ID
+     *
+     * @return {@link Optional<Position>}
+     */
+    public Optional<Position> getPosition(final String marketId) {
+        return Optional.ofNullable(positions.get(marketId));
+    }
+
+    /**
+     * Get open orders in a market
+     *
+     * @param marketId the market ID
+     *
+     * @return read-only collection of the orders
+     */
+    public Collection<Order> getOrders(final String marketId) {
+        PersistentMap<String, Order> orders = ordersByMarket.get(marketId);
+        return orders == null ? List.of() : orders.values();
+    }
+
+    /**
+     * Get the accounts of a party for an asset
+     *
+     * @param owner the party ID
+     * @param assetId the asset ID
+     *
+     * @return read-only collection of the accounts
+     */
+    public Collection<Account> getAccounts(final String owner, final String assetId) {
+        PersistentMap<String, PersistentMap<String, Account>> byAsset = accountsByOwner.get(owner);
+        PersistentMap<String, Account> result = byAsset == null ? null : byAsset.get(assetId);
+        return result == null ? List.of() : result.values();
+    }
+
+    /**
+     * Get markets
+     *
+     * @return {@link List<Market>}
+     */
+    public List<Market> getMarkets() {
+        return List.copyOf(markets.values());
+    }
+
+    /**
+     * Get assets
+     *
+     * @return {@link List<Asset>}
+     */
+    public List<Asset> getAssets() {
+        return List.copyOf(assets.values());
+    }
+
+    /**
+     * Get positions
+     *
+     * @return {@link List<Position>}
+     */
+    public List<Position> getPositions() {
+        return List.copyOf(positions.values());
+    }
+
+    /**
+     * Get accounts
+     *
+     * @return {@link List<Account>}
+     */
+    public List<Account> getAccounts() {
+        return List.copyOf(accounts.values());
+    }
+
+    /**
+     * Get open orders
+     *
+     * @return {@link List<Order>}
+     */
+    public List<Order> getOrders() {
+        return List.copyOf(orders.values());
+    }
+
+    /**
+     * Get an empty snapshot at a version
+     *
+     * @param version the store version
+     *
+     * @return {@link StoreSnapshot}
+     */
+    static StoreSnapshot empty(final long version) {
+        return EMPTY.at(version);
+    }
+
+    /**
+     * Get the snapshot that follows this one after a write
+     *
+     * @param version the store version after the write
+     * @param type {@link EntityType}
+     * @param id the entity ID
+     * @param entity the new entity, or null if it was removed
+     *
+     * @return {@link StoreSnapshot}
+     */
+    StoreSnapshot with(final long version, final EntityType type, final String id, final Object entity) {
+        return switch (type) {
+            case MARKET -> withMarket(version, id, (Market) entity);
+            case ASSET -> withAsset(version, id, (Asset) entity);
+            case POSITION -> new StoreSnapshot(version, markets, assets, positions.with(id, (Position) entity),
+                    accounts, accountsByOwner, ordersByMarket, orders, marketContexts, assetContexts);
+            case ACCOUNT -> withAccount(version, id, (Account) entity);
+            case ORDER -> withOrder(version, id, (Order) entity);
+        };
+    }
+
+    /**
+     * Get this snapshot at another version
+     *
+     * @param version the store version
+     *
+     * @return {@link StoreSnapshot}
+     */
+    private StoreSnapshot at(final long version) {
+        return new StoreSnapshot(version, markets, assets, positions, accounts, accountsByOwner, ordersByMarket,
+                orders, marketContexts, assetContexts);
+    }
+
+    /**
+     * Replace or remove a market, rebuilding its context only if its number formats changed
+     *
+     * @param version the store version after the write
+     * @param id the market ID
+     * @param market the new market, or null if it was removed
+     *
+     * @return {@link StoreSnapshot}
+     */
+    private StoreSnapshot withMarket(final long version, final String id, final Market market) {
+        PersistentMap<String, InstrumentContext> contexts = marketContexts;
+        if(market == null) {
+            contexts = contexts.without(id);
+        } else {
+            InstrumentContext context = contexts.get(id);
+            if(context == null || context.getDecimalPlaces() != market.getDecimalPlaces() ||
+                    context.getPositionDecimalPlaces() != market.getPositionDecimalPlaces() ||
+                    !Objects.equals(context.getSettlementAssetId(), market.getSettlementAssetId())) {
+                contexts = contexts.with(id, marketContext(id, market.getSettlementAssetId(),
+                        market.getDecimalPlaces(), market.getPositionDecimalPlaces()));
+            }
+        }
+        return new StoreSnapshot(version, markets.with(id, market), assets, positions, accounts, accountsByOwner,
+                ordersByMarket, orders, contexts, assetContexts);
+    }
+
+    /**
+     * Replace or remove an asset, rebuilding its context and those of the markets that settle in it
+     *
+     * @param version the store version after the write
+     * @param id the asset ID
+     * @param asset the new asset, or null if it was removed
+     *
+     * @return {@link StoreSnapshot}
+     */
+    private StoreSnapshot withAsset(final long version, final String id, final Asset asset) {
+        PersistentMap<String, Asset> updated = assets.with(id, asset);
+        PersistentMap<String, InstrumentContext> contexts = marketContexts;
+        for(InstrumentContext context : marketContexts.values()) {
+            if(Objects.equals(id, context.getSettlementAssetId())) {
+                contexts = contexts.with(context.getMarketId(), new InstrumentContext(context.getMarketId(), id,
+                        context.getDecimalPlaces(), context.getPositionDecimalPlaces(),
+                        asset == null ? -1 : asset.getDecimals()));
+            }
+        }
+        PersistentMap<String, InstrumentContext> assetContexts = asset == null ? this.assetContexts.without(id) :
+                this.assetContexts.with(id, new InstrumentContext(null, id, 0, 0, asset.getDecimals()));
+        return new StoreSnapshot(version, markets, updated, positions, accounts, accountsByOwner, ordersByMarket,
+                orders, contexts, assetContexts);
+    }
+
+    /**
+     * Build a market's context from the assets in this snapshot
+     *
+     * @param marketId the market ID
+     * @param assetId the settlement asset ID
+     * @param decimalPlaces the market decimal places
+     * @param positionDecimalPlaces the market position decimal places
+     *
+     * @return {@link InstrumentContext}
+     */
+    private InstrumentContext marketContext(
+            final String marketId,
+            final String assetId,
+            final int decimalPlaces,
+            final int positionDecimalPlaces
+    ) {
+        Asset asset = assetId == null ? null : assets.get(assetId);
+        return new InstrumentContext(marketId, assetId, decimalPlaces, positionDecimalPlaces,
+                asset == null ? -1 : asset.getDecimals());
+    }
+
+    /**
+     * Replace or remove an account, keeping the owner and asset index in step
+     *
+     * @param version the store version after the write
+     * @param id the account ID
+     * @param account the new account, or null if it was removed
+     *
+     * @return {@link StoreSnapshot}
+     */
+    private StoreSnapshot withAccount(final long version, final String id, final Account account) {
+        Account previous = accounts.get(id);
+        PersistentMap<String, PersistentMap<String, PersistentMap<String, Account>>> index = accountsByOwner;
+        if(previous != null) {
+            index = withIndexed(index, previous.getOwner(), previous.getAssetId(), id, null);
+        }
+        if(account != null) {
+            index = withIndexed(index, account.getOwner(), account.getAssetId(), id, account);
+        }
+        return new StoreSnapshot(version, markets, assets, positions, accounts.with(id, account), index,
+                ordersByMarket, orders, marketContexts, assetContexts);
+    }
+
+    /**
+     * Replace or remove an account in the owner and asset index, dropping groups that become empty
+     *
+     * @param index the index
+     * @param owner the party ID
+     * @param assetId the asset ID
+     * @param id the account ID
+     * @param account the new account, or null to remove it
+     *
+     * @return the updated index
+     */
+    private static PersistentMap<String, PersistentMap<String, PersistentMap<String, Account>>> withIndexed(
+            final PersistentMap<String, PersistentMap<String, PersistentMap<String, Account>>> index,
+            final String owner,
+            final String assetId,
+            final String id,
+            final Account account
+    ) {
+        PersistentMap<String, PersistentMap<String, Account>> byAsset = index.get(owner);
+        if(byAsset == null) {
+            byAsset = PersistentMap.empty();
+        }
+        PersistentMap<String, Account> byId = byAsset.get(assetId);
+        if(byId == null) {
+            byId = PersistentMap.empty();
+        }
+        PersistentMap<String, Account> updated = byId.with(id, account);
+        byAsset = byAsset.with(assetId, updated.isEmpty() ? null : updated);
+        return index.with(owner, byAsset.isEmpty() ? null : byAsset);
+    }
+
+    /**
+     * Replace or remove an order in the orders of its market, sharing the orders of every other market
+     *
+     * @param version the store version after the write
+     * @param id the order ID
+     * @param order the new order, or null if it was removed
+     *
+     * @return {@link StoreSnapshot}
+     */
+    private StoreSnapshot withOrder(final long version, final String id, final Order order) {
+        Order previous = orders.get(id);
+        PersistentMap<String, PersistentMap<String, Order>> byMarket = ordersByMarket;
+        if(previous != null && (order == null || !Objects.equals(previous.getMarketId(), order.getMarketId()))) {
+            byMarket = withOrder(byMarket, previous.getMarketId(), id, null);
+        }
+        if(order != null) {
+            byMarket = withOrder(byMarket, order.getMarketId(), id, order);
+        }
+        return new StoreSnapshot(version, markets, assets, positions, accounts, accountsByOwner, byMarket,
+                orders.with(id, order), marketContexts, assetContexts);
+    }
+
+    /**
+     * Replace or remove an order in the orders of one market, dropping the market if it has none left
+     *
+     * @param byMarket the orders grouped by market
+     * @param marketId the market ID
+     * @param id the order ID
+     * @param order the new order, or null to remove it
+     *
+     * @return the updated orders grouped by market
+     */
+    private static PersistentMap<String, PersistentMap<String, Order>> withOrder(
+            final PersistentMap<String, PersistentMap<String, Order>> byMarket,
+            final String marketId,
+            final String id,
+            final Order order
+    ) {
+        PersistentMap<String, Order> marketOrders = byMarket.get(marketId);
+        if(marketOrders == null) {
+            if(order == null) {
+                return byMarket;
+            }
+            marketOrders = PersistentMap.empty();
+        }
+        PersistentMap<String, Order> updated = marketOrders.with(id, order);
+        return byMarket.with(marketId, updated.isEmpty() ? null : updated);
+    }
+}
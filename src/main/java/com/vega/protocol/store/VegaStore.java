@@ -1,11 +1,18 @@
 package com.vega.protocol.store;
 
+import com.vega.protocol.exception.TradingException;
 import com.vega.protocol.model.*;
+import com.vega.protocol.store.StoreListener.ChangeType;
+import com.vega.protocol.store.StoreListener.EntityType;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
 
 public class VegaStore {
 
@@ -14,9 +21,22 @@ public class VegaStore {
     private final Map<String, Position> positions = new ConcurrentHashMap<>();
     private final Map<String, Asset> assets = new ConcurrentHashMap<>();
     private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Map<String, InstrumentContext> marketContexts = new ConcurrentHashMap<>();
+    private final Map<String, InstrumentContext> assetContexts = new ConcurrentHashMap<>();
+    private final Map<String, Tombstone> removedOrders = new ConcurrentHashMap<>();
+    private final Map<EntityType, Map<String, Long>> writeVersions = new EnumMap<>(EntityType.class);
+    private final AtomicLong version = new AtomicLong();
+    private final List<StoreListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile StoreSnapshot snapshot = StoreSnapshot.empty(0);
+
+    private static final long TOMBSTONE_TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
 
     private static final VegaStore instance = new VegaStore();
-    private VegaStore() {}
+    private VegaStore() {
+        for(EntityType type : EntityType.values()) {
+            writeVersions.put(type, new ConcurrentHashMap<>());
+        }
+    }
 
     /**
      * Get the {@link VegaStore} singleton instance
@@ -73,34 +93,69 @@ public class VegaStore {
     }
 
     /**
-     * Add or update market
+     * Get an immutable view of the whole store at its latest version. Reading several entities from one
+     * snapshot, rather than through the getters below, means they are all from the same moment.
+     *
+     * @return {@link StoreSnapshot}
+     */
+    public StoreSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Add or update market. The market's {@link InstrumentContext} is kept unless the update changes its
+     * decimal places or settlement asset, so the market data ticks that replace the market don't throw
+     * away the cached number formats.
      *
      * @param market {@link Market}
      */
-    public void save(final Market market) {
-        markets.put(market.getId(), market);
+    public synchronized void save(final Market market) {
+        Market previous = markets.put(market.getId(), market);
+        InstrumentContext context = marketContexts.get(market.getId());
+        if(context != null && (context.getDecimalPlaces() != market.getDecimalPlaces() ||
+                context.getPositionDecimalPlaces() != market.getPositionDecimalPlaces() ||
+                !Objects.equals(context.getSettlementAssetId(), market.getSettlementAssetId()))) {
+            marketContexts.remove(market.getId());
+            context.invalidate();
+        }
+        changed(EntityType.MARKET, previous == null ? ChangeType.ADDED : ChangeType.CHANGED, market.getId(), market);
     }
 
     /**
-     * Add or update order
+     * Add or update order. Updates older than the order already held, or than the final update of an order
+     * that was removed recently, are ignored.
      *
      * @param order {@link Order}
      */
-    public void save(final Order order) {
-        if(!order.getStatus().equals("STATUS_ACTIVE")) {
-            orders.remove(order.getId());
+    public synchronized void save(final Order order) {
+        if(compare(order, getOrderOrTombstone(order.getId())) < 0) {
+            return;
+        }
+        boolean active = order.getStatus().equals("STATUS_ACTIVE");
+        Order previous = active ? orders.put(order.getId(), order) : orders.remove(order.getId());
+        if(active) {
+            removedOrders.remove(order.getId());
+            changed(EntityType.ORDER, previous == null ? ChangeType.ADDED : ChangeType.CHANGED, order.getId(), order);
         } else {
-            orders.put(order.getId(), order);
+            removedOrders.put(order.getId(), new Tombstone(order, System.nanoTime()));
+            if(previous != null) {
+                changed(EntityType.ORDER, ChangeType.REMOVED, order.getId(), null);
+            }
         }
     }
 
     /**
-     * Add or update position
+     * Add or update position. Updates older than the position already held are ignored.
      *
      * @param position {@link Position}
      */
-    public void save(final Position position) {
-        positions.put(position.getMarketId(), position);
+    public synchronized void save(final Position position) {
+        if(compare(position, positions.get(position.getMarketId())) < 0) {
+            return;
+        }
+        Position previous = positions.put(position.getMarketId(), position);
+        changed(EntityType.POSITION, previous == null ? ChangeType.ADDED : ChangeType.CHANGED,
+                position.getMarketId(), position);
     }
 
     /**
@@ -108,8 +163,20 @@ public class VegaStore {
      *
      * @param asset {@link Asset}
      */
-    public void save(final Asset asset) {
-        assets.put(asset.getId(), asset);
+    public synchronized void save(final Asset asset) {
+        Asset previous = assets.put(asset.getId(), asset);
+        InstrumentContext context = assetContexts.remove(asset.getId());
+        if(context != null) {
+            context.invalidate();
+        }
+        marketContexts.values().removeIf(c -> {
+            if(asset.getId().equals(c.getSettlementAssetId())) {
+                c.invalidate();
+                return true;
+            }
+            return false;
+        });
+        changed(EntityType.ASSET, previous == null ? ChangeType.ADDED : ChangeType.CHANGED, asset.getId(), asset);
     }
 
     /**
@@ -117,8 +184,263 @@ public class VegaStore {
      *
      * @param account {@link Account}
      */
-    public void save(final Account account) {
-        accounts.put(account.getId(), account);
+    public synchronized void save(final Account account) {
+        Account previous = accounts.put(account.getId(), account);
+        changed(EntityType.ACCOUNT, previous == null ? ChangeType.ADDED : ChangeType.CHANGED,
+                account.getId(), account);
+    }
+
+    /**
+     * Merge the results of a REST refresh into the store. Only entities that differ from what the store
+     * already holds are saved, so an unchanged refresh costs no writes and notifies nobody. Data that could
+     * be older than the store is never applied:
+     * <ul>
+     *     <li>orders and positions carry a Vega timestamp, and an update older than the one held is ignored;</li>
+     *     <li>any entity written after the refresh started, i.e. at a store version above the fence, was
+     *     written by the stream and is newer than the REST data, so it is left alone;</li>
+     *     <li>orders removed by the stream leave a tombstone for a few minutes, so a lagging data node
+     *     can't bring back an order that was just cancelled or filled.</li>
+     * </ul>
+     * Open orders that are missing from the refresh, and weren't written after it started, are removed.
+     * A null list means that resource couldn't be fetched, and it is skipped. The store lock is held
+     * throughout, so no stream update lands in the middle.
+     *
+     * @param fence the store version read before the refresh was started
+     * @param assets {@link List<Asset>}
+     * @param markets {@link List<Market>}
+     * @param accounts {@link List<Account>}
+     * @param orders {@link List<Order>}
+     * @param positions {@link List<Position>}
+     *
+     * @return {@link ReconcileResult}
+     */
+    public synchronized ReconcileResult reconcile(
+            final long fence,
+            final List<Asset> assets,
+            final List<Market> markets,
+            final List<Account> accounts,
+            final List<Order> orders,
+            final List<Position> positions
+    ) {
+        ReconcileResult result = new ReconcileResult();
+        merge(EntityType.ASSET, fence, assets, Asset::getId, this.assets::get, this::compareByEquals,
+                this::save, result);
+        if(markets != null) {
+            for(Market market : markets) {
+                Market existing = this.markets.get(market.getId());
+                if(existing != null && market.getMarketData() == null) {
+                    // market data only comes from the stream
+                    market.setMarketData(existing.getMarketData());
+                }
+            }
+        }
+        merge(EntityType.MARKET, fence, markets, Market::getId, this.markets::get, this::compareByEquals,
+                this::save, result);
+        merge(EntityType.ACCOUNT, fence, accounts, Account::getId, this.accounts::get, this::compareByEquals,
+                this::save, result);
+        merge(EntityType.ORDER, fence, orders, Order::getId, this::getOrderOrTombstone, this::compare,
+                this::save, result);
+        merge(EntityType.POSITION, fence, positions, Position::getMarketId, this.positions::get, this::compare,
+                this::save, result);
+        if(orders != null) {
+            Set<String> fetched = new HashSet<>();
+            orders.forEach(order -> fetched.add(order.getId()));
+            for(Order order : List.copyOf(this.orders.values())) {
+                if(!fetched.contains(order.getId()) && getWriteVersion(EntityType.ORDER, order.getId()) <= fence) {
+                    this.orders.remove(order.getId());
+                    changed(EntityType.ORDER, ChangeType.REMOVED, order.getId(), null);
+                    result.setRemoved(result.getRemoved() + 1);
+                }
+            }
+        }
+        prune(fence);
+        return result;
+    }
+
+    /**
+     * Merge fetched entities of one type into the store
+     *
+     * @param type {@link EntityType}
+     * @param fence the store version read before the refresh was started
+     * @param fetched the fetched entities, or null if they couldn't be fetched
+     * @param id gets the store key of an entity
+     * @param existing looks up the entity the store holds for a key
+     * @param compare compares a fetched entity with the one held
+     * @param save saves an entity
+     * @param result {@link ReconcileResult} to count changes in
+     */
+    private <T> void merge(
+            final EntityType type,
+            final long fence,
+            final List<T> fetched,
+            final Function<T, String> id,
+            final Function<String, T> existing,
+            final ToIntBiFunction<T, T> compare,
+            final Consumer<T> save,
+            final ReconcileResult result
+    ) {
+        if(fetched == null) {
+            return;
+        }
+        for(T entity : fetched) {
+            String key = id.apply(entity);
+            T current = existing.apply(key);
+            int comparison = compare.applyAsInt(entity, current);
+            if(comparison == 0) {
+                result.setUnchanged(result.getUnchanged() + 1);
+            } else if(comparison < 0 || getWriteVersion(type, key) > fence) {
+                result.setStale(result.getStale() + 1);
+            } else {
+                save.accept(entity);
+                if(current == null) {
+                    result.setAdded(result.getAdded() + 1);
+                } else {
+                    result.setChanged(result.getChanged() + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop tombstones that have expired, and write versions of removed entities that no refresh needs
+     * any more
+     *
+     * @param fence the store version read before the last refresh was started
+     */
+    private void prune(final long fence) {
+        long now = System.nanoTime();
+        removedOrders.values().removeIf(tombstone -> now - tombstone.removedNanos() > TOMBSTONE_TTL_NANOS);
+        writeVersions.get(EntityType.ORDER).entrySet().removeIf(entry -> entry.getValue() <= fence &&
+                !orders.containsKey(entry.getKey()) && !removedOrders.containsKey(entry.getKey()));
+    }
+
+    /**
+     * Compare two versions of an order by Vega timestamp and then by order version
+     *
+     * @param incoming the new order
+     * @param current the order held, may be null
+     *
+     * @return negative if the new order is older, 0 if it is the same, positive if it is newer
+     */
+    private int compare(final Order incoming, final Order current) {
+        if(current == null) {
+            return 1;
+        }
+        if(incoming.getUpdatedAtValue() > 0 && current.getUpdatedAtValue() > 0) {
+            int comparison = Long.compare(incoming.getUpdatedAtValue(), current.getUpdatedAtValue());
+            if(comparison == 0) {
+                comparison = Long.compare(incoming.getVersionValue(), current.getVersionValue());
+            }
+            if(comparison != 0 || incoming.getStatus().equals(current.getStatus())) {
+                return comparison;
+            }
+        }
+        return incoming.equals(current) ? 0 : 1;
+    }
+
+    /**
+     * Compare two versions of a position by Vega timestamp
+     *
+     * @param incoming the new position
+     * @param current the position held, may be null
+     *
+     * @return negative if the new position is older, 0 if it is the same, positive if it is newer
+     */
+    private int compare(final Position incoming, final Position current) {
+        if(current == null) {
+            return 1;
+        }
+        if(incoming.getUpdatedAtValue() > 0 && current.getUpdatedAtValue() > 0 &&
+                incoming.getUpdatedAtValue() != current.getUpdatedAtValue()) {
+            return Long.compare(incoming.getUpdatedAtValue(), current.getUpdatedAtValue());
+        }
+        return incoming.equals(current) ? 0 : 1;
+    }
+
+    /**
+     * Compare two versions of an entity that carries no timestamp
+     *
+     * @param incoming the new entity
+     * @param current the entity held, may be null
+     *
+     * @return 0 if they are equal, otherwise positive
+     */
+    private <T> int compareByEquals(final T incoming, final T current) {
+        return incoming.equals(current) ? 0 : 1;
+    }
+
+    /**
+     * Get an open order, or the final update of a recently removed order
+     *
+     * @param id the order ID
+     *
+     * @return {@link Order}, or null
+     */
+    private Order getOrderOrTombstone(final String id) {
+        Order order = orders.get(id);
+        if(order != null) {
+            return order;
+        }
+        Tombstone tombstone = removedOrders.get(id);
+        return tombstone == null ? null : tombstone.order();
+    }
+
+    /**
+     * Get the store version at which an entity was last written
+     *
+     * @param type {@link EntityType}
+     * @param id the entity ID
+     *
+     * @return the version, or 0 if it hasn't been written
+     */
+    private long getWriteVersion(final EntityType type, final String id) {
+        Long writeVersion = writeVersions.get(type).get(id);
+        return writeVersion == null ? 0 : writeVersion;
+    }
+
+    /**
+     * Get the store version, which goes up every time anything in the store changes
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Register a listener for changes
+     *
+     * @param listener {@link StoreListener}
+     */
+    public void addListener(final StoreListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a change listener
+     *
+     * @param listener {@link StoreListener}
+     */
+    public void removeListener(final StoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Bump the version, remember when the entity was written, publish the next snapshot and notify
+     * listeners of a change. Callers hold the store lock, so snapshots follow the writes in order.
+     *
+     * @param type {@link EntityType}
+     * @param change {@link ChangeType}
+     * @param id the entity ID
+     * @param entity the new entity, or null if it was removed
+     */
+    private void changed(final EntityType type, final ChangeType change, final String id, final Object entity) {
+        long next = version.incrementAndGet();
+        writeVersions.get(type).put(id, next);
+        snapshot = snapshot.with(next, type, id, entity);
+        for(StoreListener listener : listeners) {
+            listener.onChange(type, change, id, entity);
+        }
     }
 
     /**
@@ -174,17 +496,82 @@ public class VegaStore {
      * @return {@link Optional<Asset>}
      */
     public Optional<Asset> getAssetById(final String id) {
-        return assets.values().stream().filter(a -> a.getId().equals(id)).findFirst();
+        if(id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(assets.get(id));
+    }
+
+    /**
+     * Get the resolved number formats for a market, building them the first time they are needed
+     *
+     * @param marketId the market ID
+     *
+     * @return {@link InstrumentContext}
+     */
+    public InstrumentContext getInstrumentContext(final String marketId) {
+        if(marketId == null) {
+            throw new TradingException("market not found: null");
+        }
+        InstrumentContext context = marketContexts.get(marketId);
+        if(context != null) {
+            return context;
+        }
+        return marketContexts.computeIfAbsent(marketId, id -> {
+            Market market = getMarketById(id).orElseThrow(() ->
+                    new TradingException(String.format("market not found: %s", id)));
+            String assetId = market.getSettlementAssetId();
+            Asset asset = assetId == null ? null : assets.get(assetId);
+            return new InstrumentContext(id, assetId, market.getDecimalPlaces(),
+                    market.getPositionDecimalPlaces(), asset == null ? -1 : asset.getDecimals());
+        });
+    }
+
+    /**
+     * Get the resolved number format for an asset, building it the first time it is needed
+     *
+     * @param assetId the asset ID
+     *
+     * @return {@link InstrumentContext} with only the settlement asset populated
+     */
+    public InstrumentContext getAssetContext(final String assetId) {
+        if(assetId == null) {
+            throw new TradingException("asset not found: null");
+        }
+        InstrumentContext context = assetContexts.get(assetId);
+        if(context != null) {
+            return context;
+        }
+        return assetContexts.computeIfAbsent(assetId, id -> {
+            Asset asset = getAssetById(id).orElseThrow(() ->
+                    new TradingException(String.format("asset not found: %s", id)));
+            return new InstrumentContext(null, id, 0, 0, asset.getDecimals());
+        });
     }
 
     /**
      * Clear all data from internal state
      */
-    public void truncate() {
+    public synchronized void truncate() {
         assets.clear();
         accounts.clear();
         positions.clear();
         orders.clear();
         markets.clear();
+        marketContexts.values().forEach(InstrumentContext::invalidate);
+        marketContexts.clear();
+        assetContexts.values().forEach(InstrumentContext::invalidate);
+        assetContexts.clear();
+        removedOrders.clear();
+        writeVersions.values().forEach(Map::clear);
+        snapshot = StoreSnapshot.empty(version.incrementAndGet());
+        for(StoreListener listener : listeners) {
+            listener.onClear();
+        }
     }
-}
\ No newline at end of file
+
+    /**
+     * The final update of a removed order, and when it was removed
+     */
+    private record Tombstone(Order order, long removedNanos) {}
+}
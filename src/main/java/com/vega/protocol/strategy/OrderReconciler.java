@@ -0,0 +1,219 @@
+package com.vega.protocol.strategy;
+
+import com.vega.protocol.model.Order;
+import com.vega.protocol.submission.BatchMarketInstruction;
+import com.vega.protocol.submission.OrderAmendment;
+import com.vega.protocol.submission.OrderCancellation;
+import com.vega.protocol.submission.OrderSubmission;
+import com.vega.protocol.utils.FixedPoint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Compares a target quote ladder with the live orders and works out the smallest set of instructions
+ * needed to move from one to the other. Orders within tolerance of their target are left alone, orders
+ * that drifted are amended, and only surplus orders or missing levels are cancelled or submitted.
+ */
+public class OrderReconciler {
+
+    private static final String BUY = "SIDE_BUY";
+    private static final String SELL = "SIDE_SELL";
+    private static final Comparator<Order> LOWEST_PRICE_FIRST = Comparator.comparingLong(Order::getPriceValue);
+    private static final Comparator<Order> HIGHEST_PRICE_FIRST = LOWEST_PRICE_FIRST.reversed();
+
+    private final double priceTolerance;
+    private final double sizeTolerance;
+
+    /**
+     * @param priceTolerance max relative price difference before an order is amended, e.g. 0.0005
+     * @param sizeTolerance max relative size difference before an order is amended, e.g. 0.1
+     */
+    public OrderReconciler(
+            final double priceTolerance,
+            final double sizeTolerance
+    ) {
+        this.priceTolerance = priceTolerance;
+        this.sizeTolerance = sizeTolerance;
+    }
+
+    /**
+     * Reconcile the target ladder with the live orders
+     *
+     * @param targets the target orders, with price and size in integer representation
+     * @param orders the live orders in the same market
+     *
+     * @return {@link BatchMarketInstruction}
+     */
+    public BatchMarketInstruction reconcile(
+            final List<OrderSubmission> targets,
+            final Collection<Order> orders
+    ) {
+        BatchMarketInstruction instruction = new BatchMarketInstruction();
+        for(String side : List.of(BUY, SELL)) {
+            Comparator<Long> bestFirst = side.equals(BUY) ?
+                    Comparator.reverseOrder() : Comparator.naturalOrder();
+            List<OrderSubmission> sideTargets = targets.stream()
+                    .filter(t -> side.equals(t.getSide()) && FixedPoint.parse(t.getSize()) > 0)
+                    .sorted(Comparator.comparing(t -> FixedPoint.parse(t.getPrice()), bestFirst))
+                    .toList();
+            long[] prices = new long[sideTargets.size()];
+            long[] sizes = new long[sideTargets.size()];
+            for(int i=0; i<sideTargets.size(); i++) {
+                prices[i] = FixedPoint.parse(sideTargets.get(i).getPrice());
+                sizes[i] = FixedPoint.parse(sideTargets.get(i).getSize());
+            }
+            reconcileSide(side, prices, sizes, sideTargets.size(), sideTargets::get, orders, instruction);
+        }
+        return instruction;
+    }
+
+    /**
+     * Reconcile a ladder built by {@link QuoteLadder} with the live orders. Submissions are only created
+     * for the levels that need one, so a deep ladder that is mostly within tolerance formats almost nothing.
+     *
+     * @param marketId the market ID
+     * @param bids the target bids
+     * @param asks the target asks
+     * @param orders the live orders in the market
+     *
+     * @return {@link BatchMarketInstruction}
+     */
+    public BatchMarketInstruction reconcile(
+            final String marketId,
+            final QuoteLadder.Levels bids,
+            final QuoteLadder.Levels asks,
+            final Collection<Order> orders
+    ) {
+        BatchMarketInstruction instruction = new BatchMarketInstruction();
+        reconcileSide(BUY, bids, marketId, orders, instruction);
+        reconcileSide(SELL, asks, marketId, orders, instruction);
+        return instruction;
+    }
+
+    /**
+     * Reconcile one side of a {@link QuoteLadder}
+     *
+     * @param side the side of the book
+     * @param levels the target levels
+     * @param marketId the market ID
+     * @param orders the live orders
+     * @param instruction {@link BatchMarketInstruction} to add instructions to
+     */
+    private void reconcileSide(
+            final String side,
+            final QuoteLadder.Levels levels,
+            final String marketId,
+            final Collection<Order> orders,
+            final BatchMarketInstruction instruction
+    ) {
+        reconcileSide(side, levels.prices, levels.sizes, levels.count, i -> new OrderSubmission()
+                .setMarketId(marketId)
+                .setSize(FixedPoint.toWire(levels.sizes[i]))
+                .setPrice(FixedPoint.toWire(levels.prices[i]))
+                .setSide(side)
+                .setType("TYPE_LIMIT")
+                .setTimeInForce("TIME_IN_FORCE_GTC"), orders, instruction);
+    }
+
+    /**
+     * Reconcile one side of the book. Targets and live orders are both sorted best price first and then
+     * paired by level.
+     *
+     * @param side the side of the book
+     * @param prices the target prices, best first
+     * @param sizes the target sizes
+     * @param count the number of targets
+     * @param submission creates the submission for a target level
+     * @param orders the live orders
+     * @param instruction {@link BatchMarketInstruction} to add instructions to
+     */
+    private void reconcileSide(
+            final String side,
+            final long[] prices,
+            final long[] sizes,
+            final int count,
+            final IntFunction<OrderSubmission> submission,
+            final Collection<Order> orders,
+            final BatchMarketInstruction instruction
+    ) {
+        List<Order> sideOrders = new ArrayList<>();
+        for(Order order : orders) {
+            if(side.equals(order.getSide())) {
+                sideOrders.add(order);
+            }
+        }
+        sideOrders.sort(side.equals(BUY) ? HIGHEST_PRICE_FIRST : LOWEST_PRICE_FIRST);
+        int paired = Math.min(count, sideOrders.size());
+        for(int i=0; i<paired; i++) {
+            Order order = sideOrders.get(i);
+            long targetPrice = prices[i];
+            long targetSize = sizes[i];
+            boolean priceDrifted = !withinTolerance(order.getPriceValue(), targetPrice, priceTolerance);
+            boolean sizeDrifted = !withinTolerance(order.getRemainingValue(), targetSize, sizeTolerance);
+            long sizeDelta = sizeDrifted ? FixedPoint.subtract(targetSize, order.getRemainingValue()) : 0;
+            if(sizeDelta == FixedPoint.OVERFLOW) {
+                instruction.getCancellations().add(new OrderCancellation()
+                        .setOrderId(order.getId())
+                        .setMarketId(order.getMarketId()));
+                instruction.getSubmissions().add(submission.apply(i));
+            } else if(priceDrifted || sizeDrifted) {
+                instruction.getAmendments().add(new OrderAmendment()
+                        .setOrderId(order.getId())
+                        .setMarketId(order.getMarketId())
+                        .setPrice(priceDrifted ? toWire(targetPrice, submission, i) : null)
+                        .setSizeDelta(FixedPoint.toWire(sizeDelta)));
+            }
+        }
+        for(int i=paired; i<sideOrders.size(); i++) {
+            Order order = sideOrders.get(i);
+            instruction.getCancellations().add(new OrderCancellation()
+                    .setOrderId(order.getId())
+                    .setMarketId(order.getMarketId()));
+        }
+        for(int i=paired; i<count; i++) {
+            instruction.getSubmissions().add(submission.apply(i));
+        }
+    }
+
+    /**
+     * Format a target price, falling back to the submission's own price if it is too big for a long
+     *
+     * @param price the price mantissa
+     * @param submission creates the submission for a target level
+     * @param level the target level
+     *
+     * @return the price in integer representation
+     */
+    private String toWire(
+            final long price,
+            final IntFunction<OrderSubmission> submission,
+            final int level
+    ) {
+        return price == FixedPoint.OVERFLOW ? submission.apply(level).getPrice() : FixedPoint.toWire(price);
+    }
+
+    /**
+     * Check if a live value is close enough to its target
+     *
+     * @param value the live value
+     * @param target the target value
+     * @param tolerance the max relative difference
+     *
+     * @return true if within tolerance
+     */
+    private boolean withinTolerance(
+            final long value,
+            final long target,
+            final double tolerance
+    ) {
+        if(value == FixedPoint.OVERFLOW || target == FixedPoint.OVERFLOW) {
+            return false;
+        }
+        double difference = Math.abs((double) value - (double) target);
+        return difference <= Math.abs((double) target) * tolerance;
+    }
+}
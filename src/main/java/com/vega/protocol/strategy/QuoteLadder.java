@@ -0,0 +1,186 @@
+package com.vega.protocol.strategy;
+
+/**
+ * Works out the price and size of every level of a quote ladder. The price offset and the share of the
+ * volume of each level only depend on the configuration, so they are computed once, and building a side is
+ * a couple of passes over primitive arrays with no parsing, formatting or allocation.
+ * <p>
+ * Level n, counting from 1, sits n steps away from the reference price, below it for bids and above it for
+ * asks. Each level is {@code sizeRatio} times the size of the one before it, so 1 quotes equal sizes and
+ * anything above 1 puts more volume deeper in the book. With a tick size set, bid prices are rounded down
+ * and ask prices up to a multiple of it, so rounding never moves a quote towards the reference price.
+ */
+public class QuoteLadder {
+
+    private static final double MAX_MANTISSA = 0x1p62;
+
+    private final int levels;
+    private final double tickSize;
+    private final double[] bidFactors;
+    private final double[] askFactors;
+    private final double[] weights;
+
+    /**
+     * @param levels the number of levels on each side
+     * @param step the distance between levels, relative to the reference price, e.g. 0.002
+     * @param sizeRatio the size of each level relative to the level before it, e.g. 1 for equal sizes
+     * @param tickSize the price increment to round to, or 0 to round to the market's decimal places
+     */
+    public QuoteLadder(
+            final int levels,
+            final double step,
+            final double sizeRatio,
+            final double tickSize
+    ) {
+        if(levels < 1 || !(step > 0) || !(sizeRatio > 0) || !(tickSize >= 0)) {
+            throw new IllegalArgumentException(String.format("invalid ladder: levels=%d, step=%s, " +
+                    "sizeRatio=%s, tickSize=%s", levels, step, sizeRatio, tickSize));
+        }
+        this.levels = levels;
+        this.tickSize = tickSize;
+        this.bidFactors = new double[levels];
+        this.askFactors = new double[levels];
+        this.weights = new double[levels];
+        double weight = 1;
+        double total = 0;
+        for(int i=0; i<levels; i++) {
+            bidFactors[i] = 1 - ((i + 1) * step);
+            askFactors[i] = 1 + ((i + 1) * step);
+            weights[i] = weight;
+            total += weight;
+            weight *= sizeRatio;
+        }
+        for(int i=0; i<levels; i++) {
+            weights[i] /= total;
+        }
+    }
+
+    /**
+     * Get the number of levels on each side
+     *
+     * @return the number of levels
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Create a buffer big enough for one side of this ladder
+     *
+     * @return {@link Levels}
+     */
+    public Levels newLevels() {
+        return new Levels(levels);
+    }
+
+    /**
+     * Build one side of the ladder. Levels are written best price first; levels whose size rounds to zero,
+     * and bids that would be priced at or below zero, are left out.
+     *
+     * @param buy true for bids, false for asks
+     * @param referencePrice the price to anchor the ladder to, e.g. the best bid for bids
+     * @param targetVolume the notional value to quote across the whole side
+     * @param decimalPlaces the market's price decimal places
+     * @param positionDecimalPlaces the market's size decimal places
+     * @param out {@link Levels} to write to
+     */
+    public void build(
+            final boolean buy,
+            final double referencePrice,
+            final double targetVolume,
+            final int decimalPlaces,
+            final int positionDecimalPlaces,
+            final Levels out
+    ) {
+        out.count = 0;
+        double priceScale = Math.pow(10, decimalPlaces);
+        double sizeScale = Math.pow(10, positionDecimalPlaces);
+        double[] factors = buy ? bidFactors : askFactors;
+        double anchor = referencePrice * priceScale;
+        double units = targetVolume / referencePrice * sizeScale;
+        // the deepest ask is the highest price on either side
+        if(!(anchor > 0) || !(units > 0) || anchor * askFactors[levels - 1] >= MAX_MANTISSA ||
+                units >= MAX_MANTISSA) {
+            return;
+        }
+        double tick = Math.max(1, Math.rint(tickSize * priceScale));
+        double[] prices = out.scratch;
+        // the tick check is hoisted out of the loops, so each one is a plain pass over the factors
+        if(tickSize == 0) {
+            for(int i=0; i<levels; i++) {
+                prices[i] = Math.ceil(anchor * factors[i] - 0.5);
+            }
+        } else if(buy) {
+            for(int i=0; i<levels; i++) {
+                prices[i] = Math.floor(anchor * factors[i] / tick) * tick;
+            }
+        } else {
+            for(int i=0; i<levels; i++) {
+                prices[i] = Math.ceil(anchor * factors[i] / tick) * tick;
+            }
+        }
+        int count = 0;
+        for(int i=0; i<levels; i++) {
+            long price = (long) prices[i];
+            long size = (long) Math.ceil(units * weights[i] - 0.5);
+            if(price > 0 && size > 0) {
+                out.prices[count] = price;
+                out.sizes[count] = size;
+                count++;
+            }
+        }
+        out.count = count;
+    }
+
+    /**
+     * One side of a ladder, as price and size mantissas ordered best price first. A buffer is reused every
+     * time the side is rebuilt, so it belongs to one thread at a time.
+     */
+    public static final class Levels {
+
+        final long[] prices;
+        final long[] sizes;
+        final double[] scratch;
+        int count;
+
+        /**
+         * @param capacity the maximum number of levels
+         */
+        public Levels(final int capacity) {
+            this.prices = new long[capacity];
+            this.sizes = new long[capacity];
+            this.scratch = new double[capacity];
+        }
+
+        /**
+         * Get the number of levels
+         *
+         * @return the number of levels
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Get the price of a level
+         *
+         * @param level the level, 0 being the best
+         *
+         * @return the price mantissa
+         */
+        public long getPrice(final int level) {
+            return prices[level];
+        }
+
+        /**
+         * Get the size of a level
+         *
+         * @param level the level, 0 being the best
+         *
+         * @return the size mantissa
+         */
+        public long getSize(final int level) {
+            return sizes[level];
+        }
+    }
+}
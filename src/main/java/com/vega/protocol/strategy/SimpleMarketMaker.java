@@ -1,123 +1,147 @@
 package com.vega.protocol.strategy;
 
 import com.vega.protocol.client.api.VegaApiClient;
+import com.vega.protocol.exception.TradingException;
+import com.vega.protocol.metrics.LatencyRecorder;
 import com.vega.protocol.model.*;
 import com.vega.protocol.store.BinanceStore;
+import com.vega.protocol.store.StoreSnapshot;
 import com.vega.protocol.store.VegaStore;
-import com.vega.protocol.submission.OrderCancellation;
-import com.vega.protocol.submission.OrderSubmission;
-import com.vega.protocol.utils.DecimalUtils;
+import com.vega.protocol.submission.BatchMarketInstruction;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 public class SimpleMarketMaker implements TradingStrategy {
 
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
     private final Config config = Config.getInstance();
 
     private final VegaApiClient vegaApiClient;
+    private final OrderReconciler orderReconciler;
+    private final QuoteLadder quoteLadder;
+    private final Map<String, QuoteLadder.Levels> bids = new HashMap<>();
+    private final Map<String, QuoteLadder.Levels> asks = new HashMap<>();
+    private final LatencyRecorder latencyRecorder = LatencyRecorder.getInstance();
 
     public SimpleMarketMaker(VegaApiClient vegaApiClient) {
         this.vegaApiClient = vegaApiClient;
+        this.orderReconciler = new OrderReconciler(config.getPriceTolerance(), config.getSizeTolerance());
+        this.quoteLadder = new QuoteLadder(config.getLadderLevels(), config.getLadderStep(),
+                config.getLadderSizeRatio(), config.getLadderTickSize());
+        // each market has its own ladder buffers; the quote engine never runs two requotes of a market at once
+        for(String marketId : config.getMarketIds()) {
+            bids.put(marketId, quoteLadder.newLevels());
+            asks.put(marketId, quoteLadder.newLevels());
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void execute() {
-        log.info("Executing trading strategy...");
-        VegaStore vegaStore = VegaStore.getInstance();
-        BinanceStore binanceStore = BinanceStore.getInstance();
-        String marketId = config.getMarketId();
-        vegaStore.getMarketById(marketId).ifPresent(market -> {
-            log.info("Updating quotes for {}", market.getTradableInstrument().getInstrument().getName());
-            ReferencePrice referencePrice = binanceStore.getReferencePriceByMarket(config.getBinanceMarket())
-                    .orElse(new ReferencePrice().setAskPrice(0).setBidPrice(0));
-            double bestOfferPrice = referencePrice.getAskPrice();
-            double bestBidPrice = referencePrice.getBidPrice();
-            if(bestBidPrice > 0 && bestOfferPrice > 0) {
-                Optional<Position> positionOptional = vegaStore.getPositionByMarketId(market.getId());
-                Position position = positionOptional.orElse(new Position().setOpenVolume("0").setAverageEntryPrice("0"));
-                double openVolume = position.getOpenVolume();
-                double averageEntryPrice = position.getAverageEntryPrice();
-                double balance = getTotalBalance(market.getSettlementAsset().getId());
-                double bidVolume = (balance * 0.5) - (openVolume * averageEntryPrice);
-                double offerVolume = (balance * 0.5) + (openVolume * averageEntryPrice);
-                bidVolume = Math.max(bidVolume, 0);
-                offerVolume = Math.max(offerVolume, 0);
-                double notionalExposure = Math.abs(openVolume * averageEntryPrice);
-                log.info("Open volume = {}; Entry price = {}; Notional exposure = {}",
-                        openVolume, averageEntryPrice, notionalExposure);
-                log.info("Bid volume = {}; Offer volume = {}", bidVolume, offerVolume);
-                List<Order> orders = vegaStore.getOrders();
-                List<OrderCancellation> cancellations = orders.stream().map(o ->
-                        new OrderCancellation().setOrderId(o.getId()).setMarketId(o.getMarketId())).toList();
-                List<OrderSubmission> submissions = new ArrayList<>();
-                addOrderSubmissions(submissions, bestBidPrice, "BUY", market, bidVolume);
-                addOrderSubmissions(submissions, bestOfferPrice, "SELL", market, offerVolume);
-                log.info("Cancellations = {}; Amendments = {}; Submissions = {}",
-                        cancellations.size(), 0, submissions.size());
-                Optional<String> txHash = vegaApiClient.sendBatchMarketInstruction(
-                        submissions, cancellations, Collections.emptyList());
-                txHash.ifPresent(s -> log.info("Updated quotes {}", s));
-            }
-        });
+    public void execute(final String marketId) {
+        executeAsync(marketId).join();
     }
 
     /**
-     * Get the total for settlement asset
-     *
-     * @param settlementAssetId the settlement asset ID
-     *
-     * @return total balance
+     * {@inheritDoc}
      */
-    private double getTotalBalance(final String settlementAssetId) {
-        return VegaStore.getInstance()
-                .getAccounts()
-                .stream()
-                .filter(a -> a.getAsset().getId().equals(settlementAssetId) &&
-                        a.getOwner().equals(config.getPartyId()))
-                .mapToDouble(Account::getBalance)
-                .sum();
+    @Override
+    public CompletableFuture<Void> executeAsync(final String marketId) {
+        long startNanos = System.nanoTime();
+        log.info("Executing trading strategy for {}...", marketId);
+        // one consistent view of the store for the whole decision, however busy the feeds are
+        StoreSnapshot snapshot = VegaStore.getInstance().getSnapshot();
+        BinanceStore binanceStore = BinanceStore.getInstance();
+        String binanceMarket = config.getBinanceMarket(marketId);
+        if(binanceMarket == null) {
+            log.warn("No reference market configured for {}", marketId);
+            return DONE;
+        }
+        Optional<Market> marketOptional = snapshot.getMarket(marketId);
+        if(marketOptional.isEmpty()) {
+            return DONE;
+        }
+        Market market = marketOptional.get();
+        log.info("Updating quotes for {}", market.getTradableInstrument().getInstrument().getName());
+        ReferencePrice referencePrice = binanceStore.getReferencePriceByMarket(binanceMarket)
+                .orElse(new ReferencePrice().setAskPrice(0).setBidPrice(0));
+        double bestOfferPrice = referencePrice.getAskPrice();
+        double bestBidPrice = referencePrice.getBidPrice();
+        if(bestBidPrice <= 0 || bestOfferPrice <= 0) {
+            return DONE;
+        }
+        Optional<Position> positionOptional = snapshot.getPosition(market.getId());
+        Position position = positionOptional.orElse(new Position().setOpenVolume("0").setAverageEntryPrice("0"));
+        // number formats from the same snapshot, so decimals can't come from a later version of the market
+        InstrumentContext context = snapshot.getInstrumentContext(market.getId()).orElseThrow(() ->
+                new TradingException(String.format("market not found: %s", market.getId())));
+        double openVolume = position.getOpenVolume(context);
+        double averageEntryPrice = position.getAverageEntryPrice(context);
+        String settlementAssetId = market.getSettlementAssetId();
+        InstrumentContext assetContext = snapshot.getAssetContext(settlementAssetId).orElseThrow(() ->
+                new TradingException(String.format("asset not found: %s", settlementAssetId)));
+        double balance = getTotalBalance(snapshot, assetContext);
+        double bidVolume = (balance * 0.5) - (openVolume * averageEntryPrice);
+        double offerVolume = (balance * 0.5) + (openVolume * averageEntryPrice);
+        bidVolume = Math.max(bidVolume, 0);
+        offerVolume = Math.max(offerVolume, 0);
+        double notionalExposure = Math.abs(openVolume * averageEntryPrice);
+        log.info("Open volume = {}; Entry price = {}; Notional exposure = {}",
+                openVolume, averageEntryPrice, notionalExposure);
+        log.info("Bid volume = {}; Offer volume = {}", bidVolume, offerVolume);
+        Collection<Order> orders = snapshot.getOrders(market.getId());
+        QuoteLadder.Levels bidLevels = bids.get(marketId);
+        QuoteLadder.Levels askLevels = asks.get(marketId);
+        quoteLadder.build(true, bestBidPrice, bidVolume,
+                market.getDecimalPlaces(), market.getPositionDecimalPlaces(), bidLevels);
+        quoteLadder.build(false, bestOfferPrice, offerVolume,
+                market.getDecimalPlaces(), market.getPositionDecimalPlaces(), askLevels);
+        BatchMarketInstruction instruction = orderReconciler.reconcile(market.getId(), bidLevels, askLevels, orders);
+        long decisionNanos = System.nanoTime();
+        latencyRecorder.record(LatencyRecorder.Stage.DECISION, startNanos, decisionNanos);
+        latencyRecorder.record(LatencyRecorder.Stage.TICK_TO_DECISION,
+                referencePrice.getReceivedNanos(), decisionNanos);
+        int cancellations = instruction.getCancellations().size();
+        int amendments = instruction.getAmendments().size();
+        int submissions = instruction.getSubmissions().size();
+        log.info("Cancellations = {}; Amendments = {}; Submissions = {}",
+                cancellations, amendments, submissions);
+        if(cancellations + amendments + submissions == 0) {
+            log.info("Quotes are within tolerance");
+            return DONE;
+        }
+        return vegaApiClient.sendBatchMarketInstructionAsync(
+                instruction.getSubmissions(), instruction.getCancellations(), instruction.getAmendments())
+                .thenAccept(txHash -> txHash.ifPresent(s -> {
+                    long acceptedNanos = System.nanoTime();
+                    latencyRecorder.record(LatencyRecorder.Stage.TICK_TO_TRADE,
+                            referencePrice.getReceivedNanos(), acceptedNanos);
+                    latencyRecorder.awaitAck(marketId, referencePrice.getReceivedNanos(), acceptedNanos);
+                    log.info("Updated quotes {}", s);
+                }));
     }
 
     /**
-     * Add an {@link OrderSubmission} to the submissions array
+     * Get the total for settlement asset
      *
-     * @param submissions array of new orders
-     * @param referencePrice the reference price to anchor the orders to (typically best bid or offer)
-     * @param side the side of the book for the new orders
-     * @param market the target market
-     * @param targetVolume the sum of all quoted volume
+     * @param snapshot {@link StoreSnapshot}
+     * @param assetContext {@link InstrumentContext} of the settlement asset, from the same snapshot
+     *
+     * @return total balance
      */
-    private void addOrderSubmissions(
-            final List<OrderSubmission> submissions,
-            final double referencePrice,
-            final String side,
-            final Market market,
-            final double targetVolume
-    ) {
-        double size = targetVolume / (5 * referencePrice);
-        for(int i=1; i<=5; i++) {
-            double price = side.equals("BUY") ?
-                    referencePrice * (1 - (i * 0.002)) :
-                    referencePrice * (1 + (i * 0.002));
-            String sizeAsString = DecimalUtils.convertFromDecimals(
-                    market.getPositionDecimalPlaces(), size).toString();
-            String priceAsString = DecimalUtils.convertFromDecimals(
-                    market.getDecimalPlaces(), price).toString();
-            submissions.add(new OrderSubmission()
-                    .setMarketId(market.getId())
-                    .setSize(sizeAsString)
-                    .setPrice(priceAsString)
-                    .setSide(String.format("SIDE_%s", side))
-                    .setType("TYPE_LIMIT")
-                    .setTimeInForce("TIME_IN_FORCE_GTC"));
+    private double getTotalBalance(final StoreSnapshot snapshot, final InstrumentContext assetContext) {
+        double total = 0;
+        for(Account account : snapshot.getAccounts(config.getPartyId(), assetContext.getSettlementAssetId())) {
+            total += account.getBalance(assetContext);
         }
+        return total;
     }
 }
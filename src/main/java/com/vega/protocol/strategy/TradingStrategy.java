@@ -1,8 +1,25 @@
 package com.vega.protocol.strategy;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface TradingStrategy {
     /**
      * Execute trading strategy
+     *
+     * @param marketId the market to quote
+     */
+    void execute(String marketId);
+
+    /**
+     * Make the quoting decision on the calling thread, without waiting for any orders it sends to be
+     * accepted
+     *
+     * @param marketId the market to quote
+     *
+     * @return {@link CompletableFuture} completed once the orders have been accepted or rejected
      */
-    void execute();
-}
\ No newline at end of file
+    default CompletableFuture<Void> executeAsync(String marketId) {
+        execute(marketId);
+        return CompletableFuture.completedFuture(null);
+    }
+}
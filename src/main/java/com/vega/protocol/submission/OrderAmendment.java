@@ -1,12 +1,15 @@
 package com.vega.protocol.submission;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.experimental.Accessors;
 
 @Data
 @Accessors(chain = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class OrderAmendment {
     private String orderId;
+    private String marketId;
     private String sizeDelta;
     private String price;
 }
\ No newline at end of file
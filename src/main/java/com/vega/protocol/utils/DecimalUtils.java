@@ -18,6 +18,9 @@ public final class DecimalUtils {
             final int decimalPlaces,
             final BigInteger number
     ) {
+        if(number.bitLength() <= 53 && decimalPlaces <= 22) {
+            return FixedPoint.toDouble(number.longValue(), decimalPlaces);
+        }
         BigDecimal modifier = BigDecimal.valueOf(Math.pow(10, decimalPlaces));
         return new BigDecimal(number).divide(modifier, decimalPlaces, RoundingMode.HALF_DOWN)
                 .setScale(decimalPlaces, RoundingMode.HALF_DOWN).doubleValue();
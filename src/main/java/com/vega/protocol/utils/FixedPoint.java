@@ -0,0 +1,338 @@
+package com.vega.protocol.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Fixed-point numbers stored as a primitive long mantissa with an implied number of decimal places, e.g.
+ * the price 12.34 in a market with 5 decimal places is the mantissa 1234000. Values are parsed once from
+ * their wire representation and all arithmetic is done on primitives, so nothing is allocated on the hot
+ * path. Values that don't fit in a long are marked with {@link #OVERFLOW}, and callers fall back to
+ * {@link BigInteger} for those.
+ */
+public final class FixedPoint {
+
+    /**
+     * Sentinel for values that don't fit in a long
+     */
+    public static final long OVERFLOW = Long.MIN_VALUE;
+
+    private static final long[] POW10 = new long[19];
+    private static final double[] POW10_DOUBLE = new double[23];
+    private static final double MAX_EXACT_DOUBLE = 9007199254740992d;
+    private static final double MAX_LONG_DOUBLE = 9.223372036854775E18;
+
+    static {
+        POW10[0] = 1;
+        for(int i=1; i<POW10.length; i++) {
+            POW10[i] = POW10[i-1] * 10;
+        }
+        for(int i=0; i<POW10_DOUBLE.length; i++) {
+            POW10_DOUBLE[i] = Double.parseDouble("1e" + i);
+        }
+    }
+
+    private FixedPoint() {}
+
+    /**
+     * Get ten to the power of n
+     *
+     * @param n the exponent, from 0 to 18
+     *
+     * @return 10^n
+     */
+    public static long pow10(final int n) {
+        return POW10[n];
+    }
+
+    /**
+     * Parse the integer representation of a number
+     *
+     * @param value the integer representation, e.g. "1234000"
+     *
+     * @return the mantissa, 0 if empty, or {@link #OVERFLOW} if it doesn't fit in a long
+     *
+     * @throws NumberFormatException if the value is not an integer
+     */
+    public static long parse(final CharSequence value) {
+        if(value == null || value.length() == 0) {
+            return 0;
+        }
+        return parse(value, 0, value.length());
+    }
+
+    /**
+     * Parse the integer representation of a number from a region of a character sequence
+     *
+     * @param value the character sequence
+     * @param start the start index, inclusive
+     * @param end the end index, exclusive
+     *
+     * @return the mantissa, or {@link #OVERFLOW} if it doesn't fit in a long
+     *
+     * @throws NumberFormatException if the region is not an integer
+     */
+    public static long parse(final CharSequence value, final int start, final int end) {
+        int i = start;
+        boolean negative = false;
+        if(i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+        if(i == end) {
+            throw new NumberFormatException("not an integer");
+        }
+        long result = 0;
+        for(; i<end; i++) {
+            int digit = value.charAt(i) - '0';
+            if(digit < 0 || digit > 9) {
+                throw new NumberFormatException("not an integer");
+            }
+            if(result < (Long.MIN_VALUE + digit) / 10) {
+                return OVERFLOW;
+            }
+            result = result * 10 - digit;
+        }
+        if(!negative) {
+            if(result == Long.MIN_VALUE) {
+                return OVERFLOW;
+            }
+            return -result;
+        }
+        return result == OVERFLOW ? OVERFLOW : result;
+    }
+
+    /**
+     * Parse a decimal number, e.g. "25.35000000", from a region of a character sequence without allocating.
+     * Numbers with too many significant digits to be converted exactly fall back to
+     * {@link Double#parseDouble(String)}.
+     *
+     * @param value the character sequence
+     * @param start the start index, inclusive
+     * @param end the end index, exclusive
+     *
+     * @return the decimal representation
+     *
+     * @throws NumberFormatException if the region is not a decimal number
+     */
+    public static double parseDouble(final CharSequence value, final int start, final int end) {
+        int i = start;
+        boolean negative = false;
+        if(i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        boolean seenDigit = false;
+        int decimalPlaces = -1;
+        for(; i<end; i++) {
+            char c = value.charAt(i);
+            if(c == '.' && decimalPlaces < 0) {
+                decimalPlaces = 0;
+                continue;
+            }
+            int digit = c - '0';
+            if(digit < 0 || digit > 9) {
+                throw new NumberFormatException("not a number");
+            }
+            seenDigit = true;
+            if(mantissa > 0 || digit > 0) {
+                digits++;
+            }
+            if(digits > 18) {
+                return Double.parseDouble(value.subSequence(start, end).toString());
+            }
+            mantissa = mantissa * 10 + digit;
+            if(decimalPlaces >= 0) {
+                decimalPlaces++;
+            }
+        }
+        if(!seenDigit) {
+            throw new NumberFormatException("not a number");
+        }
+        int scale = Math.max(decimalPlaces, 0);
+        if(scale >= POW10_DOUBLE.length || mantissa > MAX_EXACT_DOUBLE) {
+            return Double.parseDouble(value.subSequence(start, end).toString());
+        }
+        double result = mantissa / POW10_DOUBLE[scale];
+        return negative ? -result : result;
+    }
+
+    /**
+     * Convert a mantissa to its decimal representation
+     *
+     * @param mantissa the mantissa
+     * @param decimalPlaces number of decimal places
+     *
+     * @return the decimal representation
+     */
+    public static double toDouble(final long mantissa, final int decimalPlaces) {
+        if(decimalPlaces < POW10_DOUBLE.length && Math.abs((double) mantissa) <= MAX_EXACT_DOUBLE) {
+            // both operands are exact, so the division is correctly rounded
+            return mantissa / POW10_DOUBLE[decimalPlaces];
+        }
+        return DecimalUtils.convertToDecimals(decimalPlaces, BigInteger.valueOf(mantissa));
+    }
+
+    /**
+     * Convert a parsed value to its decimal representation, going back to the raw value if the mantissa
+     * overflowed
+     *
+     * @param mantissa the parsed mantissa
+     * @param raw the integer representation it was parsed from
+     * @param decimalPlaces number of decimal places
+     *
+     * @return the decimal representation
+     */
+    public static double toDouble(final long mantissa, final String raw, final int decimalPlaces) {
+        if(mantissa == OVERFLOW) {
+            return DecimalUtils.convertToDecimals(decimalPlaces, new BigInteger(raw));
+        }
+        return toDouble(mantissa, decimalPlaces);
+    }
+
+    /**
+     * Convert a decimal number to a mantissa, rounding half down
+     *
+     * @param value the decimal representation
+     * @param decimalPlaces number of decimal places
+     *
+     * @return the mantissa, or {@link #OVERFLOW} if it doesn't fit in a long
+     */
+    public static long fromDouble(final double value, final int decimalPlaces) {
+        if(Double.isNaN(value) || Double.isInfinite(value) || decimalPlaces >= POW10_DOUBLE.length) {
+            return OVERFLOW;
+        }
+        double scaled = value * POW10_DOUBLE[decimalPlaces];
+        if(Math.abs(scaled) >= MAX_LONG_DOUBLE) {
+            return OVERFLOW;
+        }
+        double magnitude = Math.abs(scaled);
+        double floor = Math.floor(magnitude);
+        long rounded = (long) floor;
+        if(magnitude - floor > 0.5) {
+            rounded++;
+        }
+        return scaled < 0 ? -rounded : rounded;
+    }
+
+    /**
+     * Change the number of decimal places of a mantissa, rounding half down when reducing precision
+     *
+     * @param mantissa the mantissa
+     * @param fromDecimalPlaces current number of decimal places
+     * @param toDecimalPlaces target number of decimal places
+     *
+     * @return the rescaled mantissa, or {@link #OVERFLOW} if it doesn't fit in a long
+     */
+    public static long rescale(final long mantissa, final int fromDecimalPlaces, final int toDecimalPlaces) {
+        if(mantissa == OVERFLOW) {
+            return OVERFLOW;
+        }
+        if(toDecimalPlaces >= fromDecimalPlaces) {
+            return multiply(mantissa, POW10[toDecimalPlaces - fromDecimalPlaces]);
+        }
+        long divisor = POW10[fromDecimalPlaces - toDecimalPlaces];
+        long quotient = mantissa / divisor;
+        long remainder = Math.abs(mantissa % divisor);
+        if(remainder * 2 > divisor) {
+            quotient += mantissa < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    /**
+     * Add two mantissas with the same number of decimal places
+     *
+     * @param a first mantissa
+     * @param b second mantissa
+     *
+     * @return the sum, or {@link #OVERFLOW}
+     */
+    public static long add(final long a, final long b) {
+        if(a == OVERFLOW || b == OVERFLOW) {
+            return OVERFLOW;
+        }
+        long result = a + b;
+        if(((a ^ result) & (b ^ result)) < 0 || result == OVERFLOW) {
+            return OVERFLOW;
+        }
+        return result;
+    }
+
+    /**
+     * Subtract two mantissas with the same number of decimal places
+     *
+     * @param a first mantissa
+     * @param b second mantissa
+     *
+     * @return the difference, or {@link #OVERFLOW}
+     */
+    public static long subtract(final long a, final long b) {
+        if(b == OVERFLOW) {
+            return OVERFLOW;
+        }
+        return add(a, -b);
+    }
+
+    /**
+     * Multiply a mantissa by an integer factor
+     *
+     * @param a the mantissa
+     * @param factor the factor
+     *
+     * @return the product, or {@link #OVERFLOW}
+     */
+    public static long multiply(final long a, final long factor) {
+        if(a == OVERFLOW || factor == OVERFLOW) {
+            return OVERFLOW;
+        }
+        long high = Math.multiplyHigh(a, factor);
+        long low = a * factor;
+        if(high != (low >> 63)) {
+            return OVERFLOW;
+        }
+        return low == OVERFLOW ? OVERFLOW : low;
+    }
+
+    /**
+     * Append the integer representation of a mantissa, as sent on the wire
+     *
+     * @param mantissa the mantissa
+     * @param builder {@link StringBuilder} to append to
+     *
+     * @return the builder
+     */
+    public static StringBuilder appendTo(final long mantissa, final StringBuilder builder) {
+        return builder.append(mantissa);
+    }
+
+    /**
+     * Format a mantissa as its integer representation, as sent on the wire
+     *
+     * @param mantissa the mantissa
+     *
+     * @return the integer representation
+     */
+    public static String toWire(final long mantissa) {
+        return Long.toString(mantissa);
+    }
+
+    /**
+     * Convert a decimal number to its integer representation, falling back to {@link BigDecimal} if the
+     * result doesn't fit in a long
+     *
+     * @param value the decimal representation
+     * @param decimalPlaces number of decimal places
+     *
+     * @return the integer representation
+     */
+    public static String toWire(final double value, final int decimalPlaces) {
+        long mantissa = fromDouble(value, decimalPlaces);
+        if(mantissa == OVERFLOW) {
+            return DecimalUtils.convertFromDecimals(decimalPlaces, value).toString();
+        }
+        return toWire(mantissa);
+    }
+}
@@ -0,0 +1,35 @@
+package com.vega.protocol.utils;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+public final class TimeUtils {
+
+    private TimeUtils() {}
+
+    /**
+     * Convert a Vega timestamp to nanoseconds since the epoch. The REST API sends timestamps as a string
+     * of nanoseconds, e.g. "1675000000123456789", and GraphQL sends them as RFC 3339 strings, e.g.
+     * "2023-01-29T13:46:40.123456789Z".
+     *
+     * @param timestamp the timestamp in either format
+     *
+     * @return nanoseconds since the epoch, or 0 if the timestamp is empty or not recognised
+     */
+    public static long toEpochNanos(final String timestamp) {
+        if(timestamp == null || timestamp.isEmpty()) {
+            return 0;
+        }
+        char first = timestamp.charAt(0);
+        if(first >= '0' && first <= '9' && timestamp.indexOf('-') < 0) {
+            long nanos = FixedPoint.parse(timestamp);
+            return nanos == FixedPoint.OVERFLOW ? 0 : nanos;
+        }
+        try {
+            Instant instant = Instant.parse(timestamp);
+            return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+        } catch(DateTimeParseException e) {
+            return 0;
+        }
+    }
+}
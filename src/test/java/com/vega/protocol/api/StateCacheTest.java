@@ -0,0 +1,65 @@
+package com.vega.protocol.api;
+
+import com.vega.protocol.model.Asset;
+import com.vega.protocol.store.BinanceStore;
+import com.vega.protocol.store.VegaStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+public class StateCacheTest {
+
+    private final VegaStore vegaStore = VegaStore.getInstance();
+    private final BinanceStore binanceStore = BinanceStore.getInstance();
+
+    @BeforeEach
+    public void setup() {
+        vegaStore.truncate();
+    }
+
+    @Test
+    public void testSnapshotIsReusedUntilStoreChanges() {
+        StateCache stateCache = new StateCache(vegaStore, binanceStore);
+        StateCache.Snapshot first = stateCache.getSnapshot();
+        Assertions.assertSame(first, stateCache.getSnapshot());
+        vegaStore.save(new Asset().setId("1").setDetails(new Asset.AssetDetails().setName("USDT").setDecimals("6")));
+        StateCache.Snapshot second = stateCache.getSnapshot();
+        Assertions.assertNotSame(first, second);
+        Assertions.assertNotEquals(first.getEtag(), second.getEtag());
+        Assertions.assertTrue(new String(second.getBody()).contains("USDT"));
+        binanceStore.getSlot("STATECACHETEST").write(1, 2, 0);
+        Assertions.assertNotEquals(second.getEtag(), stateCache.getSnapshot().getEtag());
+    }
+
+    @Test
+    public void testGzipBody() throws IOException {
+        vegaStore.save(new Asset().setId("1").setDetails(new Asset.AssetDetails().setName("USDT").setDecimals("6")));
+        StateCache.Snapshot snapshot = new StateCache(vegaStore, binanceStore).getSnapshot();
+        try(GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(snapshot.getGzipBody()))) {
+            Assertions.assertArrayEquals(snapshot.getBody(), in.readAllBytes());
+        }
+        Assertions.assertSame(snapshot.getGzipBody(), snapshot.getGzipBody());
+    }
+
+    @Test
+    public void testMatches() {
+        Assertions.assertFalse(StateCache.matches(null, "\"a\""));
+        Assertions.assertTrue(StateCache.matches("\"a\"", "\"a\""));
+        Assertions.assertTrue(StateCache.matches("\"b\", W/\"a\"", "\"a\""));
+        Assertions.assertTrue(StateCache.matches("*", "\"a\""));
+        Assertions.assertFalse(StateCache.matches("\"b\"", "\"a\""));
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        Assertions.assertFalse(StateCache.acceptsGzip(null));
+        Assertions.assertTrue(StateCache.acceptsGzip("gzip, deflate, br"));
+        Assertions.assertTrue(StateCache.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+        Assertions.assertFalse(StateCache.acceptsGzip("gzip;q=0"));
+        Assertions.assertFalse(StateCache.acceptsGzip("identity"));
+    }
+}
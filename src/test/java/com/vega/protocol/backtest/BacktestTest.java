@@ -0,0 +1,135 @@
+package com.vega.protocol.backtest;
+
+import com.vega.protocol.client.api.VegaApiClient;
+import com.vega.protocol.journal.Journal;
+import com.vega.protocol.journal.JournalReader;
+import com.vega.protocol.journal.JournalType;
+import com.vega.protocol.model.*;
+import com.vega.protocol.store.BinanceStore;
+import com.vega.protocol.store.VegaStore;
+import com.vega.protocol.strategy.TradingStrategy;
+import com.vega.protocol.submission.OrderCancellation;
+import com.vega.protocol.submission.OrderSubmission;
+import com.vega.protocol.utils.FixedPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class BacktestTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("backtest");
+        long startNanos = System.nanoTime();
+        try(Journal journal = Journal.open(directory, 64 * 1024, 0)) {
+            journal.append(JournalType.BINANCE_FRAME, startNanos, ticker("100.00", "100.10"));
+            journal.append(JournalType.BINANCE_FRAME, startNanos + millis(50), ticker("100.00", "100.10"));
+            journal.append(JournalType.BATCH_SENT, startNanos + millis(60), "{}");
+            journal.append(JournalType.BINANCE_FRAME, startNanos + millis(1000), ticker("100.30", "100.40"));
+        }
+    }
+
+    @AfterEach
+    public void teardown() {
+        VegaStore.getInstance().truncate();
+        BinanceStore.getInstance().truncate();
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        BacktestResult result = run();
+        Assertions.assertEquals(4, result.getEvents());
+        Assertions.assertEquals(3, result.getBinanceFrames());
+        // the second tick is held back by the minimum interval, and the fill triggers an immediate requote
+        Assertions.assertEquals(3, result.getQuotes());
+        Assertions.assertEquals(3, result.getBatches());
+        Assertions.assertEquals(4, result.getSubmissions());
+        Assertions.assertEquals(1, result.getFills());
+        Assertions.assertEquals(100.20, result.getTradedNotional(), 1e-9);
+        Assertions.assertEquals(-0.15, result.getUnrealisedPnl(), 1e-9);
+        Assertions.assertEquals(0.02004, result.getFees(), 1e-9);
+        Assertions.assertEquals(1000, result.getSimulatedMillis());
+        Position position = VegaStore.getInstance().getPositionByMarketId("1").orElseThrow();
+        Assertions.assertEquals(-1, position.getOpenVolume(), 1e-9);
+        Assertions.assertEquals(100.20, position.getAverageEntryPrice(), 1e-9);
+        // the requote after the fill is still in flight when the journal ends, so only the buy is resting
+        Assertions.assertEquals(1, VegaStore.getInstance().getSnapshot().getOrders("1").size());
+    }
+
+    @Test
+    public void testRunsAreDeterministic() throws IOException {
+        BacktestResult first = run();
+        BacktestResult second = run();
+        Assertions.assertEquals(first.getQuotes(), second.getQuotes());
+        Assertions.assertEquals(first.getSubmissions(), second.getSubmissions());
+        Assertions.assertEquals(first.getCancellations(), second.getCancellations());
+        Assertions.assertEquals(first.getFills(), second.getFills());
+        Assertions.assertEquals(first.getTotalPnl(), second.getTotalPnl());
+    }
+
+    private BacktestResult run() throws IOException {
+        Market market = new Market()
+                .setId("1")
+                .setDecimalPlaces(2)
+                .setPositionDecimalPlaces(2)
+                .setTradableInstrument(new Market.TradableInstrument());
+        market.getTradableInstrument().setInstrument(new Market.Instrument());
+        market.getTradableInstrument().getInstrument().setFuture(new Market.Future());
+        market.getTradableInstrument().getInstrument().getFuture().setSettlementAsset("USD");
+        BacktestSettings settings = new BacktestSettings()
+                .setPartyId("party")
+                .setQuotedMarkets(List.of(new MarketConfig().setMarketId("1").setBinanceMarket("BTCUSDT")))
+                .setAssets(List.of(new Asset().setId("USD")
+                        .setDetails(new Asset.AssetDetails().setName("USD").setDecimals("2"))))
+                .setMarkets(List.of(market))
+                .setLatencyMillis(100)
+                .setMinRequoteIntervalMillis(500)
+                .setInitialBalance(1000)
+                .setFeeRate(0.0002);
+        try(JournalReader reader = new JournalReader(directory)) {
+            return new Backtest(settings, BacktestTest::quoteAroundReference).run(reader);
+        }
+    }
+
+    /**
+     * Replace all orders with one buy 0.10 below the reference bid and one sell 0.10 above the ask
+     */
+    private static TradingStrategy quoteAroundReference(final VegaApiClient apiClient) {
+        return marketId -> {
+            ReferencePrice referencePrice = BinanceStore.getInstance().getReferencePriceByMarket("BTCUSDT")
+                    .orElseThrow();
+            List<OrderSubmission> submissions = List.of(
+                    submission(marketId, "SIDE_BUY", referencePrice.getBidPrice() - 0.10),
+                    submission(marketId, "SIDE_SELL", referencePrice.getAskPrice() + 0.10));
+            apiClient.sendBatchMarketInstruction(submissions,
+                    List.of(new OrderCancellation().setMarketId(marketId)), List.of());
+        };
+    }
+
+    private static OrderSubmission submission(final String marketId, final String side, final double price) {
+        return new OrderSubmission()
+                .setMarketId(marketId)
+                .setSide(side)
+                .setSize("100")
+                .setPrice(FixedPoint.toWire(price, 2))
+                .setType("TYPE_LIMIT")
+                .setTimeInForce("TIME_IN_FORCE_GTC");
+    }
+
+    private static String ticker(final String bidPrice, final String askPrice) {
+        return String.format("{\"e\":\"24hrTicker\",\"s\":\"BTCUSDT\",\"b\":\"%s\",\"a\":\"%s\"}", bidPrice, askPrice);
+    }
+
+    private static long millis(final long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,36 @@
+package com.vega.protocol.backtest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class HoldingTest {
+
+    @Test
+    public void testAverageEntryAndRealisedPnl() {
+        Holding holding = new Holding();
+        Assertions.assertEquals(0, holding.trade(1, 100), 1e-9);
+        Assertions.assertEquals(0, holding.trade(3, 104), 1e-9);
+        Assertions.assertEquals(103, holding.getAverageEntryPrice(), 1e-9);
+        Assertions.assertEquals(8, holding.getUnrealisedPnl(105), 1e-9);
+        Assertions.assertEquals(6, holding.trade(-2, 106), 1e-9);
+        Assertions.assertEquals(103, holding.getAverageEntryPrice(), 1e-9);
+        // selling through the position closes it and opens a short at the trade price
+        Assertions.assertEquals(-2, holding.trade(-3, 102), 1e-9);
+        Assertions.assertEquals(-1, holding.getOpenVolume(), 1e-9);
+        Assertions.assertEquals(102, holding.getAverageEntryPrice(), 1e-9);
+        Assertions.assertEquals(4, holding.getRealisedPnl(), 1e-9);
+        holding.trade(1, 101);
+        Assertions.assertEquals(0, holding.getOpenVolume(), 1e-9);
+        Assertions.assertEquals(0, holding.getAverageEntryPrice(), 1e-9);
+    }
+
+    @Test
+    public void testLargePositionDoesNotOverflow() {
+        // as mantissas with 8 decimals each, price times size is far beyond a long
+        Holding holding = new Holding();
+        holding.trade(5_000_000, 90_000);
+        holding.trade(5_000_000, 110_000);
+        Assertions.assertEquals(100_000, holding.getAverageEntryPrice(), 1e-6);
+        Assertions.assertEquals(10_000_000, holding.getOpenVolume(), 1e-6);
+    }
+}
@@ -0,0 +1,63 @@
+package com.vega.protocol.client.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vega.protocol.submission.BatchMarketInstruction;
+import com.vega.protocol.submission.OrderAmendment;
+import com.vega.protocol.submission.OrderCancellation;
+import com.vega.protocol.submission.OrderSubmission;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class BatchPayloadWriterTest {
+
+    private final BatchPayloadWriter batchPayloadWriter = new BatchPayloadWriter(new ObjectMapper());
+
+    private BatchMarketInstruction batch(int submissions) {
+        BatchMarketInstruction batchMarketInstruction = new BatchMarketInstruction();
+        for(int i=0; i<submissions; i++) {
+            batchMarketInstruction.getSubmissions().add(new OrderSubmission()
+                    .setMarketId("1")
+                    .setSize("100")
+                    .setPrice(String.valueOf(1000 + i))
+                    .setSide("SIDE_BUY")
+                    .setType("TYPE_LIMIT")
+                    .setTimeInForce("TIME_IN_FORCE_GTC"));
+        }
+        batchMarketInstruction.getAmendments().add(new OrderAmendment()
+                .setOrderId("2").setMarketId("1").setSizeDelta("-5"));
+        batchMarketInstruction.getCancellations().add(new OrderCancellation().setOrderId("3").setMarketId("1"));
+        return batchMarketInstruction;
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        byte[] payload = batchPayloadWriter.write(batch(2), "party");
+        JSONObject command = new JSONObject(new String(payload, StandardCharsets.UTF_8));
+        Assertions.assertEquals("party", command.getString("pubKey"));
+        Assertions.assertTrue(command.getBoolean("propagate"));
+        JSONObject batch = command.getJSONObject("batchMarketInstructions");
+        Assertions.assertEquals(2, batch.getJSONArray("submissions").length());
+        Assertions.assertEquals("1001", batch.getJSONArray("submissions").getJSONObject(1).getString("price"));
+        JSONObject amendment = batch.getJSONArray("amendments").getJSONObject(0);
+        Assertions.assertEquals("-5", amendment.getString("sizeDelta"));
+        Assertions.assertFalse(amendment.has("price"));
+        Assertions.assertEquals("3", batch.getJSONArray("cancellations").getJSONObject(0).getString("orderId"));
+    }
+
+    @Test
+    public void testPayloadsDoNotShareTheBuffer() throws IOException {
+        byte[] large = batchPayloadWriter.write(batch(500), null);
+        byte[] small = batchPayloadWriter.write(batch(1), null);
+        Assertions.assertNotSame(large, small);
+        Assertions.assertEquals(500, new JSONObject(new String(large, StandardCharsets.UTF_8))
+                .getJSONObject("batchMarketInstructions").getJSONArray("submissions").length());
+        JSONObject command = new JSONObject(new String(small, StandardCharsets.UTF_8));
+        Assertions.assertFalse(command.has("pubKey"));
+        Assertions.assertEquals(1, command.getJSONObject("batchMarketInstructions")
+                .getJSONArray("submissions").length());
+    }
+}
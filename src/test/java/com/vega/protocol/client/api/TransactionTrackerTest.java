@@ -0,0 +1,131 @@
+package com.vega.protocol.client.api;
+
+import com.sun.net.httpserver.HttpServer;
+import com.vega.protocol.model.TransactionResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TransactionTrackerTest {
+
+    private static final String NOT_FOUND =
+            "{\"jsonrpc\":\"2.0\",\"id\":%d,\"error\":{\"code\":-32603,\"message\":\"Internal error\"}}";
+    private static final String RESULT =
+            "{\"jsonrpc\":\"2.0\",\"id\":%%d,\"result\":{\"height\":\"42\",\"tx_result\":{\"code\":%d,\"info\":\"%s\"}}}";
+
+    private HttpServer server;
+    private final Map<String, String> responses = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            JSONArray batch = new JSONArray(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            batchSizes.add(batch.length());
+            JSONArray results = new JSONArray();
+            // answer in reverse, since a batch response may come back in any order
+            for(int i=batch.length()-1; i>=0; i--) {
+                JSONObject call = batch.getJSONObject(i);
+                String hash = HexFormat.of().withUpperCase().formatHex(
+                        Base64.getDecoder().decode(call.getJSONObject("params").getString("hash")));
+                String response = responses.getOrDefault(hash, NOT_FOUND);
+                results.put(new JSONObject(String.format(response, call.getInt("id"))));
+            }
+            byte[] body = results.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try(OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        server.stop(0);
+    }
+
+    private TransactionTracker tracker(long timeoutMillis) {
+        String url = String.format("http://127.0.0.1:%d", server.getAddress().getPort());
+        return new TransactionTracker(HttpClient.newHttpClient(), () -> url, 20, timeoutMillis);
+    }
+
+    @Test
+    public void testAcceptedAndRejected() throws Exception {
+        TransactionTracker tracker = tracker(5000);
+        List<TransactionResult> rejections = new CopyOnWriteArrayList<>();
+        tracker.addRejectionListener(rejections::add);
+        CompletableFuture<TransactionResult> accepted = tracker.track("AAAA");
+        CompletableFuture<TransactionResult> rejected = tracker.track("BBBB", Set.of("m1", "m2"));
+        Thread.sleep(100);
+        Assertions.assertFalse(accepted.isDone());
+        responses.put("AAAA", String.format(RESULT, 0, ""));
+        responses.put("BBBB", String.format(RESULT, 89, "margin check failed"));
+        TransactionResult acceptedResult = accepted.get(2, TimeUnit.SECONDS);
+        TransactionResult rejectedResult = rejected.get(2, TimeUnit.SECONDS);
+        Assertions.assertEquals(TransactionResult.Status.ACCEPTED, acceptedResult.getStatus());
+        Assertions.assertEquals(42, acceptedResult.getHeight());
+        Assertions.assertEquals(TransactionResult.Status.REJECTED, rejectedResult.getStatus());
+        Assertions.assertEquals("margin check failed", rejectedResult.getInfo());
+        Assertions.assertEquals(1, rejections.size());
+        Assertions.assertEquals("BBBB", rejections.get(0).getTxHash());
+        Assertions.assertEquals(Set.of("m1", "m2"), rejections.get(0).getMarketIds());
+        Assertions.assertTrue(acceptedResult.getMarketIds().isEmpty());
+        Assertions.assertEquals(0, tracker.getPendingCount());
+        tracker.shutdown();
+    }
+
+    @Test
+    public void testTrackIsIdempotent() {
+        TransactionTracker tracker = tracker(5000);
+        Assertions.assertSame(tracker.track("AAAA"), tracker.track("AAAA"));
+        Assertions.assertEquals(1, tracker.getPendingCount());
+        tracker.shutdown();
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        TransactionTracker tracker = tracker(500);
+        TransactionResult result = tracker.track("CCCC").get(2, TimeUnit.SECONDS);
+        Assertions.assertEquals(TransactionResult.Status.NOT_FOUND, result.getStatus());
+        Assertions.assertTrue(requests.get() > 0);
+        tracker.shutdown();
+    }
+
+    @Test
+    public void testPendingTransactionsShareOneRequest() throws Exception {
+        TransactionTracker tracker = tracker(5000);
+        tracker.track("AAAA");
+        tracker.track("BBBB");
+        tracker.track("CCCC");
+        long deadline = System.currentTimeMillis() + 2000;
+        while(batchSizes.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(batchSizes.size() >= 2);
+        batchSizes.forEach(size -> Assertions.assertEquals(Integer.valueOf(3), size));
+        Assertions.assertEquals(3, tracker.getPendingCount());
+        tracker.shutdown();
+    }
+}
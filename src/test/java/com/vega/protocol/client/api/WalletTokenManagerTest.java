@@ -0,0 +1,80 @@
+package com.vega.protocol.client.api;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WalletTokenManagerTest {
+
+    private String jwt(long exp) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String header = encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8));
+        String payload = encoder.encodeToString(String.format("{\"exp\":%d}", exp).getBytes(StandardCharsets.UTF_8));
+        return String.format("%s.%s.", header, payload);
+    }
+
+    @Test
+    public void testTokenIsCached() {
+        AtomicInteger requests = new AtomicInteger();
+        WalletTokenManager tokenManager = new WalletTokenManager(() -> {
+            requests.incrementAndGet();
+            return CompletableFuture.completedFuture(Optional.of("token"));
+        });
+        Assertions.assertEquals(Optional.of("token"), tokenManager.getToken().join());
+        Assertions.assertEquals(Optional.of("token"), tokenManager.getToken().join());
+        Assertions.assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testConcurrentRefreshSharesRequest() {
+        AtomicInteger requests = new AtomicInteger();
+        CompletableFuture<Optional<String>> response = new CompletableFuture<>();
+        WalletTokenManager tokenManager = new WalletTokenManager(() -> {
+            requests.incrementAndGet();
+            return response;
+        });
+        CompletableFuture<Optional<String>> first = tokenManager.getToken();
+        CompletableFuture<Optional<String>> second = tokenManager.getToken();
+        response.complete(Optional.of("token"));
+        Assertions.assertEquals(Optional.of("token"), first.join());
+        Assertions.assertEquals(Optional.of("token"), second.join());
+        Assertions.assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testInvalidateForcesRefresh() {
+        AtomicInteger requests = new AtomicInteger();
+        WalletTokenManager tokenManager = new WalletTokenManager(() ->
+                CompletableFuture.completedFuture(Optional.of("token-" + requests.incrementAndGet())));
+        Assertions.assertEquals(Optional.of("token-1"), tokenManager.getToken().join());
+        tokenManager.invalidate("token-0");
+        Assertions.assertEquals(Optional.of("token-1"), tokenManager.getToken().join());
+        tokenManager.invalidate("token-1");
+        Assertions.assertEquals(Optional.of("token-2"), tokenManager.getToken().join());
+    }
+
+    @Test
+    public void testExpiredTokenIsRefreshed() {
+        AtomicInteger requests = new AtomicInteger();
+        long expired = System.currentTimeMillis() / 1000 - 60;
+        WalletTokenManager tokenManager = new WalletTokenManager(() -> {
+            requests.incrementAndGet();
+            return CompletableFuture.completedFuture(Optional.of(jwt(expired)));
+        });
+        tokenManager.getToken().join();
+        tokenManager.getToken().join();
+        Assertions.assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testFailedRequest() {
+        WalletTokenManager tokenManager = new WalletTokenManager(() ->
+                CompletableFuture.failedFuture(new RuntimeException("wallet offline")));
+        Assertions.assertEquals(Optional.empty(), tokenManager.getToken().join());
+    }
+}
@@ -0,0 +1,71 @@
+package com.vega.protocol.client.ws;
+
+import com.vega.protocol.engine.MarketEventListener;
+import com.vega.protocol.model.ReferencePrice;
+import com.vega.protocol.store.BinanceStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BinanceWebSocketMessageTest {
+
+    @Test
+    public void testTickerAndBookTicker() {
+        List<String> updates = new ArrayList<>();
+        BinanceWebSocketClient webSocketClient = new BinanceWebSocketClient(URI.create("ws://localhost:1"),
+                new MarketEventListener() {
+                    @Override
+                    public void onReferencePriceUpdate(String symbol) {
+                        updates.add(symbol);
+                    }
+                });
+        webSocketClient.onMessage("{\"result\":null,\"id\":1}");
+        webSocketClient.onMessage("{\"e\":\"24hrTicker\",\"E\":123456789,\"s\":\"UNIUSDT\",\"p\":\"0.0015\"," +
+                "\"b\":\"6.10000000\",\"B\":\"10\",\"a\":\"6.12000000\",\"A\":\"100\",\"o\":\"6.0\"}");
+        ReferencePrice referencePrice = BinanceStore.getInstance().getReferencePriceByMarket("UNIUSDT").orElseThrow();
+        Assertions.assertEquals(6.1, referencePrice.getBidPrice());
+        Assertions.assertEquals(6.12, referencePrice.getAskPrice());
+        webSocketClient.onMessage("{\"u\":400900217,\"s\":\"UNIUSDT\",\"b\":\"6.11000000\",\"B\":\"31.21\"," +
+                "\"a\":\"6.11500000\",\"A\":\"40.66\"}");
+        referencePrice = BinanceStore.getInstance().getReferencePriceByMarket("UNIUSDT").orElseThrow();
+        Assertions.assertEquals(6.11, referencePrice.getBidPrice());
+        Assertions.assertEquals(6.115, referencePrice.getAskPrice());
+        webSocketClient.onMessage("{\"e\":\"trade\",\"s\":\"UNIUSDT\",\"b\":\"1\",\"a\":\"2\"}");
+        Assertions.assertEquals(List.of("UNIUSDT", "UNIUSDT"), updates);
+    }
+
+    @Test
+    public void testBookTickerStream() {
+        System.setProperty("BINANCE_STREAM", "bookTicker");
+        try {
+            List<String> updates = new ArrayList<>();
+            BinanceWebSocketClient webSocketClient = new BinanceWebSocketClient(URI.create("ws://localhost:1"),
+                    new MarketEventListener() {
+                        @Override
+                        public void onReferencePriceUpdate(String symbol) {
+                            updates.add(symbol);
+                        }
+                    });
+            webSocketClient.onMessage("{\"e\":\"bookTicker\",\"u\":400900218,\"E\":1568014460893," +
+                    "\"T\":1568014460891,\"s\":\"AAVEUSDT\",\"b\":\"90.50\",\"B\":\"31.21\"," +
+                    "\"a\":\"90.60\",\"A\":\"40.66\"}");
+            ReferencePrice referencePrice = BinanceStore.getInstance().getReferencePriceByMarket("AAVEUSDT")
+                    .orElseThrow();
+            Assertions.assertEquals(90.5, referencePrice.getBidPrice());
+            Assertions.assertEquals(90.6, referencePrice.getAskPrice());
+            webSocketClient.onMessage("{\"e\":\"24hrTicker\",\"s\":\"AAVEUSDT\",\"b\":\"1\",\"a\":\"2\"}");
+            Assertions.assertEquals(List.of("AAVEUSDT"), updates);
+        } finally {
+            System.clearProperty("BINANCE_STREAM");
+        }
+    }
+
+    @Test
+    public void testEventType() {
+        Assertions.assertEquals("24hrTicker", BinanceWebSocketClient.getEventType("ticker"));
+        Assertions.assertEquals("bookTicker", BinanceWebSocketClient.getEventType("bookTicker"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.vega.protocol.client.ws;
+
+import com.vega.protocol.engine.MarketEventListener;
+import com.vega.protocol.model.Market;
+import com.vega.protocol.model.Order;
+import com.vega.protocol.store.VegaStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+public class VegaWebSocketMessageTest {
+
+    private final List<String> updatedMarkets = new ArrayList<>();
+    private final List<String> tradedMarkets = new ArrayList<>();
+    private VegaWebSocketClient webSocketClient;
+
+    @BeforeEach
+    public void setup() {
+        VegaStore.getInstance().truncate();
+        webSocketClient = new VegaWebSocketClient(URI.create("ws://localhost:1"), new MarketEventListener() {
+            @Override
+            public void onMarketDataUpdate(String marketId) {
+                updatedMarkets.add(marketId);
+            }
+            @Override
+            public void onOrderUpdate(String marketId) {
+                tradedMarkets.add(marketId);
+            }
+        });
+    }
+
+    @AfterEach
+    public void teardown() {
+        VegaStore.getInstance().truncate();
+    }
+
+    @Test
+    public void testOrders() {
+        webSocketClient.onMessage("""
+                {"type":"data","id":"orders","payload":{"data":{"orders":[
+                {"id":"1","price":"100","side":"SIDE_BUY","type":"TYPE_LIMIT","size":"10","remaining":"10",
+                "status":"STATUS_ACTIVE","marketId":"m1"},
+                {"id":"2","price":"101","side":"SIDE_SELL","type":"TYPE_LIMIT","size":"10","remaining":"4",
+                "status":"STATUS_ACTIVE","marketId":"m1","extra":{"nested":[1,2]}}]}}}""");
+        Order order = VegaStore.getInstance().getOrderById("2").orElseThrow();
+        Assertions.assertEquals(101L, order.getPriceValue());
+        Assertions.assertEquals(4L, order.getRemainingValue());
+        Assertions.assertEquals(2, VegaStore.getInstance().getOrders().size());
+        Assertions.assertEquals(List.of("m1"), tradedMarkets);
+    }
+
+    @Test
+    public void testBadItemIsSkipped() {
+        webSocketClient.onMessage("""
+                {"type":"data","id":"orders","payload":{"data":{"orders":[
+                {"id":"1","price":"100","side":"SIDE_BUY","size":"10","remaining":"6",
+                "status":"STATUS_ACTIVE","marketId":"m1"},
+                {"id":"2","price":"101","size":{"units":[1,{"nanos":2}]},"side":"SIDE_SELL","remaining":"4",
+                "status":"STATUS_ACTIVE","marketId":"m1","extra":{"nested":[1,2]}},
+                {"id":"3","price":"102","side":"SIDE_SELL","size":"10","remaining":"3",
+                "status":"STATUS_ACTIVE","marketId":"m2"}]}}}""");
+        Assertions.assertTrue(VegaStore.getInstance().getOrderById("1").isPresent());
+        Assertions.assertTrue(VegaStore.getInstance().getOrderById("2").isEmpty());
+        Assertions.assertEquals(102L, VegaStore.getInstance().getOrderById("3").orElseThrow().getPriceValue());
+        Assertions.assertEquals(List.of("m1", "m2"), tradedMarkets);
+    }
+
+    @Test
+    public void testMarketsDataWithPayloadFirst() {
+        VegaStore.getInstance().save(new Market().setId("m1"));
+        webSocketClient.onMessage("""
+                {"payload":{"data":{"marketsData":[{"marketId":"m1","markPrice":"12345",
+                "bestBidPrice":"12340","bestOfferPrice":"12350","marketState":"STATE_ACTIVE",
+                "marketTradingMode":"TRADING_MODE_CONTINUOUS"}]}},"type":"data","id":"marketsData"}""");
+        Market market = VegaStore.getInstance().getMarketById("m1").orElseThrow();
+        Assertions.assertEquals("STATE_ACTIVE", market.getState());
+        Assertions.assertEquals("TRADING_MODE_CONTINUOUS", market.getTradingMode());
+        Assertions.assertEquals(12345L, market.getMarketData().getMarkPriceValue());
+        Assertions.assertEquals(List.of("m1"), updatedMarkets);
+    }
+
+    @Test
+    public void testMalformedMessageIsIgnored() {
+        webSocketClient.onMessage("{\"type\":\"ka\"}");
+        webSocketClient.onMessage("{\"id\":\"orders\",\"payload\":{\"data\":{\"orders\":[{\"id\":");
+        Assertions.assertTrue(VegaStore.getInstance().getOrders().isEmpty());
+        Assertions.assertTrue(tradedMarkets.isEmpty());
+    }
+}
@@ -0,0 +1,95 @@
+package com.vega.protocol.engine;
+
+import com.vega.protocol.client.api.VegaApiClient;
+import com.vega.protocol.model.Account;
+import com.vega.protocol.model.Asset;
+import com.vega.protocol.model.Market;
+import com.vega.protocol.model.Order;
+import com.vega.protocol.model.Position;
+import com.vega.protocol.store.ReconcileResult;
+import com.vega.protocol.store.VegaStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class DataLoaderTest {
+
+    private static final long DELAY_MILLIS = 200;
+
+    private final VegaStore vegaStore = VegaStore.getInstance();
+
+    private final VegaApiClient apiClient = new VegaApiClient() {
+        @Override
+        public CompletableFuture<List<Asset>> getAssetsAsync() {
+            return delayed(List.of(new Asset().setId("1")));
+        }
+        @Override
+        public CompletableFuture<List<Market>> getMarketsAsync() {
+            return delayed(List.of());
+        }
+        @Override
+        public CompletableFuture<List<Account>> getAccountsAsync(final String partyId) {
+            return delayed(List.of(new Account().setOwner("party").setBalance("1")
+                    .setAsset("1").setType("ACCOUNT_TYPE_GENERAL")));
+        }
+        @Override
+        public CompletableFuture<List<Order>> getOpenOrdersAsync(final String partyId) {
+            if(failOrders) {
+                return CompletableFuture.failedFuture(new IllegalStateException("orders unavailable"));
+            }
+            return delayed(List.of(new Order().setId("1").setMarketId("1").setSide("SIDE_BUY")
+                    .setStatus("STATUS_ACTIVE")));
+        }
+        @Override
+        public CompletableFuture<List<Position>> getPositionsAsync(final String partyId) {
+            return delayed(List.of(new Position().setMarketId("1")));
+        }
+    };
+
+    private volatile boolean failOrders;
+
+    /**
+     * Block the calling thread, like a blocking client would, before returning the results
+     */
+    private static <T> CompletableFuture<List<T>> delayed(final List<T> results) {
+        try {
+            Thread.sleep(DELAY_MILLIS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return CompletableFuture.completedFuture(results);
+    }
+
+    @BeforeEach
+    public void setup() {
+        vegaStore.truncate();
+    }
+
+    @Test
+    public void testResourcesAreFetchedConcurrently() {
+        DataLoader dataLoader = new DataLoader(apiClient, vegaStore);
+        long startNanos = System.nanoTime();
+        dataLoader.load();
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        Assertions.assertTrue(millis < DELAY_MILLIS * 3, String.format("took %d ms", millis));
+        Assertions.assertEquals(1, vegaStore.getAssets().size());
+        Assertions.assertEquals(1, vegaStore.getAccounts().size());
+        Assertions.assertEquals(1, vegaStore.getOrders().size());
+        Assertions.assertEquals(1, vegaStore.getPositions().size());
+        Assertions.assertTrue(dataLoader.getFetchMillis("orders") >= DELAY_MILLIS);
+    }
+
+    @Test
+    public void testFailedResourceIsLeftAlone() {
+        DataLoader dataLoader = new DataLoader(apiClient, vegaStore);
+        dataLoader.load();
+        failOrders = true;
+        ReconcileResult result = dataLoader.load();
+        Assertions.assertEquals(1, vegaStore.getOrders().size());
+        Assertions.assertEquals(0, result.getRemoved());
+        Assertions.assertEquals(0, result.getAdded() + result.getChanged());
+    }
+}
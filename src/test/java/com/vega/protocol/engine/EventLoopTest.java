@@ -0,0 +1,228 @@
+package com.vega.protocol.engine;
+
+import com.vega.protocol.model.Account;
+import com.vega.protocol.model.MarketData;
+import com.vega.protocol.model.Order;
+import com.vega.protocol.model.Position;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class EventLoopTest {
+
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private EventLoop eventLoop;
+
+    private final MarketUpdateHandler handler = new MarketUpdateHandler() {
+        @Override
+        public void onReferencePrice(final String symbol) {
+            record(String.format("price:%s", symbol));
+        }
+        @Override
+        public void onMarketData(final MarketData marketData) {
+            record(String.format("data:%s:%s", marketData.getMarketId(), marketData.getMarkPrice()));
+        }
+        @Override
+        public void onOrder(final Order order) {
+            record(String.format("order:%s", order.getId()));
+        }
+        @Override
+        public void onPosition(final Position position) {
+            record(String.format("position:%s", position.getMarketId()));
+        }
+        @Override
+        public void onAccount(final Account account) {
+            record(String.format("account:%s", account.getId()));
+        }
+    };
+
+    private void record(final String event) {
+        threads.add(Thread.currentThread());
+        handled.add(event);
+    }
+
+    @BeforeEach
+    public void setup() {
+        eventLoop = new EventLoop(8);
+        eventLoop.start(handler);
+    }
+
+    @AfterEach
+    public void teardown() {
+        eventLoop.close();
+    }
+
+    @Test
+    public void testEventsAreHandledInOrderOnOneThread() throws InterruptedException {
+        for(int i=0; i<100; i++) {
+            eventLoop.onOrder(new Order().setId(String.valueOf(i)));
+        }
+        awaitHandled(100);
+        for(int i=0; i<100; i++) {
+            Assertions.assertEquals(String.format("order:%d", i), handled.get(i));
+        }
+        Assertions.assertEquals(1, threads.stream().distinct().count());
+        Assertions.assertNotEquals(Thread.currentThread(), threads.get(0));
+    }
+
+    @Test
+    public void testUpdatesAreConflatedWhileConsumerIsBusy() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        eventLoop.execute(() -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assertions.assertTrue(blocked.await(1, TimeUnit.SECONDS));
+        for(int i=1; i<=5; i++) {
+            eventLoop.onMarketData(new MarketData().setMarketId("1").setMarkPrice(String.valueOf(i)));
+            eventLoop.onReferencePrice("BTCUSDT");
+        }
+        eventLoop.onOrder(new Order().setId("a"));
+        eventLoop.onOrder(new Order().setId("b"));
+        Assertions.assertEquals(4, eventLoop.getDepth());
+        release.countDown();
+        awaitHandled(4);
+        Assertions.assertEquals(List.of("data:1:5", "price:BTCUSDT", "order:a", "order:b"), handled);
+        // once the update has been handled, the next one is queued again
+        eventLoop.onReferencePrice("BTCUSDT");
+        awaitHandled(5);
+    }
+
+    @Test
+    public void testTasksRunInline() throws InterruptedException {
+        AtomicBoolean inline = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        eventLoop.execute(() -> {
+            Assertions.assertTrue(eventLoop.inEventLoop());
+            AtomicBoolean nested = new AtomicBoolean();
+            eventLoop.execute(() -> nested.set(true));
+            inline.set(nested.get());
+            done.countDown();
+        });
+        Assertions.assertTrue(done.await(1, TimeUnit.SECONDS));
+        Assertions.assertTrue(inline.get());
+        Assertions.assertFalse(eventLoop.inEventLoop());
+    }
+
+    @Test
+    public void testProducersWaitWhenRingIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        eventLoop.execute(() -> {
+            try {
+                release.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread producer = new Thread(() -> {
+            for(int i=0; i<20; i++) {
+                eventLoop.onPosition(new Position().setMarketId(String.valueOf(i)));
+            }
+        });
+        producer.start();
+        producer.join(200);
+        Assertions.assertTrue(producer.isAlive());
+        release.countDown();
+        producer.join(1000);
+        Assertions.assertFalse(producer.isAlive());
+        awaitHandled(20);
+        Assertions.assertEquals("position:19", handled.get(19));
+    }
+
+    @Test
+    public void testCloseReleasesBlockedProducer() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        eventLoop.execute(() -> {
+            try {
+                release.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        AtomicBoolean rejected = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            for(int i=0; i<20; i++) {
+                eventLoop.onPosition(new Position().setMarketId(String.valueOf(i)));
+            }
+            try {
+                eventLoop.execute(() -> {});
+            } catch(RejectedExecutionException e) {
+                rejected.set(true);
+            }
+        });
+        producer.start();
+        producer.join(200);
+        Assertions.assertTrue(producer.isAlive());
+        Thread closer = new Thread(eventLoop::close);
+        closer.start();
+        producer.join(1000);
+        Assertions.assertFalse(producer.isAlive());
+        Assertions.assertTrue(rejected.get());
+        release.countDown();
+        closer.join(1000);
+        Assertions.assertFalse(closer.isAlive());
+        Assertions.assertTrue(handled.isEmpty());
+    }
+
+    @Test
+    public void testCloseRunsPendingTasks() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        eventLoop.execute(() -> {
+            try {
+                release.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CompletableFuture<String> pending = CompletableFuture.supplyAsync(() -> "done", eventLoop);
+        eventLoop.onOrder(new Order().setId("1"));
+        Thread closer = new Thread(eventLoop::close);
+        closer.start();
+        // wait until close() has stopped the loop and is waiting for the consumer
+        while(closer.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        Assertions.assertEquals("done", pending.get(1, TimeUnit.SECONDS));
+        closer.join(1000);
+        Assertions.assertTrue(handled.isEmpty());
+        Assertions.assertEquals(0, eventLoop.getDepth());
+        Assertions.assertThrows(RejectedExecutionException.class, () -> eventLoop.execute(() -> {}));
+        eventLoop.onOrder(new Order().setId("2"));
+        Assertions.assertTrue(handled.isEmpty());
+    }
+
+    @Test
+    public void testFullRingBeforeStartDoesNotBlock() {
+        EventLoop idle = new EventLoop(2);
+        for(int i=0; i<10; i++) {
+            idle.onOrder(new Order().setId(String.valueOf(i)));
+        }
+        Assertions.assertEquals(2, idle.getDepth());
+        idle.close();
+        Assertions.assertEquals(0, idle.getDepth());
+    }
+
+    private void awaitHandled(final int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while(handled.size() < count) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(1);
+        }
+    }
+}
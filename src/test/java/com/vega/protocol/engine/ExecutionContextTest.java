@@ -0,0 +1,75 @@
+package com.vega.protocol.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExecutionContextTest {
+
+    private final ExecutionContext executionContext = new ExecutionContext();
+
+    @AfterEach
+    public void teardown() {
+        executionContext.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testBlockingTaskDoesNotDelayTimer() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        executionContext.scheduleBlocking("slow", () -> {
+            runs.incrementAndGet();
+            try {
+                release.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+        CountDownLatch fired = new CountDownLatch(1);
+        executionContext.getTimer().schedule(fired::countDown, 50, TimeUnit.MILLISECONDS);
+        Assertions.assertTrue(fired.await(1, TimeUnit.SECONDS));
+        // runs that fell due while the first was blocked were skipped, not queued
+        Assertions.assertEquals(1, runs.get());
+        release.countDown();
+    }
+
+    @Test
+    public void testBlockingTasksRunOnVirtualThreads() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        executionContext.execute("check", () -> {
+            Assertions.assertTrue(Thread.currentThread().isVirtual());
+            done.countDown();
+        });
+        Assertions.assertTrue(done.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testStrategyThreads() {
+        Thread thread = ExecutionContext.strategyThreadFactory("quote-1").newThread(() -> {});
+        Assertions.assertFalse(thread.isVirtual());
+        Assertions.assertEquals(Thread.MAX_PRIORITY, thread.getPriority());
+        Assertions.assertEquals("quote-1", thread.getName());
+    }
+
+    @Test
+    public void testShutdownInterruptsStuckTasks() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        executionContext.execute("stuck", () -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch(InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        Assertions.assertTrue(started.await(1, TimeUnit.SECONDS));
+        Assertions.assertFalse(executionContext.shutdown(50, TimeUnit.MILLISECONDS));
+        Assertions.assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        Assertions.assertTrue(executionContext.getTimer().isShutdown());
+    }
+}
@@ -0,0 +1,145 @@
+package com.vega.protocol.engine;
+
+import com.vega.protocol.strategy.TradingStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class QuoteEngineTest {
+
+    private ScheduledExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newScheduledThreadPool(4);
+    }
+
+    @AfterEach
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testBurstIsCoalesced() throws InterruptedException {
+        AtomicInteger executions = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        QuoteEngine quoteEngine = new QuoteEngine(marketId -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            executions.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+        }, executor, 0, List.of("1"));
+        for(int i=0; i<1000; i++) {
+            quoteEngine.requestQuote("1");
+        }
+        Thread.sleep(300);
+        Assertions.assertTrue(executions.get() >= 1);
+        Assertions.assertTrue(executions.get() <= 2);
+        Assertions.assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void testMinimumInterval() throws InterruptedException {
+        AtomicInteger executions = new AtomicInteger();
+        QuoteEngine quoteEngine = new QuoteEngine(marketId -> executions.incrementAndGet(), executor, 200,
+                List.of("1"));
+        quoteEngine.requestQuote("1");
+        Thread.sleep(50);
+        quoteEngine.requestQuote("1");
+        Thread.sleep(50);
+        Assertions.assertEquals(1, executions.get());
+        Thread.sleep(200);
+        Assertions.assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void testMarketsAreIndependent() throws InterruptedException {
+        AtomicInteger executions = new AtomicInteger();
+        QuoteEngine quoteEngine = new QuoteEngine(marketId -> executions.incrementAndGet(), executor, 1000,
+                List.of("1", "2"));
+        quoteEngine.requestQuote("1");
+        quoteEngine.requestQuote("2");
+        quoteEngine.requestQuote(null);
+        Thread.sleep(100);
+        Assertions.assertEquals(2, executions.get());
+        quoteEngine.shutdown();
+    }
+
+    @Test
+    public void testSlowMarketDoesNotStallOthers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        QuoteEngine quoteEngine = new QuoteEngine(marketId -> {
+            if(marketId.equals("slow")) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                executions.incrementAndGet();
+            }
+        }, executor, 0, List.of("slow", "0", "1", "2", "3", "4"));
+        quoteEngine.requestQuote("slow");
+        Thread.sleep(50);
+        for(int i=0; i<5; i++) {
+            quoteEngine.requestQuote(String.valueOf(i));
+        }
+        Thread.sleep(100);
+        Assertions.assertEquals(5, executions.get());
+        release.countDown();
+        quoteEngine.shutdown();
+    }
+
+    @Test
+    public void testUnknownMarketIsIgnored() throws InterruptedException {
+        AtomicInteger executions = new AtomicInteger();
+        QuoteEngine quoteEngine = new QuoteEngine(marketId -> executions.incrementAndGet(), executor, 0,
+                List.of("1"));
+        quoteEngine.requestQuote("2");
+        quoteEngine.requestQuote("3");
+        Thread.sleep(100);
+        Assertions.assertEquals(0, executions.get());
+        quoteEngine.requestQuote("1");
+        Thread.sleep(100);
+        Assertions.assertEquals(1, executions.get());
+        quoteEngine.shutdown();
+    }
+
+    @Test
+    public void testAwaitTerminationWaitsForOrdersOnExecutor() throws InterruptedException {
+        CompletableFuture<Void> settled = new CompletableFuture<>();
+        CountDownLatch started = new CountDownLatch(1);
+        QuoteEngine quoteEngine = new QuoteEngine(new TradingStrategy() {
+            @Override
+            public void execute(String marketId) {
+                executeAsync(marketId).join();
+            }
+            @Override
+            public CompletableFuture<Void> executeAsync(String marketId) {
+                started.countDown();
+                return settled;
+            }
+        }, executor, 0, executor, List.of("1"));
+        quoteEngine.requestQuote("1");
+        Assertions.assertTrue(started.await(1, TimeUnit.SECONDS));
+        quoteEngine.shutdown();
+        Assertions.assertFalse(quoteEngine.awaitTermination(50, TimeUnit.MILLISECONDS));
+        settled.complete(null);
+        Assertions.assertTrue(quoteEngine.awaitTermination(1, TimeUnit.SECONDS));
+    }
+}
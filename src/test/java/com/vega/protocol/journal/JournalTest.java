@@ -0,0 +1,120 @@
+package com.vega.protocol.journal;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public class JournalTest {
+
+    @Test
+    public void testReadBack() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        try(Journal journal = Journal.open(directory, 4096, 0)) {
+            long receivedNanos = System.nanoTime();
+            Assertions.assertTrue(journal.append(JournalType.BINANCE_FRAME, receivedNanos, "{\"s\":\"BTCUSDT\"}"));
+            Assertions.assertTrue(journal.append(JournalType.VEGA_FRAME, receivedNanos + 1, "café € 😀"));
+            byte[] bytes = {1, 2, 3};
+            Assertions.assertTrue(journal.append(JournalType.BATCH_SENT, receivedNanos + 2, bytes, 1, 2));
+            try(JournalReader reader = new JournalReader(directory)) {
+                JournalRecord record = new JournalRecord();
+                Assertions.assertTrue(reader.next(record));
+                Assertions.assertEquals(JournalType.BINANCE_FRAME, record.getType());
+                Assertions.assertEquals("{\"s\":\"BTCUSDT\"}", record.getPayloadAsString());
+                long epochNanos = record.getEpochNanos();
+                Assertions.assertTrue(reader.next(record));
+                Assertions.assertEquals("café € 😀", record.getPayloadAsString());
+                Assertions.assertEquals(epochNanos + 1, record.getEpochNanos());
+                Assertions.assertTrue(reader.next(record));
+                Assertions.assertEquals(JournalType.BATCH_SENT, record.getType());
+                Assertions.assertEquals(2, record.getPayload().remaining());
+                Assertions.assertEquals(3, record.getPayload().get(1));
+                Assertions.assertFalse(reader.next(record));
+                journal.append(JournalType.BATCH_RESPONSE, receivedNanos + 3, "{}");
+                Assertions.assertTrue(reader.next(record));
+                Assertions.assertEquals(JournalType.BATCH_RESPONSE, record.getType());
+            }
+        }
+    }
+
+    @Test
+    public void testUnpairedSurrogates() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        String text = "a\ud83d b\ude00 \ud83d\ude00";
+        try(Journal journal = Journal.open(directory, 4096, 0)) {
+            Assertions.assertTrue(journal.append(JournalType.VEGA_FRAME, System.nanoTime(), text));
+            try(JournalReader reader = new JournalReader(directory)) {
+                JournalRecord record = new JournalRecord();
+                Assertions.assertTrue(reader.next(record));
+                // each unpaired surrogate becomes the three byte replacement character
+                Assertions.assertEquals(14, record.getPayload().remaining());
+                Assertions.assertEquals("a\ufffd b\ufffd \ud83d\ude00", record.getPayloadAsString());
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyPayloads() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        try(Journal journal = Journal.open(directory, 4096, 0)) {
+            long receivedNanos = System.nanoTime();
+            Assertions.assertTrue(journal.append(JournalType.BATCH_RESPONSE, receivedNanos, ""));
+            Assertions.assertTrue(journal.append(JournalType.BATCH_SENT, receivedNanos + 1, new byte[0], 0, 0));
+            Assertions.assertTrue(journal.append(JournalType.BATCH_RESPONSE, receivedNanos + 2, "{}"));
+            try(JournalReader reader = new JournalReader(directory)) {
+                JournalRecord record = new JournalRecord();
+                Assertions.assertTrue(reader.next(record));
+                Assertions.assertEquals(JournalType.BATCH_RESPONSE, record.getType());
+                Assertions.assertEquals("", record.getPayloadAsString());
+                Assertions.assertTrue(reader.next(record));
+                Assertions.assertEquals(JournalType.BATCH_SENT, record.getType());
+                Assertions.assertEquals(0, record.getPayload().remaining());
+                Assertions.assertTrue(reader.next(record));
+                Assertions.assertEquals("{}", record.getPayloadAsString());
+                Assertions.assertFalse(reader.next(record));
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentWritersRollSegments() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        int threads = 4;
+        int perThread = 5_000;
+        try(Journal journal = Journal.open(directory, 64 * 1024, 0)) {
+            List<Thread> writers = new ArrayList<>();
+            for(int t=0; t<threads; t++) {
+                int writer = t;
+                writers.add(new Thread(() -> {
+                    for(int i=0; i<perThread; i++) {
+                        while(!journal.append(JournalType.BINANCE_FRAME, System.nanoTime(), writer + ":" + i)) {
+                            Thread.onSpinWait();
+                        }
+                    }
+                }));
+            }
+            writers.forEach(Thread::start);
+            for(Thread writer : writers) {
+                writer.join();
+            }
+        }
+        try(Stream<Path> files = Files.list(directory)) {
+            Assertions.assertTrue(files.count() > 2);
+        }
+        Set<String> seen = new HashSet<>();
+        try(JournalReader reader = new JournalReader(directory)) {
+            JournalRecord record = new JournalRecord();
+            while(reader.next(record)) {
+                Assertions.assertTrue(seen.add(record.getPayloadAsString()));
+            }
+        }
+        Assertions.assertEquals(threads * perThread, seen.size());
+    }
+}
@@ -0,0 +1,41 @@
+package com.vega.protocol.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        long[] values = {0, 1, 127, 128, 129, 255, 256, 1000, 123_456_789, Long.MAX_VALUE};
+        for(long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            Assertions.assertTrue(LatencyHistogram.highestValueAt(index) >= value);
+            if(index > 0) {
+                Assertions.assertTrue(LatencyHistogram.highestValueAt(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assertions.assertEquals(0, histogram.getValueAtPercentile(99));
+        for(int i=1; i<=10_000; i++) {
+            histogram.record(i * 1000L);
+        }
+        Assertions.assertEquals(10_000, histogram.getCount());
+        Assertions.assertEquals(10_000_000, histogram.getMax());
+        assertWithin(5_000_000, histogram.getValueAtPercentile(50));
+        assertWithin(9_900_000, histogram.getValueAtPercentile(99));
+        assertWithin(9_990_000, histogram.getValueAtPercentile(99.9));
+        Assertions.assertEquals(10_000_000, histogram.getValueAtPercentile(100));
+        histogram.reset();
+        Assertions.assertEquals(0, histogram.getCount());
+    }
+
+    private void assertWithin(final long expected, final long actual) {
+        Assertions.assertTrue(Math.abs(actual - expected) <= expected / 64,
+                String.format("expected %d but was %d", expected, actual));
+    }
+}
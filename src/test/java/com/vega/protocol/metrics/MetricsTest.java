@@ -0,0 +1,26 @@
+package com.vega.protocol.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class MetricsTest {
+
+    @Test
+    public void testScrape() {
+        Metrics metrics = Metrics.getInstance();
+        LongAdder orders = metrics.counter("test_messages_total", "Test messages", "subscription", "orders");
+        Assertions.assertSame(orders, metrics.counter("test_messages_total", "Test messages", "subscription", "orders"));
+        orders.add(3);
+        metrics.counter("test_messages_total", "Test messages", "subscription", "a\"b").increment();
+        metrics.gauge("test_depth", "Test depth", () -> 7);
+        String scrape = metrics.scrape();
+        Assertions.assertTrue(scrape.contains("# TYPE test_messages_total counter\n"));
+        Assertions.assertTrue(scrape.contains("test_messages_total{subscription=\"orders\"} 3\n"));
+        Assertions.assertTrue(scrape.contains("test_messages_total{subscription=\"a\\\"b\"} 1\n"));
+        Assertions.assertTrue(scrape.contains("# TYPE test_depth gauge\ntest_depth 7.0\n"));
+        Assertions.assertTrue(scrape.contains("jvm_gc_collections_total{gc="));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> metrics.counter("test_depth", "Test depth"));
+    }
+}
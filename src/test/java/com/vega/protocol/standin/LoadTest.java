@@ -0,0 +1,44 @@
+package com.vega.protocol.standin;
+
+import com.vega.protocol.Application;
+import com.vega.protocol.metrics.LatencyRecorder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the whole {@link Application} against a {@link StandInServer} for a fixed time and reports how it
+ * kept up: the messages and batches exchanged, fills, and the latency recorder's per-stage statistics.
+ * <p>
+ * Usage: {@code LoadTest [seconds] [binance messages per second] [market data messages per second]},
+ * defaulting to 60 seconds at 1,000 and 100 messages per second.
+ */
+@Slf4j
+public class LoadTest {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 60;
+        StandInSettings settings = new StandInSettings()
+                .setBinanceMessagesPerSecond(args.length > 1 ? Double.parseDouble(args[1]) : 1_000)
+                .setMarketDataMessagesPerSecond(args.length > 2 ? Double.parseDouble(args[2]) : 100);
+        long startNanos = System.nanoTime();
+        StandInServer server = new StandInServer(settings);
+        // must be set before the application reads its config
+        server.getEnvironment().forEach(System::setProperty);
+        log.info("Stand-in running: {}", server.getEnvironment());
+        Application.main(new String[0]);
+        TimeUnit.SECONDS.sleep(seconds);
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        log.info("Binance messages: {} ({}/s)", server.getBinanceMessages(),
+                Math.round(server.getBinanceMessages() / elapsedSeconds));
+        log.info("Market data messages: {} ({}/s)", server.getMarketDataMessages(),
+                Math.round(server.getMarketDataMessages() / elapsedSeconds));
+        log.info("Batches: {} ({}/s)", server.getBatches(), server.getBatches() / elapsedSeconds);
+        log.info("Fills: {}, open orders: {}", server.getExchange().getFills(),
+                server.getExchange().getOpenOrderCount());
+        LatencyRecorder.getInstance().getStats().forEach((stage, stats) -> log.info("{}: {}", stage, stats));
+        // the application's shutdown hook runs while the stand-in is still up
+        System.exit(0);
+    }
+}
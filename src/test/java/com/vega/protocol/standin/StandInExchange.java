@@ -0,0 +1,427 @@
+package com.vega.protocol.standin;
+
+import com.vega.protocol.backtest.Holding;
+import com.vega.protocol.utils.FixedPoint;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * The state behind the {@link StandInServer}: one market, its reference price and the orders, position and
+ * account of one party. The reference mid price follows a seeded random walk, one step per Binance
+ * message. Orders come in through wallet batches and fill in full, at their own price, once the reference
+ * price trades through them. Every change is published as the item a subscription would carry.
+ */
+public class StandInExchange {
+
+    private final StandInSettings settings;
+    private final BiConsumer<String, JSONObject> publisher;
+    private final Random random;
+    private final Map<String, StandInOrder> orders = new LinkedHashMap<>();
+    private final Map<String, Integer> transactions = new HashMap<>();
+    private final double priceScale;
+    private final double sizeScale;
+    private final double assetScale;
+
+    private double midPrice;
+    private long nextOrderId;
+    private long nextTransaction;
+    private long nextUpdate;
+    private final Holding holding = new Holding();
+    private double balance;
+    private long fills;
+
+    /**
+     * @param settings {@link StandInSettings}
+     * @param publisher receives the subscription ID and item for every change
+     */
+    public StandInExchange(
+            final StandInSettings settings,
+            final BiConsumer<String, JSONObject> publisher
+    ) {
+        this.settings = settings;
+        this.publisher = publisher;
+        this.random = new Random(settings.getSeed());
+        this.priceScale = Math.pow(10, settings.getDecimalPlaces());
+        this.sizeScale = Math.pow(10, settings.getPositionDecimalPlaces());
+        this.assetScale = Math.pow(10, settings.getAssetDecimals());
+        this.midPrice = settings.getInitialPrice();
+        this.balance = settings.getInitialBalance();
+        for(int i=0; i<settings.getRestingOrders(); i++) {
+            // leftovers from an earlier session, well away from the market
+            boolean buy = i % 2 == 0;
+            double price = midPrice * (buy ? 0.5 : 1.5) * (1 + i * 0.001);
+            StandInOrder order = new StandInOrder(nextOrderId(), buy ? "SIDE_BUY" : "SIDE_SELL",
+                    Math.round(price * priceScale), Math.round(sizeScale), nanos());
+            orders.put(order.id, order);
+        }
+    }
+
+    /**
+     * Move the reference price one step and fill any orders it trades through
+     */
+    public synchronized void step() {
+        midPrice *= 1 + random.nextGaussian() * settings.getVolatility();
+        match();
+    }
+
+    /**
+     * Render the current reference price as a Binance book ticker message
+     *
+     * @param updateId the update ID
+     *
+     * @return the message
+     */
+    public synchronized String getBookTicker(final long updateId) {
+        return new JSONObject()
+                .put("u", updateId)
+                .put("s", settings.getSymbol())
+                .put("b", format(getBidPrice()))
+                .put("B", "1000.00")
+                .put("a", format(getAskPrice()))
+                .put("A", "1000.00")
+                .toString();
+    }
+
+    /**
+     * Get the market data item for the marketsData subscription
+     *
+     * @return {@link JSONObject}
+     */
+    public synchronized JSONObject getMarketData() {
+        String markPrice = Long.toString(Math.round(midPrice * priceScale));
+        return new JSONObject()
+                .put("marketId", settings.getMarketId())
+                .put("marketState", "STATE_ACTIVE")
+                .put("marketTradingMode", "TRADING_MODE_CONTINUOUS")
+                .put("bestBidPrice", Long.toString(Math.round(getBidPrice() * priceScale)))
+                .put("bestOfferPrice", Long.toString(Math.round(getAskPrice() * priceScale)))
+                .put("bestBidVolume", "100000")
+                .put("bestOfferVolume", "100000")
+                .put("markPrice", markPrice)
+                .put("targetStake", "0")
+                .put("suppliedStake", "0")
+                .put("openInterest", FixedPoint.toWire(Math.abs(holding.getOpenVolume()),
+                        settings.getPositionDecimalPlaces()));
+    }
+
+    /**
+     * Apply a batch market instruction, in the order Vega applies them
+     *
+     * @param batch the batchMarketInstructions object of a wallet command
+     *
+     * @return the transaction hash
+     */
+    public synchronized String apply(final JSONObject batch) {
+        int code = 0;
+        JSONArray cancellations = batch.optJSONArray("cancellations");
+        for(int i=0; cancellations != null && i<cancellations.length(); i++) {
+            String orderId = cancellations.getJSONObject(i).optString("orderId");
+            if(orderId.isEmpty()) {
+                List<StandInOrder> all = new ArrayList<>(orders.values());
+                all.forEach(order -> cancel(order.id));
+            } else if(!cancel(orderId)) {
+                code = 1;
+            }
+        }
+        JSONArray amendments = batch.optJSONArray("amendments");
+        for(int i=0; amendments != null && i<amendments.length(); i++) {
+            JSONObject amendment = amendments.getJSONObject(i);
+            StandInOrder order = orders.get(amendment.optString("orderId"));
+            if(order == null) {
+                code = 1;
+                continue;
+            }
+            if(!amendment.optString("price").isEmpty()) {
+                order.price = Long.parseLong(amendment.getString("price"));
+            }
+            if(!amendment.optString("sizeDelta").isEmpty()) {
+                long sizeDelta = Long.parseLong(amendment.getString("sizeDelta"));
+                order.size += sizeDelta;
+                order.remaining += sizeDelta;
+            }
+            order.update(order.remaining > 0 ? "STATUS_ACTIVE" : "STATUS_CANCELLED", nanos());
+            if(order.remaining <= 0) {
+                orders.remove(order.id);
+            }
+            publishOrder(order);
+        }
+        JSONArray submissions = batch.optJSONArray("submissions");
+        for(int i=0; submissions != null && i<submissions.length(); i++) {
+            JSONObject submission = submissions.getJSONObject(i);
+            long price = Long.parseLong(submission.getString("price"));
+            long size = Long.parseLong(submission.getString("size"));
+            if(price <= 0 || size <= 0) {
+                code = 1;
+                continue;
+            }
+            StandInOrder order = new StandInOrder(nextOrderId(), submission.getString("side"), price, size, nanos());
+            orders.put(order.id, order);
+            publishOrder(order);
+        }
+        match();
+        String txHash = String.format("%064X", ++nextTransaction);
+        transactions.put(txHash, code);
+        return txHash;
+    }
+
+    /**
+     * Get the result code of a transaction
+     *
+     * @param txHash the transaction hash, without the 0x prefix
+     *
+     * @return the code, 0 if it was accepted, or null if the transaction is unknown
+     */
+    public synchronized Integer getTransactionCode(final String txHash) {
+        return transactions.get(txHash.toUpperCase());
+    }
+
+    /**
+     * Get the nodes for a data-node list endpoint
+     *
+     * @param resource the resource, e.g. orders
+     * @param liveOnly true if only active orders should be listed
+     *
+     * @return the nodes, or null if the resource is unknown
+     */
+    public synchronized List<JSONObject> list(final String resource, final boolean liveOnly) {
+        return switch (resource) {
+            case "markets" -> List.of(getMarket());
+            case "assets" -> List.of(getAsset());
+            case "accounts" -> List.of(getAccount(true));
+            case "positions" -> List.of(getPosition(true));
+            case "orders" -> orders.values().stream()
+                    .filter(order -> !liveOnly || order.status.equals("STATUS_ACTIVE"))
+                    .map(order -> order.toJson(settings, true))
+                    .toList();
+            default -> null;
+        };
+    }
+
+    /**
+     * Get the initial items for a subscription
+     *
+     * @param id the subscription ID
+     *
+     * @return the items
+     */
+    public synchronized List<JSONObject> snapshot(final String id) {
+        return switch (id) {
+            case "marketsData" -> List.of(getMarketData());
+            case "accounts" -> List.of(getAccount(false));
+            case "positions" -> List.of(getPosition(false));
+            case "orders" -> orders.values().stream().map(order -> order.toJson(settings, false)).toList();
+            default -> List.of();
+        };
+    }
+
+    /**
+     * Get the number of fills so far
+     *
+     * @return the fill count
+     */
+    public synchronized long getFills() {
+        return fills;
+    }
+
+    /**
+     * Get the number of orders resting on the book
+     *
+     * @return the open order count
+     */
+    public synchronized int getOpenOrderCount() {
+        return orders.size();
+    }
+
+    /**
+     * Cancel an order
+     *
+     * @param orderId the order ID
+     *
+     * @return true if the order was open
+     */
+    private boolean cancel(final String orderId) {
+        StandInOrder order = orders.remove(orderId);
+        if(order == null) {
+            return false;
+        }
+        order.update("STATUS_CANCELLED", nanos());
+        publishOrder(order);
+        return true;
+    }
+
+    /**
+     * Fill every order the reference price has traded through
+     */
+    private void match() {
+        double bidPrice = getBidPrice();
+        double askPrice = getAskPrice();
+        Iterator<StandInOrder> iterator = orders.values().iterator();
+        boolean traded = false;
+        while(iterator.hasNext()) {
+            StandInOrder order = iterator.next();
+            double price = order.price / priceScale;
+            boolean buy = order.side.equals("SIDE_BUY");
+            if((buy && price >= askPrice) || (!buy && price <= bidPrice)) {
+                iterator.remove();
+                trade(buy ? order.remaining : -order.remaining, order.price);
+                order.remaining = 0;
+                order.update("STATUS_FILLED", nanos());
+                publishOrder(order);
+                traded = true;
+                fills++;
+            }
+        }
+        if(traded) {
+            publisher.accept("positions", getPosition(false));
+            publisher.accept("accounts", getAccount(false));
+        }
+    }
+
+    /**
+     * Book a fill against the position
+     *
+     * @param size signed size mantissa, positive for a buy
+     * @param price the fill price mantissa
+     */
+    private void trade(final long size, final long price) {
+        balance += holding.trade(size / sizeScale, price / priceScale);
+    }
+
+    private void publishOrder(final StandInOrder order) {
+        publisher.accept("orders", order.toJson(settings, false));
+    }
+
+    private JSONObject getMarket() {
+        return new JSONObject()
+                .put("id", settings.getMarketId())
+                .put("state", "STATE_ACTIVE")
+                .put("tradingMode", "TRADING_MODE_CONTINUOUS")
+                .put("decimalPlaces", Integer.toString(settings.getDecimalPlaces()))
+                .put("positionDecimalPlaces", Integer.toString(settings.getPositionDecimalPlaces()))
+                .put("tradableInstrument", new JSONObject()
+                        .put("instrument", new JSONObject()
+                                .put("code", settings.getSymbol())
+                                .put("name", String.format("%s stand-in future", settings.getSymbol()))
+                                .put("future", new JSONObject().put("settlementAsset", settings.getAssetId()))));
+    }
+
+    private JSONObject getAsset() {
+        return new JSONObject()
+                .put("id", settings.getAssetId())
+                .put("status", "STATUS_ENABLED")
+                .put("details", new JSONObject()
+                        .put("name", "Stand-in USDT")
+                        .put("symbol", "USDT")
+                        .put("decimals", Integer.toString(settings.getAssetDecimals())));
+    }
+
+    private JSONObject getAccount(final boolean rest) {
+        String balance = Long.toString(Math.round(this.balance * assetScale));
+        JSONObject account = new JSONObject()
+                .put("type", "ACCOUNT_TYPE_GENERAL")
+                .put("balance", balance)
+                .put("marketId", "");
+        if(rest) {
+            return account.put("owner", settings.getPartyId()).put("asset", settings.getAssetId());
+        }
+        return account.put("partyId", settings.getPartyId()).put("assetId", settings.getAssetId());
+    }
+
+    private JSONObject getPosition(final boolean rest) {
+        double unrealised = holding.getUnrealisedPnl(midPrice);
+        long updatedAt = nanos();
+        return new JSONObject()
+                .put("partyId", settings.getPartyId())
+                .put("marketId", settings.getMarketId())
+                .put("openVolume", FixedPoint.toWire(holding.getOpenVolume(), settings.getPositionDecimalPlaces()))
+                .put("averageEntryPrice",
+                        FixedPoint.toWire(holding.getAverageEntryPrice(), settings.getDecimalPlaces()))
+                .put(rest ? "realisedPnl" : "realisedPNL",
+                        Long.toString(Math.round(holding.getRealisedPnl() * assetScale)))
+                .put(rest ? "unrealisedPnl" : "unrealisedPNL", Long.toString(Math.round(unrealised * assetScale)))
+                .put("updatedAt", rest ? Long.toString(updatedAt) : toTimestamp(updatedAt));
+    }
+
+    private double getBidPrice() {
+        return midPrice * (1 - settings.getSpread() / 2);
+    }
+
+    private double getAskPrice() {
+        return midPrice * (1 + settings.getSpread() / 2);
+    }
+
+    private String format(final double price) {
+        return String.format("%.8f", price);
+    }
+
+    private String nextOrderId() {
+        return String.format("%064x", ++nextOrderId);
+    }
+
+    /**
+     * Get a timestamp for an update, always later than the previous one
+     *
+     * @return nanoseconds since the epoch
+     */
+    private long nanos() {
+        Instant now = Instant.now();
+        nextUpdate = Math.max(nextUpdate + 1, now.getEpochSecond() * 1_000_000_000L + now.getNano());
+        return nextUpdate;
+    }
+
+    private static String toTimestamp(final long nanos) {
+        return Instant.ofEpochSecond(0, nanos).toString();
+    }
+
+    private static class StandInOrder {
+        private final String id;
+        private final String side;
+        private long price;
+        private long size;
+        private long remaining;
+        private String status = "STATUS_ACTIVE";
+        private long version = 1;
+        private long updatedAt;
+
+        private StandInOrder(
+                final String id,
+                final String side,
+                final long price,
+                final long size,
+                final long updatedAt
+        ) {
+            this.id = id;
+            this.side = side;
+            this.price = price;
+            this.size = size;
+            this.remaining = size;
+            this.updatedAt = updatedAt;
+        }
+
+        private void update(final String status, final long updatedAt) {
+            this.status = status;
+            this.version++;
+            this.updatedAt = updatedAt;
+        }
+
+        private JSONObject toJson(final StandInSettings settings, final boolean rest) {
+            return new JSONObject()
+                    .put("id", id)
+                    .put("marketId", settings.getMarketId())
+                    .put("partyId", settings.getPartyId())
+                    .put("side", side)
+                    .put("price", Long.toString(price))
+                    .put("size", Long.toString(size))
+                    .put("remaining", Long.toString(remaining))
+                    .put("status", status)
+                    .put("type", "TYPE_LIMIT")
+                    .put("timeInForce", "TIME_IN_FORCE_GTC")
+                    .put("version", Long.toString(version))
+                    .put("updatedAt", rest ? Long.toString(updatedAt) : toTimestamp(updatedAt));
+        }
+    }
+}
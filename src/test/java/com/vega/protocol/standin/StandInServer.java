@@ -0,0 +1,465 @@
+package com.vega.protocol.standin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.Protocol;
+import org.java_websocket.server.WebSocketServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An embeddable stand-in for everything the market maker talks to, so the real client code can be run
+ * and load-tested offline:
+ * <ul>
+ *     <li>the data-node REST endpoints used by the API client, with cursor pagination;</li>
+ *     <li>the graphql-ws subscriptions used by the Vega websocket client;</li>
+ *     <li>the wallet's token and command endpoints, and tendermint's JSON-RPC transaction lookup;</li>
+ *     <li>a Binance book ticker stream.</li>
+ * </ul>
+ * Orders sent through the wallet are applied by a {@link StandInExchange}, which streams the resulting
+ * order, position and account updates back. Binance and market data messages are sent at fixed rates,
+ * up to tens of thousands per second; a feed that falls more than a second behind skips ahead rather than
+ * bursting.
+ */
+@Slf4j
+public class StandInServer implements AutoCloseable {
+
+    private static final String TOKEN = "stand-in-token";
+
+    private final StandInSettings settings;
+    private final StandInExchange exchange;
+    private final HttpServer httpServer;
+    private final ExecutorService httpExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SubscriptionServer vegaServer;
+    private final TickerServer binanceServer;
+    private final AtomicLong binanceMessages = new AtomicLong();
+    private final AtomicLong marketDataMessages = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final Thread feed;
+    private volatile boolean running = true;
+
+    /**
+     * Start the stand-in on free local ports
+     *
+     * @param settings {@link StandInSettings}
+     *
+     * @throws IOException if a server can't be started
+     */
+    public StandInServer(final StandInSettings settings) throws IOException {
+        this.settings = settings;
+        this.vegaServer = new SubscriptionServer();
+        this.binanceServer = new TickerServer();
+        this.exchange = new StandInExchange(settings, vegaServer::publish);
+        this.httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.httpServer.setExecutor(httpExecutor);
+        this.httpServer.createContext("/api/v2/", this::handleDataNode);
+        this.httpServer.createContext("/api/v1/auth/token", this::handleToken);
+        this.httpServer.createContext("/api/v1/command/sync", this::handleCommand);
+        this.httpServer.createContext("/", this::handleTransactions);
+        this.httpServer.start();
+        vegaServer.awaitStart();
+        binanceServer.awaitStart();
+        this.feed = new Thread(this::runFeed, "stand-in-feed");
+        this.feed.setDaemon(true);
+        this.feed.start();
+    }
+
+    /**
+     * Get the settings that point the application at this stand-in, as environment variable names and
+     * values. Setting them as system properties overrides the environment.
+     *
+     * @return the settings
+     */
+    public Map<String, String> getEnvironment() {
+        String httpUrl = String.format("http://127.0.0.1:%d", httpServer.getAddress().getPort());
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("NODE_URL", String.format("%s/api/v2", httpUrl));
+        environment.put("WALLET_URL", httpUrl);
+        environment.put("TENDERMINT_URL", httpUrl);
+        environment.put("WS_URL", String.format("ws://127.0.0.1:%d/graphql", vegaServer.getPort()));
+        environment.put("BINANCE_WS_URL", String.format("ws://127.0.0.1:%d/ws", binanceServer.getPort()));
+        environment.put("WALLET_USERNAME", "stand-in");
+        environment.put("WALLET_PASSWORD", "stand-in");
+        environment.put("PARTY_ID", settings.getPartyId());
+        environment.put("MARKET_ID", settings.getMarketId());
+        environment.put("BINANCE_MARKET", settings.getSymbol());
+        return environment;
+    }
+
+    /**
+     * Get the {@link StandInExchange}
+     *
+     * @return {@link StandInExchange}
+     */
+    public StandInExchange getExchange() {
+        return exchange;
+    }
+
+    /**
+     * Get the number of Binance messages sent to each subscriber
+     *
+     * @return the message count
+     */
+    public long getBinanceMessages() {
+        return binanceMessages.get();
+    }
+
+    /**
+     * Get the number of market data messages sent to each subscriber
+     *
+     * @return the message count
+     */
+    public long getMarketDataMessages() {
+        return marketDataMessages.get();
+    }
+
+    /**
+     * Get the number of batches received through the wallet
+     *
+     * @return the batch count
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Send Binance and market data messages at their configured rates
+     */
+    private void runFeed() {
+        long startNanos = System.nanoTime();
+        long binanceSent = 0;
+        long marketDataSent = 0;
+        double binanceRate = settings.getBinanceMessagesPerSecond();
+        double marketDataRate = settings.getMarketDataMessagesPerSecond();
+        while(running) {
+            double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+            long binanceDue = (long) (elapsedSeconds * binanceRate);
+            binanceSent = Math.max(binanceSent, binanceDue - (long) binanceRate);
+            while(binanceSent < binanceDue) {
+                exchange.step();
+                binanceServer.publish(exchange.getBookTicker(++binanceSent));
+                binanceMessages.incrementAndGet();
+            }
+            long marketDataDue = (long) (elapsedSeconds * marketDataRate);
+            marketDataSent = Math.max(marketDataSent, marketDataDue - (long) marketDataRate);
+            while(marketDataSent < marketDataDue) {
+                vegaServer.publish("marketsData", exchange.getMarketData());
+                marketDataSent++;
+                marketDataMessages.incrementAndGet();
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+        }
+    }
+
+    /**
+     * Serve a data-node list endpoint, one page at a time
+     *
+     * @param httpExchange {@link HttpExchange}
+     *
+     * @throws IOException if the response can't be written
+     */
+    private void handleDataNode(final HttpExchange httpExchange) throws IOException {
+        String resource = httpExchange.getRequestURI().getPath().substring("/api/v2/".length());
+        Map<String, String> query = parseQuery(httpExchange.getRequestURI().getRawQuery());
+        List<JSONObject> nodes = exchange.list(resource, Boolean.parseBoolean(query.get("liveOnly")));
+        if(nodes == null) {
+            respond(httpExchange, 404, new JSONObject().put("message", "not found"));
+            return;
+        }
+        int from = query.containsKey("pagination.after") ? Integer.parseInt(query.get("pagination.after")) : 0;
+        int to = Math.min(nodes.size(), from + settings.getPageSize());
+        JSONArray edges = new JSONArray();
+        for(int i=from; i<to; i++) {
+            edges.put(new JSONObject().put("node", nodes.get(i)).put("cursor", Integer.toString(i + 1)));
+        }
+        JSONObject page = new JSONObject()
+                .put("edges", edges)
+                .put("pageInfo", new JSONObject()
+                        .put("hasNextPage", to < nodes.size())
+                        .put("hasPreviousPage", from > 0)
+                        .put("startCursor", Integer.toString(from + 1))
+                        .put("endCursor", Integer.toString(to)));
+        respond(httpExchange, 200, new JSONObject().put(resource, page));
+    }
+
+    /**
+     * Issue a wallet token
+     *
+     * @param httpExchange {@link HttpExchange}
+     *
+     * @throws IOException if the response can't be written
+     */
+    private void handleToken(final HttpExchange httpExchange) throws IOException {
+        httpExchange.getRequestBody().readAllBytes();
+        respond(httpExchange, 200, new JSONObject().put("token", TOKEN));
+    }
+
+    /**
+     * Apply a batch market instruction sent through the wallet
+     *
+     * @param httpExchange {@link HttpExchange}
+     *
+     * @throws IOException if the response can't be written
+     */
+    private void handleCommand(final HttpExchange httpExchange) throws IOException {
+        String body = new String(httpExchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        if(!String.format("Bearer %s", TOKEN).equals(httpExchange.getRequestHeaders().getFirst("Authorization"))) {
+            respond(httpExchange, 401, new JSONObject().put("error", "invalid token"));
+            return;
+        }
+        JSONObject command = new JSONObject(body);
+        JSONObject batch = command.optJSONObject("batchMarketInstructions");
+        if(batch == null) {
+            respond(httpExchange, 400, new JSONObject().put("error", "unsupported command"));
+            return;
+        }
+        batches.incrementAndGet();
+        respond(httpExchange, 200, new JSONObject().put("txHash", exchange.apply(batch)));
+    }
+
+    /**
+     * Look up a batch of transactions, as tendermint's JSON-RPC endpoint does for the tx method
+     *
+     * @param httpExchange {@link HttpExchange}
+     *
+     * @throws IOException if the response can't be written
+     */
+    private void handleTransactions(final HttpExchange httpExchange) throws IOException {
+        if(!"/".equals(httpExchange.getRequestURI().getPath()) || !"POST".equals(httpExchange.getRequestMethod())) {
+            respond(httpExchange, 404, new JSONObject().put("error", "not found"));
+            return;
+        }
+        String body = new String(httpExchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        JSONArray calls = new JSONArray(body);
+        JSONArray results = new JSONArray();
+        for(int i=0; i<calls.length(); i++) {
+            JSONObject call = calls.getJSONObject(i);
+            String hash = HexFormat.of().withUpperCase().formatHex(
+                    Base64.getDecoder().decode(call.getJSONObject("params").getString("hash")));
+            Integer code = exchange.getTransactionCode(hash);
+            JSONObject result = new JSONObject().put("jsonrpc", "2.0").put("id", call.get("id"));
+            if(code == null) {
+                result.put("error", new JSONObject()
+                        .put("code", -32603)
+                        .put("message", "Internal error")
+                        .put("data", String.format("tx (%s) not found", hash)));
+            } else {
+                result.put("result", new JSONObject()
+                        .put("hash", hash)
+                        .put("height", "1")
+                        .put("tx_result", new JSONObject().put("code", code).put("info", code == 0 ? "" : "rejected")));
+            }
+            results.put(result);
+        }
+        respond(httpExchange, 200, results);
+    }
+
+    private static void respond(
+            final HttpExchange httpExchange,
+            final int status,
+            final Object body
+    ) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        httpExchange.getResponseHeaders().set("Content-Type", "application/json");
+        httpExchange.sendResponseHeaders(status, bytes.length);
+        try(OutputStream out = httpExchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(final String query) {
+        Map<String, String> params = new HashMap<>();
+        if(query == null) {
+            return params;
+        }
+        for(String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if(separator > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        feed.join();
+        vegaServer.stop();
+        binanceServer.stop();
+        httpServer.stop(0);
+        httpExecutor.shutdownNow();
+    }
+
+    /**
+     * Serves graphql-ws subscriptions. Each connection remembers the subscription IDs it started, and
+     * gets the current state for a subscription as soon as it starts, followed by every change.
+     */
+    private class SubscriptionServer extends WebSocketServer {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private SubscriptionServer() {
+            super(new InetSocketAddress("127.0.0.1", 0), List.of(new Draft_6455(Collections.emptyList(),
+                    Collections.singletonList(new Protocol("graphql-ws")))));
+            setReuseAddr(true);
+            start();
+        }
+
+        private void awaitStart() throws IOException {
+            try {
+                if(!started.await(5, TimeUnit.SECONDS)) {
+                    throw new IOException("stand-in websocket server did not start");
+                }
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+
+        /**
+         * Send an item to every connection subscribed to it
+         *
+         * @param id the subscription ID
+         * @param item the item
+         */
+        private void publish(final String id, final JSONObject item) {
+            String message = toMessage(id, List.of(item));
+            for(WebSocket connection : getConnections()) {
+                Set<String> subscriptions = connection.getAttachment();
+                if(subscriptions != null && subscriptions.contains(id) && connection.isOpen()) {
+                    connection.send(message);
+                }
+            }
+        }
+
+        private String toMessage(final String id, final List<JSONObject> items) {
+            return new JSONObject()
+                    .put("type", "data")
+                    .put("id", id)
+                    .put("payload", new JSONObject().put("data", new JSONObject().put(id, new JSONArray(items))))
+                    .toString();
+        }
+
+        @Override
+        public void onOpen(final WebSocket connection, final ClientHandshake handshake) {
+            connection.setAttachment(Collections.newSetFromMap(new java.util.concurrent.ConcurrentHashMap<>()));
+        }
+
+        @Override
+        public void onClose(final WebSocket connection, final int code, final String reason, final boolean remote) {
+        }
+
+        @Override
+        public void onMessage(final WebSocket connection, final String message) {
+            JSONObject json = new JSONObject(message);
+            Set<String> subscriptions = connection.getAttachment();
+            switch (json.optString("type")) {
+                case "connection_init" -> connection.send(new JSONObject().put("type", "connection_ack").toString());
+                case "start" -> {
+                    String id = json.getString("id");
+                    subscriptions.add(id);
+                    connection.send(toMessage(id, exchange.snapshot(id)));
+                }
+                case "stop" -> subscriptions.remove(json.optString("id"));
+                default -> log.warn("Unsupported message: {}", message);
+            }
+        }
+
+        @Override
+        public void onError(final WebSocket connection, final Exception e) {
+            log.error(e.getMessage(), e);
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+    }
+
+    /**
+     * Serves the Binance book ticker stream to connections that sent a SUBSCRIBE request
+     */
+    private class TickerServer extends WebSocketServer {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private TickerServer() {
+            super(new InetSocketAddress("127.0.0.1", 0));
+            setReuseAddr(true);
+            start();
+        }
+
+        private void awaitStart() throws IOException {
+            try {
+                if(!started.await(5, TimeUnit.SECONDS)) {
+                    throw new IOException("stand-in websocket server did not start");
+                }
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+
+        /**
+         * Send a message to every subscribed connection
+         *
+         * @param message the message
+         */
+        private void publish(final String message) {
+            for(WebSocket connection : getConnections()) {
+                if(Boolean.TRUE.equals(connection.getAttachment()) && connection.isOpen()) {
+                    connection.send(message);
+                }
+            }
+        }
+
+        @Override
+        public void onOpen(final WebSocket connection, final ClientHandshake handshake) {
+        }
+
+        @Override
+        public void onClose(final WebSocket connection, final int code, final String reason, final boolean remote) {
+        }
+
+        @Override
+        public void onMessage(final WebSocket connection, final String message) {
+            JSONObject json = new JSONObject(message);
+            if("SUBSCRIBE".equals(json.optString("method"))) {
+                connection.setAttachment(Boolean.TRUE);
+                connection.send(new JSONObject().put("result", JSONObject.NULL).put("id", json.opt("id")).toString());
+            }
+        }
+
+        @Override
+        public void onError(final WebSocket connection, final Exception e) {
+            log.error(e.getMessage(), e);
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.vega.protocol.standin;
+
+import com.vega.protocol.client.api.VegaApiClient;
+import com.vega.protocol.client.ws.BinanceWebSocketClient;
+import com.vega.protocol.client.ws.VegaWebSocketClient;
+import com.vega.protocol.engine.MarketEventListener;
+import com.vega.protocol.model.Order;
+import com.vega.protocol.store.BinanceStore;
+import com.vega.protocol.store.VegaStore;
+import com.vega.protocol.submission.OrderSubmission;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+public class StandInServerTest {
+
+    private final StandInSettings settings = new StandInSettings();
+    private StandInServer server;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        server = new StandInServer(settings);
+        server.getEnvironment().forEach(System::setProperty);
+    }
+
+    @AfterEach
+    public void teardown() throws InterruptedException {
+        server.getEnvironment().keySet().forEach(System::clearProperty);
+        server.close();
+        VegaStore.getInstance().truncate();
+        BinanceStore.getInstance().truncate();
+    }
+
+    @Test
+    public void testPaginatedOrders() {
+        List<Order> orders = new VegaApiClient().getOpenOrders(settings.getPartyId());
+        Assertions.assertEquals(settings.getRestingOrders(), orders.size());
+        Assertions.assertEquals(settings.getRestingOrders(), orders.stream().map(Order::getId).distinct().count());
+    }
+
+    @Test
+    public void testBatchIsStreamedBack() throws InterruptedException {
+        VegaWebSocketClient client = new VegaWebSocketClient(
+                URI.create(server.getEnvironment().get("WS_URL")), MarketEventListener.NONE);
+        Assertions.assertTrue(client.connectBlocking());
+        try {
+            VegaStore vegaStore = VegaStore.getInstance();
+            awaitCondition(() -> vegaStore.getSnapshot().getOrders(settings.getMarketId()).size() == settings.getRestingOrders());
+            OrderSubmission submission = new OrderSubmission()
+                    .setMarketId(settings.getMarketId())
+                    .setSide("SIDE_BUY")
+                    .setSize("100")
+                    .setPrice("50000")
+                    .setType("TYPE_LIMIT")
+                    .setTimeInForce("TIME_IN_FORCE_GTC");
+            Optional<String> txHash = new VegaApiClient().sendBatchMarketInstruction(
+                    List.of(submission), List.of(), List.of());
+            Assertions.assertTrue(txHash.isPresent());
+            Assertions.assertEquals(Integer.valueOf(0), server.getExchange().getTransactionCode(txHash.get()));
+            awaitCondition(() -> vegaStore.getSnapshot().getOrders(settings.getMarketId()).size() == settings.getRestingOrders() + 1);
+            Assertions.assertEquals(1, server.getBatches());
+        } finally {
+            client.closeBlocking();
+        }
+    }
+
+    @Test
+    public void testBinanceTicks() throws InterruptedException {
+        BinanceWebSocketClient client = new BinanceWebSocketClient(
+                URI.create(server.getEnvironment().get("BINANCE_WS_URL")), MarketEventListener.NONE);
+        Assertions.assertTrue(client.connectBlocking());
+        try {
+            awaitCondition(() -> BinanceStore.getInstance().getReferencePriceByMarket(settings.getSymbol()).isPresent());
+            Assertions.assertEquals(settings.getInitialPrice(), BinanceStore.getInstance()
+                    .getReferencePriceByMarket(settings.getSymbol()).orElseThrow().getBidPrice(), 0.1);
+        } finally {
+            client.closeBlocking();
+        }
+    }
+
+    private static void awaitCondition(final BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
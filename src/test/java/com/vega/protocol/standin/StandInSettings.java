@@ -0,0 +1,25 @@
+package com.vega.protocol.standin;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class StandInSettings {
+    private String partyId = "stand-in-party";
+    private String marketId = "stand-in-market";
+    private String assetId = "stand-in-usdt";
+    private String symbol = "UNIUSDT";
+    private int decimalPlaces = 4;
+    private int positionDecimalPlaces = 2;
+    private int assetDecimals = 6;
+    private double initialPrice = 6.0;
+    private double spread = 0.0004;
+    private double volatility = 0.0002;
+    private double initialBalance = 100_000;
+    private int restingOrders = 25;
+    private int pageSize = 10;
+    private double binanceMessagesPerSecond = 100;
+    private double marketDataMessagesPerSecond = 10;
+    private long seed = 1;
+}
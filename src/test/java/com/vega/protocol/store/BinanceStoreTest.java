@@ -0,0 +1,45 @@
+package com.vega.protocol.store;
+
+import com.vega.protocol.model.ReferencePrice;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class BinanceStoreTest {
+
+    @Test
+    public void testSaveReferencePrice() {
+        BinanceStore store = BinanceStore.getInstance();
+        Assertions.assertTrue(store.getReferencePriceByMarket("ETHUSDT").isEmpty());
+        store.save(new ReferencePrice().setSymbol("ETHUSDT").setBidPrice(1).setAskPrice(2));
+        ReferencePrice referencePrice = store.getReferencePriceByMarket("ETHUSDT").orElseThrow();
+        Assertions.assertEquals(1, referencePrice.getBidPrice());
+        Assertions.assertEquals(2, referencePrice.getAskPrice());
+        Assertions.assertSame(store.getSlot("ETHUSDT"), store.getSlot("xETHUSDTx", 1, 8));
+    }
+
+    @Test
+    public void testReadersNeverSeeTornPrices() throws InterruptedException {
+        ReferencePriceSlot slot = BinanceStore.getInstance().getSlot("SEQLOCKTEST");
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean torn = new AtomicBoolean(false);
+        Thread reader = new Thread(() -> {
+            ReferencePrice target = new ReferencePrice();
+            while(running.get()) {
+                slot.read(target);
+                if(target.getAskPrice() != target.getBidPrice() + 1 || target.getReceivedNanos() != target.getBidPrice()) {
+                    torn.set(true);
+                }
+            }
+        });
+        slot.write(0, 1, 0);
+        reader.start();
+        for(int i=1; i<2_000_000; i++) {
+            slot.write(i, i + 1, i);
+        }
+        running.set(false);
+        reader.join();
+        Assertions.assertFalse(torn.get());
+    }
+}
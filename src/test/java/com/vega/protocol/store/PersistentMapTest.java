@@ -0,0 +1,77 @@
+package com.vega.protocol.store;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class PersistentMapTest {
+
+    @Test
+    public void testMatchesHashMap() {
+        Random random = new Random(42);
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        for(int i=0; i<20000; i++) {
+            String key = String.valueOf(random.nextInt(2000));
+            if(random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.without(key);
+            } else {
+                expected.put(key, i);
+                map = map.with(key, i);
+            }
+            Assertions.assertEquals(expected.size(), map.size());
+        }
+        for(Map.Entry<String, Integer> entry : expected.entrySet()) {
+            Assertions.assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        Assertions.assertEquals(new HashSet<>(expected.values()), new HashSet<>(map.values()));
+        Assertions.assertEquals(expected.size(), new ArrayList<>(map.values()).size());
+        for(String key : new ArrayList<>(expected.keySet())) {
+            map = map.without(key);
+        }
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertFalse(map.values().iterator().hasNext());
+    }
+
+    @Test
+    public void testOldVersionsAreUnchanged() {
+        PersistentMap<String, Integer> first = PersistentMap.<String, Integer>empty().with("a", 1).with("b", 2);
+        PersistentMap<String, Integer> second = first.with("a", 3).without("b").with("c", 4);
+        Assertions.assertEquals(Integer.valueOf(1), first.get("a"));
+        Assertions.assertEquals(Integer.valueOf(2), first.get("b"));
+        Assertions.assertNull(first.get("c"));
+        Assertions.assertEquals(Integer.valueOf(3), second.get("a"));
+        Assertions.assertNull(second.get("b"));
+        Assertions.assertEquals(2, second.size());
+        Assertions.assertSame(second, second.with("a", second.get("a")));
+        Assertions.assertSame(second, second.without("b"));
+    }
+
+    @Test
+    public void testCollisions() {
+        // "Aa" and "BB" have the same hash code, and so do all strings built from them
+        List<String> keys = List.of("AaAa", "AaBB", "BBAa", "BBBB");
+        PersistentMap<String, String> map = PersistentMap.empty();
+        for(String key : keys) {
+            map = map.with(key, key.toLowerCase());
+        }
+        map = map.with(null, "null").with("x", "x");
+        Assertions.assertEquals(6, map.size());
+        for(String key : keys) {
+            Assertions.assertEquals(key.toLowerCase(), map.get(key));
+        }
+        Assertions.assertEquals("null", map.get(null));
+        map = map.without("AaBB").without("BBBB").without("AaAa");
+        Assertions.assertEquals(3, map.size());
+        Assertions.assertEquals("bbaa", map.get("BBAa"));
+        Assertions.assertNull(map.get("AaAa"));
+        Assertions.assertEquals(3, new ArrayList<>(map.values()).size());
+    }
+}
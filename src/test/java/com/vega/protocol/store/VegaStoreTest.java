@@ -5,6 +5,9 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public class VegaStoreTest {
@@ -58,4 +61,254 @@ public class VegaStoreTest {
         order = VegaStore.getInstance().getOrderById("1");
         Assertions.assertFalse(order.isPresent());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testOrderIndex() {
+        VegaStore store = VegaStore.getInstance();
+        store.save(new Order().setId("1").setMarketId("m1").setSide("SIDE_BUY").setStatus("STATUS_ACTIVE"));
+        store.save(new Order().setId("2").setMarketId("m1").setSide("SIDE_SELL").setStatus("STATUS_ACTIVE"));
+        store.save(new Order().setId("3").setMarketId("m2").setSide("SIDE_BUY").setStatus("STATUS_ACTIVE"));
+        Assertions.assertEquals(2, store.getSnapshot().getOrders("m1").size());
+        store.save(new Order().setId("4").setMarketId("m1").setSide("SIDE_BUY").setStatus("STATUS_ACTIVE"));
+        Assertions.assertEquals(3, store.getSnapshot().getOrders("m1").size());
+        store.save(new Order().setId("1").setMarketId("m1").setSide("SIDE_BUY").setStatus("STATUS_FILLED"));
+        Collection<Order> orders = store.getSnapshot().getOrders("m1");
+        Assertions.assertEquals(List.of("2", "4"), orders.stream().map(Order::getId).sorted().toList());
+        Assertions.assertTrue(store.getSnapshot().getOrders("m3").isEmpty());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> orders.clear());
+    }
+
+    @Test
+    public void testAccountIndex() {
+        VegaStore store = VegaStore.getInstance();
+        store.save(new Account().setOwner("p1").setAsset("a1").setType("ACCOUNT_TYPE_GENERAL").setBalance("10"));
+        store.save(new Account().setOwner("p1").setAsset("a1").setType("ACCOUNT_TYPE_MARGIN").setBalance("5"));
+        store.save(new Account().setOwner("p1").setAsset("a2").setType("ACCOUNT_TYPE_GENERAL").setBalance("1"));
+        store.save(new Account().setOwner("p1").setAsset("a1").setType("ACCOUNT_TYPE_GENERAL").setBalance("20"));
+        Collection<Account> accounts = store.getSnapshot().getAccounts("p1", "a1");
+        Assertions.assertEquals(2, accounts.size());
+        Assertions.assertEquals(25, accounts.stream().mapToLong(Account::getBalanceValue).sum());
+        Assertions.assertTrue(store.getSnapshot().getAccounts("p2", "a1").isEmpty());
+    }
+
+    @Test
+    public void testInstrumentContextIsInvalidated() {
+        VegaStore store = VegaStore.getInstance();
+        Market.Future future = new Market.Future();
+        future.setSettlementAsset("a1");
+        Market.Instrument instrument = new Market.Instrument();
+        instrument.setFuture(future);
+        Market.TradableInstrument tradableInstrument = new Market.TradableInstrument();
+        tradableInstrument.setInstrument(instrument);
+        store.save(new Asset().setId("a1").setDetails(new Asset.AssetDetails().setDecimals("2")));
+        store.save(new Market().setId("m1").setDecimalPlaces(1).setPositionDecimalPlaces(0)
+                .setTradableInstrument(tradableInstrument));
+        Position position = new Position().setMarketId("m1").setAverageEntryPrice("1234").setRealisedPnl("250");
+        InstrumentContext context = store.getInstrumentContext("m1");
+        Assertions.assertSame(context, store.getInstrumentContext("m1"));
+        Assertions.assertEquals(123.4, position.getAverageEntryPrice());
+        Assertions.assertEquals(2.5, position.getRealisedPnl());
+        store.save(new Asset().setId("a1").setDetails(new Asset.AssetDetails().setDecimals("3")));
+        Assertions.assertFalse(context.isValid());
+        Assertions.assertEquals(0.25, position.getRealisedPnl());
+        store.save(new Market().setId("m1").setDecimalPlaces(2).setPositionDecimalPlaces(0)
+                .setTradableInstrument(tradableInstrument));
+        Assertions.assertEquals(12.34, position.getAverageEntryPrice());
+    }
+
+    @Test
+    public void testInstrumentContextSurvivesMarketData() {
+        VegaStore store = VegaStore.getInstance();
+        Market.Future future = new Market.Future();
+        future.setSettlementAsset("a1");
+        Market.Instrument instrument = new Market.Instrument();
+        instrument.setFuture(future);
+        Market.TradableInstrument tradableInstrument = new Market.TradableInstrument();
+        tradableInstrument.setInstrument(instrument);
+        store.save(new Asset().setId("a1").setDetails(new Asset.AssetDetails().setDecimals("2")));
+        Market market = new Market().setId("m1").setDecimalPlaces(1).setPositionDecimalPlaces(0)
+                .setTradableInstrument(tradableInstrument);
+        store.save(market);
+        InstrumentContext context = store.getInstrumentContext("m1");
+        store.save(market.withMarketData(new MarketData().setMarkPrice("1234")));
+        Assertions.assertTrue(context.isValid());
+        Assertions.assertSame(context, store.getInstrumentContext("m1"));
+        Assertions.assertEquals(123.4, store.getMarketById("m1").orElseThrow().getMarkPrice());
+        store.save(market.setPositionDecimalPlaces(1));
+        Assertions.assertFalse(context.isValid());
+        Assertions.assertNotSame(context, store.getInstrumentContext("m1"));
+    }
+
+    @Test
+    public void testSnapshotNumberFormatsAreConsistent() {
+        VegaStore store = VegaStore.getInstance();
+        Market.Future future = new Market.Future();
+        future.setSettlementAsset("a1");
+        Market.Instrument instrument = new Market.Instrument();
+        instrument.setFuture(future);
+        Market.TradableInstrument tradableInstrument = new Market.TradableInstrument();
+        tradableInstrument.setInstrument(instrument);
+        store.save(new Market().setId("m1").setDecimalPlaces(1).setPositionDecimalPlaces(0)
+                .setTradableInstrument(tradableInstrument));
+        Assertions.assertEquals(-1, store.getSnapshot().getInstrumentContext("m1").orElseThrow()
+                .getSettlementAssetDecimals());
+        store.save(new Asset().setId("a1").setDetails(new Asset.AssetDetails().setDecimals("2")));
+        Position position = new Position().setMarketId("m1").setAverageEntryPrice("1234").setOpenVolume("5");
+        Account account = new Account().setOwner("p1").setAsset("a1").setBalance("250");
+        StoreSnapshot snapshot = store.getSnapshot();
+        InstrumentContext context = snapshot.getInstrumentContext("m1").orElseThrow();
+        InstrumentContext assetContext = snapshot.getAssetContext("a1").orElseThrow();
+        Assertions.assertEquals(2, context.getSettlementAssetDecimals());
+        store.save(store.getMarketById("m1").orElseThrow().withMarketData(new MarketData().setMarkPrice("1")));
+        Assertions.assertSame(context, store.getSnapshot().getInstrumentContext("m1").orElseThrow());
+        store.save(new Asset().setId("a1").setDetails(new Asset.AssetDetails().setDecimals("3")));
+        store.save(new Market().setId("m1").setDecimalPlaces(2).setPositionDecimalPlaces(0)
+                .setTradableInstrument(tradableInstrument));
+        Assertions.assertEquals(123.4, position.getAverageEntryPrice(context));
+        Assertions.assertEquals(2.5, account.getBalance(assetContext));
+        Assertions.assertEquals(12.34, position.getAverageEntryPrice());
+        Assertions.assertEquals(0.25, account.getBalance());
+        StoreSnapshot latest = store.getSnapshot();
+        Assertions.assertEquals(12.34, position.getAverageEntryPrice(latest.getInstrumentContext("m1").orElseThrow()));
+        Assertions.assertEquals(0.25, account.getBalance(latest.getAssetContext("a1").orElseThrow()));
+        Assertions.assertEquals(5, position.getOpenVolume(context));
+    }
+
+    private Order order(final String id, final String status, final long updatedAt) {
+        return new Order().setId(id).setMarketId("m1").setSide("SIDE_BUY").setStatus(status)
+                .setVersion("1").setUpdatedAt(String.valueOf(updatedAt));
+    }
+
+    @Test
+    public void testOlderOrderUpdateIsIgnored() {
+        VegaStore store = VegaStore.getInstance();
+        store.save(order("1", "STATUS_ACTIVE", 200).setPrice("10"));
+        store.save(order("1", "STATUS_ACTIVE", 100).setPrice("9"));
+        Assertions.assertEquals(10, store.getOrderById("1").orElseThrow().getPriceValue());
+        store.save(new Position().setMarketId("m1").setOpenVolume("5").setUpdatedAt("2023-01-01T00:00:01Z"));
+        store.save(new Position().setMarketId("m1").setOpenVolume("3").setUpdatedAt("2023-01-01T00:00:00Z"));
+        Assertions.assertEquals(5, store.getPositionByMarketId("m1").orElseThrow().getOpenVolumeValue());
+    }
+
+    @Test
+    public void testReconcileNeverRestoresRemovedOrder() {
+        VegaStore store = VegaStore.getInstance();
+        store.save(order("1", "STATUS_ACTIVE", 100));
+        long fence = store.getVersion();
+        store.save(order("1", "STATUS_CANCELLED", 200));
+        ReconcileResult result = store.reconcile(fence, null, null, null,
+                List.of(order("1", "STATUS_ACTIVE", 100)), null);
+        Assertions.assertTrue(store.getOrderById("1").isEmpty());
+        Assertions.assertEquals(1, result.getStale());
+        // a lagging data node, queried after the cancellation, is caught by the tombstone
+        result = store.reconcile(store.getVersion(), null, null, null,
+                List.of(order("1", "STATUS_ACTIVE", 100)), null);
+        Assertions.assertTrue(store.getOrderById("1").isEmpty());
+        Assertions.assertEquals(1, result.getStale());
+    }
+
+    @Test
+    public void testReconcileEmitsOnlyDifferences() {
+        VegaStore store = VegaStore.getInstance();
+        List<StoreListener.ChangeType> changes = new ArrayList<>();
+        StoreListener listener = (type, change, id, entity) -> changes.add(change);
+        store.save(order("1", "STATUS_ACTIVE", 100));
+        store.save(order("2", "STATUS_ACTIVE", 100));
+        store.addListener(listener);
+        try {
+            long version = store.getVersion();
+            ReconcileResult result = store.reconcile(version, null, null, null,
+                    List.of(order("1", "STATUS_ACTIVE", 100), order("3", "STATUS_ACTIVE", 100)), null);
+            Assertions.assertEquals(1, result.getUnchanged());
+            Assertions.assertEquals(1, result.getAdded());
+            Assertions.assertEquals(1, result.getRemoved());
+            Assertions.assertEquals(List.of(StoreListener.ChangeType.ADDED, StoreListener.ChangeType.REMOVED),
+                    changes);
+            Assertions.assertTrue(store.getOrderById("2").isEmpty());
+            Assertions.assertEquals(2, store.getSnapshot().getOrders("m1").size());
+            changes.clear();
+            version = store.getVersion();
+            store.reconcile(version, null, null, null,
+                    List.of(order("1", "STATUS_ACTIVE", 100), order("3", "STATUS_ACTIVE", 100)), null);
+            Assertions.assertTrue(changes.isEmpty());
+            Assertions.assertEquals(version, store.getVersion());
+        } finally {
+            store.removeListener(listener);
+        }
+    }
+
+    @Test
+    public void testReconcileKeepsOrdersWrittenAfterFence() {
+        VegaStore store = VegaStore.getInstance();
+        long fence = store.getVersion();
+        store.save(order("1", "STATUS_ACTIVE", 100));
+        ReconcileResult result = store.reconcile(fence, null, null, null, List.of(), null);
+        Assertions.assertTrue(store.getOrderById("1").isPresent());
+        Assertions.assertEquals(0, result.getRemoved());
+        result = store.reconcile(store.getVersion(), null, null, null, null, null);
+        Assertions.assertTrue(store.getOrderById("1").isPresent());
+        Assertions.assertEquals(0, result.getRemoved());
+    }
+
+    @Test
+    public void testSnapshotIsNotChangedByLaterWrites() {
+        VegaStore store = VegaStore.getInstance();
+        store.save(new Market().setId("m1"));
+        Position position = new Position().setMarketId("m1");
+        store.save(position);
+        store.save(new Order().setId("1").setMarketId("m1").setStatus("STATUS_ACTIVE"));
+        StoreSnapshot snapshot = store.getSnapshot();
+        Assertions.assertEquals(store.getVersion(), snapshot.getVersion());
+        store.save(new Market().setId("m1").setState("STATE_SUSPENDED"));
+        store.save(new Position().setMarketId("m1").setRealisedPnl("1"));
+        store.save(new Order().setId("1").setMarketId("m1").setStatus("STATUS_FILLED"));
+        store.save(new Order().setId("2").setMarketId("m1").setStatus("STATUS_ACTIVE"));
+        Assertions.assertNull(snapshot.getMarket("m1").orElseThrow().getState());
+        Assertions.assertSame(position, snapshot.getPosition("m1").orElseThrow());
+        Assertions.assertEquals(List.of("1"), snapshot.getOrders("m1").stream().map(Order::getId).toList());
+        StoreSnapshot latest = store.getSnapshot();
+        Assertions.assertTrue(latest.getVersion() > snapshot.getVersion());
+        Assertions.assertEquals("STATE_SUSPENDED", latest.getMarket("m1").orElseThrow().getState());
+        Assertions.assertEquals(List.of("2"), latest.getOrders("m1").stream().map(Order::getId).toList());
+        store.truncate();
+        Assertions.assertTrue(store.getSnapshot().getMarkets().isEmpty());
+        Assertions.assertEquals(1, latest.getMarkets().size());
+    }
+
+    @Test
+    public void testSnapshotSharesUntouchedState() {
+        VegaStore store = VegaStore.getInstance();
+        store.save(new Order().setId("1").setMarketId("m1").setStatus("STATUS_ACTIVE"));
+        store.save(new Order().setId("2").setMarketId("m2").setStatus("STATUS_ACTIVE"));
+        store.save(new Account().setOwner("p1").setAsset("a1").setType("ACCOUNT_TYPE_GENERAL"));
+        StoreSnapshot before = store.getSnapshot();
+        store.save(new Order().setId("3").setMarketId("m1").setStatus("STATUS_ACTIVE"));
+        StoreSnapshot after = store.getSnapshot();
+        Assertions.assertSame(before.getOrders("m2"), after.getOrders("m2"));
+        Assertions.assertNotSame(before.getOrders("m1"), after.getOrders("m1"));
+        Assertions.assertEquals(2, after.getOrders("m1").size());
+        Assertions.assertEquals(1, after.getAccounts("p1", "a1").size());
+        Assertions.assertTrue(after.getAccounts("p1", "a2").isEmpty());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> after.getOrders("m1").clear());
+    }
+
+    @Test
+    public void testSnapshotIndexesAccountsByOwnerAndAsset() {
+        VegaStore store = VegaStore.getInstance();
+        for(int i=0; i<100; i++) {
+            store.save(new Account().setOwner("p" + (i % 10)).setAsset("a" + (i % 4)).setMarketId("m" + i)
+                    .setType("ACCOUNT_TYPE_MARGIN"));
+        }
+        StoreSnapshot before = store.getSnapshot();
+        Assertions.assertEquals(5, before.getAccounts("p1", "a1").size());
+        Assertions.assertTrue(before.getAccounts("p1", "a2").isEmpty());
+        store.save(new Account().setOwner("p2").setAsset("a2").setMarketId("m2").setType("ACCOUNT_TYPE_MARGIN")
+                .setBalance("10"));
+        StoreSnapshot after = store.getSnapshot();
+        Assertions.assertSame(before.getAccounts("p1", "a1"), after.getAccounts("p1", "a1"));
+        Assertions.assertEquals(5, after.getAccounts("p2", "a2").size());
+        Assertions.assertEquals(10, after.getAccounts("p2", "a2").stream().mapToLong(Account::getBalanceValue).sum());
+        Assertions.assertEquals(0, before.getAccounts("p2", "a2").stream().mapToLong(Account::getBalanceValue).sum());
+        Assertions.assertEquals(100, after.getAccounts().size());
+    }
+}
@@ -0,0 +1,86 @@
+package com.vega.protocol.strategy;
+
+import com.vega.protocol.model.Order;
+import com.vega.protocol.submission.BatchMarketInstruction;
+import com.vega.protocol.submission.OrderAmendment;
+import com.vega.protocol.submission.OrderSubmission;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class OrderReconcilerTest {
+
+    private final OrderReconciler orderReconciler = new OrderReconciler(0.001, 0.1);
+
+    private OrderSubmission target(String side, String price, String size) {
+        return new OrderSubmission().setMarketId("1").setSide(side).setPrice(price).setSize(size);
+    }
+
+    private Order order(String id, String side, String price, String remaining) {
+        return new Order().setId(id).setMarketId("1").setSide(side).setPrice(price)
+                .setSize(remaining).setRemaining(remaining).setStatus("STATUS_ACTIVE");
+    }
+
+    @Test
+    public void testKeepOrdersWithinTolerance() {
+        BatchMarketInstruction instruction = orderReconciler.reconcile(
+                List.of(target("SIDE_BUY", "100000", "100"), target("SIDE_SELL", "101000", "100")),
+                List.of(order("1", "SIDE_BUY", "100050", "95"), order("2", "SIDE_SELL", "101000", "100")));
+        Assertions.assertEquals(0, instruction.getCancellations().size());
+        Assertions.assertEquals(0, instruction.getAmendments().size());
+        Assertions.assertEquals(0, instruction.getSubmissions().size());
+    }
+
+    @Test
+    public void testAmendDriftedOrders() {
+        BatchMarketInstruction instruction = orderReconciler.reconcile(
+                List.of(target("SIDE_BUY", "100000", "100"), target("SIDE_SELL", "101000", "100")),
+                List.of(order("1", "SIDE_BUY", "99000", "100"), order("2", "SIDE_SELL", "101000", "50")));
+        Assertions.assertEquals(0, instruction.getCancellations().size());
+        Assertions.assertEquals(0, instruction.getSubmissions().size());
+        Assertions.assertEquals(2, instruction.getAmendments().size());
+        OrderAmendment buy = instruction.getAmendments().get(0);
+        Assertions.assertEquals("1", buy.getOrderId());
+        Assertions.assertEquals("100000", buy.getPrice());
+        Assertions.assertEquals("0", buy.getSizeDelta());
+        OrderAmendment sell = instruction.getAmendments().get(1);
+        Assertions.assertEquals("2", sell.getOrderId());
+        Assertions.assertNull(sell.getPrice());
+        Assertions.assertEquals("50", sell.getSizeDelta());
+    }
+
+    @Test
+    public void testCancelSurplusAndSubmitMissingLevels() {
+        BatchMarketInstruction instruction = orderReconciler.reconcile(
+                List.of(target("SIDE_BUY", "100000", "100"), target("SIDE_BUY", "99000", "100"),
+                        target("SIDE_SELL", "101000", "0")),
+                List.of(order("1", "SIDE_BUY", "100000", "100"), order("2", "SIDE_SELL", "101000", "100")));
+        Assertions.assertEquals(1, instruction.getCancellations().size());
+        Assertions.assertEquals("2", instruction.getCancellations().get(0).getOrderId());
+        Assertions.assertEquals(0, instruction.getAmendments().size());
+        Assertions.assertEquals(1, instruction.getSubmissions().size());
+        Assertions.assertEquals("99000", instruction.getSubmissions().get(0).getPrice());
+    }
+
+    @Test
+    public void testReconcileLadder() {
+        QuoteLadder quoteLadder = new QuoteLadder(2, 0.01, 1, 0);
+        QuoteLadder.Levels bids = quoteLadder.newLevels();
+        QuoteLadder.Levels asks = quoteLadder.newLevels();
+        quoteLadder.build(true, 1000, 2000, 2, 0, bids);
+        quoteLadder.build(false, 1000, 0, 2, 0, asks);
+        BatchMarketInstruction instruction = orderReconciler.reconcile("1", bids, asks,
+                List.of(order("1", "SIDE_BUY", "99000", "1"), order("2", "SIDE_SELL", "101000", "1")));
+        Assertions.assertEquals(1, instruction.getCancellations().size());
+        Assertions.assertEquals("2", instruction.getCancellations().get(0).getOrderId());
+        Assertions.assertEquals(0, instruction.getAmendments().size());
+        Assertions.assertEquals(1, instruction.getSubmissions().size());
+        OrderSubmission submission = instruction.getSubmissions().get(0);
+        Assertions.assertEquals("1", submission.getMarketId());
+        Assertions.assertEquals("SIDE_BUY", submission.getSide());
+        Assertions.assertEquals("98000", submission.getPrice());
+        Assertions.assertEquals("1", submission.getSize());
+        Assertions.assertEquals("TYPE_LIMIT", submission.getType());
+    }
+}
@@ -0,0 +1,72 @@
+package com.vega.protocol.strategy;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class QuoteLadderTest {
+
+    @Test
+    public void testEqualLevels() {
+        QuoteLadder quoteLadder = new QuoteLadder(5, 0.002, 1, 0);
+        QuoteLadder.Levels bids = quoteLadder.newLevels();
+        QuoteLadder.Levels asks = quoteLadder.newLevels();
+        quoteLadder.build(true, 6.1234, 50000, 5, 2, bids);
+        quoteLadder.build(false, 6.1289, 50000, 5, 2, asks);
+        Assertions.assertEquals(5, bids.getCount());
+        Assertions.assertEquals(5, asks.getCount());
+        long[] bidPrices = {611115, 609891, 608666, 607441, 606217};
+        long[] askPrices = {614116, 615342, 616567, 617793, 619019};
+        for(int i=0; i<5; i++) {
+            Assertions.assertEquals(bidPrices[i], bids.getPrice(i));
+            Assertions.assertEquals(askPrices[i], asks.getPrice(i));
+            Assertions.assertEquals(163308, bids.getSize(i));
+        }
+    }
+
+    @Test
+    public void testTickSizeRoundsAwayFromReferencePrice() {
+        QuoteLadder quoteLadder = new QuoteLadder(3, 0.001, 1, 0.01);
+        QuoteLadder.Levels bids = quoteLadder.newLevels();
+        QuoteLadder.Levels asks = quoteLadder.newLevels();
+        quoteLadder.build(true, 100.005, 3000, 5, 0, bids);
+        quoteLadder.build(false, 100.005, 3000, 5, 0, asks);
+        Assertions.assertEquals(9990000, bids.getPrice(0));
+        Assertions.assertEquals(9980000, bids.getPrice(1));
+        Assertions.assertEquals(10011000, asks.getPrice(0));
+        Assertions.assertEquals(10021000, asks.getPrice(1));
+        for(int i=0; i<3; i++) {
+            Assertions.assertEquals(0, bids.getPrice(i) % 1000);
+            Assertions.assertEquals(0, asks.getPrice(i) % 1000);
+        }
+    }
+
+    @Test
+    public void testSizeRatio() {
+        QuoteLadder quoteLadder = new QuoteLadder(3, 0.01, 2, 0);
+        QuoteLadder.Levels asks = quoteLadder.newLevels();
+        quoteLadder.build(false, 10, 700, 2, 0, asks);
+        Assertions.assertEquals(10, asks.getSize(0));
+        Assertions.assertEquals(20, asks.getSize(1));
+        Assertions.assertEquals(40, asks.getSize(2));
+    }
+
+    @Test
+    public void testDeepLadderSkipsEmptyLevels() {
+        QuoteLadder quoteLadder = new QuoteLadder(500, 0.0025, 1, 0);
+        QuoteLadder.Levels bids = quoteLadder.newLevels();
+        quoteLadder.build(true, 1000, 1_000_000, 2, 1, bids);
+        // bids more than 100% below the reference price are dropped
+        Assertions.assertEquals(399, bids.getCount());
+        for(int i=1; i<bids.getCount(); i++) {
+            Assertions.assertTrue(bids.getPrice(i) < bids.getPrice(i - 1));
+        }
+        quoteLadder.build(true, 1000, 0, 2, 1, bids);
+        Assertions.assertEquals(0, bids.getCount());
+    }
+
+    @Test
+    public void testInvalidLadder() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new QuoteLadder(0, 0.002, 1, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new QuoteLadder(5, 0, 1, 0));
+    }
+}
@@ -0,0 +1,69 @@
+package com.vega.protocol.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+public class FixedPointTest {
+
+    @Test
+    public void testParse() {
+        Assertions.assertEquals(1234000L, FixedPoint.parse("1234000"));
+        Assertions.assertEquals(-42L, FixedPoint.parse("-42"));
+        Assertions.assertEquals(0L, FixedPoint.parse(""));
+        Assertions.assertEquals(0L, FixedPoint.parse(null));
+        Assertions.assertEquals(Long.MAX_VALUE, FixedPoint.parse(String.valueOf(Long.MAX_VALUE)));
+        Assertions.assertEquals(FixedPoint.OVERFLOW, FixedPoint.parse("9223372036854775808"));
+        Assertions.assertEquals(FixedPoint.OVERFLOW, FixedPoint.parse("100000000000000000000000"));
+        Assertions.assertEquals(12L, FixedPoint.parse("a12b", 1, 3));
+        Assertions.assertThrows(NumberFormatException.class, () -> FixedPoint.parse("1.5"));
+    }
+
+    @Test
+    public void testToDouble() {
+        Assertions.assertEquals(10.0, FixedPoint.toDouble(1000, 2), 0d);
+        Assertions.assertEquals(-0.00001, FixedPoint.toDouble(-1, 5), 0d);
+        Assertions.assertEquals(DecimalUtils.convertToDecimals(18, new BigInteger("123456789012345678")),
+                FixedPoint.toDouble(123456789012345678L, 18), 0d);
+        Assertions.assertEquals(1e6, FixedPoint.toDouble(FixedPoint.OVERFLOW, "1000000000000000000000000", 18), 0d);
+    }
+
+    @Test
+    public void testFromDouble() {
+        Assertions.assertEquals(1000L, FixedPoint.fromDouble(10.0, 2));
+        Assertions.assertEquals(1235L, FixedPoint.fromDouble(12.346, 2));
+        Assertions.assertEquals(1234L, FixedPoint.fromDouble(12.344, 2));
+        Assertions.assertEquals(-1235L, FixedPoint.fromDouble(-12.346, 2));
+        Assertions.assertEquals(FixedPoint.OVERFLOW, FixedPoint.fromDouble(1e30, 2));
+        Assertions.assertEquals(FixedPoint.OVERFLOW, FixedPoint.fromDouble(Double.NaN, 2));
+        Assertions.assertEquals("1000", FixedPoint.toWire(10.0, 2));
+        Assertions.assertEquals("1" + "0".repeat(33), FixedPoint.toWire(1e30, 3));
+    }
+
+    @Test
+    public void testArithmetic() {
+        Assertions.assertEquals(123L, FixedPoint.rescale(12345, 4, 2));
+        Assertions.assertEquals(124L, FixedPoint.rescale(12351, 4, 2));
+        Assertions.assertEquals(-124L, FixedPoint.rescale(-12351, 4, 2));
+        Assertions.assertEquals(1234500L, FixedPoint.rescale(12345, 2, 4));
+        Assertions.assertEquals(FixedPoint.OVERFLOW, FixedPoint.rescale(Long.MAX_VALUE, 0, 1));
+        Assertions.assertEquals(5L, FixedPoint.add(2, 3));
+        Assertions.assertEquals(FixedPoint.OVERFLOW, FixedPoint.add(Long.MAX_VALUE, 1));
+        Assertions.assertEquals(-1L, FixedPoint.subtract(2, 3));
+        Assertions.assertEquals(FixedPoint.OVERFLOW, FixedPoint.subtract(Long.MIN_VALUE + 1, 2));
+        Assertions.assertEquals(-600L, FixedPoint.multiply(-20, 30));
+        Assertions.assertEquals(FixedPoint.OVERFLOW, FixedPoint.multiply(Long.MAX_VALUE / 2, 3));
+        Assertions.assertEquals("-42", FixedPoint.appendTo(-42, new StringBuilder()).toString());
+    }
+
+    @Test
+    public void testParseDouble() {
+        Assertions.assertEquals(25.35, FixedPoint.parseDouble("25.35000000", 0, 11), 0d);
+        Assertions.assertEquals(0.00001234, FixedPoint.parseDouble("\"0.00001234\"", 1, 11), 0d);
+        Assertions.assertEquals(-7.0, FixedPoint.parseDouble("-7", 0, 2), 0d);
+        Assertions.assertEquals(1234567890.123456789, FixedPoint.parseDouble("1234567890.123456789", 0, 20), 0d);
+        Assertions.assertThrows(NumberFormatException.class, () -> FixedPoint.parseDouble("1.2x", 0, 4));
+        Assertions.assertThrows(NumberFormatException.class, () -> FixedPoint.parseDouble(".", 0, 1));
+    }
+}